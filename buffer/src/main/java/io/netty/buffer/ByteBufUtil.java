@@ -1747,7 +1747,48 @@ public final class ByteBufUtil {
      * @param length The length of the specified buffer.
      */
     private static boolean isAscii(ByteBuf buf, int index, int length) {
-        return buf.forEachByte(index, length, FIND_NON_ASCII) == -1;
+        return indexOfNonAscii(buf, index, index + length) == -1;
+    }
+
+    /**
+     * Returns the index of the first byte in the specified {@link ByteBuf} from {@code fromIndex} (inclusive) to
+     * {@code toIndex} (exclusive) which is not ASCII, that is which has its most significant bit set, or {@code -1}
+     * if there is none.
+     * <p>
+     * This is using a SWAR (SIMD Within A Register) technique to check eight bytes at once if the platform supports
+     * unaligned access.
+     *
+     * @param buf       The given {@link ByteBuf}.
+     * @param fromIndex The start index of the specified buffer.
+     * @param toIndex   The end index of the specified buffer.
+     */
+    public static int indexOfNonAscii(ByteBuf buf, int fromIndex, int toIndex) {
+        if (fromIndex >= toIndex) {
+            return -1;
+        }
+        if (!(buf instanceof AbstractByteBuf) || !PlatformDependent.isUnaligned()) {
+            return buf.forEachByte(fromIndex, toIndex - fromIndex, FIND_NON_ASCII);
+        }
+        AbstractByteBuf buffer = (AbstractByteBuf) buf;
+        buffer.checkIndex(fromIndex, toIndex - fromIndex);
+        final boolean useLE = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+        int offset = fromIndex;
+        for (int longEnd = toIndex - 7; offset < longEnd; offset += Long.BYTES) {
+            // use the faster available getLong
+            final long word = useLE? buffer._getLongLE(offset) : buffer._getLong(offset);
+            final long nonAscii = word & 0x8080808080808080L;
+            if (nonAscii != 0) {
+                final int binaryPosition = useLE? Long.numberOfTrailingZeros(nonAscii) :
+                        Long.numberOfLeadingZeros(nonAscii);
+                return offset + (binaryPosition >>> 3);
+            }
+        }
+        for (; offset < toIndex; offset++) {
+            if (buffer._getByte(offset) < 0) {
+                return offset;
+            }
+        }
+        return -1;
     }
 
     /**
@@ -1799,7 +1840,13 @@ public final class ByteBufUtil {
             byte b1 = buf.getByte(index++);
             byte b2, b3, b4;
             if ((b1 & 0x80) == 0) {
-                // 1 byte
+                // 1 byte, skip the rest of the ASCII run at once
+                if (endIndex - index >= Long.BYTES) {
+                    index = indexOfNonAscii(buf, index, endIndex);
+                    if (index == -1) {
+                        return true;
+                    }
+                }
                 continue;
             }
             if ((b1 & 0xE0) == 0xC0) {
@@ -817,6 +817,38 @@ public class ByteBufUtilTest {
         assertIsText(bufferType, invalidBytes, false, CharsetUtil.US_ASCII);
     }
 
+    @ParameterizedTest(name = PARAMETERIZED_NAME)
+    @MethodSource("noUnsafe")
+    public void testIsTextWithLongAsciiRuns(BufferType bufferType) {
+        String ascii = "a long run of ascii text which is checked eight bytes at once";
+        assertIsText(bufferType, (ascii + "\u00e9" + ascii).getBytes(CharsetUtil.UTF_8), true, CharsetUtil.UTF_8);
+        assertIsText(bufferType, (ascii + ascii).getBytes(CharsetUtil.UTF_8), true, CharsetUtil.US_ASCII);
+
+        byte[] invalid = (ascii + ascii).getBytes(CharsetUtil.UTF_8);
+        invalid[ascii.length() + 3] = (byte) 0x80;
+        assertIsText(bufferType, invalid, false, CharsetUtil.UTF_8);
+        assertIsText(bufferType, invalid, false, CharsetUtil.US_ASCII);
+    }
+
+    @ParameterizedTest(name = PARAMETERIZED_NAME)
+    @MethodSource("noUnsafe")
+    public void testIndexOfNonAscii(BufferType bufferType) {
+        ByteBuf buffer = buffer(bufferType, 32);
+        try {
+            buffer.writeBytes(new byte[32]);
+            assertEquals(-1, ByteBufUtil.indexOfNonAscii(buffer, 0, 32));
+            for (int i = 0; i < 32; i++) {
+                buffer.setByte(i, 0xC3);
+                assertEquals(i, ByteBufUtil.indexOfNonAscii(buffer, 0, 32));
+                assertEquals(-1, ByteBufUtil.indexOfNonAscii(buffer, i + 1, 32));
+                assertEquals(-1, ByteBufUtil.indexOfNonAscii(buffer, 0, i));
+                buffer.setByte(i, 'a');
+            }
+        } finally {
+            buffer.release();
+        }
+    }
+
     @ParameterizedTest(name = PARAMETERIZED_NAME)
     @MethodSource("noUnsafe")
     public void testIsTextWithInvalidIndexAndLength(BufferType bufferType) {
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.DateFormatter;
+import io.netty.util.CharsetUtil;
+import io.netty.util.concurrent.FastThreadLocal;
+
+import java.util.Date;
+
+/**
+ * Caches the encoded {@code Date} header per thread, and so per {@link io.netty.channel.EventLoop}. The header is
+ * formatted at most once per second, as this is the resolution of an HTTP date.
+ */
+final class HttpDateHeaderCache {
+
+    private static final FastThreadLocal<HttpDateHeaderCache> CACHE = new FastThreadLocal<HttpDateHeaderCache>() {
+        @Override
+        protected HttpDateHeaderCache initialValue() {
+            return new HttpDateHeaderCache();
+        }
+    };
+
+    private final Date date = new Date();
+    private long second = Long.MIN_VALUE;
+    private byte[] encoded;
+
+    /**
+     * Writes the {@code Date} header for the current time, including the trailing {@code CRLF}.
+     */
+    static void encodeDateHeader(ByteBuf buf) {
+        CACHE.get().encode(buf, System.currentTimeMillis());
+    }
+
+    void encode(ByteBuf buf, long currentTimeMillis) {
+        long second = currentTimeMillis / 1000;
+        if (second != this.second) {
+            date.setTime(second * 1000);
+            StringBuilder sb = new StringBuilder(40).append(HttpHeaderNames.DATE).append(": ");
+            encoded = DateFormatter.append(date, sb).append("\r\n").toString().getBytes(CharsetUtil.US_ASCII);
+            this.second = second;
+        }
+        buf.writeBytes(encoded);
+    }
+}
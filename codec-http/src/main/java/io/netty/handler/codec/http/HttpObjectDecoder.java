@@ -25,8 +25,11 @@ import io.netty.handler.codec.ByteToMessageDecoder;
 import io.netty.handler.codec.DecoderResult;
 import io.netty.handler.codec.PrematureChannelClosureException;
 import io.netty.handler.codec.TooLongFrameException;
+import io.netty.util.AsciiString;
 import io.netty.util.ByteProcessor;
+import io.netty.util.CharsetUtil;
 import io.netty.util.internal.AppendableCharSequence;
+import io.netty.util.internal.PlatformDependent;
 
 import java.util.List;
 
@@ -85,6 +88,15 @@ import java.util.List;
  *     is set to {@code false}, the {@link ByteBuf} is not decoded into an {@link HttpContent} until
  *     the readable bytes are greater or equal to the chunk size.</td>
  * </tr>
+ * <tr>
+ * <td>{@code asciiStringHeaders}</td>
+ * <td>{@value #DEFAULT_ASCII_STRING_HEADERS}</td>
+ * <td>When set to {@code true}, the headers are only parsed once all of them were received. Their bytes are then
+ *     copied into a single {@code byte[]} and the header names and values are {@link AsciiString} views of it,
+ *     instead of {@link String}s which are built char by char. Well known header names are replaced by the
+ *     matching lower-case constant of {@link HttpHeaderNames}, so for example {@code Connection} is decoded as
+ *     {@code connection}, while the default mode preserves the case of the received names.</td>
+ * </tr>
  * </table>
  *
  * <h3>Chunked Content</h3>
@@ -137,6 +149,7 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
     public static final boolean DEFAULT_VALIDATE_HEADERS = true;
     public static final int DEFAULT_INITIAL_BUFFER_SIZE = 128;
     public static final boolean DEFAULT_ALLOW_DUPLICATE_CONTENT_LENGTHS = false;
+    public static final boolean DEFAULT_ASCII_STRING_HEADERS = false;
 
     private static final String EMPTY_VALUE = "";
 
@@ -147,6 +160,8 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
     private final boolean allowDuplicateContentLengths;
     private final HeaderParser headerParser;
     private final LineParser lineParser;
+    private final int maxHeaderSize;
+    private final boolean asciiStringHeaders;
 
     private HttpMessage message;
     private long chunkSize;
@@ -159,6 +174,10 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
 
     private LastHttpContent trailer;
 
+    // These will be updated by findEndOfHeaders(...) if asciiStringHeaders is used.
+    private int headerScanOffset;
+    private int headerSize;
+
     /**
      * The internal state of {@link HttpObjectDecoder}.
      * <em>Internal use only</em>.
@@ -235,6 +254,17 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
             int maxInitialLineLength, int maxHeaderSize, int maxChunkSize,
             boolean chunkedSupported, boolean validateHeaders, int initialBufferSize,
             boolean allowDuplicateContentLengths, boolean allowPartialChunks) {
+        this(maxInitialLineLength, maxHeaderSize, maxChunkSize, chunkedSupported, validateHeaders, initialBufferSize,
+             allowDuplicateContentLengths, allowPartialChunks, DEFAULT_ASCII_STRING_HEADERS);
+    }
+
+    /**
+     * Creates a new instance with the specified parameters.
+     */
+    protected HttpObjectDecoder(
+            int maxInitialLineLength, int maxHeaderSize, int maxChunkSize,
+            boolean chunkedSupported, boolean validateHeaders, int initialBufferSize,
+            boolean allowDuplicateContentLengths, boolean allowPartialChunks, boolean asciiStringHeaders) {
         checkPositive(maxInitialLineLength, "maxInitialLineLength");
         checkPositive(maxHeaderSize, "maxHeaderSize");
         checkPositive(maxChunkSize, "maxChunkSize");
@@ -247,6 +277,8 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
         this.validateHeaders = validateHeaders;
         this.allowDuplicateContentLengths = allowDuplicateContentLengths;
         this.allowPartialChunks = allowPartialChunks;
+        this.maxHeaderSize = maxHeaderSize;
+        this.asciiStringHeaders = asciiStringHeaders;
     }
 
     @Override
@@ -278,7 +310,7 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
             return;
         }
         case READ_HEADER: try {
-            State nextState = readHeaders(buffer);
+            State nextState = asciiStringHeaders ? readHeadersAsAsciiString(buffer) : readHeaders(buffer);
             if (nextState == null) {
                 return;
             }
@@ -572,6 +604,8 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
         this.message = null;
         name = null;
         value = null;
+        headerScanOffset = 0;
+        headerSize = 0;
         contentLength = Long.MIN_VALUE;
         lineParser.reset();
         headerParser.reset();
@@ -659,8 +693,108 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
         name = null;
         value = null;
 
+        return headersDecoded(message, headerParser.size);
+    }
+
+    private State readHeadersAsAsciiString(ByteBuf buffer) {
+        final HttpMessage message = this.message;
+        final HttpHeaders headers = message.headers();
+
+        int headersEnd = findEndOfHeaders(buffer);
+        if (headersEnd == -1) {
+            return null;
+        }
+        // Copy all headers at once so the names and values can share the same byte[].
+        byte[] bytes = new byte[headersEnd - buffer.readerIndex()];
+        buffer.readBytes(bytes);
+
+        int lineStart = 0;
+        for (;;) {
+            int lineEnd = lineStart;
+            while (bytes[lineEnd] != HttpConstants.LF) {
+                lineEnd ++;
+            }
+            int nextLineStart = lineEnd + 1;
+            // Drop CR if we had a CRLF pair
+            if (lineEnd > lineStart && bytes[lineEnd - 1] == HttpConstants.CR) {
+                lineEnd --;
+            }
+            if (lineEnd == lineStart) {
+                break;
+            }
+            byte firstByte = bytes[lineStart];
+            if (name != null && (firstByte == ' ' || firstByte == '\t')) {
+                //please do not make one line from below code
+                //as it breaks +XX:OptimizeStringConcat optimization
+                String trimmedLine = new String(bytes, lineStart, lineEnd - lineStart, CharsetUtil.ISO_8859_1).trim();
+                String valueStr = String.valueOf(value);
+                value = valueStr + ' ' + trimmedLine;
+            } else {
+                if (name != null) {
+                    headers.add(name, value);
+                }
+                splitHeader(bytes, lineStart, lineEnd);
+            }
+            lineStart = nextLineStart;
+        }
+
+        // Add the last header.
+        if (name != null) {
+            headers.add(name, value);
+        }
+
+        // reset name and value fields
+        name = null;
+        value = null;
+
+        int headerSize = this.headerSize;
+        this.headerSize = 0;
+        return headersDecoded(message, headerSize);
+    }
+
+    /**
+     * Returns the index after the empty line which terminates the headers or {@code -1} if the headers were not
+     * received completely yet.
+     */
+    private int findEndOfHeaders(ByteBuf buffer) {
+        final int readerIndex = buffer.readerIndex();
+        final int writerIndex = buffer.writerIndex();
+        // The offset is relative to the readerIndex as the readable bytes may be moved by ByteToMessageDecoder.
+        int lineStart = readerIndex + headerScanOffset;
+        for (;;) {
+            int lf = buffer.indexOf(lineStart, writerIndex, HttpConstants.LF);
+            if (lf == -1) {
+                if (headerSize + writerIndex - lineStart > maxHeaderSize) {
+                    throw newTooLongHeaderException();
+                }
+                headerScanOffset = lineStart - readerIndex;
+                return -1;
+            }
+            int lineLength = lf - lineStart;
+            if (lineLength > 0 && buffer.getByte(lf - 1) == HttpConstants.CR) {
+                lineLength --;
+            }
+            if (lineLength == 0) {
+                headerScanOffset = 0;
+                return lf + 1;
+            }
+            headerSize += lineLength;
+            if (headerSize > maxHeaderSize) {
+                throw newTooLongHeaderException();
+            }
+            lineStart = lf + 1;
+        }
+    }
+
+    private TooLongFrameException newTooLongHeaderException() {
+        return new TooLongHttpHeaderException("HTTP header is larger than " + maxHeaderSize + " bytes.");
+    }
+
+    private State headersDecoded(HttpMessage message, int headerSize) {
+        final HttpHeaders headers = message.headers();
+
         // Done parsing initial line and headers. Set decoder result.
-        HttpMessageDecoderResult decoderResult = new HttpMessageDecoderResult(lineParser.size, headerParser.size);
+        HttpMessageDecoderResult decoderResult = new HttpMessageDecoderResult(lineParser.size, headerSize);
         message.setDecoderResult(decoderResult);
 
         List<String> contentLengthFields = headers.getAll(HttpHeaderNames.CONTENT_LENGTH);
@@ -868,6 +1002,67 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
         }
     }
 
+    private void splitHeader(byte[] bytes, int start, int end) {
+        int nameStart;
+        int nameEnd;
+        int colonEnd;
+        int valueStart;
+        int valueEnd;
+
+        nameStart = findNonWhitespace(bytes, start, end);
+        for (nameEnd = nameStart; nameEnd < end; nameEnd ++) {
+            byte b = bytes[nameEnd];
+            // See splitHeader(AppendableCharSequence) for why whitespace is only skipped when decoding a response.
+            if (b == ':' || (!isDecodingRequest() && isOWS((char) b))) {
+                break;
+            }
+        }
+
+        if (nameEnd == end) {
+            // There was no colon present at all.
+            throw new IllegalArgumentException("No colon found");
+        }
+
+        for (colonEnd = nameEnd; colonEnd < end; colonEnd ++) {
+            if (bytes[colonEnd] == ':') {
+                colonEnd ++;
+                break;
+            }
+        }
+
+        name = KnownHeaderNames.headerName(bytes, nameStart, nameEnd - nameStart);
+        valueStart = findNonWhitespace(bytes, colonEnd, end);
+        if (valueStart == end) {
+            value = AsciiString.EMPTY_STRING;
+        } else {
+            valueEnd = findEndOfString(bytes, valueStart, end);
+            value = new AsciiString(bytes, valueStart, valueEnd - valueStart, false);
+        }
+    }
+
+    private static int findNonWhitespace(byte[] bytes, int start, int end) {
+        for (int result = start; result < end; ++result) {
+            char c = (char) (bytes[result] & 0xFF);
+            if (!Character.isWhitespace(c)) {
+                return result;
+            } else if (!isOWS(c)) {
+                // Only OWS is supported for whitespace
+                throw new IllegalArgumentException("Invalid separator, only a single space or horizontal tab allowed," +
+                        " but received a '" + c + "' (0x" + Integer.toHexString(c) + ")");
+            }
+        }
+        return end;
+    }
+
+    private static int findEndOfString(byte[] bytes, int start, int end) {
+        for (int result = end - 1; result >= start; --result) {
+            if (!Character.isWhitespace((char) (bytes[result] & 0xFF))) {
+                return result + 1;
+            }
+        }
+        return start;
+    }
+
     private static int findNonSPLenient(AppendableCharSequence sb, int offset) {
         for (int result = offset; result < sb.length(); ++result) {
             char c = sb.charAtUnsafe(result);
@@ -925,6 +1120,97 @@ public abstract class HttpObjectDecoder extends ByteToMessageDecoder {
         return ch == ' ' || ch == (char) 0x09;
     }
 
+    /**
+     * Maps the bytes of well known header names to the constants of {@link HttpHeaderNames} so no
+     * {@link AsciiString} needs to be allocated for them.
+     */
+    private static final class KnownHeaderNames {
+        private static final AsciiString[][] BUCKETS = new AsciiString[256][];
+        private static final int BUCKET_MASK = BUCKETS.length - 1;
+
+        static {
+            AsciiString[] names = {
+                    HttpHeaderNames.ACCEPT, HttpHeaderNames.ACCEPT_CHARSET, HttpHeaderNames.ACCEPT_ENCODING,
+                    HttpHeaderNames.ACCEPT_LANGUAGE, HttpHeaderNames.ACCEPT_RANGES, HttpHeaderNames.ACCEPT_PATCH,
+                    HttpHeaderNames.ACCESS_CONTROL_ALLOW_CREDENTIALS, HttpHeaderNames.ACCESS_CONTROL_ALLOW_HEADERS,
+                    HttpHeaderNames.ACCESS_CONTROL_ALLOW_METHODS, HttpHeaderNames.ACCESS_CONTROL_ALLOW_ORIGIN,
+                    HttpHeaderNames.ACCESS_CONTROL_ALLOW_PRIVATE_NETWORK, HttpHeaderNames.ACCESS_CONTROL_EXPOSE_HEADERS,
+                    HttpHeaderNames.ACCESS_CONTROL_MAX_AGE, HttpHeaderNames.ACCESS_CONTROL_REQUEST_HEADERS,
+                    HttpHeaderNames.ACCESS_CONTROL_REQUEST_METHOD,
+                    HttpHeaderNames.ACCESS_CONTROL_REQUEST_PRIVATE_NETWORK, HttpHeaderNames.AGE, HttpHeaderNames.ALLOW,
+                    HttpHeaderNames.AUTHORIZATION, HttpHeaderNames.CACHE_CONTROL, HttpHeaderNames.CONNECTION,
+                    HttpHeaderNames.CONTENT_BASE, HttpHeaderNames.CONTENT_ENCODING, HttpHeaderNames.CONTENT_LANGUAGE,
+                    HttpHeaderNames.CONTENT_LENGTH, HttpHeaderNames.CONTENT_LOCATION,
+                    HttpHeaderNames.CONTENT_TRANSFER_ENCODING, HttpHeaderNames.CONTENT_DISPOSITION,
+                    HttpHeaderNames.CONTENT_MD5, HttpHeaderNames.CONTENT_RANGE, HttpHeaderNames.CONTENT_SECURITY_POLICY,
+                    HttpHeaderNames.CONTENT_TYPE, HttpHeaderNames.COOKIE, HttpHeaderNames.DATE, HttpHeaderNames.DNT,
+                    HttpHeaderNames.ETAG, HttpHeaderNames.EXPECT, HttpHeaderNames.EXPIRES, HttpHeaderNames.FROM,
+                    HttpHeaderNames.HOST, HttpHeaderNames.IF_MATCH, HttpHeaderNames.IF_MODIFIED_SINCE,
+                    HttpHeaderNames.IF_NONE_MATCH, HttpHeaderNames.IF_RANGE, HttpHeaderNames.IF_UNMODIFIED_SINCE,
+                    HttpHeaderNames.KEEP_ALIVE, HttpHeaderNames.LAST_MODIFIED, HttpHeaderNames.LOCATION,
+                    HttpHeaderNames.MAX_FORWARDS, HttpHeaderNames.ORIGIN, HttpHeaderNames.PRAGMA,
+                    HttpHeaderNames.PROXY_AUTHENTICATE, HttpHeaderNames.PROXY_AUTHORIZATION,
+                    HttpHeaderNames.PROXY_CONNECTION, HttpHeaderNames.RANGE, HttpHeaderNames.REFERER,
+                    HttpHeaderNames.RETRY_AFTER, HttpHeaderNames.SEC_WEBSOCKET_KEY1, HttpHeaderNames.SEC_WEBSOCKET_KEY2,
+                    HttpHeaderNames.SEC_WEBSOCKET_LOCATION, HttpHeaderNames.SEC_WEBSOCKET_ORIGIN,
+                    HttpHeaderNames.SEC_WEBSOCKET_PROTOCOL, HttpHeaderNames.SEC_WEBSOCKET_VERSION,
+                    HttpHeaderNames.SEC_WEBSOCKET_KEY, HttpHeaderNames.SEC_WEBSOCKET_ACCEPT,
+                    HttpHeaderNames.SEC_WEBSOCKET_EXTENSIONS, HttpHeaderNames.SERVER, HttpHeaderNames.SET_COOKIE,
+                    HttpHeaderNames.SET_COOKIE2, HttpHeaderNames.TE, HttpHeaderNames.TRAILER,
+                    HttpHeaderNames.TRANSFER_ENCODING, HttpHeaderNames.UPGRADE,
+                    HttpHeaderNames.UPGRADE_INSECURE_REQUESTS, HttpHeaderNames.USER_AGENT, HttpHeaderNames.VARY,
+                    HttpHeaderNames.VIA, HttpHeaderNames.WARNING, HttpHeaderNames.WEBSOCKET_LOCATION,
+                    HttpHeaderNames.WEBSOCKET_ORIGIN, HttpHeaderNames.WEBSOCKET_PROTOCOL,
+                    HttpHeaderNames.WWW_AUTHENTICATE, HttpHeaderNames.X_FRAME_OPTIONS, HttpHeaderNames.X_REQUESTED_WITH
+            };
+            for (AsciiString name : names) {
+                // AsciiString.hashCode() is case insensitive, just like PlatformDependent.hashCodeAscii(...).
+                int index = name.hashCode() & BUCKET_MASK;
+                AsciiString[] bucket = BUCKETS[index];
+                if (bucket == null) {
+                    bucket = new AsciiString[1];
+                } else {
+                    AsciiString[] newBucket = new AsciiString[bucket.length + 1];
+                    System.arraycopy(bucket, 0, newBucket, 0, bucket.length);
+                    bucket = newBucket;
+                }
+                bucket[bucket.length - 1] = name;
+                BUCKETS[index] = bucket;
+            }
+        }
+
+        static AsciiString headerName(byte[] bytes, int start, int length) {
+            AsciiString[] bucket = BUCKETS[PlatformDependent.hashCodeAscii(bytes, start, length) & BUCKET_MASK];
+            if (bucket != null) {
+                for (AsciiString name : bucket) {
+                    if (equalsIgnoreCase(name, bytes, start, length)) {
+                        return name;
+                    }
+                }
+            }
+            return new AsciiString(bytes, start, length, false);
+        }
+
+        private static boolean equalsIgnoreCase(AsciiString name, byte[] bytes, int start, int length) {
+            if (name.length() != length) {
+                return false;
+            }
+            byte[] nameBytes = name.array();
+            int nameOffset = name.arrayOffset();
+            for (int i = 0; i < length; i++) {
+                byte b = bytes[start + i];
+                if (b >= 'A' && b <= 'Z') {
+                    b += 32;
+                }
+                // The constants of HttpHeaderNames are all lower case.
+                if (b != nameBytes[nameOffset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
     private static class HeaderParser implements ByteProcessor {
         private final AppendableCharSequence seq;
         private final int maxLength;
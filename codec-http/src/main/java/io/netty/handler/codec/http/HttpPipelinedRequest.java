@@ -0,0 +1,111 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.ReferenceCounted;
+import io.netty.util.internal.StringUtil;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+
+/**
+ * A request which was read by {@link HttpServerPipeliningHandler}, together with its position on the connection.
+ * The responses to it must be written as {@link HttpPipelinedResponse}s, which are created by
+ * {@link #response(HttpObject)}.
+ * <p>
+ * Releasing this message releases the request if it is reference counted.
+ */
+public final class HttpPipelinedRequest implements ReferenceCounted {
+
+    private final HttpRequest request;
+    private final int sequence;
+
+    HttpPipelinedRequest(HttpRequest request, int sequence) {
+        this.request = checkNotNull(request, "request");
+        this.sequence = sequence;
+    }
+
+    /**
+     * Returns the request, which is a {@link FullHttpRequest} if the requests are aggregated before they reach
+     * {@link HttpServerPipeliningHandler}.
+     */
+    public HttpRequest request() {
+        return request;
+    }
+
+    /**
+     * Returns the position of the request on the connection, starting at {@code 0}.
+     */
+    public int sequence() {
+        return sequence;
+    }
+
+    /**
+     * Returns a message which writes the given part of the response to this request. The response is complete
+     * once a {@link LastHttpContent}, for example a {@link FullHttpResponse}, was written.
+     */
+    public HttpPipelinedResponse response(HttpObject message) {
+        return new HttpPipelinedResponse(sequence, message);
+    }
+
+    @Override
+    public int refCnt() {
+        if (request instanceof ReferenceCounted) {
+            return ((ReferenceCounted) request).refCnt();
+        } else {
+            return 1;
+        }
+    }
+
+    @Override
+    public HttpPipelinedRequest retain() {
+        ReferenceCountUtil.retain(request);
+        return this;
+    }
+
+    @Override
+    public HttpPipelinedRequest retain(int increment) {
+        ReferenceCountUtil.retain(request, increment);
+        return this;
+    }
+
+    @Override
+    public HttpPipelinedRequest touch() {
+        ReferenceCountUtil.touch(request);
+        return this;
+    }
+
+    @Override
+    public HttpPipelinedRequest touch(Object hint) {
+        ReferenceCountUtil.touch(request, hint);
+        return this;
+    }
+
+    @Override
+    public boolean release() {
+        return ReferenceCountUtil.release(request);
+    }
+
+    @Override
+    public boolean release(int decrement) {
+        return ReferenceCountUtil.release(request, decrement);
+    }
+
+    @Override
+    public String toString() {
+        return StringUtil.simpleClassName(this) + '(' + sequence + ", " + request + ')';
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.ReferenceCounted;
+import io.netty.util.internal.StringUtil;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+
+/**
+ * A part of the response to a {@link HttpPipelinedRequest}, which {@link HttpServerPipeliningHandler} writes once
+ * the responses to all the previous requests were written.
+ * <p>
+ * Releasing this message releases the part if it is reference counted.
+ */
+public final class HttpPipelinedResponse implements ReferenceCounted {
+
+    private final int sequence;
+    private final HttpObject message;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param sequence the {@link HttpPipelinedRequest#sequence()} of the request.
+     * @param message the part of the response.
+     */
+    public HttpPipelinedResponse(int sequence, HttpObject message) {
+        this.sequence = sequence;
+        this.message = checkNotNull(message, "message");
+    }
+
+    /**
+     * Returns the {@link HttpPipelinedRequest#sequence()} of the request.
+     */
+    public int sequence() {
+        return sequence;
+    }
+
+    /**
+     * Returns the part of the response.
+     */
+    public HttpObject message() {
+        return message;
+    }
+
+    /**
+     * Returns {@code true} if this is the last part of the response. Interim responses, like
+     * {@code 100 Continue}, do not complete the response even if they are {@link FullHttpResponse}s.
+     */
+    public boolean isLast() {
+        return isLast(message);
+    }
+
+    static boolean isLast(Object message) {
+        if (!(message instanceof LastHttpContent)) {
+            return false;
+        }
+        return !(message instanceof HttpResponse) ||
+               ((HttpResponse) message).status().codeClass() != HttpStatusClass.INFORMATIONAL;
+    }
+
+    @Override
+    public int refCnt() {
+        if (message instanceof ReferenceCounted) {
+            return ((ReferenceCounted) message).refCnt();
+        } else {
+            return 1;
+        }
+    }
+
+    @Override
+    public HttpPipelinedResponse retain() {
+        ReferenceCountUtil.retain(message);
+        return this;
+    }
+
+    @Override
+    public HttpPipelinedResponse retain(int increment) {
+        ReferenceCountUtil.retain(message, increment);
+        return this;
+    }
+
+    @Override
+    public HttpPipelinedResponse touch() {
+        ReferenceCountUtil.touch(message);
+        return this;
+    }
+
+    @Override
+    public HttpPipelinedResponse touch(Object hint) {
+        ReferenceCountUtil.touch(message, hint);
+        return this;
+    }
+
+    @Override
+    public boolean release() {
+        return ReferenceCountUtil.release(message);
+    }
+
+    @Override
+    public boolean release(int decrement) {
+        return ReferenceCountUtil.release(message, decrement);
+    }
+
+    @Override
+    public String toString() {
+        return StringUtil.simpleClassName(this) + '(' + sequence + ", " + message + ')';
+    }
+}
@@ -72,6 +72,14 @@ import io.netty.channel.ChannelPipeline;
  *     is set to {@code false}, the {@link ByteBuf} is not decoded into an {@link HttpContent} until
  *     the readable bytes are greater or equal to the chunk size.</td>
  * </tr>
+ * <tr>
+ * <td>{@code asciiStringHeaders}</td>
+ * <td>{@value #DEFAULT_ASCII_STRING_HEADERS}</td>
+ * <td>When set to {@code true}, the header names and values are decoded into {@link io.netty.util.AsciiString}
+ *     views of a single copy of the received header bytes instead of {@link String}s.
+ *     Well known header names are replaced by the lower-case constants of {@link HttpHeaderNames}, so for example
+ *     {@code Connection} is decoded as {@code connection}, unlike in the default mode.</td>
+ * </tr>
  * </table>
  */
 public class HttpRequestDecoder extends HttpObjectDecoder {
@@ -118,6 +126,14 @@ public class HttpRequestDecoder extends HttpObjectDecoder {
               initialBufferSize, allowDuplicateContentLengths, allowPartialChunks);
     }
 
+    public HttpRequestDecoder(
+            int maxInitialLineLength, int maxHeaderSize, int maxChunkSize, boolean validateHeaders,
+            int initialBufferSize, boolean allowDuplicateContentLengths, boolean allowPartialChunks,
+            boolean asciiStringHeaders) {
+        super(maxInitialLineLength, maxHeaderSize, maxChunkSize, DEFAULT_CHUNKED_SUPPORTED, validateHeaders,
+              initialBufferSize, allowDuplicateContentLengths, allowPartialChunks, asciiStringHeaders);
+    }
+
     @Override
     protected HttpMessage createMessage(String[] initialLine) throws Exception {
         return new DefaultHttpRequest(
@@ -23,9 +23,32 @@ import static io.netty.handler.codec.http.HttpConstants.*;
 /**
  * Encodes an {@link HttpResponse} or an {@link HttpContent} into
  * a {@link ByteBuf}.
+ * <p>
+ * The status line and the shared headers of responses which were created by a {@link HttpResponseTemplate} are
+ * copied from their pre-encoded form.
  */
 public class HttpResponseEncoder extends HttpObjectEncoder<HttpResponse> {
 
+    private final boolean addDateHeader;
+
+    /**
+     * Creates a new instance which does not add a {@code Date} header.
+     */
+    public HttpResponseEncoder() {
+        this(false);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param addDateHeader {@code true} if a {@code Date} header should be added to every response which does not
+     *                      have one already. The encoded header is cached per thread and only formatted once per
+     *                      second.
+     */
+    public HttpResponseEncoder(boolean addDateHeader) {
+        this.addDateHeader = addDateHeader;
+    }
+
     @Override
     public boolean acceptOutboundMessage(Object msg) throws Exception {
         return super.acceptOutboundMessage(msg) && !(msg instanceof HttpRequest);
@@ -33,10 +56,22 @@ public class HttpResponseEncoder extends HttpObjectEncoder<HttpResponse> {
 
     @Override
     protected void encodeInitialLine(ByteBuf buf, HttpResponse response) throws Exception {
-        response.protocolVersion().encode(buf);
-        buf.writeByte(SP);
-        response.status().encode(buf);
-        ByteBufUtil.writeShortBE(buf, CRLF_SHORT);
+        HttpResponseTemplate template = HttpResponseTemplate.templateOf(response);
+        if (template != null && template.matches(response)) {
+            template.encode(buf);
+        } else {
+            response.protocolVersion().encode(buf);
+            buf.writeByte(SP);
+            response.status().encode(buf);
+            ByteBufUtil.writeShortBE(buf, CRLF_SHORT);
+            if (template != null) {
+                template.encodeHeaders(buf);
+            }
+        }
+        if (addDateHeader && !response.headers().contains(HttpHeaderNames.DATE) &&
+                (template == null || !template.containsHeader(HttpHeaderNames.DATE))) {
+            HttpDateHeaderCache.encodeDateHeader(buf);
+        }
     }
 
     @Override
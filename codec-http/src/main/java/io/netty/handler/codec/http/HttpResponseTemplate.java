@@ -0,0 +1,199 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.util.internal.StringUtil;
+
+import java.util.Iterator;
+import java.util.Map.Entry;
+
+import static io.netty.handler.codec.http.HttpConstants.SP;
+import static io.netty.handler.codec.http.HttpObjectEncoder.CRLF_SHORT;
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+
+/**
+ * A status line and a set of headers which are shared by many responses and are therefore only encoded once.
+ * <p>
+ * Responses created via {@link #newResponse()} or {@link #newFullResponse(ByteBuf)} only carry the headers that
+ * differ from response to response in their {@link HttpResponse#headers()}. When such a response is encoded by
+ * {@link HttpResponseEncoder} the pre-encoded status line and headers of the template are copied into the output
+ * with a single copy, followed by the headers of the response itself.
+ * <p>
+ * As the headers of the template are not part of {@link HttpResponse#headers()}, they are not visible to other
+ * handlers in the pipeline. Only use it for headers which no other handler needs to inspect or modify, like
+ * {@code Server}, {@code Content-Type} or {@code Cache-Control}. {@code Content-Length} and
+ * {@code Transfer-Encoding} are not allowed as they are needed to encode the content.
+ * <p>
+ * If the {@linkplain HttpResponse#protocolVersion() version} or {@linkplain HttpResponse#status() status} of a
+ * response is changed, only the headers of the template are used.
+ */
+public final class HttpResponseTemplate {
+
+    private final HttpVersion version;
+    private final HttpResponseStatus status;
+    private final HttpHeaders headers;
+    private final byte[] encoded;
+    private final int headersOffset;
+
+    /**
+     * Creates a new template.
+     *
+     * @param version the {@link HttpVersion} of the responses.
+     * @param status the {@link HttpResponseStatus} of the responses.
+     * @param headers the headers which are shared by all responses.
+     */
+    public HttpResponseTemplate(HttpVersion version, HttpResponseStatus status, HttpHeaders headers) {
+        this.version = checkNotNull(version, "version");
+        this.status = checkNotNull(status, "status");
+        checkNotNull(headers, "headers");
+        if (headers.contains(HttpHeaderNames.CONTENT_LENGTH) || headers.contains(HttpHeaderNames.TRANSFER_ENCODING)) {
+            throw new IllegalArgumentException(
+                    "headers must not contain " + HttpHeaderNames.CONTENT_LENGTH + " or " +
+                    HttpHeaderNames.TRANSFER_ENCODING);
+        }
+        this.headers = headers.copy();
+
+        ByteBuf buf = Unpooled.buffer();
+        try {
+            version.encode(buf);
+            buf.writeByte(SP);
+            status.encode(buf);
+            ByteBufUtil.writeShortBE(buf, CRLF_SHORT);
+            headersOffset = buf.readableBytes();
+            Iterator<Entry<CharSequence, CharSequence>> iter = headers.iteratorCharSequence();
+            while (iter.hasNext()) {
+                Entry<CharSequence, CharSequence> header = iter.next();
+                HttpHeadersEncoder.encoderHeader(header.getKey(), header.getValue(), buf);
+            }
+            encoded = ByteBufUtil.getBytes(buf);
+        } finally {
+            buf.release();
+        }
+    }
+
+    /**
+     * Returns the {@link HttpVersion} of the responses.
+     */
+    public HttpVersion protocolVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the {@link HttpResponseStatus} of the responses.
+     */
+    public HttpResponseStatus status() {
+        return status;
+    }
+
+    /**
+     * Returns a copy of the headers which are shared by all responses.
+     */
+    public HttpHeaders headers() {
+        return headers.copy();
+    }
+
+    /**
+     * Creates a new {@link HttpResponse} which uses this template.
+     */
+    public HttpResponse newResponse() {
+        return new TemplateHttpResponse(this);
+    }
+
+    /**
+     * Creates a new {@link FullHttpResponse} which uses this template.
+     */
+    public FullHttpResponse newFullResponse(ByteBuf content) {
+        return new TemplateFullHttpResponse(this, content, new DefaultHttpHeaders(), new DefaultHttpHeaders());
+    }
+
+    /**
+     * Returns the {@link HttpResponseTemplate} of the given response or {@code null} if it does not use one.
+     */
+    static HttpResponseTemplate templateOf(HttpResponse response) {
+        if (response instanceof TemplateHttpResponse) {
+            return ((TemplateHttpResponse) response).template;
+        }
+        if (response instanceof TemplateFullHttpResponse) {
+            return ((TemplateFullHttpResponse) response).template;
+        }
+        return null;
+    }
+
+    /**
+     * Returns {@code true} if the headers of this template contain the header with the given name.
+     */
+    boolean containsHeader(CharSequence name) {
+        return headers.contains(name);
+    }
+
+    /**
+     * Returns {@code true} if the given response has the same version and status as this template.
+     */
+    boolean matches(HttpResponse response) {
+        return response.protocolVersion() == version && response.status() == status;
+    }
+
+    /**
+     * Writes the status line and the headers of this template.
+     */
+    void encode(ByteBuf buf) {
+        buf.writeBytes(encoded);
+    }
+
+    /**
+     * Writes only the headers of this template.
+     */
+    void encodeHeaders(ByteBuf buf) {
+        buf.writeBytes(encoded, headersOffset, encoded.length - headersOffset);
+    }
+
+    @Override
+    public String toString() {
+        return StringUtil.simpleClassName(this) + '(' + version + ' ' + status + ", " + headers + ')';
+    }
+
+    private static final class TemplateHttpResponse extends DefaultHttpResponse {
+        final HttpResponseTemplate template;
+
+        TemplateHttpResponse(HttpResponseTemplate template) {
+            super(template.version, template.status);
+            this.template = template;
+        }
+    }
+
+    private static final class TemplateFullHttpResponse extends DefaultFullHttpResponse {
+        final HttpResponseTemplate template;
+
+        TemplateFullHttpResponse(HttpResponseTemplate template, ByteBuf content, HttpHeaders headers,
+                                 HttpHeaders trailingHeaders) {
+            super(template.version, template.status, content, headers, trailingHeaders);
+            this.template = template;
+        }
+
+        @Override
+        public FullHttpResponse replace(ByteBuf content) {
+            TemplateFullHttpResponse response = new TemplateFullHttpResponse(template, content,
+                    headers().copy(), trailingHeaders().copy());
+            response.setProtocolVersion(protocolVersion());
+            response.setStatus(status());
+            response.setDecoderResult(decoderResult());
+            return response;
+        }
+    }
+}
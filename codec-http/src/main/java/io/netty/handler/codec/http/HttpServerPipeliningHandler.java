@@ -0,0 +1,254 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.PendingWriteQueue;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+
+import java.nio.channels.ClosedChannelException;
+
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+
+/**
+ * Supports <a href="https://tools.ietf.org/html/rfc7230#section-6.3.2">HTTP/1.1 pipelining</a>, by allowing the
+ * requests of a connection to be processed concurrently while the responses are still written in the order of the
+ * requests.
+ * <p>
+ * Every {@link HttpRequest} is passed on as a {@link HttpPipelinedRequest}, which carries its position on the
+ * connection. The responses must be written as {@link HttpPipelinedResponse}s, which may happen in any order and from
+ * any thread: a response is held back until the responses to all the previous requests were written. Once a response
+ * is complete, all the responses which are ready are written, and flushed at once. Flushes which are requested while
+ * requests are being read are delayed until the read is complete, so the responses to the requests which arrived
+ * together are written together.
+ * <p>
+ * If {@code maxPendingResponses} requests are waiting for their responses, no more requests are read until the
+ * responses were written: {@link ChannelConfig#setAutoRead(boolean) auto read} is turned off until then if it is
+ * enabled, otherwise calls to {@link ChannelHandlerContext#read()} are held back. Other messages are written right
+ * away.
+ * <p>
+ * {@link HttpServerPipeliningHandler} should be added after {@link HttpObjectAggregator}, so it sees full requests.
+ * <blockquote>
+ * <pre>
+ *  {@link ChannelPipeline} p = ...;
+ *  ...
+ *  p.addLast("serverCodec", new {@link HttpServerCodec}());
+ *  p.addLast("httpKeepAlive", new {@link HttpServerKeepAliveHandler}());
+ *  p.addLast("aggregator", new {@link HttpObjectAggregator}(1048576));
+ *  p.addLast("pipelining", <b>new {@link HttpServerPipeliningHandler}()</b>);
+ *  ...
+ *  p.addLast("handler", new HttpRequestHandler());
+ *  </pre>
+ * </blockquote>
+ */
+public class HttpServerPipeliningHandler extends ChannelDuplexHandler {
+
+    private static final int DEFAULT_MAX_PENDING_RESPONSES = 64;
+
+    private final int maxPendingResponses;
+    private final IntObjectMap<PendingWriteQueue> queuedResponses = new IntObjectHashMap<PendingWriteQueue>();
+
+    private int readSequence;
+    private int writeSequence;
+    private boolean reading;
+    private boolean readPending;
+    private boolean autoReadSuspended;
+    private boolean flushPending;
+    private boolean needsFlush;
+
+    /**
+     * Creates a new instance which reads up to {@code 64} requests ahead.
+     */
+    public HttpServerPipeliningHandler() {
+        this(DEFAULT_MAX_PENDING_RESPONSES);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maxPendingResponses the number of requests which may wait for their responses before no more requests
+     *                            are read.
+     */
+    public HttpServerPipeliningHandler(int maxPendingResponses) {
+        this.maxPendingResponses = checkPositive(maxPendingResponses, "maxPendingResponses");
+    }
+
+    /**
+     * Returns the number of requests which were read but not responded to completely yet.
+     */
+    public int pendingResponses() {
+        return readSequence - writeSequence;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        reading = true;
+        if (msg instanceof HttpRequest) {
+            msg = new HttpPipelinedRequest((HttpRequest) msg, readSequence++);
+            ChannelConfig config = ctx.channel().config();
+            if (pendingResponses() >= maxPendingResponses && config.isAutoRead()) {
+                // Holding back read() is not enough while auto read is on, as the transport keeps reading.
+                autoReadSuspended = true;
+                config.setAutoRead(false);
+            }
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        reading = false;
+        flushIfNeeded(ctx);
+        ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void read(ChannelHandlerContext ctx) throws Exception {
+        if (pendingResponses() >= maxPendingResponses) {
+            readPending = true;
+        } else {
+            ctx.read();
+        }
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (!(msg instanceof HttpPipelinedResponse)) {
+            needsFlush = true;
+            ctx.write(msg, promise);
+            return;
+        }
+
+        HttpPipelinedResponse response = (HttpPipelinedResponse) msg;
+        int sequence = response.sequence();
+        if (sequence - writeSequence < 0 || sequence - readSequence >= 0) {
+            response.release();
+            promise.setFailure(new IllegalStateException("no pending request with sequence " + sequence +
+                    " (expected: " + writeSequence + '-' + (readSequence - 1) + ')'));
+            return;
+        }
+
+        if (sequence == writeSequence) {
+            writeResponse(ctx, response.message(), promise);
+        } else {
+            PendingWriteQueue queue = queuedResponses.get(sequence);
+            if (queue == null) {
+                queue = new PendingWriteQueue(ctx);
+                queuedResponses.put(sequence, queue);
+            }
+            queue.add(response.message(), promise);
+        }
+    }
+
+    private void writeResponse(ChannelHandlerContext ctx, HttpObject message, ChannelPromise promise) {
+        needsFlush = true;
+        ctx.write(message, promise);
+        if (!HttpPipelinedResponse.isLast(message)) {
+            return;
+        }
+
+        // Write the responses which are ready, up to the first one which is not complete yet.
+        boolean wroteQueued = false;
+        for (;;) {
+            writeSequence++;
+            PendingWriteQueue queue = queuedResponses.remove(writeSequence);
+            if (queue == null) {
+                break;
+            }
+            wroteQueued = true;
+            boolean complete = false;
+            while (!complete && !queue.isEmpty()) {
+                complete = HttpPipelinedResponse.isLast(queue.current());
+                queue.removeAndWrite();
+            }
+            if (!complete) {
+                // The remaining parts of the response are written as they come.
+                break;
+            }
+            if (!queue.isEmpty()) {
+                queue.removeAndFailAll(new IllegalStateException("response " + writeSequence + " complete already"));
+            }
+        }
+        if (wroteQueued) {
+            flushIfNeeded(ctx);
+        }
+
+        if (pendingResponses() < maxPendingResponses) {
+            if (autoReadSuspended) {
+                autoReadSuspended = false;
+                readPending = false;
+                // Triggers a read as well.
+                ctx.channel().config().setAutoRead(true);
+            } else if (readPending) {
+                readPending = false;
+                ctx.read();
+            }
+        }
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        if (needsFlush || !queuedResponses.isEmpty()) {
+            flushPending = true;
+            flushIfNeeded(ctx);
+        }
+    }
+
+    private void flushIfNeeded(ChannelHandlerContext ctx) {
+        // Responses which are held back keep the flush pending until they are written.
+        if (!reading && flushPending && needsFlush) {
+            flushPending = false;
+            needsFlush = false;
+            ctx.flush();
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        reading = false;
+        failQueuedResponses();
+        ctx.fireChannelInactive();
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        failQueuedResponses();
+        if (autoReadSuspended) {
+            autoReadSuspended = false;
+            ctx.channel().config().setAutoRead(true);
+        }
+        if (needsFlush) {
+            needsFlush = false;
+            ctx.flush();
+        }
+    }
+
+    private void failQueuedResponses() {
+        if (queuedResponses.isEmpty()) {
+            return;
+        }
+        ClosedChannelException cause = new ClosedChannelException();
+        for (PendingWriteQueue queue : queuedResponses.values()) {
+            queue.removeAndFailAll(cause);
+        }
+        queuedResponses.clear();
+    }
+}
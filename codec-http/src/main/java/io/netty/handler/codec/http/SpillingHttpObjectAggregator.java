@@ -0,0 +1,598 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.buffer.UnpooledDirectByteBuf;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
+import io.netty.handler.codec.DecoderResult;
+import io.netty.handler.codec.MessageAggregationException;
+import io.netty.handler.codec.MessageToMessageDecoder;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.netty.handler.codec.http.HttpHeaderNames.CONNECTION;
+import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_LENGTH;
+import static io.netty.handler.codec.http.HttpHeaderNames.EXPECT;
+import static io.netty.handler.codec.http.HttpUtil.getContentLength;
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
+
+/**
+ * A variant of {@link HttpObjectAggregator} which only keeps small bodies in memory and spills large ones to a
+ * temporary file.
+ * <p>
+ * As long as the body is not larger than {@code maxInMemoryContentLength}, the {@link HttpContent} buffers are
+ * retained and added to a {@link CompositeByteBuf} without copying them, exactly like {@link HttpObjectAggregator}
+ * does. Once the body grows beyond that threshold, or the shared {@link MemoryBudget} is exhausted, the content which
+ * was received so far and all the following content are written to a temporary file. When the message is complete,
+ * the file is memory-mapped and passed on as the content of a {@link FullHttpRequest} or {@link FullHttpResponse}.
+ * The file is deleted as soon as that content is released.
+ * <p>
+ * The {@link MemoryBudget} may be shared by the aggregators of all channels, which bounds the memory used by
+ * in-memory bodies across all of them, including the bodies of aggregated messages which are not released yet.
+ * <p>
+ * Note that writing to the temporary file is done in the {@link io.netty.channel.EventLoop} of the channel, like the
+ * disk based {@link io.netty.handler.codec.http.multipart.HttpData} implementations do.
+ *
+ * @see HttpObjectAggregator
+ */
+public class SpillingHttpObjectAggregator extends MessageToMessageDecoder<HttpObject> {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(SpillingHttpObjectAggregator.class);
+
+    private static final int MAX_COMPONENTS = 1024;
+    private static final String PREFIX = "HttpBody_";
+    private static final String POSTFIX = ".tmp";
+
+    private static final FullHttpResponse CONTINUE =
+            new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.CONTINUE, Unpooled.EMPTY_BUFFER);
+    private static final FullHttpResponse EXPECTATION_FAILED = new DefaultFullHttpResponse(
+            HttpVersion.HTTP_1_1, HttpResponseStatus.EXPECTATION_FAILED, Unpooled.EMPTY_BUFFER);
+    private static final FullHttpResponse TOO_LARGE_CLOSE = new DefaultFullHttpResponse(
+            HttpVersion.HTTP_1_1, HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE, Unpooled.EMPTY_BUFFER);
+    private static final FullHttpResponse TOO_LARGE = new DefaultFullHttpResponse(
+            HttpVersion.HTTP_1_1, HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE, Unpooled.EMPTY_BUFFER);
+
+    static {
+        EXPECTATION_FAILED.headers().set(CONTENT_LENGTH, 0);
+        TOO_LARGE.headers().set(CONTENT_LENGTH, 0);
+
+        TOO_LARGE_CLOSE.headers().set(CONTENT_LENGTH, 0);
+        TOO_LARGE_CLOSE.headers().set(CONNECTION, HttpHeaderValues.CLOSE);
+    }
+
+    private final int maxContentLength;
+    private final int maxInMemoryContentLength;
+    private final MemoryBudget memoryBudget;
+    private final File spillDirectory;
+    private final boolean closeOnExpectationFailed;
+
+    private HttpMessage currentMessage;
+    private HttpHeaders trailingHeaders;
+    private DecoderResult failure;
+    private AccountedCompositeByteBuf memoryContent;
+    private File spillFile;
+    private RandomAccessFile spillAccessFile;
+    private FileChannel spillChannel;
+    private long contentLength;
+
+    /**
+     * Creates a new instance which does not share its memory budget with other aggregators, and spills to the
+     * default temporary directory.
+     *
+     * @param maxContentLength the maximum length of the aggregated content in bytes.
+     * @param maxInMemoryContentLength the maximum length of the content in bytes which is kept in memory.
+     */
+    public SpillingHttpObjectAggregator(int maxContentLength, int maxInMemoryContentLength) {
+        this(maxContentLength, maxInMemoryContentLength, new MemoryBudget(Long.MAX_VALUE), null, false);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maxContentLength the maximum length of the aggregated content in bytes.
+     * If the length of the aggregated content exceeds this value, a {@code 413 Request Entity Too Large} response is
+     * sent for requests, and a {@link TooLongHttpContentException} is raised for responses.
+     * @param maxInMemoryContentLength the maximum length of the content in bytes which is kept in memory.
+     * @param memoryBudget the budget for the in-memory content, which may be shared with other aggregators.
+     * @param spillDirectory the directory of the temporary files, or {@code null} to use the default temporary
+     * directory.
+     * @param closeOnExpectationFailed If a 100-continue response is detected but the content length is too large
+     * then {@code true} means close the connection. otherwise the connection will remain open and data will be
+     * consumed and discarded until the next request is received.
+     */
+    public SpillingHttpObjectAggregator(int maxContentLength, int maxInMemoryContentLength,
+                                        MemoryBudget memoryBudget, File spillDirectory,
+                                        boolean closeOnExpectationFailed) {
+        this.maxContentLength = checkPositiveOrZero(maxContentLength, "maxContentLength");
+        this.maxInMemoryContentLength = checkPositiveOrZero(maxInMemoryContentLength, "maxInMemoryContentLength");
+        this.memoryBudget = ObjectUtil.checkNotNull(memoryBudget, "memoryBudget");
+        this.spillDirectory = spillDirectory;
+        this.closeOnExpectationFailed = closeOnExpectationFailed;
+    }
+
+    /**
+     * Returns the maximum length of the aggregated content in bytes.
+     */
+    public final int maxContentLength() {
+        return maxContentLength;
+    }
+
+    /**
+     * Returns the maximum length of the content in bytes which is kept in memory.
+     */
+    public final int maxInMemoryContentLength() {
+        return maxInMemoryContentLength;
+    }
+
+    /**
+     * Returns the budget for the in-memory content.
+     */
+    public final MemoryBudget memoryBudget() {
+        return memoryBudget;
+    }
+
+    @Override
+    protected void decode(final ChannelHandlerContext ctx, HttpObject msg, List<Object> out) throws Exception {
+        if (msg instanceof HttpMessage) {
+            if (currentMessage != null) {
+                releaseCurrentMessage();
+                throw new MessageAggregationException();
+            }
+            HttpMessage m = (HttpMessage) msg;
+            if (m instanceof FullHttpMessage) {
+                out.add(ReferenceCountUtil.retain(m));
+                return;
+            }
+
+            Object continueResponse = continueResponse(m, ctx.pipeline());
+            if (continueResponse != null) {
+                // we're going to respond based on the request expectation so there's no
+                // need to propagate the expectation further.
+                m.headers().remove(EXPECT);
+                boolean ignoreContent = ((HttpResponse) continueResponse).status().codeClass()
+                        == HttpStatusClass.CLIENT_ERROR;
+                ChannelFuture future = ctx.writeAndFlush(continueResponse).addListener(new ChannelFutureListener() {
+                    @Override
+                    public void operationComplete(ChannelFuture future) {
+                        if (!future.isSuccess()) {
+                            ctx.fireExceptionCaught(future.cause());
+                        }
+                    }
+                });
+                if (ignoreContent) {
+                    if (closeOnExpectationFailed) {
+                        future.addListener(ChannelFutureListener.CLOSE);
+                    }
+                    return;
+                }
+            } else if (isContentLengthInvalid(m)) {
+                handleOversizedMessage(ctx, m, false);
+                return;
+            }
+
+            if (!m.decoderResult().isSuccess()) {
+                out.add(newFullMessage(m, Unpooled.EMPTY_BUFFER, null));
+                return;
+            }
+
+            HttpUtil.setTransferEncodingChunked(m, false);
+            currentMessage = m;
+            memoryContent = new AccountedCompositeByteBuf(memoryBudget);
+        } else if (msg instanceof HttpContent) {
+            if (currentMessage == null) {
+                // The message was oversized or its expectation failed, discard until the next one.
+                return;
+            }
+            HttpContent m = (HttpContent) msg;
+            ByteBuf data = m.content();
+            if (contentLength > maxContentLength - data.readableBytes()) {
+                HttpMessage oversized = currentMessage;
+                releaseCurrentMessage();
+                handleOversizedMessage(ctx, oversized, true);
+                return;
+            }
+            try {
+                append(data);
+            } catch (IOException e) {
+                releaseCurrentMessage();
+                throw e;
+            }
+
+            final boolean last;
+            if (!m.decoderResult().isSuccess()) {
+                failure = DecoderResult.failure(m.decoderResult().cause());
+                last = true;
+            } else {
+                last = m instanceof LastHttpContent;
+            }
+            if (m instanceof LastHttpContent) {
+                trailingHeaders = ((LastHttpContent) m).trailingHeaders();
+            }
+            if (last) {
+                out.add(finishAggregation());
+            }
+        } else {
+            throw new MessageAggregationException();
+        }
+    }
+
+    private Object continueResponse(HttpMessage start, ChannelPipeline pipeline) {
+        if (HttpUtil.isUnsupportedExpectation(start)) {
+            // if the request contains an unsupported expectation, we return 417
+            pipeline.fireUserEventTriggered(HttpExpectationFailedEvent.INSTANCE);
+            return EXPECTATION_FAILED.retainedDuplicate();
+        } else if (HttpUtil.is100ContinueExpected(start)) {
+            // if the request contains 100-continue but the content-length is too large, we return 413
+            if (getContentLength(start, -1L) <= maxContentLength) {
+                return CONTINUE.retainedDuplicate();
+            }
+            pipeline.fireUserEventTriggered(HttpExpectationFailedEvent.INSTANCE);
+            return TOO_LARGE.retainedDuplicate();
+        }
+        return null;
+    }
+
+    private boolean isContentLengthInvalid(HttpMessage start) {
+        try {
+            return getContentLength(start, -1L) > maxContentLength;
+        } catch (final NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private void append(ByteBuf data) throws IOException {
+        int length = data.readableBytes();
+        if (length == 0) {
+            return;
+        }
+        contentLength += length;
+        if (spillChannel == null) {
+            if (memoryContent.readableBytes() <= maxInMemoryContentLength - length && memoryBudget.tryReserve(length)) {
+                memoryContent.addAccountedComponent(data.retain(), length);
+                return;
+            }
+            spill();
+        }
+        write(data);
+    }
+
+    /**
+     * Moves the content which was kept in memory so far to a new temporary file.
+     */
+    private void spill() throws IOException {
+        spillFile = PlatformDependent.createTempFile(PREFIX, POSTFIX, spillDirectory);
+        spillAccessFile = new RandomAccessFile(spillFile, "rw");
+        spillChannel = spillAccessFile.getChannel();
+        AccountedCompositeByteBuf memoryContent = this.memoryContent;
+        this.memoryContent = null;
+        try {
+            write(memoryContent);
+        } finally {
+            // Gives the reserved memory back to the budget.
+            memoryContent.release();
+        }
+    }
+
+    private void write(ByteBuf data) throws IOException {
+        int index = data.readerIndex();
+        int remaining = data.readableBytes();
+        long position = spillChannel.position();
+        while (remaining > 0) {
+            int written = data.getBytes(index, spillChannel, position, remaining);
+            index += written;
+            position += written;
+            remaining -= written;
+        }
+        spillChannel.position(position);
+    }
+
+    private FullHttpMessage finishAggregation() throws IOException {
+        HttpMessage message = currentMessage;
+        HttpHeaders trailingHeaders = this.trailingHeaders;
+        DecoderResult failure = this.failure;
+        ByteBuf content;
+        if (spillChannel == null) {
+            content = memoryContent;
+            memoryContent = null;
+        } else {
+            content = mapSpillFile();
+        }
+        currentMessage = null;
+        this.trailingHeaders = null;
+        this.failure = null;
+        contentLength = 0;
+
+        FullHttpMessage aggregated = newFullMessage(message, content, trailingHeaders);
+        if (failure != null) {
+            aggregated.setDecoderResult(failure);
+        }
+        // See HttpObjectAggregator.finishAggregation(FullHttpMessage)
+        if (!HttpUtil.isContentLengthSet(aggregated)) {
+            aggregated.headers().set(CONTENT_LENGTH, String.valueOf(content.readableBytes()));
+        }
+        return aggregated;
+    }
+
+    private ByteBuf mapSpillFile() throws IOException {
+        File file = spillFile;
+        spillFile = null;
+        boolean success = false;
+        try {
+            MappedByteBuffer mapped = spillChannel.map(FileChannel.MapMode.PRIVATE, 0, spillChannel.size());
+            ByteBuf content = new MappedFileByteBuf(mapped, file);
+            success = true;
+            return content;
+        } finally {
+            closeSpillFile();
+            if (!success) {
+                deleteFile(file);
+            }
+        }
+    }
+
+    private void closeSpillFile() {
+        FileChannel channel = spillChannel;
+        RandomAccessFile accessFile = spillAccessFile;
+        spillChannel = null;
+        spillAccessFile = null;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close a file.", e);
+        }
+        try {
+            accessFile.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close a file.", e);
+        }
+    }
+
+    private static void deleteFile(File file) {
+        if (!file.delete()) {
+            logger.warn("Failed to delete: {}", file);
+        }
+    }
+
+    private static FullHttpMessage newFullMessage(HttpMessage start, ByteBuf content, HttpHeaders trailingHeaders) {
+        if (trailingHeaders == null) {
+            trailingHeaders = new DefaultHttpHeaders();
+        }
+        FullHttpMessage ret;
+        if (start instanceof HttpRequest) {
+            HttpRequest request = (HttpRequest) start;
+            ret = new DefaultFullHttpRequest(request.protocolVersion(), request.method(), request.uri(),
+                    content, request.headers(), trailingHeaders);
+        } else if (start instanceof HttpResponse) {
+            HttpResponse response = (HttpResponse) start;
+            ret = new DefaultFullHttpResponse(response.protocolVersion(), response.status(),
+                    content, response.headers(), trailingHeaders);
+        } else {
+            throw new Error();
+        }
+        ret.setDecoderResult(start.decoderResult());
+        return ret;
+    }
+
+    /**
+     * Invoked when an incoming message exceeds the maximum content length.
+     *
+     * @param ctx the {@link ChannelHandlerContext}
+     * @param oversized the start of the oversized message
+     * @param contentReceived {@code true} if some of the content was received already
+     */
+    protected void handleOversizedMessage(final ChannelHandlerContext ctx, HttpMessage oversized,
+                                          boolean contentReceived) throws Exception {
+        if (oversized instanceof HttpRequest) {
+            // send back a 413 and close the connection
+
+            // If the client started to send data already, close because it's impossible to recover.
+            // If keep-alive is off and 'Expect: 100-continue' is missing, no need to leave the connection open.
+            if (contentReceived ||
+                !HttpUtil.is100ContinueExpected(oversized) && !HttpUtil.isKeepAlive(oversized)) {
+                ChannelFuture future = ctx.writeAndFlush(TOO_LARGE_CLOSE.retainedDuplicate());
+                future.addListener(new ChannelFutureListener() {
+                    @Override
+                    public void operationComplete(ChannelFuture future) throws Exception {
+                        if (!future.isSuccess()) {
+                            logger.debug("Failed to send a 413 Request Entity Too Large.", future.cause());
+                        }
+                        ctx.close();
+                    }
+                });
+            } else {
+                ctx.writeAndFlush(TOO_LARGE.retainedDuplicate()).addListener(new ChannelFutureListener() {
+                    @Override
+                    public void operationComplete(ChannelFuture future) throws Exception {
+                        if (!future.isSuccess()) {
+                            logger.debug("Failed to send a 413 Request Entity Too Large.", future.cause());
+                            ctx.close();
+                        }
+                    }
+                });
+            }
+        } else if (oversized instanceof HttpResponse) {
+            ctx.close();
+            throw new TooLongHttpContentException("Response entity too large: " + oversized);
+        } else {
+            throw new IllegalStateException();
+        }
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        // We might need keep reading the channel until the full message is aggregated.
+        //
+        // See https://github.com/netty/netty/issues/6583
+        if (currentMessage != null && !ctx.channel().config().isAutoRead()) {
+            ctx.read();
+        }
+        ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        try {
+            super.channelInactive(ctx);
+        } finally {
+            releaseCurrentMessage();
+        }
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        try {
+            super.handlerRemoved(ctx);
+        } finally {
+            releaseCurrentMessage();
+        }
+    }
+
+    private void releaseCurrentMessage() {
+        currentMessage = null;
+        trailingHeaders = null;
+        failure = null;
+        contentLength = 0;
+        if (memoryContent != null) {
+            memoryContent.release();
+            memoryContent = null;
+        }
+        if (spillChannel != null) {
+            closeSpillFile();
+            deleteFile(spillFile);
+            spillFile = null;
+        }
+    }
+
+    /**
+     * Bounds the memory which is used for the in-memory content of aggregated messages, and may be shared by
+     * several {@link SpillingHttpObjectAggregator}s.
+     * <p>
+     * Memory is reserved when a chunk is added to an in-memory body, and given back when the aggregated message is
+     * released, or when its body is spilled to a file.
+     */
+    public static final class MemoryBudget {
+        private final long maxBytes;
+        private final AtomicLong usedBytes = new AtomicLong();
+
+        /**
+         * Creates a new budget.
+         *
+         * @param maxBytes the maximum number of bytes which may be kept in memory.
+         */
+        public MemoryBudget(long maxBytes) {
+            this.maxBytes = checkPositive(maxBytes, "maxBytes");
+        }
+
+        /**
+         * Returns the maximum number of bytes which may be kept in memory.
+         */
+        public long maxBytes() {
+            return maxBytes;
+        }
+
+        /**
+         * Returns the number of bytes which are kept in memory right now.
+         */
+        public long usedBytes() {
+            return usedBytes.get();
+        }
+
+        boolean tryReserve(int bytes) {
+            for (;;) {
+                long used = usedBytes.get();
+                if (used > maxBytes - bytes) {
+                    return false;
+                }
+                if (usedBytes.compareAndSet(used, used + bytes)) {
+                    return true;
+                }
+            }
+        }
+
+        void release(long bytes) {
+            usedBytes.addAndGet(-bytes);
+        }
+    }
+
+    /**
+     * A {@link CompositeByteBuf} which gives the memory of its components back to a {@link MemoryBudget} when it
+     * is deallocated.
+     */
+    private static final class AccountedCompositeByteBuf extends CompositeByteBuf {
+        private final MemoryBudget memoryBudget;
+        private long reservedBytes;
+
+        AccountedCompositeByteBuf(MemoryBudget memoryBudget) {
+            super(UnpooledByteBufAllocator.DEFAULT, false, MAX_COMPONENTS);
+            this.memoryBudget = memoryBudget;
+        }
+
+        void addAccountedComponent(ByteBuf buffer, int reserved) {
+            reservedBytes += reserved;
+            addComponent(true, buffer);
+        }
+
+        @Override
+        protected void deallocate() {
+            try {
+                super.deallocate();
+            } finally {
+                memoryBudget.release(reservedBytes);
+                reservedBytes = 0;
+            }
+        }
+    }
+
+    /**
+     * A buffer which is backed by a memory-mapped temporary file, which is unmapped and deleted once the buffer is
+     * released.
+     */
+    private static final class MappedFileByteBuf extends UnpooledDirectByteBuf {
+        private final MappedByteBuffer mapped;
+        private final File file;
+
+        MappedFileByteBuf(MappedByteBuffer mapped, File file) {
+            super(UnpooledByteBufAllocator.DEFAULT, mapped, mapped.capacity());
+            this.mapped = mapped;
+            this.file = file;
+        }
+
+        @Override
+        protected void deallocate() {
+            super.deallocate();
+            PlatformDependent.freeDirectBuffer(mapped);
+            deleteFile(file);
+        }
+    }
+}
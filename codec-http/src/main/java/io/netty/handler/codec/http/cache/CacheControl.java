@@ -0,0 +1,139 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.cache;
+
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpHeaders;
+
+/**
+ * The directives of a {@code Cache-Control} header which are relevant for a shared cache.
+ */
+final class CacheControl {
+
+    static final CacheControl EMPTY = new CacheControl();
+
+    boolean noStore;
+    boolean noCache;
+    boolean isPrivate;
+    boolean isPublic;
+    boolean mustRevalidate;
+    boolean onlyIfCached;
+    long maxAge = -1;
+    long sMaxAge = -1;
+
+    private CacheControl() {
+    }
+
+    /**
+     * Parses the {@code Cache-Control} header, and the {@code Pragma} header if there is no {@code Cache-Control}
+     * header.
+     */
+    static CacheControl parse(HttpHeaders headers) {
+        String value = headers.get(HttpHeaderNames.CACHE_CONTROL);
+        if (value == null) {
+            if (headers.containsValue(HttpHeaderNames.PRAGMA, HttpHeaderValues.NO_CACHE, true)) {
+                CacheControl cacheControl = new CacheControl();
+                cacheControl.noCache = true;
+                return cacheControl;
+            }
+            return EMPTY;
+        }
+        return parse(value);
+    }
+
+    static CacheControl parse(String value) {
+        CacheControl cacheControl = new CacheControl();
+        int start = 0;
+        int length = value.length();
+        while (start < length) {
+            int end = nextDirectiveEnd(value, start);
+            String directive = value.substring(start, end).trim();
+            start = end + 1;
+            if (directive.isEmpty()) {
+                continue;
+            }
+            String name = directive;
+            String argument = null;
+            int equals = directive.indexOf('=');
+            if (equals != -1) {
+                name = directive.substring(0, equals).trim();
+                argument = unquote(directive.substring(equals + 1).trim());
+            }
+            if ("no-store".equalsIgnoreCase(name)) {
+                cacheControl.noStore = true;
+            } else if ("no-cache".equalsIgnoreCase(name)) {
+                // The qualified form which only applies to some fields is treated like the unqualified one.
+                cacheControl.noCache = true;
+            } else if ("private".equalsIgnoreCase(name)) {
+                cacheControl.isPrivate = true;
+            } else if ("public".equalsIgnoreCase(name)) {
+                cacheControl.isPublic = true;
+            } else if ("must-revalidate".equalsIgnoreCase(name) || "proxy-revalidate".equalsIgnoreCase(name)) {
+                cacheControl.mustRevalidate = true;
+            } else if ("only-if-cached".equalsIgnoreCase(name)) {
+                cacheControl.onlyIfCached = true;
+            } else if ("max-age".equalsIgnoreCase(name)) {
+                cacheControl.maxAge = parseSeconds(argument);
+            } else if ("s-maxage".equalsIgnoreCase(name)) {
+                cacheControl.sMaxAge = parseSeconds(argument);
+            }
+        }
+        return cacheControl;
+    }
+
+    private static int nextDirectiveEnd(String value, int start) {
+        boolean quoted = false;
+        for (int i = start; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                return i;
+            }
+        }
+        return value.length();
+    }
+
+    private static String unquote(String value) {
+        if (value.length() >= 2 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"') {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+
+    /**
+     * Parses a delta-seconds value, returns {@code 0} for invalid values so they are treated as stale.
+     */
+    static long parseSeconds(String value) {
+        if (value == null || value.isEmpty()) {
+            return 0;
+        }
+        long seconds = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return 0;
+            }
+            seconds = seconds * 10 + c - '0';
+            if (seconds >= Integer.MAX_VALUE) {
+                // RFC 9111 section 1.2.2.
+                return Integer.MAX_VALUE;
+            }
+        }
+        return seconds;
+    }
+}
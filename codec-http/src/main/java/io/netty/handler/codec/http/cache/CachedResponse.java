@@ -0,0 +1,225 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.cache;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.DateFormatter;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpResponseTemplate;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.util.AbstractReferenceCounted;
+import io.netty.util.ReferenceCounted;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A response stored in a {@link HttpResponseCache}.
+ * <p>
+ * The status line and headers are kept in a {@link HttpResponseTemplate}, so they are encoded only once, and the
+ * body in a single buffer of which every hit gets a retained duplicate.
+ */
+final class CachedResponse extends AbstractReferenceCounted {
+
+    private static final String[] EMPTY_STRINGS = new String[0];
+
+    final HttpResponseTemplate template;
+    final ByteBuf body;
+    final String etag;
+    final String lastModified;
+    private final String[] varyNames;
+    private final String[] varyValues;
+    private final long responseTimeNanos;
+    private final long initialAgeSeconds;
+    private final long lifetimeSeconds;
+    private final boolean noCache;
+
+    CachedResponse(HttpResponseTemplate template, ByteBuf body, HttpHeaders requestHeaders,
+                   long responseTimeNanos, long ageSeconds) {
+        this.template = template;
+        this.body = body;
+        this.responseTimeNanos = responseTimeNanos;
+        HttpHeaders headers = template.headers();
+        etag = headers.get(HttpHeaderNames.ETAG);
+        lastModified = headers.get(HttpHeaderNames.LAST_MODIFIED);
+
+        List<String> vary = headers.getAll(HttpHeaderNames.VARY);
+        if (vary.isEmpty()) {
+            varyNames = EMPTY_STRINGS;
+            varyValues = EMPTY_STRINGS;
+        } else {
+            StringBuilder names = new StringBuilder();
+            for (String value : vary) {
+                if (names.length() > 0) {
+                    names.append(',');
+                }
+                names.append(value);
+            }
+            varyNames = names.toString().trim().toLowerCase(Locale.ROOT).split("\\s*,\\s*");
+            varyValues = new String[varyNames.length];
+            for (int i = 0; i < varyNames.length; i++) {
+                varyNames[i] = varyNames[i].trim();
+                varyValues[i] = fieldValue(requestHeaders, varyNames[i]);
+            }
+        }
+
+        CacheControl cacheControl = CacheControl.parse(headers);
+        noCache = cacheControl.noCache;
+        Date date = parseDate(headers.get(HttpHeaderNames.DATE));
+        if (cacheControl.sMaxAge >= 0) {
+            lifetimeSeconds = cacheControl.sMaxAge;
+        } else if (cacheControl.maxAge >= 0) {
+            lifetimeSeconds = cacheControl.maxAge;
+        } else {
+            Date expires = parseDate(headers.get(HttpHeaderNames.EXPIRES));
+            long base = date != null ? date.getTime() : System.currentTimeMillis();
+            lifetimeSeconds = expires == null ? 0 : Math.max(0, (expires.getTime() - base) / 1000);
+        }
+        long apparentAge = date == null ? 0 : Math.max(0, (System.currentTimeMillis() - date.getTime()) / 1000);
+        initialAgeSeconds = Math.max(apparentAge, ageSeconds);
+    }
+
+    private static Date parseDate(String value) {
+        return value == null ? null : DateFormatter.parseHttpDate(value);
+    }
+
+    private static String fieldValue(HttpHeaders headers, String name) {
+        List<String> values = headers.getAll(name);
+        if (values.isEmpty()) {
+            return null;
+        }
+        if (values.size() == 1) {
+            return values.get(0).trim();
+        }
+        StringBuilder sb = new StringBuilder();
+        for (String value : values) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(value.trim());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns {@code true} if the response has a {@code Vary} header which contains {@code *}, and so may never
+     * be reused.
+     */
+    boolean varyAny() {
+        for (String name : varyNames) {
+            if ("*".equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns {@code true} if the fields named by the {@code Vary} header of the response have the same values in
+     * the given request as in the request of the response.
+     */
+    boolean matches(HttpHeaders requestHeaders) {
+        for (int i = 0; i < varyNames.length; i++) {
+            String value = fieldValue(requestHeaders, varyNames[i]);
+            if (value == null ? varyValues[i] != null : !value.equals(varyValues[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    boolean hasValidators() {
+        return etag != null || lastModified != null;
+    }
+
+    boolean hasFreshnessInformation() {
+        return lifetimeSeconds > 0 || noCache;
+    }
+
+    long ageSeconds(long nowNanos) {
+        return initialAgeSeconds + TimeUnit.NANOSECONDS.toSeconds(nowNanos - responseTimeNanos);
+    }
+
+    /**
+     * Returns {@code true} if the response may be sent without revalidation to a request with the given
+     * {@code Cache-Control}.
+     */
+    boolean isFresh(long nowNanos, CacheControl requestCacheControl) {
+        if (noCache || requestCacheControl.noCache) {
+            return false;
+        }
+        long age = ageSeconds(nowNanos);
+        if (requestCacheControl.maxAge >= 0 && age > requestCacheControl.maxAge) {
+            return false;
+        }
+        return age < lifetimeSeconds;
+    }
+
+    /**
+     * The number of bytes which are accounted for this response.
+     */
+    int size() {
+        // The headers are small compared to the bodies which are worth caching, so they are estimated.
+        return body.capacity() + 512;
+    }
+
+    /**
+     * Creates a new response which is served from the cache.
+     */
+    FullHttpResponse newResponse(long nowNanos, boolean head, boolean keepAlive) {
+        FullHttpResponse response = template.newFullResponse(
+                head ? Unpooled.EMPTY_BUFFER : body.retainedDuplicate());
+        HttpHeaders headers = response.headers();
+        HttpUtil.setContentLength(response, body.readableBytes());
+        headers.set(HttpHeaderNames.AGE, ageSeconds(nowNanos));
+        HttpUtil.setKeepAlive(response, keepAlive);
+        return response;
+    }
+
+    /**
+     * Creates a new {@code 304 Not Modified} response, for a conditional request which matches this response.
+     */
+    FullHttpResponse newNotModifiedResponse(long nowNanos, boolean keepAlive) {
+        FullHttpResponse response = template.newFullResponse(Unpooled.EMPTY_BUFFER);
+        response.setStatus(HttpResponseStatus.NOT_MODIFIED);
+        response.headers().set(HttpHeaderNames.AGE, ageSeconds(nowNanos));
+        HttpUtil.setKeepAlive(response, keepAlive);
+        return response;
+    }
+
+    @Override
+    public CachedResponse retain() {
+        super.retain();
+        return this;
+    }
+
+    @Override
+    public ReferenceCounted touch(Object hint) {
+        body.touch(hint);
+        return this;
+    }
+
+    @Override
+    protected void deallocate() {
+        body.release();
+    }
+}
@@ -0,0 +1,417 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.cache;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpResponseTemplate;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.AsciiString;
+import io.netty.util.internal.LongCounter;
+import io.netty.util.internal.PlatformDependent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+
+/**
+ * A shared, in-memory store for HTTP responses, which is used by one {@link HttpResponseCacheHandler} per channel.
+ * <p>
+ * The bodies of the responses are copied into buffers of the given {@link ByteBufAllocator}, by default pooled
+ * direct memory, and the total size of all responses is bounded. When the budget is exceeded the least recently
+ * used responses are evicted.
+ * <p>
+ * Only responses which may be stored by a shared cache according to
+ * <a href="https://www.rfc-editor.org/rfc/rfc9111">RFC 9111</a> and which have explicit freshness information or
+ * {@code Cache-Control: no-cache} are stored. In addition, responses with {@code Set-Cookie} are never stored.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class HttpResponseCache {
+
+    /**
+     * The status codes which are heuristically cacheable, see RFC 9110, section 15.1.
+     */
+    private static final Set<Integer> CACHEABLE_STATUS_CODES = new HashSet<Integer>();
+    /**
+     * The hop-by-hop headers, and those which are computed per response.
+     */
+    private static final AsciiString[] EXCLUDED_HEADERS = {
+            HttpHeaderNames.CONNECTION, HttpHeaderNames.KEEP_ALIVE, HttpHeaderNames.PROXY_CONNECTION,
+            HttpHeaderNames.TE, HttpHeaderNames.TRAILER, HttpHeaderNames.TRANSFER_ENCODING,
+            HttpHeaderNames.UPGRADE, HttpHeaderNames.CONTENT_LENGTH, HttpHeaderNames.AGE
+    };
+    private static final int MAX_VARIANTS = 8;
+
+    static {
+        for (int code : new int[] { 200, 203, 204, 300, 301, 308, 404, 405, 410, 414, 501 }) {
+            CACHEABLE_STATUS_CODES.add(code);
+        }
+    }
+
+    private final ByteBufAllocator alloc;
+    private final long maxBytes;
+    private final int maxResponseBytes;
+    private final Map<String, List<CachedResponse>> responses =
+            new LinkedHashMap<String, List<CachedResponse>>(16, 0.75f, true);
+    private final Map<String, List<HttpResponseCacheHandler>> fetches =
+            new HashMap<String, List<HttpResponseCacheHandler>>();
+    private long usedBytes;
+
+    private final LongCounter hits = PlatformDependent.newLongCounter();
+    private final LongCounter misses = PlatformDependent.newLongCounter();
+    private final LongCounter coalesced = PlatformDependent.newLongCounter();
+    private final LongCounter evictions = PlatformDependent.newLongCounter();
+
+    /**
+     * Creates a new cache which stores at most {@code maxBytes} in pooled direct memory.
+     */
+    public HttpResponseCache(long maxBytes) {
+        this(PooledByteBufAllocator.DEFAULT, maxBytes, (int) Math.min(Integer.MAX_VALUE, maxBytes / 8));
+    }
+
+    /**
+     * Creates a new cache.
+     *
+     * @param alloc the {@link ByteBufAllocator} for the buffers which hold the bodies of the responses.
+     * @param maxBytes the maximum number of bytes of all stored responses.
+     * @param maxResponseBytes the maximum number of bytes of a single stored response.
+     */
+    public HttpResponseCache(ByteBufAllocator alloc, long maxBytes, int maxResponseBytes) {
+        this.alloc = checkNotNull(alloc, "alloc");
+        this.maxBytes = checkPositive(maxBytes, "maxBytes");
+        this.maxResponseBytes = checkPositive(maxResponseBytes, "maxResponseBytes");
+    }
+
+    /**
+     * The number of requests which were answered from the cache.
+     */
+    public long hits() {
+        return hits.value();
+    }
+
+    /**
+     * The number of cacheable requests which were not answered from the cache.
+     */
+    public long misses() {
+        return misses.value();
+    }
+
+    /**
+     * The number of requests which waited for the response to an identical request instead of being forwarded.
+     */
+    public long coalesced() {
+        return coalesced.value();
+    }
+
+    /**
+     * The number of responses which were evicted because the cache was full.
+     */
+    public long evictions() {
+        return evictions.value();
+    }
+
+    /**
+     * The number of bytes of all stored responses.
+     */
+    public synchronized long usedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * Removes all stored responses.
+     */
+    public void clear() {
+        List<CachedResponse> removed = new ArrayList<CachedResponse>();
+        synchronized (this) {
+            for (List<CachedResponse> variants : responses.values()) {
+                removed.addAll(variants);
+            }
+            responses.clear();
+            usedBytes = 0;
+        }
+        release(removed);
+    }
+
+    /**
+     * Removes all stored responses for the given key, for example after an unsafe request.
+     */
+    void invalidate(String key) {
+        List<CachedResponse> removed;
+        synchronized (this) {
+            removed = responses.remove(key);
+            if (removed == null) {
+                return;
+            }
+            for (CachedResponse response : removed) {
+                usedBytes -= response.size();
+            }
+        }
+        release(removed);
+    }
+
+    /**
+     * Removes the given stored response for the given key, if it is still stored.
+     */
+    private void remove(String key, CachedResponse response) {
+        synchronized (this) {
+            List<CachedResponse> variants = responses.get(key);
+            if (variants == null || !variants.remove(response)) {
+                return;
+            }
+            usedBytes -= response.size();
+            if (variants.isEmpty()) {
+                responses.remove(key);
+            }
+        }
+        response.release();
+    }
+
+    /**
+     * Returns the stored response for the given key which matches the request headers, or {@code null}. The
+     * caller must release the returned response.
+     */
+    CachedResponse lookup(String key, HttpHeaders requestHeaders) {
+        synchronized (this) {
+            List<CachedResponse> variants = responses.get(key);
+            if (variants != null) {
+                for (CachedResponse response : variants) {
+                    if (response.matches(requestHeaders)) {
+                        return response.retain();
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Stores the given response if it may be stored.
+     *
+     * @return the stored response, which the caller must release, or {@code null} if it was not stored.
+     */
+    CachedResponse store(String key, HttpHeaders requestHeaders, FullHttpResponse response, long nowNanos) {
+        if (!isStorable(requestHeaders, response)) {
+            return null;
+        }
+        ByteBuf content = response.content();
+        if (content.readableBytes() > maxResponseBytes) {
+            return null;
+        }
+        HttpHeaders headers = endToEndHeaders(response.headers());
+        ByteBuf body = alloc.directBuffer(content.readableBytes());
+        body.writeBytes(content, content.readerIndex(), content.readableBytes());
+        return put(key, response.protocolVersion(), response.status(), headers, body, requestHeaders, nowNanos,
+                ageOf(response.headers()));
+    }
+
+    /**
+     * Updates a stored response with the headers of a {@code 304 Not Modified} response to its revalidation, see
+     * RFC 9111, section 4.3.4.
+     *
+     * @return the updated response, which the caller must release.
+     */
+    CachedResponse freshen(String key, CachedResponse stored, HttpHeaders requestHeaders,
+                           HttpResponse notModified, long nowNanos) {
+        HttpHeaders headers = stored.template.headers();
+        HttpHeaders updated = endToEndHeaders(notModified.headers());
+        for (String name : updated.names()) {
+            headers.set(name, updated.getAll(name));
+        }
+        // Replace the old version, but keep the other variants.
+        remove(key, stored);
+        HttpVersion version = stored.template.protocolVersion();
+        HttpResponseStatus status = stored.template.status();
+        long ageSeconds = ageOf(notModified.headers());
+        CachedResponse freshened = put(key, version, status, headers, stored.body.retain(), requestHeaders, nowNanos,
+                ageSeconds);
+        if (freshened == null) {
+            // The updated headers do not allow to store it anymore, but it can still answer this request.
+            freshened = new CachedResponse(new HttpResponseTemplate(version, status, headers), stored.body.retain(),
+                    requestHeaders, nowNanos, ageSeconds);
+        }
+        return freshened;
+    }
+
+    private CachedResponse put(String key, HttpVersion version, HttpResponseStatus status, HttpHeaders headers,
+                               ByteBuf body, HttpHeaders requestHeaders, long nowNanos, long ageSeconds) {
+        HttpResponseTemplate template = new HttpResponseTemplate(version, status, headers);
+        CachedResponse cached = new CachedResponse(template, body, requestHeaders, nowNanos, ageSeconds);
+        if (cached.varyAny() || !cached.hasFreshnessInformation()) {
+            cached.release();
+            return null;
+        }
+
+        List<CachedResponse> removed = new ArrayList<CachedResponse>();
+        synchronized (this) {
+            List<CachedResponse> variants = responses.get(key);
+            if (variants == null) {
+                variants = new ArrayList<CachedResponse>(1);
+                responses.put(key, variants);
+            }
+            for (Iterator<CachedResponse> i = variants.iterator(); i.hasNext();) {
+                CachedResponse variant = i.next();
+                if (variant.matches(requestHeaders) || variants.size() >= MAX_VARIANTS) {
+                    i.remove();
+                    usedBytes -= variant.size();
+                    removed.add(variant);
+                }
+            }
+            variants.add(0, cached.retain());
+            usedBytes += cached.size();
+            evict(removed);
+        }
+        release(removed);
+        return cached;
+    }
+
+    private void evict(List<CachedResponse> removed) {
+        assert Thread.holdsLock(this);
+        Iterator<List<CachedResponse>> i = responses.values().iterator();
+        while (usedBytes > maxBytes && i.hasNext()) {
+            List<CachedResponse> variants = i.next();
+            i.remove();
+            for (CachedResponse response : variants) {
+                usedBytes -= response.size();
+                removed.add(response);
+                evictions.increment();
+            }
+        }
+    }
+
+    private static void release(List<CachedResponse> responses) {
+        for (CachedResponse response : responses) {
+            response.release();
+        }
+    }
+
+    private static boolean isStorable(HttpHeaders requestHeaders, HttpResponse response) {
+        if (!CACHEABLE_STATUS_CODES.contains(response.status().code())) {
+            return false;
+        }
+        HttpHeaders headers = response.headers();
+        if (headers.contains(HttpHeaderNames.SET_COOKIE)) {
+            return false;
+        }
+        CacheControl cacheControl = CacheControl.parse(headers);
+        if (cacheControl.noStore || cacheControl.isPrivate) {
+            return false;
+        }
+        if (requestHeaders.contains(HttpHeaderNames.AUTHORIZATION)) {
+            // RFC 9111, section 3.5.
+            return cacheControl.isPublic || cacheControl.mustRevalidate || cacheControl.sMaxAge >= 0;
+        }
+        return true;
+    }
+
+    private static HttpHeaders endToEndHeaders(HttpHeaders headers) {
+        HttpHeaders copy = new DefaultHttpHeaders(false).set(headers);
+        for (String connectionOption : headers.getAll(HttpHeaderNames.CONNECTION)) {
+            for (String name : connectionOption.split(",")) {
+                copy.remove(name.trim());
+            }
+        }
+        for (AsciiString name : EXCLUDED_HEADERS) {
+            copy.remove(name);
+        }
+        return copy;
+    }
+
+    private static long ageOf(HttpHeaders headers) {
+        return CacheControl.parseSeconds(headers.get(HttpHeaderNames.AGE));
+    }
+
+    /**
+     * Registers a request for the given key which was not answered from the cache.
+     *
+     * @return {@code true} if the handler should wait for the response to an identical request which was already
+     * forwarded, in which case {@link HttpResponseCacheHandler#fetchCompleted(CachedResponse)} is called once it
+     * was received. {@code false} if the handler should forward the request and call
+     * {@link #completeFetch(String, CachedResponse)} once the response was received.
+     */
+    boolean joinFetch(String key, HttpResponseCacheHandler handler) {
+        misses.increment();
+        synchronized (fetches) {
+            List<HttpResponseCacheHandler> waiters = fetches.get(key);
+            if (waiters == null) {
+                fetches.put(key, Collections.<HttpResponseCacheHandler>emptyList());
+                return false;
+            }
+            if (waiters.isEmpty()) {
+                waiters = new ArrayList<HttpResponseCacheHandler>(2);
+                fetches.put(key, waiters);
+            }
+            waiters.add(handler);
+        }
+        coalesced.increment();
+        return true;
+    }
+
+    /**
+     * Removes a handler which waits for the response to the request with the given key, because its channel was
+     * closed.
+     */
+    void leaveFetch(String key, HttpResponseCacheHandler handler) {
+        synchronized (fetches) {
+            List<HttpResponseCacheHandler> waiters = fetches.get(key);
+            if (waiters != null) {
+                waiters.remove(handler);
+            }
+        }
+    }
+
+    /**
+     * Notifies all handlers which wait for the response for the given key.
+     *
+     * @param response the stored response, or {@code null} if the response was not stored.
+     */
+    void completeFetch(String key, CachedResponse response) {
+        List<HttpResponseCacheHandler> waiters;
+        synchronized (fetches) {
+            waiters = fetches.remove(key);
+        }
+        if (waiters == null) {
+            return;
+        }
+        for (HttpResponseCacheHandler waiter : waiters) {
+            waiter.fetchCompleted(response == null ? null : response.retain());
+        }
+    }
+
+    void hit() {
+        hits.increment();
+    }
+
+    void miss() {
+        misses.increment();
+    }
+}
@@ -0,0 +1,450 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.cache;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpStatusClass;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.ReferenceCountUtil;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+
+/**
+ * Answers requests from a {@link HttpResponseCache} and stores the responses to them, following the rules for a
+ * shared cache of <a href="https://www.rfc-editor.org/rfc/rfc9111">RFC 9111</a>.
+ * <p>
+ * Add one instance per channel after the {@link io.netty.handler.codec.http.HttpServerCodec}, in front of the
+ * handler which produces the responses, for example the handler of a proxy which forwards the requests to a backend.
+ * All instances may share the same {@link HttpResponseCache}. Only {@link FullHttpResponse}s are stored, so the
+ * responses must be aggregated, for example by a {@link io.netty.handler.codec.http.HttpObjectAggregator} on the
+ * backend channel. Other responses pass through unchanged.
+ * <ul>
+ *     <li>{@code GET} and {@code HEAD} requests are answered with a fresh stored response. Its status line and
+ *     headers were encoded once via a {@link io.netty.handler.codec.http.HttpResponseTemplate}, and its body is a
+ *     retained duplicate of the stored buffer.</li>
+ *     <li>If the stored response is stale but has a validator, the request is forwarded as a conditional request.
+ *     A {@code 304 Not Modified} response freshens the stored response, which is then sent to the client.</li>
+ *     <li>If a {@code GET} request misses the cache while an identical request is already forwarded by any channel,
+ *     the request waits for that response instead of being forwarded too.</li>
+ *     <li>Requests with unsafe methods invalidate the stored responses for their target.</li>
+ * </ul>
+ * To keep responses in order, a request is only answered from the cache if there is no other request of the same
+ * connection which is still waiting for its response.
+ */
+public class HttpResponseCacheHandler extends ChannelDuplexHandler {
+
+    private final HttpResponseCache cache;
+    private final Queue<PendingResponse> pendingResponses = new ArrayDeque<PendingResponse>(2);
+    private ChannelHandlerContext ctx;
+    private boolean discardContent;
+    // Whether the content of a streamed 304 response is dropped, as the response was replaced by the stored one.
+    private boolean discardResponseContent;
+    // The request which waits for the response to an identical request, and the messages which arrived after it.
+    // No more messages are read while a request waits.
+    private HttpRequest waitingRequest;
+    private List<Object> deferred;
+    private boolean readPending;
+    private boolean autoReadSuspended;
+
+    public HttpResponseCacheHandler(HttpResponseCache cache) {
+        this.cache = checkNotNull(cache, "cache");
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (waitingRequest != null) {
+            if (deferred == null) {
+                deferred = new ArrayList<Object>(2);
+            }
+            deferred.add(msg);
+        } else if (msg instanceof HttpRequest) {
+            handleRequest(ctx, (HttpRequest) msg);
+        } else if (discardContent && msg instanceof HttpContent) {
+            discardContent = !(msg instanceof LastHttpContent);
+            ReferenceCountUtil.release(msg);
+        } else {
+            ctx.fireChannelRead(msg);
+        }
+    }
+
+    private void handleRequest(ChannelHandlerContext ctx, HttpRequest request) {
+        HttpMethod method = request.method();
+        boolean head = HttpMethod.HEAD.equals(method);
+        if (!head && !HttpMethod.GET.equals(method)) {
+            if (!isSafe(method)) {
+                cache.invalidate(key(request));
+            }
+            forward(ctx, request, null, null, false);
+            return;
+        }
+
+        HttpHeaders headers = request.headers();
+        CacheControl cacheControl = CacheControl.parse(headers);
+        if (cacheControl.noStore) {
+            forward(ctx, request, null, null, false);
+            return;
+        }
+        String key = key(request);
+        if (!pendingResponses.isEmpty()) {
+            // Answering from the cache could overtake the responses to the previous requests.
+            forward(ctx, request, head ? null : key, null, false);
+            return;
+        }
+
+        CachedResponse cached = cache.lookup(key, headers);
+        if (cached != null) {
+            try {
+                if (cached.isFresh(System.nanoTime(), cacheControl)) {
+                    cache.hit();
+                    answer(ctx, request, cached);
+                    return;
+                }
+                if (!head && cached.hasValidators() && !isConditional(headers)) {
+                    cache.miss();
+                    if (cached.etag != null) {
+                        headers.set(HttpHeaderNames.IF_NONE_MATCH, cached.etag);
+                    }
+                    if (cached.lastModified != null) {
+                        headers.set(HttpHeaderNames.IF_MODIFIED_SINCE, cached.lastModified);
+                    }
+                    forward(ctx, request, key, cached.retain(), false);
+                    return;
+                }
+            } finally {
+                cached.release();
+            }
+        }
+
+        if (cacheControl.onlyIfCached) {
+            cache.miss();
+            ReferenceCountUtil.release(request);
+            discardContent = !(request instanceof LastHttpContent);
+            boolean keepAlive = HttpUtil.isKeepAlive(request);
+            FullHttpResponse response = new DefaultFullHttpResponse(request.protocolVersion(),
+                    HttpResponseStatus.GATEWAY_TIMEOUT, Unpooled.EMPTY_BUFFER);
+            HttpUtil.setContentLength(response, 0);
+            HttpUtil.setKeepAlive(response, keepAlive);
+            send(ctx, response, keepAlive);
+            return;
+        }
+        if (head) {
+            cache.miss();
+            forward(ctx, request, null, null, false);
+            return;
+        }
+        if (cache.joinFetch(key, this)) {
+            waitingRequest = request;
+            ChannelConfig config = ctx.channel().config();
+            if (!autoReadSuspended && config.isAutoRead()) {
+                autoReadSuspended = true;
+                config.setAutoRead(false);
+            }
+            return;
+        }
+        forward(ctx, request, key, null, true);
+    }
+
+    private void forward(ChannelHandlerContext ctx, HttpRequest request, String key, CachedResponse revalidated,
+                         boolean fetch) {
+        pendingResponses.add(new PendingResponse(request, key, revalidated, fetch));
+        ctx.fireChannelRead(request);
+    }
+
+    private void answer(ChannelHandlerContext ctx, HttpRequest request, CachedResponse cached) {
+        boolean keepAlive = HttpUtil.isKeepAlive(request);
+        long now = System.nanoTime();
+        FullHttpResponse response;
+        if (cached.etag != null && matchesEtag(request.headers().get(HttpHeaderNames.IF_NONE_MATCH), cached.etag)) {
+            response = cached.newNotModifiedResponse(now, keepAlive);
+        } else {
+            response = cached.newResponse(now, HttpMethod.HEAD.equals(request.method()), keepAlive);
+        }
+        discardContent = !(request instanceof LastHttpContent);
+        ReferenceCountUtil.release(request);
+        send(ctx, response, keepAlive);
+    }
+
+    private static void send(ChannelHandlerContext ctx, HttpResponse response, boolean keepAlive) {
+        ChannelFuture future = ctx.writeAndFlush(response);
+        if (!keepAlive) {
+            future.addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+
+    /**
+     * Called by the {@link HttpResponseCache} once the response to the request which was forwarded for the
+     * {@link #waitingRequest} was received.
+     *
+     * @param cached the stored response, which must be released, or {@code null} if the response was not stored.
+     */
+    void fetchCompleted(final CachedResponse cached) {
+        if (ctx.executor().inEventLoop()) {
+            fetchCompleted0(cached);
+        } else {
+            ctx.executor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    fetchCompleted0(cached);
+                }
+            });
+        }
+    }
+
+    private void fetchCompleted0(CachedResponse cached) {
+        HttpRequest request = waitingRequest;
+        waitingRequest = null;
+        List<Object> deferred = this.deferred;
+        this.deferred = null;
+        try {
+            if (request == null) {
+                // The waiting request was dropped because the channel was closed or this handler was removed.
+                return;
+            }
+            if (cached != null && cached.matches(request.headers())) {
+                cache.hit();
+                answer(ctx, request, cached);
+            } else {
+                // The response was not stored or is a different variant.
+                forward(ctx, request, key(request), null, false);
+            }
+        } finally {
+            if (cached != null) {
+                cached.release();
+            }
+        }
+        if (deferred != null) {
+            for (Object msg : deferred) {
+                try {
+                    channelRead(ctx, msg);
+                } catch (Exception e) {
+                    ctx.fireExceptionCaught(e);
+                }
+            }
+        }
+        ctx.fireChannelReadComplete();
+        if (waitingRequest == null) {
+            resumeReading();
+        }
+    }
+
+    private void resumeReading() {
+        if (autoReadSuspended) {
+            autoReadSuspended = false;
+            readPending = false;
+            // Triggers a read as well.
+            ctx.channel().config().setAutoRead(true);
+        } else if (readPending) {
+            readPending = false;
+            ctx.read();
+        }
+    }
+
+    @Override
+    public void read(ChannelHandlerContext ctx) throws Exception {
+        if (waitingRequest != null) {
+            readPending = true;
+        } else {
+            ctx.read();
+        }
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (discardResponseContent && msg instanceof HttpContent && !(msg instanceof HttpResponse)) {
+            discardResponseContent = !(msg instanceof LastHttpContent);
+            ReferenceCountUtil.release(msg);
+            promise.setSuccess();
+            return;
+        }
+        if (msg instanceof HttpResponse) {
+            HttpResponse response = (HttpResponse) msg;
+            if (response.status().codeClass() == HttpStatusClass.INFORMATIONAL) {
+                ctx.write(msg, promise);
+                return;
+            }
+            PendingResponse pending = pendingResponses.peek();
+            if (pending != null) {
+                msg = pending.onResponse(response);
+            }
+        }
+        if (msg instanceof LastHttpContent) {
+            PendingResponse pending = pendingResponses.poll();
+            if (pending != null) {
+                pending.release();
+            }
+        }
+        ctx.write(msg, promise);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        dropWaitingRequest();
+        releasePendingResponses();
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        dropWaitingRequest();
+        releasePendingResponses();
+    }
+
+    private void dropWaitingRequest() {
+        HttpRequest request = waitingRequest;
+        if (request == null) {
+            return;
+        }
+        waitingRequest = null;
+        cache.leaveFetch(key(request), this);
+        ReferenceCountUtil.release(request);
+        List<Object> deferred = this.deferred;
+        this.deferred = null;
+        if (deferred != null) {
+            for (Object msg : deferred) {
+                ReferenceCountUtil.release(msg);
+            }
+        }
+        resumeReading();
+    }
+
+    private void releasePendingResponses() {
+        for (;;) {
+            PendingResponse pending = pendingResponses.poll();
+            if (pending == null) {
+                break;
+            }
+            pending.release();
+        }
+    }
+
+    private static String key(HttpRequest request) {
+        String host = request.headers().get(HttpHeaderNames.HOST);
+        return host == null ? request.uri() : host + request.uri();
+    }
+
+    private static boolean isSafe(HttpMethod method) {
+        return HttpMethod.OPTIONS.equals(method) || HttpMethod.TRACE.equals(method);
+    }
+
+    private static boolean isConditional(HttpHeaders headers) {
+        return headers.contains(HttpHeaderNames.IF_NONE_MATCH) || headers.contains(HttpHeaderNames.IF_MODIFIED_SINCE)
+                || headers.contains(HttpHeaderNames.IF_MATCH) || headers.contains(HttpHeaderNames.IF_UNMODIFIED_SINCE)
+                || headers.contains(HttpHeaderNames.IF_RANGE);
+    }
+
+    private static boolean matchesEtag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String strippedEtag = etag.startsWith("W/") ? etag.substring(2) : etag;
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if ("*".equals(tag) || strippedEtag.equals(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A request which was forwarded, and whose response is stored if possible.
+     */
+    private final class PendingResponse {
+        private final HttpHeaders requestHeaders;
+        private final boolean keepAlive;
+        private final String key;
+        private CachedResponse revalidated;
+        private boolean fetch;
+
+        PendingResponse(HttpRequest request, String key, CachedResponse revalidated, boolean fetch) {
+            // The headers are still needed to store the response, after the request was released.
+            requestHeaders = request.headers();
+            keepAlive = HttpUtil.isKeepAlive(request);
+            this.key = key;
+            this.revalidated = revalidated;
+            this.fetch = fetch;
+        }
+
+        Object onResponse(HttpResponse response) {
+            if (key == null) {
+                return response;
+            }
+            long now = System.nanoTime();
+            CachedResponse stored = null;
+            Object msg = response;
+            if (revalidated != null && response.status().code() == HttpResponseStatus.NOT_MODIFIED.code()) {
+                // The client did not send a conditional request, so the 304 is always replaced by the stored
+                // response.
+                stored = cache.freshen(key, revalidated, requestHeaders, response, now);
+                msg = stored.newResponse(now, false, keepAlive);
+                discardResponseContent = !(response instanceof LastHttpContent);
+                ReferenceCountUtil.release(response);
+            } else if (response instanceof FullHttpResponse) {
+                stored = cache.store(key, requestHeaders, (FullHttpResponse) response, now);
+            }
+            completeFetch(stored);
+            if (stored != null) {
+                stored.release();
+            }
+            return msg;
+        }
+
+        private void completeFetch(CachedResponse stored) {
+            if (fetch) {
+                fetch = false;
+                cache.completeFetch(key, stored);
+            }
+        }
+
+        void release() {
+            // Let the waiting requests be forwarded if the response was never written.
+            completeFetch(null);
+            if (revalidated != null) {
+                revalidated.release();
+                revalidated = null;
+            }
+        }
+    }
+}
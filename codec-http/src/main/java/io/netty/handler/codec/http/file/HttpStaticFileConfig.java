@@ -0,0 +1,255 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.file;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
+
+/**
+ * Configuration of a {@link HttpStaticFileHandler}.
+ */
+public final class HttpStaticFileConfig {
+
+    static final int DEFAULT_MAX_CACHED_FILES = 1024;
+    static final int DEFAULT_MAX_OPEN_FILES = 128;
+    static final long DEFAULT_METADATA_TTL_MILLIS = 1000L;
+    static final int DEFAULT_CHUNK_SIZE = 8192;
+    static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+    private static final Map<String, String> DEFAULT_CONTENT_TYPES;
+
+    static {
+        Map<String, String> types = new HashMap<String, String>();
+        types.put("html", "text/html; charset=UTF-8");
+        types.put("htm", "text/html; charset=UTF-8");
+        types.put("css", "text/css; charset=UTF-8");
+        types.put("js", "text/javascript; charset=UTF-8");
+        types.put("mjs", "text/javascript; charset=UTF-8");
+        types.put("txt", "text/plain; charset=UTF-8");
+        types.put("csv", "text/csv; charset=UTF-8");
+        types.put("json", "application/json");
+        types.put("map", "application/json");
+        types.put("xml", "application/xml");
+        types.put("pdf", "application/pdf");
+        types.put("wasm", "application/wasm");
+        types.put("zip", "application/zip");
+        types.put("svg", "image/svg+xml");
+        types.put("png", "image/png");
+        types.put("jpg", "image/jpeg");
+        types.put("jpeg", "image/jpeg");
+        types.put("gif", "image/gif");
+        types.put("webp", "image/webp");
+        types.put("avif", "image/avif");
+        types.put("ico", "image/x-icon");
+        types.put("woff", "font/woff");
+        types.put("woff2", "font/woff2");
+        types.put("mp4", "video/mp4");
+        types.put("webm", "video/webm");
+        types.put("mp3", "audio/mpeg");
+        DEFAULT_CONTENT_TYPES = Collections.unmodifiableMap(types);
+    }
+
+    private final File root;
+    private final int maxCachedFiles;
+    private final int maxOpenFiles;
+    private final long metadataTtlMillis;
+    private final boolean precompressed;
+    private final int chunkSize;
+    private final long maxAgeSeconds;
+    private final Map<String, String> contentTypes;
+
+    private HttpStaticFileConfig(Builder builder) {
+        root = builder.root;
+        maxCachedFiles = builder.maxCachedFiles;
+        maxOpenFiles = builder.maxOpenFiles;
+        metadataTtlMillis = builder.metadataTtlMillis;
+        precompressed = builder.precompressed;
+        chunkSize = builder.chunkSize;
+        maxAgeSeconds = builder.maxAgeSeconds;
+        contentTypes = Collections.unmodifiableMap(new HashMap<String, String>(builder.contentTypes));
+    }
+
+    /**
+     * The directory from which the files are served.
+     */
+    public File root() {
+        return root;
+    }
+
+    /**
+     * The maximum number of files whose metadata is cached.
+     */
+    public int maxCachedFiles() {
+        return maxCachedFiles;
+    }
+
+    /**
+     * The maximum number of {@link java.nio.channels.FileChannel}s which are kept open between requests.
+     */
+    public int maxOpenFiles() {
+        return maxOpenFiles;
+    }
+
+    /**
+     * How long the metadata of a file is cached before the file system is checked again.
+     */
+    public long metadataTtlMillis() {
+        return metadataTtlMillis;
+    }
+
+    /**
+     * Whether {@code .br} and {@code .gz} siblings of a file are served to clients which accept them.
+     */
+    public boolean precompressed() {
+        return precompressed;
+    }
+
+    /**
+     * The size of the chunks in which a file is read when it can not be sent via {@code sendfile}.
+     */
+    public int chunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * The {@code max-age} of the {@code Cache-Control} header, or {@code -1} if none is sent.
+     */
+    public long maxAgeSeconds() {
+        return maxAgeSeconds;
+    }
+
+    /**
+     * Returns the content type for the given file name.
+     */
+    public String contentType(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        if (dot != -1) {
+            String type = contentTypes.get(fileName.substring(dot + 1).toLowerCase(Locale.ROOT));
+            if (type != null) {
+                return type;
+            }
+        }
+        return DEFAULT_CONTENT_TYPE;
+    }
+
+    @Override
+    public String toString() {
+        return "HttpStaticFileConfig" +
+            " {root=" + root +
+            ", maxCachedFiles=" + maxCachedFiles +
+            ", maxOpenFiles=" + maxOpenFiles +
+            ", metadataTtlMillis=" + metadataTtlMillis +
+            ", precompressed=" + precompressed +
+            ", chunkSize=" + chunkSize +
+            ", maxAgeSeconds=" + maxAgeSeconds +
+            "}";
+    }
+
+    /**
+     * Creates a new {@link Builder} which serves the files below the given directory.
+     */
+    public static Builder newBuilder(File root) {
+        return new Builder(root);
+    }
+
+    public static final class Builder {
+        private final File root;
+        private int maxCachedFiles = DEFAULT_MAX_CACHED_FILES;
+        private int maxOpenFiles = DEFAULT_MAX_OPEN_FILES;
+        private long metadataTtlMillis = DEFAULT_METADATA_TTL_MILLIS;
+        private boolean precompressed;
+        private int chunkSize = DEFAULT_CHUNK_SIZE;
+        private long maxAgeSeconds = -1;
+        private final Map<String, String> contentTypes = new HashMap<String, String>(DEFAULT_CONTENT_TYPES);
+
+        private Builder(File root) {
+            this.root = checkNotNull(root, "root");
+        }
+
+        /**
+         * The maximum number of files whose metadata is cached. Defaults to {@value #DEFAULT_MAX_CACHED_FILES}.
+         */
+        public Builder maxCachedFiles(int maxCachedFiles) {
+            this.maxCachedFiles = checkPositiveOrZero(maxCachedFiles, "maxCachedFiles");
+            return this;
+        }
+
+        /**
+         * The maximum number of {@link java.nio.channels.FileChannel}s which are kept open between requests.
+         * Defaults to {@value #DEFAULT_MAX_OPEN_FILES}, {@code 0} opens the file for every request.
+         */
+        public Builder maxOpenFiles(int maxOpenFiles) {
+            this.maxOpenFiles = checkPositiveOrZero(maxOpenFiles, "maxOpenFiles");
+            return this;
+        }
+
+        /**
+         * How long the metadata of a file is cached before the file system is checked again.
+         * Defaults to {@value #DEFAULT_METADATA_TTL_MILLIS}.
+         */
+        public Builder metadataTtlMillis(long metadataTtlMillis) {
+            this.metadataTtlMillis = checkPositiveOrZero(metadataTtlMillis, "metadataTtlMillis");
+            return this;
+        }
+
+        /**
+         * Whether {@code .br} and {@code .gz} siblings of a file are served to clients which accept them.
+         * Defaults to {@code false}.
+         */
+        public Builder precompressed(boolean precompressed) {
+            this.precompressed = precompressed;
+            return this;
+        }
+
+        /**
+         * The size of the chunks in which a file is read when it can not be sent via {@code sendfile}.
+         * Defaults to {@value #DEFAULT_CHUNK_SIZE}.
+         */
+        public Builder chunkSize(int chunkSize) {
+            this.chunkSize = checkPositive(chunkSize, "chunkSize");
+            return this;
+        }
+
+        /**
+         * The {@code max-age} of the {@code Cache-Control} header. By default no {@code Cache-Control} header is
+         * sent.
+         */
+        public Builder maxAgeSeconds(long maxAgeSeconds) {
+            this.maxAgeSeconds = checkPositiveOrZero(maxAgeSeconds, "maxAgeSeconds");
+            return this;
+        }
+
+        /**
+         * Sets the content type of the files with the given extension.
+         */
+        public Builder contentType(String extension, String contentType) {
+            contentTypes.put(checkNotNull(extension, "extension").toLowerCase(Locale.ROOT),
+                    checkNotNull(contentType, "contentType"));
+            return this;
+        }
+
+        public HttpStaticFileConfig build() {
+            return new HttpStaticFileConfig(this);
+        }
+    }
+}
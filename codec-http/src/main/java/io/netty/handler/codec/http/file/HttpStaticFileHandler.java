@@ -0,0 +1,444 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.file;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.handler.codec.DateFormatter;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpChunkedInput;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.handler.codec.http.file.StaticFileCache.OpenFile;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.stream.ChunkedNioFile;
+import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.util.AsciiString;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+
+import java.io.IOException;
+import java.util.Date;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+
+/**
+ * Serves the files below a directory to {@code GET} and {@code HEAD} requests.
+ * <p>
+ * On plaintext channels the content is written as a {@link io.netty.channel.FileRegion}, so the transports which
+ * support it send it via {@code sendfile} without copying it into user space. If the pipeline contains a
+ * {@link SslHandler} the content is read in chunks instead, which requires a {@link ChunkedWriteHandler} in front of
+ * this handler. Do not add a {@link io.netty.handler.codec.http.HttpContentCompressor} in front of this handler,
+ * use {@link HttpStaticFileConfig.Builder#precompressed(boolean)} to serve compressed files.
+ * <p>
+ * The handler supports:
+ * <ul>
+ *     <li>Conditional requests via {@code If-None-Match} and {@code If-Modified-Since}</li>
+ *     <li>Single byte ranges via {@code Range} and {@code If-Range}. Requests for multiple ranges are answered with
+ *     the whole file.</li>
+ *     <li>Serving the {@code .br} or {@code .gz} sibling of a file if the client accepts it, see
+ *     {@link HttpStaticFileConfig#precompressed()}.</li>
+ * </ul>
+ * The metadata and the open {@link java.nio.channels.FileChannel}s of the most recently requested files are cached,
+ * see {@link HttpStaticFileConfig}. As this cache is shared by all channels this handler is {@link Sharable}.
+ * <p>
+ * This handler accepts {@link HttpRequest}s, and releases the {@link HttpContent}s which follow them. All other
+ * messages are passed to the next handler.
+ */
+@Sharable
+public class HttpStaticFileHandler extends ChannelInboundHandlerAdapter {
+
+    private static final long[] UNSATISFIABLE = new long[0];
+    private static final String ALLOWED_METHODS = HttpMethod.GET + ", " + HttpMethod.HEAD;
+
+    private final HttpStaticFileConfig config;
+    private final StaticFileCache cache;
+
+    public HttpStaticFileHandler(HttpStaticFileConfig config) {
+        this.config = checkNotNull(config, "config");
+        cache = new StaticFileCache(config);
+    }
+
+    /**
+     * Returns the configuration of this handler.
+     */
+    public HttpStaticFileConfig config() {
+        return config;
+    }
+
+    /**
+     * Clears the metadata cache and closes all cached {@link java.nio.channels.FileChannel}s. Files which are
+     * being sent are closed once the transfer completed.
+     */
+    public void clearCache() {
+        cache.clear();
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof HttpRequest) {
+            try {
+                handleRequest(ctx, (HttpRequest) msg);
+            } finally {
+                ReferenceCountUtil.release(msg);
+            }
+        } else if (msg instanceof HttpContent) {
+            ReferenceCountUtil.release(msg);
+        } else {
+            ctx.fireChannelRead(msg);
+        }
+    }
+
+    private void handleRequest(ChannelHandlerContext ctx, HttpRequest request) throws Exception {
+        boolean keepAlive = HttpUtil.isKeepAlive(request);
+        if (!request.decoderResult().isSuccess()) {
+            sendError(ctx, HttpResponseStatus.BAD_REQUEST, false);
+            return;
+        }
+        HttpMethod method = request.method();
+        boolean head = HttpMethod.HEAD.equals(method);
+        if (!head && !HttpMethod.GET.equals(method)) {
+            HttpResponse response = newErrorResponse(HttpResponseStatus.METHOD_NOT_ALLOWED);
+            response.headers().set(HttpHeaderNames.ALLOW, ALLOWED_METHODS);
+            send(ctx, response, keepAlive);
+            return;
+        }
+
+        String path;
+        try {
+            path = new QueryStringDecoder(request.uri()).path();
+        } catch (IllegalArgumentException e) {
+            sendError(ctx, HttpResponseStatus.BAD_REQUEST, keepAlive);
+            return;
+        }
+        StaticFile file = cache.lookup(path);
+        if (file == null) {
+            sendError(ctx, HttpResponseStatus.NOT_FOUND, keepAlive);
+            return;
+        }
+
+        HttpHeaders requestHeaders = request.headers();
+        String range = requestHeaders.get(HttpHeaderNames.RANGE);
+        StaticFile selected = file;
+        if (range == null && file.hasVariants()) {
+            selected = selectVariant(file, requestHeaders.get(HttpHeaderNames.ACCEPT_ENCODING));
+        }
+
+        if (isNotModified(requestHeaders, selected)) {
+            HttpResponse response = new DefaultFullHttpResponse(request.protocolVersion(),
+                    HttpResponseStatus.NOT_MODIFIED, Unpooled.EMPTY_BUFFER);
+            setEntityHeaders(response.headers(), file, selected);
+            send(ctx, response, keepAlive);
+            return;
+        }
+
+        long start = 0;
+        long length = selected.length;
+        HttpResponse response = new DefaultHttpResponse(request.protocolVersion(), HttpResponseStatus.OK);
+        HttpHeaders headers = response.headers();
+        if (range != null && isRangeApplicable(requestHeaders.get(HttpHeaderNames.IF_RANGE), selected)) {
+            long[] byteRange = parseRange(range, selected.length);
+            if (byteRange == UNSATISFIABLE) {
+                HttpResponse error = newErrorResponse(HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+                error.headers().set(HttpHeaderNames.CONTENT_RANGE, "bytes */" + selected.length);
+                send(ctx, error, keepAlive);
+                return;
+            }
+            if (byteRange != null) {
+                start = byteRange[0];
+                length = byteRange[1] - byteRange[0] + 1;
+                response.setStatus(HttpResponseStatus.PARTIAL_CONTENT);
+                headers.set(HttpHeaderNames.CONTENT_RANGE,
+                        "bytes " + byteRange[0] + '-' + byteRange[1] + '/' + selected.length);
+            }
+        }
+        setEntityHeaders(headers, file, selected);
+        headers.set(HttpHeaderNames.CONTENT_TYPE, selected.contentType);
+        headers.set(HttpHeaderNames.ACCEPT_RANGES, HttpHeaderValues.BYTES);
+        if (selected.contentEncoding != null) {
+            headers.set(HttpHeaderNames.CONTENT_ENCODING, selected.contentEncoding);
+        }
+        HttpUtil.setContentLength(response, length);
+        HttpUtil.setKeepAlive(response, keepAlive);
+
+        if (head || length == 0) {
+            ctx.write(response);
+            completeResponse(ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT), keepAlive);
+            return;
+        }
+
+        OpenFile openFile;
+        try {
+            openFile = cache.open(selected);
+        } catch (IOException e) {
+            // The file was removed since its metadata was cached.
+            cache.invalidate(path, file);
+            sendError(ctx, HttpResponseStatus.NOT_FOUND, keepAlive);
+            return;
+        }
+
+        ChannelFuture lastContentFuture;
+        if (ctx.pipeline().get(SslHandler.class) == null) {
+            ctx.write(response);
+            ctx.write(new CachedFileRegion(openFile, start, length));
+            lastContentFuture = ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+        } else {
+            CachedChunkedNioFile chunkedFile;
+            try {
+                chunkedFile = new CachedChunkedNioFile(openFile, start, length, config.chunkSize());
+            } catch (IOException e) {
+                openFile.release();
+                throw e;
+            }
+            ctx.write(response);
+            // HttpChunkedInput writes the LastHttpContent.
+            lastContentFuture = ctx.writeAndFlush(new HttpChunkedInput(chunkedFile));
+        }
+        completeResponse(lastContentFuture, keepAlive);
+    }
+
+    private void setEntityHeaders(HttpHeaders headers, StaticFile file, StaticFile selected) {
+        headers.set(HttpHeaderNames.ETAG, selected.etag);
+        headers.set(HttpHeaderNames.LAST_MODIFIED, DateFormatter.format(new Date(selected.lastModified)));
+        headers.set(HttpHeaderNames.DATE, DateFormatter.format(new Date()));
+        if (config.maxAgeSeconds() >= 0) {
+            headers.set(HttpHeaderNames.CACHE_CONTROL, "max-age=" + config.maxAgeSeconds());
+        }
+        if (file.hasVariants()) {
+            headers.set(HttpHeaderNames.VARY, HttpHeaderNames.ACCEPT_ENCODING);
+        }
+    }
+
+    private static void completeResponse(ChannelFuture lastContentFuture, boolean keepAlive) {
+        if (!keepAlive) {
+            lastContentFuture.addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+
+    private static HttpResponse newErrorResponse(HttpResponseStatus status) {
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status,
+                Unpooled.copiedBuffer("Failure: " + status + "\r\n", CharsetUtil.UTF_8));
+        response.headers().set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.TEXT_PLAIN + "; charset=UTF-8");
+        HttpUtil.setContentLength(response, response.content().readableBytes());
+        return response;
+    }
+
+    private static void sendError(ChannelHandlerContext ctx, HttpResponseStatus status, boolean keepAlive) {
+        send(ctx, newErrorResponse(status), keepAlive);
+    }
+
+    private static void send(ChannelHandlerContext ctx, HttpResponse response, boolean keepAlive) {
+        HttpUtil.setKeepAlive(response, keepAlive);
+        completeResponse(ctx.writeAndFlush(response), keepAlive);
+    }
+
+    /**
+     * Returns the representation of the file which is preferred by the given {@code Accept-Encoding} header.
+     */
+    static StaticFile selectVariant(StaticFile file, String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return file;
+        }
+        if (file.brotli != null && isAccepted(acceptEncoding, HttpHeaderValues.BR)) {
+            return file.brotli;
+        }
+        if (file.gzip != null && isAccepted(acceptEncoding, HttpHeaderValues.GZIP)) {
+            return file.gzip;
+        }
+        return file;
+    }
+
+    private static boolean isAccepted(String acceptEncoding, AsciiString coding) {
+        for (String element : acceptEncoding.split(",")) {
+            int semicolon = element.indexOf(';');
+            String name = (semicolon == -1 ? element : element.substring(0, semicolon)).trim();
+            if (!coding.contentEqualsIgnoreCase(name)) {
+                continue;
+            }
+            if (semicolon == -1) {
+                return true;
+            }
+            String parameter = element.substring(semicolon + 1).trim();
+            if (!parameter.startsWith("q=")) {
+                return true;
+            }
+            try {
+                return Float.parseFloat(parameter.substring(2)) > 0;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Evaluates {@code If-None-Match} and, if it is absent, {@code If-Modified-Since}.
+     */
+    static boolean isNotModified(HttpHeaders headers, StaticFile file) {
+        String ifNoneMatch = headers.get(HttpHeaderNames.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            for (String tag : ifNoneMatch.split(",")) {
+                tag = tag.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if ("*".equals(tag) || file.etag.equals(tag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        String ifModifiedSince = headers.get(HttpHeaderNames.IF_MODIFIED_SINCE);
+        if (ifModifiedSince != null) {
+            Date date = DateFormatter.parseHttpDate(ifModifiedSince);
+            // HTTP dates have a resolution of one second.
+            return date != null && file.lastModified / 1000 <= date.getTime() / 1000;
+        }
+        return false;
+    }
+
+    /**
+     * Returns {@code true} if the {@code Range} header should be used, which is the case if there is no
+     * {@code If-Range} header or it matches the current version of the file.
+     */
+    static boolean isRangeApplicable(String ifRange, StaticFile file) {
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"")) {
+            return file.etag.equals(ifRange);
+        }
+        if (ifRange.startsWith("W/")) {
+            // Weak validators must not be used for ranges.
+            return false;
+        }
+        Date date = DateFormatter.parseHttpDate(ifRange);
+        return date != null && file.lastModified / 1000 == date.getTime() / 1000;
+    }
+
+    /**
+     * Parses a {@code Range} header with a single byte range.
+     *
+     * @return the first and last position of the range, {@link #UNSATISFIABLE} if the range is not satisfiable, or
+     * {@code null} if the header is invalid or contains multiple ranges and should be ignored.
+     */
+    static long[] parseRange(String range, long length) {
+        if (!range.regionMatches(true, 0, "bytes=", 0, 6)) {
+            return null;
+        }
+        String spec = range.substring(6).trim();
+        int dash = spec.indexOf('-');
+        if (dash == -1 || spec.indexOf(',') != -1) {
+            return null;
+        }
+        long first = parseNumber(spec, 0, dash);
+        long last = parseNumber(spec, dash + 1, spec.length());
+        if (dash == 0) {
+            // A suffix range, which contains the last bytes.
+            if (last < 0) {
+                return null;
+            }
+            if (last == 0 || length == 0) {
+                return UNSATISFIABLE;
+            }
+            return new long[] { Math.max(0, length - last), length - 1 };
+        }
+        if (first < 0) {
+            return null;
+        }
+        if (dash == spec.length() - 1) {
+            last = length - 1;
+        } else if (last < first) {
+            return null;
+        }
+        if (first >= length) {
+            return UNSATISFIABLE;
+        }
+        return new long[] { first, Math.min(last, length - 1) };
+    }
+
+    private static long parseNumber(String s, int start, int end) {
+        if (start == end || end - start > 18) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + c - '0';
+        }
+        return value;
+    }
+
+    /**
+     * A {@link DefaultFileRegion} for a cached {@link java.nio.channels.FileChannel}, which releases it instead of
+     * closing it.
+     */
+    private static final class CachedFileRegion extends DefaultFileRegion {
+        private final OpenFile openFile;
+
+        CachedFileRegion(OpenFile openFile, long position, long count) {
+            super(openFile.channel, position, count);
+            this.openFile = openFile;
+        }
+
+        @Override
+        protected void deallocate() {
+            openFile.release();
+        }
+    }
+
+    /**
+     * A {@link ChunkedNioFile} for a cached {@link java.nio.channels.FileChannel}, which releases it instead of
+     * closing it.
+     */
+    private static final class CachedChunkedNioFile extends ChunkedNioFile {
+        private final OpenFile openFile;
+        private boolean closed;
+
+        CachedChunkedNioFile(OpenFile openFile, long offset, long length, int chunkSize) throws IOException {
+            super(openFile.channel, offset, length, chunkSize);
+            this.openFile = openFile;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                openFile.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.file;
+
+import io.netty.util.AsciiString;
+
+import java.io.File;
+
+/**
+ * The metadata of a file, which is cached by {@link StaticFileCache}.
+ */
+final class StaticFile {
+
+    final File file;
+    final long length;
+    final long lastModified;
+    final String etag;
+    final String contentType;
+    final AsciiString contentEncoding;
+    final StaticFile brotli;
+    final StaticFile gzip;
+
+    StaticFile(File file, long length, long lastModified, String contentType, AsciiString contentEncoding,
+               StaticFile brotli, StaticFile gzip) {
+        this.file = file;
+        this.length = length;
+        this.lastModified = lastModified;
+        this.contentType = contentType;
+        this.contentEncoding = contentEncoding;
+        this.brotli = brotli;
+        this.gzip = gzip;
+        // The ETag changes whenever the file is modified, and differs per content coding.
+        StringBuilder sb = new StringBuilder(32).append('"')
+                .append(Long.toHexString(lastModified)).append('-').append(Long.toHexString(length));
+        if (contentEncoding != null) {
+            sb.append('-').append(contentEncoding);
+        }
+        etag = sb.append('"').toString();
+    }
+
+    /**
+     * Returns {@code true} if this file has the same length and modification time as the given one.
+     */
+    boolean isSameVersion(StaticFile other) {
+        return length == other.length && lastModified == other.lastModified;
+    }
+
+    boolean hasVariants() {
+        return brotli != null || gzip != null;
+    }
+}
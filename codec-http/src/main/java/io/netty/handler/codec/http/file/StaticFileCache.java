@@ -0,0 +1,283 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.file;
+
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.util.AbstractReferenceCounted;
+import io.netty.util.AsciiString;
+import io.netty.util.ReferenceCounted;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the metadata of files and their open {@link FileChannel}s, so a request for a popular file neither needs
+ * to stat nor to open it. Both caches are LRU caches of a bounded size.
+ * <p>
+ * An open {@link FileChannel} is reference counted: the cache holds one reference and every transfer in progress
+ * holds another, so a file which is evicted while it is being sent is only closed once the transfer completed.
+ */
+final class StaticFileCache {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(StaticFileCache.class);
+
+    private final HttpStaticFileConfig config;
+    private final String rootPath;
+    private final long metadataTtlNanos;
+    private final Map<String, CachedMetadata> metadata;
+    private final Map<File, OpenFile> openFiles;
+
+    StaticFileCache(HttpStaticFileConfig config) {
+        this.config = config;
+        String rootPath;
+        try {
+            rootPath = config.root().getCanonicalPath();
+        } catch (IOException e) {
+            rootPath = config.root().getAbsolutePath();
+        }
+        this.rootPath = rootPath.endsWith(File.separator) ? rootPath : rootPath + File.separator;
+        metadataTtlNanos = TimeUnit.MILLISECONDS.toNanos(config.metadataTtlMillis());
+
+        final int maxCachedFiles = config.maxCachedFiles();
+        metadata = new LinkedHashMap<String, CachedMetadata>(16, 0.75f, true) {
+            private static final long serialVersionUID = 8287420318420613838L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedMetadata> eldest) {
+                return size() > maxCachedFiles;
+            }
+        };
+        final int maxOpenFiles = config.maxOpenFiles();
+        openFiles = new LinkedHashMap<File, OpenFile>(16, 0.75f, true) {
+            private static final long serialVersionUID = -1858322546284358263L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<File, OpenFile> eldest) {
+                if (size() > maxOpenFiles) {
+                    eldest.getValue().release();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the metadata of the file for the given decoded request path, or {@code null} if there is no such
+     * regular file below the root directory.
+     */
+    StaticFile lookup(String path) {
+        long now = System.nanoTime();
+        synchronized (metadata) {
+            CachedMetadata cached = metadata.get(path);
+            if (cached != null && now - cached.checkedNanos < metadataTtlNanos) {
+                return cached.file;
+            }
+        }
+
+        StaticFile file = resolve(path);
+        if (config.maxCachedFiles() > 0) {
+            synchronized (metadata) {
+                metadata.put(path, new CachedMetadata(file, now));
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Opens the given file, or returns its cached {@link OpenFile}. The caller must release the returned
+     * {@link OpenFile} once it is not needed anymore.
+     */
+    OpenFile open(StaticFile file) throws IOException {
+        synchronized (openFiles) {
+            OpenFile openFile = openFiles.get(file.file);
+            if (openFile != null) {
+                if (openFile.file.isSameVersion(file)) {
+                    return openFile.retain();
+                }
+                // The file was modified, it may even be a different file now.
+                openFiles.remove(file.file);
+                openFile.release();
+            }
+        }
+
+        OpenFile opened = new OpenFile(file, new RandomAccessFile(file.file, "r").getChannel());
+        if (config.maxOpenFiles() == 0) {
+            return opened;
+        }
+        synchronized (openFiles) {
+            OpenFile openFile = openFiles.get(file.file);
+            if (openFile != null && openFile.file.isSameVersion(file)) {
+                // Opened concurrently by another thread.
+                opened.release();
+                return openFile.retain();
+            }
+            OpenFile replaced = openFiles.put(file.file, opened);
+            if (replaced != null) {
+                replaced.release();
+            }
+            return opened.retain();
+        }
+    }
+
+    /**
+     * Removes the given file from the caches, for example because it could not be opened.
+     */
+    void invalidate(String path, StaticFile file) {
+        synchronized (metadata) {
+            metadata.remove(path);
+        }
+        OpenFile openFile;
+        synchronized (openFiles) {
+            openFile = openFiles.remove(file.file);
+        }
+        if (openFile != null) {
+            openFile.release();
+        }
+    }
+
+    /**
+     * Removes all entries and closes all cached {@link FileChannel}s which are not used by a transfer.
+     */
+    void clear() {
+        synchronized (metadata) {
+            metadata.clear();
+        }
+        List<OpenFile> removed;
+        synchronized (openFiles) {
+            removed = new ArrayList<OpenFile>(openFiles.values());
+            openFiles.clear();
+        }
+        for (OpenFile openFile : removed) {
+            openFile.release();
+        }
+    }
+
+    int openFiles() {
+        synchronized (openFiles) {
+            return openFiles.size();
+        }
+    }
+
+    private StaticFile resolve(String path) {
+        if (!isSafePath(path)) {
+            return null;
+        }
+        File file = new File(rootPath, path.substring(1).replace('/', File.separatorChar));
+        try {
+            if (!file.isFile() || !file.getCanonicalPath().startsWith(rootPath)) {
+                return null;
+            }
+        } catch (IOException e) {
+            logger.debug("Failed to resolve {}", file, e);
+            return null;
+        }
+        String contentType = config.contentType(file.getName());
+        StaticFile brotli = null;
+        StaticFile gzip = null;
+        if (config.precompressed()) {
+            brotli = variant(file, ".br", contentType, HttpHeaderValues.BR);
+            gzip = variant(file, ".gz", contentType, HttpHeaderValues.GZIP);
+        }
+        return new StaticFile(file, file.length(), file.lastModified(), contentType, null, brotli, gzip);
+    }
+
+    private static StaticFile variant(File file, String suffix, String contentType, AsciiString contentEncoding) {
+        File variant = new File(file.getPath() + suffix);
+        if (!variant.isFile()) {
+            return null;
+        }
+        return new StaticFile(variant, variant.length(), variant.lastModified(), contentType, contentEncoding,
+                null, null);
+    }
+
+    /**
+     * Returns {@code true} if the path is absolute, and has no hidden, {@code .} or {@code ..} segments.
+     */
+    static boolean isSafePath(String path) {
+        if (path.isEmpty() || path.charAt(0) != '/') {
+            return false;
+        }
+        boolean segmentStart = true;
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '\\' || c == 0 || c == ':' && File.separatorChar == '\\') {
+                return false;
+            }
+            if (c == '/') {
+                segmentStart = true;
+            } else {
+                if (segmentStart && c == '.') {
+                    return false;
+                }
+                segmentStart = false;
+            }
+        }
+        return !segmentStart;
+    }
+
+    private static final class CachedMetadata {
+        final StaticFile file;
+        final long checkedNanos;
+
+        CachedMetadata(StaticFile file, long checkedNanos) {
+            this.file = file;
+            this.checkedNanos = checkedNanos;
+        }
+    }
+
+    /**
+     * A reference counted {@link FileChannel} which is closed once it is released by the cache and all transfers.
+     */
+    static final class OpenFile extends AbstractReferenceCounted {
+        final StaticFile file;
+        final FileChannel channel;
+
+        OpenFile(StaticFile file, FileChannel channel) {
+            this.file = file;
+            this.channel = channel;
+        }
+
+        @Override
+        public OpenFile retain() {
+            super.retain();
+            return this;
+        }
+
+        @Override
+        public ReferenceCounted touch(Object hint) {
+            return this;
+        }
+
+        @Override
+        protected void deallocate() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close a file.", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,454 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.multipart;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.search.AbstractSearchProcessorFactory;
+import io.netty.buffer.search.SearchProcessor;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpConstants;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http.multipart.HttpPostRequestDecoder.ErrorDataDecoderException;
+import io.netty.util.CharsetUtil;
+import io.netty.util.internal.StringUtil;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+
+/**
+ * A streaming decoder for {@code multipart/form-data} bodies which uses bounded memory independent of the size of
+ * the parts.
+ * <p>
+ * Unlike {@link HttpPostMultipartRequestDecoder}, this decoder does not accumulate the body. The delimiters are
+ * found with a {@link SearchProcessor} which is compiled once per request, and the content of each part is passed
+ * to a {@link Sink} as retained slices of the received {@link HttpContent}s, so no copy is made. Only the bytes
+ * which may be the start of a delimiter and incomplete part headers are kept between two calls of
+ * {@link #offer(HttpContent)}, which is at most {@code maxHeaderSize} bytes.
+ * <p>
+ * Use {@link HttpDataSink} to store the parts in {@link HttpData}s created by a {@link HttpDataFactory}, for example
+ * to write file uploads directly to disk via {@link DiskFileUpload}.
+ */
+public class HttpPostMultipartStreamDecoder {
+
+    /**
+     * The default maximum size of the headers of a single part.
+     */
+    public static final int DEFAULT_MAX_HEADER_SIZE = 8192;
+
+    /**
+     * Receives the parts decoded by a {@link HttpPostMultipartStreamDecoder}.
+     */
+    public interface Sink {
+        /**
+         * Called when the headers of a new part were decoded.
+         */
+        void partStarted(HttpHeaders headers);
+
+        /**
+         * Called for each piece of content of the current part. The ownership of {@code content} is transferred to
+         * this method, so it must be released eventually.
+         */
+        void partContent(ByteBuf content);
+
+        /**
+         * Called once all content of the current part was received.
+         */
+        void partEnded();
+    }
+
+    private enum State {
+        PREAMBLE,
+        DELIMITER,
+        HEADERS,
+        BODY,
+        EPILOGUE
+    }
+
+    private final Sink sink;
+    private final byte[] delimiter;
+    private final SearchProcessor delimiterProcessor;
+    private final int maxHeaderSize;
+
+    private State state = State.PREAMBLE;
+    // The bytes which were not processed yet. Starts with a LF so the first delimiter can be found like all others.
+    private ByteBuf remaining = Unpooled.wrappedBuffer(new byte[] { HttpConstants.LF });
+    private HttpHeaders partHeaders;
+    private int headerSize;
+    private boolean destroyed;
+
+    /**
+     * Creates a new instance for the given request, which must have a {@code multipart/form-data} content type.
+     */
+    public HttpPostMultipartStreamDecoder(HttpRequest request, Sink sink) {
+        this(request, sink, DEFAULT_MAX_HEADER_SIZE);
+    }
+
+    /**
+     * Creates a new instance for the given request, which must have a {@code multipart/form-data} content type.
+     *
+     * @param maxHeaderSize the maximum size of the headers of a single part.
+     */
+    public HttpPostMultipartStreamDecoder(HttpRequest request, Sink sink, int maxHeaderSize) {
+        this(sink, multipartDataBoundary(request), maxHeaderSize);
+    }
+
+    private HttpPostMultipartStreamDecoder(Sink sink, String dashBoundary, int maxHeaderSize) {
+        this.sink = checkNotNull(sink, "sink");
+        this.maxHeaderSize = checkPositive(maxHeaderSize, "maxHeaderSize");
+        delimiter = ('\n' + dashBoundary).getBytes(CharsetUtil.US_ASCII);
+        delimiterProcessor = AbstractSearchProcessorFactory.newKmpSearchProcessorFactory(delimiter)
+                .newSearchProcessor();
+    }
+
+    private static String multipartDataBoundary(HttpRequest request) {
+        String contentType = request.headers().get(HttpHeaderNames.CONTENT_TYPE);
+        String[] boundary = contentType == null ? null : HttpPostRequestDecoder.getMultipartDataBoundary(contentType);
+        if (boundary == null) {
+            throw new ErrorDataDecoderException("Not a multipart request: " + contentType);
+        }
+        return boundary[0];
+    }
+
+    /**
+     * Decodes the given {@link HttpContent}. The {@link HttpContent} is not released by this method.
+     *
+     * @throws ErrorDataDecoderException if the body is malformed.
+     */
+    public HttpPostMultipartStreamDecoder offer(HttpContent content) {
+        checkDestroyed();
+        ByteBuf buf = content.content();
+        ByteBuf in;
+        if (remaining == null) {
+            in = buf.retainedDuplicate();
+        } else {
+            in = buf.alloc().compositeBuffer(2)
+                    .addComponent(true, remaining)
+                    .addComponent(true, buf.retainedDuplicate());
+            remaining = null;
+        }
+        try {
+            decode(in);
+            if (in.isReadable()) {
+                // Copy the few bytes which are left so the buffer of the content can be released.
+                remaining = in.copy();
+            }
+        } finally {
+            in.release();
+        }
+
+        if (content instanceof LastHttpContent && state != State.EPILOGUE) {
+            throw new ErrorDataDecoderException("Multipart body ended before the close delimiter");
+        }
+        return this;
+    }
+
+    /**
+     * Returns {@code true} if the close delimiter was received.
+     */
+    public boolean isEndOfData() {
+        return state == State.EPILOGUE;
+    }
+
+    /**
+     * Releases all resources held by this decoder.
+     */
+    public void destroy() {
+        if (!destroyed) {
+            destroyed = true;
+            if (remaining != null) {
+                remaining.release();
+                remaining = null;
+            }
+        }
+    }
+
+    private void checkDestroyed() {
+        if (destroyed) {
+            throw new IllegalStateException(StringUtil.simpleClassName(HttpPostMultipartStreamDecoder.class)
+                    + " was destroyed already");
+        }
+    }
+
+    private void decode(ByteBuf in) {
+        for (;;) {
+            switch (state) {
+            case PREAMBLE: {
+                int delimiterEnd = findDelimiter(in);
+                if (delimiterEnd == -1) {
+                    // Keep only the bytes which may be the start of the delimiter.
+                    in.skipBytes(Math.max(0, in.readableBytes() - delimiter.length));
+                    return;
+                }
+                in.readerIndex(delimiterEnd + 1);
+                state = State.DELIMITER;
+                break;
+            }
+            case DELIMITER: {
+                int readerIndex = in.readerIndex();
+                if (in.readableBytes() >= 2 && in.getByte(readerIndex) == '-' && in.getByte(readerIndex + 1) == '-') {
+                    // The close delimiter.
+                    in.skipBytes(in.readableBytes());
+                    state = State.EPILOGUE;
+                    return;
+                }
+                // Skip the transport padding and the line break.
+                int lf = in.indexOf(readerIndex, in.writerIndex(), HttpConstants.LF);
+                if (lf == -1) {
+                    checkHeaderSize(in.readableBytes());
+                    return;
+                }
+                in.readerIndex(lf + 1);
+                partHeaders = new DefaultHttpHeaders();
+                headerSize = 0;
+                state = State.HEADERS;
+                break;
+            }
+            case HEADERS: {
+                int readerIndex = in.readerIndex();
+                int lf = in.indexOf(readerIndex, in.writerIndex(), HttpConstants.LF);
+                if (lf == -1) {
+                    checkHeaderSize(headerSize + in.readableBytes());
+                    return;
+                }
+                int lineEnd = lf;
+                if (lineEnd > readerIndex && in.getByte(lineEnd - 1) == HttpConstants.CR) {
+                    lineEnd--;
+                }
+                in.readerIndex(lf + 1);
+                if (lineEnd == readerIndex) {
+                    HttpHeaders headers = partHeaders;
+                    partHeaders = null;
+                    state = State.BODY;
+                    sink.partStarted(headers);
+                    break;
+                }
+                headerSize += lineEnd - readerIndex;
+                checkHeaderSize(headerSize);
+                String line = in.toString(readerIndex, lineEnd - readerIndex, CharsetUtil.UTF_8);
+                int colon = line.indexOf(':');
+                if (colon <= 0) {
+                    throw new ErrorDataDecoderException("Invalid part header: " + line);
+                }
+                partHeaders.add(line.substring(0, colon).trim(), line.substring(colon + 1).trim());
+                break;
+            }
+            case BODY: {
+                int delimiterEnd = findDelimiter(in);
+                if (delimiterEnd == -1) {
+                    // Keep the bytes which may be the start of the delimiter, including a CR in front of it.
+                    int length = in.readableBytes() - delimiter.length;
+                    if (length > 0) {
+                        sink.partContent(in.readRetainedSlice(length));
+                    }
+                    return;
+                }
+                int contentEnd = delimiterEnd + 1 - delimiter.length;
+                if (contentEnd > in.readerIndex() && in.getByte(contentEnd - 1) == HttpConstants.CR) {
+                    contentEnd--;
+                }
+                int length = contentEnd - in.readerIndex();
+                if (length > 0) {
+                    sink.partContent(in.readRetainedSlice(length));
+                }
+                in.readerIndex(delimiterEnd + 1);
+                state = State.DELIMITER;
+                sink.partEnded();
+                break;
+            }
+            case EPILOGUE:
+                in.skipBytes(in.readableBytes());
+                return;
+            default:
+                throw new Error();
+            }
+        }
+    }
+
+    private int findDelimiter(ByteBuf in) {
+        delimiterProcessor.reset();
+        return in.forEachByte(delimiterProcessor);
+    }
+
+    private void checkHeaderSize(int size) {
+        if (size > maxHeaderSize) {
+            throw new ErrorDataDecoderException("Part headers are larger than " + maxHeaderSize + " bytes");
+        }
+    }
+
+    /**
+     * A {@link Sink} which stores the parts in {@link HttpData}s created by a {@link HttpDataFactory}. Parts with a
+     * {@code filename} are stored as {@link FileUpload}s, all others as {@link Attribute}s.
+     * <p>
+     * The content is added to the {@link HttpData} as it is received, so a {@link DiskFileUpload} writes it to its
+     * file without accumulating it first.
+     */
+    public static class HttpDataSink implements Sink {
+        private final HttpDataFactory factory;
+        private final HttpRequest request;
+        private final Charset charset;
+        private final List<InterfaceHttpData> bodyHttpDatas = new ArrayList<InterfaceHttpData>();
+        private HttpData currentData;
+
+        public HttpDataSink(HttpDataFactory factory, HttpRequest request) {
+            this(factory, request, HttpConstants.DEFAULT_CHARSET);
+        }
+
+        public HttpDataSink(HttpDataFactory factory, HttpRequest request, Charset charset) {
+            this.factory = checkNotNull(factory, "factory");
+            this.request = checkNotNull(request, "request");
+            this.charset = checkNotNull(charset, "charset");
+        }
+
+        @Override
+        public void partStarted(HttpHeaders headers) {
+            String name = null;
+            String filename = null;
+            String disposition = headers.get(HttpHeaderNames.CONTENT_DISPOSITION);
+            if (disposition != null) {
+                for (String parameter : splitParameters(disposition)) {
+                    int equals = parameter.indexOf('=');
+                    if (equals == -1) {
+                        continue;
+                    }
+                    String key = parameter.substring(0, equals).trim();
+                    String value = unquote(parameter.substring(equals + 1).trim());
+                    if (HttpHeaderValues.NAME.contentEqualsIgnoreCase(key)) {
+                        name = value;
+                    } else if (HttpHeaderValues.FILENAME.contentEqualsIgnoreCase(key)) {
+                        filename = value;
+                    }
+                }
+            }
+            if (name == null) {
+                throw new ErrorDataDecoderException("Part has no name: " + disposition);
+            }
+
+            Charset partCharset = charset;
+            String contentType = headers.get(HttpHeaderNames.CONTENT_TYPE);
+            if (contentType != null) {
+                String charsetName = charsetOf(contentType);
+                if (charsetName != null) {
+                    try {
+                        partCharset = Charset.forName(charsetName);
+                    } catch (IllegalArgumentException e) {
+                        throw new ErrorDataDecoderException(e);
+                    }
+                }
+            }
+
+            if (filename != null) {
+                String transferEncoding = headers.get(HttpHeaderNames.CONTENT_TRANSFER_ENCODING);
+                currentData = factory.createFileUpload(request, name, filename,
+                        contentType == null ? HttpPostBodyUtil.DEFAULT_BINARY_CONTENT_TYPE : contentType,
+                        transferEncoding == null ? HttpPostBodyUtil.TransferEncodingMechanism.BINARY.value() :
+                                transferEncoding,
+                        partCharset, 0);
+            } else {
+                currentData = factory.createAttribute(request, name);
+                currentData.setCharset(partCharset);
+            }
+        }
+
+        @Override
+        public void partContent(ByteBuf content) {
+            try {
+                currentData.addContent(content, false);
+            } catch (IOException e) {
+                throw new ErrorDataDecoderException(e);
+            }
+        }
+
+        @Override
+        public void partEnded() {
+            HttpData data = currentData;
+            currentData = null;
+            try {
+                data.addContent(Unpooled.EMPTY_BUFFER, true);
+            } catch (IOException e) {
+                throw new ErrorDataDecoderException(e);
+            }
+            dataDecoded(data);
+        }
+
+        /**
+         * Called once a part was decoded completely. By default it is added to {@link #getBodyHttpDatas()}.
+         */
+        protected void dataDecoded(InterfaceHttpData data) {
+            bodyHttpDatas.add(data);
+        }
+
+        /**
+         * Returns all {@link InterfaceHttpData}s which were decoded so far.
+         */
+        public List<InterfaceHttpData> getBodyHttpDatas() {
+            return bodyHttpDatas;
+        }
+
+        /**
+         * Releases all {@link HttpData}s of the request via {@link HttpDataFactory#cleanRequestHttpData(HttpRequest)}.
+         */
+        public void destroy() {
+            currentData = null;
+            factory.cleanRequestHttpData(request);
+        }
+
+        private static List<String> splitParameters(String value) {
+            List<String> parameters = new ArrayList<String>(4);
+            boolean quoted = false;
+            int start = 0;
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"') {
+                    quoted = !quoted;
+                } else if (c == ';' && !quoted) {
+                    parameters.add(value.substring(start, i));
+                    start = i + 1;
+                }
+            }
+            parameters.add(value.substring(start));
+            return parameters;
+        }
+
+        private static String charsetOf(String contentType) {
+            for (String parameter : splitParameters(contentType)) {
+                int equals = parameter.indexOf('=');
+                if (equals != -1 &&
+                        HttpHeaderValues.CHARSET.contentEqualsIgnoreCase(parameter.substring(0, equals).trim())) {
+                    return unquote(parameter.substring(equals + 1).trim());
+                }
+            }
+            return null;
+        }
+
+        private static String unquote(String value) {
+            if (value.length() >= 2 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"') {
+                return value.substring(1, value.length() - 1);
+            }
+            return value;
+        }
+    }
+}
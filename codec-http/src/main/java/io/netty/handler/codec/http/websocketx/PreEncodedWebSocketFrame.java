@@ -0,0 +1,242 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.websocketx;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.CodecException;
+import io.netty.handler.codec.compression.ZlibCodecFactory;
+import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtension;
+
+import static io.netty.util.internal.ObjectUtil.checkInRange;
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+
+/**
+ * A web socket frame which was encoded into the wire protocol version 8 (and 13) format already, so that the same
+ * message can be written to many channels while it is encoded only once.
+ * <p>
+ * The frame may optionally carry a second encoding of the same message, of which the payload is compressed as
+ * specified by the {@code permessage-deflate} extension, without using any previous compression context. The
+ * {@code permessage-deflate} encoder of a channel uses that encoding if the extension was negotiated and the
+ * window size matches, all other channels get the uncompressed one. {@link WebSocket08FrameEncoder} writes the bytes
+ * out without encoding them again.
+ * <p>
+ * As web socket clients need to mask every frame with a new key, pre-encoded frames can only be sent by servers.
+ *
+ * @see WebSocketFrameBroadcaster
+ */
+public final class PreEncodedWebSocketFrame extends WebSocketFrame {
+
+    private static final int MEM_LEVEL = 8;
+
+    private final int encodedLength;
+    private final int compressedWindowBits;
+
+    private PreEncodedWebSocketFrame(boolean finalFragment, int rsv, ByteBuf content, int encodedLength,
+                                     int compressedWindowBits) {
+        super(finalFragment, rsv, content);
+        this.encodedLength = encodedLength;
+        this.compressedWindowBits = compressedWindowBits;
+    }
+
+    /**
+     * Encodes the given frame. The frame is not released.
+     *
+     * @param alloc the allocator of the encoded frame.
+     * @param frame the frame to encode.
+     */
+    public static PreEncodedWebSocketFrame encode(ByteBufAllocator alloc, WebSocketFrame frame) {
+        checkNotNull(alloc, "alloc");
+        checkNotNull(frame, "frame");
+        ByteBuf payload = frame.content();
+        ByteBuf content = alloc.buffer(headerLength(payload.readableBytes()) + payload.readableBytes());
+        writeFrame(content, frame, frame.rsv(), payload);
+        return new PreEncodedWebSocketFrame(frame.isFinalFragment(), frame.rsv(), content, content.readableBytes(), 0);
+    }
+
+    /**
+     * Encodes the given frame, and also a {@code permessage-deflate} compressed version of it if the frame is a
+     * non-empty text or binary frame which is a complete message. The frame is not released.
+     *
+     * @param alloc the allocator of the encoded frame.
+     * @param frame the frame to encode.
+     * @param compressionLevel the compression level, from {@code 0} to {@code 9}.
+     * @param windowBits the base two logarithm of the compression window size, from {@code 9} to {@code 15}.
+     *                   Only channels which negotiated a window of at least this size can use the compressed frame.
+     */
+    public static PreEncodedWebSocketFrame encode(ByteBufAllocator alloc, WebSocketFrame frame,
+                                                  int compressionLevel, int windowBits) {
+        checkInRange(compressionLevel, 0, 9, "compressionLevel");
+        checkInRange(windowBits, 9, 15, "windowBits");
+        checkNotNull(alloc, "alloc");
+        checkNotNull(frame, "frame");
+        ByteBuf payload = frame.content();
+        if (!frame.isFinalFragment() || frame.rsv() != 0 || !payload.isReadable() ||
+            !(frame instanceof TextWebSocketFrame || frame instanceof BinaryWebSocketFrame)) {
+            return encode(alloc, frame);
+        }
+
+        ByteBuf compressed = compress(payload, compressionLevel, windowBits);
+        try {
+            ByteBuf content = alloc.buffer(headerLength(payload.readableBytes()) + payload.readableBytes() +
+                    headerLength(compressed.readableBytes()) + compressed.readableBytes());
+            writeFrame(content, frame, frame.rsv(), payload);
+            int encodedLength = content.readableBytes();
+            writeFrame(content, frame, WebSocketExtension.RSV1, compressed);
+            return new PreEncodedWebSocketFrame(true, frame.rsv(), content, encodedLength, windowBits);
+        } finally {
+            compressed.release();
+        }
+    }
+
+    private static ByteBuf compress(ByteBuf payload, int compressionLevel, int windowBits) {
+        EmbeddedChannel encoder = new EmbeddedChannel(ZlibCodecFactory.newZlibEncoder(
+                ZlibWrapper.NONE, compressionLevel, windowBits, MEM_LEVEL));
+        try {
+            encoder.writeOutbound(payload.retainedDuplicate());
+            ByteBuf compressed = encoder.alloc().buffer();
+            for (;;) {
+                ByteBuf part = encoder.readOutbound();
+                if (part == null) {
+                    break;
+                }
+                compressed.writeBytes(part);
+                part.release();
+            }
+            // Remove the tail of the sync flush, see https://tools.ietf.org/html/rfc7692#section-7.2.1
+            if (compressed.readableBytes() < 4 || compressed.getInt(compressed.writerIndex() - 4) != 0x0000ffff) {
+                compressed.release();
+                throw new CodecException("cannot read compressed buffer");
+            }
+            compressed.writerIndex(compressed.writerIndex() - 4);
+            return compressed;
+        } finally {
+            encoder.finishAndReleaseAll();
+        }
+    }
+
+    private static int headerLength(int length) {
+        if (length <= 125) {
+            return 2;
+        }
+        return length <= 0xFFFF ? 4 : 10;
+    }
+
+    private static void writeFrame(ByteBuf out, WebSocketFrame frame, int rsv, ByteBuf payload) {
+        int length = payload.readableBytes();
+        int b0 = 0;
+        if (frame.isFinalFragment()) {
+            b0 |= 1 << 7;
+        }
+        b0 |= rsv % 8 << 4;
+        b0 |= WebSocket08FrameEncoder.opcode(frame) % 128;
+        out.writeByte(b0);
+        if (length <= 125) {
+            out.writeByte(length);
+        } else if (length <= 0xFFFF) {
+            out.writeByte(126);
+            out.writeShort(length);
+        } else {
+            out.writeByte(127);
+            out.writeLong(length);
+        }
+        out.writeBytes(payload, payload.readerIndex(), length);
+    }
+
+    /**
+     * Returns the encoded frame which is written by {@link WebSocket08FrameEncoder}.
+     */
+    public ByteBuf encodedFrame() {
+        return content().slice(content().readerIndex(), encodedLength);
+    }
+
+    /**
+     * Returns {@code true} if this frame also carries a {@code permessage-deflate} compressed encoding.
+     */
+    public boolean hasCompressedFrame() {
+        return compressedWindowBits != 0;
+    }
+
+    /**
+     * Returns the base two logarithm of the window size which was used to compress the compressed encoding, or
+     * {@code 0} if there is none.
+     */
+    public int compressedWindowBits() {
+        return compressedWindowBits;
+    }
+
+    /**
+     * Returns a new frame which shares the content of this one, and of which the {@link #encodedFrame()} is the
+     * compressed encoding of this frame. The reference count of this frame is increased by one.
+     *
+     * @throws IllegalStateException if this frame has no compressed encoding.
+     */
+    public PreEncodedWebSocketFrame retainedCompressedFrame() {
+        if (!hasCompressedFrame()) {
+            throw new IllegalStateException("no compressed frame");
+        }
+        ByteBuf content = content();
+        int compressedLength = content.readableBytes() - encodedLength;
+        return new PreEncodedWebSocketFrame(true, rsv() | WebSocketExtension.RSV1,
+                content.retainedSlice(content.readerIndex() + encodedLength, compressedLength), compressedLength, 0);
+    }
+
+    @Override
+    public PreEncodedWebSocketFrame copy() {
+        return (PreEncodedWebSocketFrame) super.copy();
+    }
+
+    @Override
+    public PreEncodedWebSocketFrame duplicate() {
+        return (PreEncodedWebSocketFrame) super.duplicate();
+    }
+
+    @Override
+    public PreEncodedWebSocketFrame retainedDuplicate() {
+        return (PreEncodedWebSocketFrame) super.retainedDuplicate();
+    }
+
+    @Override
+    public PreEncodedWebSocketFrame replace(ByteBuf content) {
+        return new PreEncodedWebSocketFrame(isFinalFragment(), rsv(), content, encodedLength, compressedWindowBits);
+    }
+
+    @Override
+    public PreEncodedWebSocketFrame retain() {
+        super.retain();
+        return this;
+    }
+
+    @Override
+    public PreEncodedWebSocketFrame retain(int increment) {
+        super.retain(increment);
+        return this;
+    }
+
+    @Override
+    public PreEncodedWebSocketFrame touch() {
+        super.touch();
+        return this;
+    }
+
+    @Override
+    public PreEncodedWebSocketFrame touch(Object hint) {
+        super.touch(hint);
+        return this;
+    }
+}
@@ -36,6 +36,7 @@
 package io.netty.handler.codec.http.websocketx;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.util.ByteProcessor;
 
 /**
@@ -69,13 +70,25 @@ final class Utf8Validator implements ByteProcessor {
     private boolean checking;
 
     public void check(ByteBuf buffer) {
-        checking = true;
-        buffer.forEachByte(this);
+        check(buffer, buffer.readerIndex(), buffer.readableBytes());
     }
 
     void check(ByteBuf buffer, int index, int length) {
         checking = true;
-        buffer.forEachByte(index, length, this);
+        int end = index + length;
+        while (index < end) {
+            if (state == UTF8_ACCEPT && buffer.getByte(index) >= 0) {
+                // ASCII does not change the state, so skip the whole run at once.
+                index = ByteBufUtil.indexOfNonAscii(buffer, index, end);
+                if (index == -1) {
+                    return;
+                }
+            }
+            // Process the multi-byte sequence, up to the next character boundary.
+            do {
+                update(buffer.getByte(index++));
+            } while (state != UTF8_ACCEPT && index < end);
+        }
     }
 
     public void finish() {
@@ -90,6 +103,11 @@ final class Utf8Validator implements ByteProcessor {
 
     @Override
     public boolean process(byte b) throws Exception {
+        update(b);
+        return true;
+    }
+
+    private void update(byte b) {
         byte type = TYPES[b & 0xFF];
 
         codep = state != UTF8_ACCEPT ? b & 0x3f | codep << 6 : 0xff >> type & b;
@@ -101,7 +119,6 @@ final class Utf8Validator implements ByteProcessor {
             throw new CorruptedWebSocketFrameException(
                 WebSocketCloseStatus.INVALID_PAYLOAD_DATA, "bytes are not UTF-8");
         }
-        return true;
     }
 
     public boolean isChecking() {
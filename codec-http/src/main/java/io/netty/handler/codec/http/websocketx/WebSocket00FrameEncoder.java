@@ -40,6 +40,9 @@ public class WebSocket00FrameEncoder extends MessageToMessageEncoder<WebSocketFr
 
     @Override
     protected void encode(ChannelHandlerContext ctx, WebSocketFrame msg, List<Object> out) throws Exception {
+        if (msg instanceof PreEncodedWebSocketFrame) {
+            throw new UnsupportedOperationException("Cannot encode a pre-encoded frame in wire protocol version 0");
+        }
         if (msg instanceof TextWebSocketFrame) {
             // Text frame
             ByteBuf data = msg.content();
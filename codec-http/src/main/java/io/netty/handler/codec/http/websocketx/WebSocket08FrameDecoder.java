@@ -63,7 +63,6 @@ import io.netty.util.internal.ObjectUtil;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
 
-import java.nio.ByteOrder;
 import java.util.List;
 
 import static io.netty.buffer.ByteBufUtil.readBytes;
@@ -101,7 +100,7 @@ public class WebSocket08FrameDecoder extends ByteToMessageDecoder
     private int frameRsv;
     private int frameOpcode;
     private long framePayloadLength;
-    private byte[] maskingKey;
+    private int maskingKey;
     private int framePayloadLen1;
     private boolean receivedClosingHandshake;
     private State state = State.READING_FIRST;
@@ -300,10 +299,7 @@ public class WebSocket08FrameDecoder extends ByteToMessageDecoder
                 if (in.readableBytes() < 4) {
                     return;
                 }
-                if (maskingKey == null) {
-                    maskingKey = new byte[4];
-                }
-                in.readBytes(maskingKey);
+                maskingKey = in.readInt();
             }
             state = State.PAYLOAD;
         case PAYLOAD:
@@ -393,38 +389,7 @@ public class WebSocket08FrameDecoder extends ByteToMessageDecoder
     }
 
     private void unmask(ByteBuf frame) {
-        int i = frame.readerIndex();
-        int end = frame.writerIndex();
-
-        ByteOrder order = frame.order();
-
-        // Remark: & 0xFF is necessary because Java will do signed expansion from
-        // byte to int which we don't want.
-        long longMask = (long) (maskingKey[0] & 0xff) << 24
-                        | (maskingKey[1] & 0xff) << 16
-                        | (maskingKey[2] & 0xff) << 8
-                        | (maskingKey[3] & 0xff);
-        longMask |= longMask << 32;
-
-        // If the byte order of our buffers it little endian we have to bring our mask
-        // into the same format, because getInt() and writeInt() will use a reversed byte order
-        if (order == ByteOrder.LITTLE_ENDIAN) {
-            longMask = Long.reverseBytes(longMask);
-        }
-
-        for (int lim = end - 7; i < lim; i += 8) {
-            frame.setLong(i, frame.getLong(i) ^ longMask);
-        }
-
-        if (i < end - 3) {
-            frame.setInt(i, frame.getInt(i) ^ (int) longMask);
-            i += 4;
-        }
-
-        int maskOffset = 0;
-        for (; i < end; i++) {
-            frame.setByte(i, frame.getByte(i) ^ maskingKey[maskOffset++ & 3]);
-        }
+        WebSocketUtil.mask(frame, frame.readerIndex(), frame, frame.readerIndex(), frame.readableBytes(), maskingKey);
     }
 
     private void protocolViolation(ChannelHandlerContext ctx, ByteBuf in, String reason) {
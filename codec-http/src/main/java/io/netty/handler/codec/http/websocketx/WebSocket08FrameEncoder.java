@@ -61,8 +61,6 @@ import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.util.List;
 
 /**
@@ -103,27 +101,37 @@ public class WebSocket08FrameEncoder extends MessageToMessageEncoder<WebSocketFr
         this.maskPayload = maskPayload;
     }
 
-    @Override
-    protected void encode(ChannelHandlerContext ctx, WebSocketFrame msg, List<Object> out) throws Exception {
-        final ByteBuf data = msg.content();
-        byte[] mask;
-
-        byte opcode;
+    static byte opcode(WebSocketFrame msg) {
         if (msg instanceof TextWebSocketFrame) {
-            opcode = OPCODE_TEXT;
+            return OPCODE_TEXT;
         } else if (msg instanceof PingWebSocketFrame) {
-            opcode = OPCODE_PING;
+            return OPCODE_PING;
         } else if (msg instanceof PongWebSocketFrame) {
-            opcode = OPCODE_PONG;
+            return OPCODE_PONG;
         } else if (msg instanceof CloseWebSocketFrame) {
-            opcode = OPCODE_CLOSE;
+            return OPCODE_CLOSE;
         } else if (msg instanceof BinaryWebSocketFrame) {
-            opcode = OPCODE_BINARY;
+            return OPCODE_BINARY;
         } else if (msg instanceof ContinuationWebSocketFrame) {
-            opcode = OPCODE_CONT;
+            return OPCODE_CONT;
         } else {
             throw new UnsupportedOperationException("Cannot encode frame of type: " + msg.getClass().getName());
         }
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, WebSocketFrame msg, List<Object> out) throws Exception {
+        if (msg instanceof PreEncodedWebSocketFrame) {
+            if (maskPayload) {
+                throw new UnsupportedOperationException("Cannot mask a pre-encoded frame");
+            }
+            // The frame was encoded already, so just write out the bytes.
+            out.add(((PreEncodedWebSocketFrame) msg).encodedFrame().retain());
+            return;
+        }
+
+        final ByteBuf data = msg.content();
+        byte opcode = opcode(msg);
 
         int length = data.readableBytes();
 
@@ -175,48 +183,14 @@ public class WebSocket08FrameEncoder extends MessageToMessageEncoder<WebSocketFr
 
             // Write payload
             if (maskPayload) {
-                int random = PlatformDependent.threadLocalRandom().nextInt(Integer.MAX_VALUE);
-                mask = ByteBuffer.allocate(4).putInt(random).array();
-                buf.writeBytes(mask);
+                int mask = PlatformDependent.threadLocalRandom().nextInt(Integer.MAX_VALUE);
+                buf.writeInt(mask);
 
                 if (data.isReadable()) {
-
-                    ByteOrder srcOrder = data.order();
-                    ByteOrder dstOrder = buf.order();
-
-                    int i = data.readerIndex();
-                    int end = data.writerIndex();
-
-                    if (srcOrder == dstOrder) {
-                        // Use the optimized path only when byte orders match
-                        // Remark: & 0xFF is necessary because Java will do signed expansion from
-                        // byte to int which we don't want.
-                        long longMask = (long) (mask[0] & 0xff) << 24
-                                        | (mask[1] & 0xff) << 16
-                                        | (mask[2] & 0xff) << 8
-                                        | (mask[3] & 0xff);
-                        longMask |= longMask << 32;
-
-                        // If the byte order of our buffers it little endian we have to bring our mask
-                        // into the same format, because getInt() and writeInt() will use a reversed byte order
-                        if (srcOrder == ByteOrder.LITTLE_ENDIAN) {
-                            longMask = Long.reverseBytes(longMask);
-                        }
-
-                        for (int lim = end - 7; i < lim; i += 8) {
-                            buf.writeLong(data.getLong(i) ^ longMask);
-                        }
-
-                        if (i < end - 3) {
-                            buf.writeInt(data.getInt(i) ^ (int) longMask);
-                            i += 4;
-                        }
-                    }
-                    int maskOffset = 0;
-                    for (; i < end; i++) {
-                        byte byteData = data.getByte(i);
-                        buf.writeByte(byteData ^ mask[maskOffset++ & 3]);
-                    }
+                    int writerIndex = buf.writerIndex();
+                    buf.ensureWritable(length);
+                    WebSocketUtil.mask(data, data.readerIndex(), buf, writerIndex, length, mask);
+                    buf.writerIndex(writerIndex + length);
                 }
                 out.add(buf);
             } else {
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.websocketx;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.ChannelGroupFuture;
+import io.netty.channel.group.ChannelMatcher;
+import io.netty.channel.group.ChannelMatchers;
+
+import static io.netty.util.internal.ObjectUtil.checkInRange;
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+
+/**
+ * Writes the same web socket frame to all the channels of a {@link ChannelGroup}, while the frame is encoded, and
+ * optionally compressed, only once. The channels need to be the server side of web socket connections.
+ * <p>
+ * Each frame is turned into a {@link PreEncodedWebSocketFrame} of which every channel gets a retained duplicate, so
+ * the content is shared by all of them.
+ */
+public final class WebSocketFrameBroadcaster {
+
+    private final ChannelGroup group;
+    private final ByteBufAllocator alloc;
+    private final boolean compress;
+    private final int compressionLevel;
+    private final int windowBits;
+
+    /**
+     * Creates a new instance which does not compress the frames.
+     *
+     * @param group the channels to write to.
+     */
+    public WebSocketFrameBroadcaster(ChannelGroup group) {
+        this(group, ByteBufAllocator.DEFAULT, false, 6, 15);
+    }
+
+    /**
+     * Creates a new instance which also compresses the text and binary frames, for the channels which negotiated the
+     * {@code permessage-deflate} extension.
+     *
+     * @param group the channels to write to.
+     * @param compressionLevel the compression level, from {@code 0} to {@code 9}.
+     * @param windowBits the base two logarithm of the compression window size, from {@code 9} to {@code 15}.
+     */
+    public WebSocketFrameBroadcaster(ChannelGroup group, int compressionLevel, int windowBits) {
+        this(group, ByteBufAllocator.DEFAULT, true, compressionLevel, windowBits);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param group the channels to write to.
+     * @param alloc the allocator of the encoded frames.
+     * @param compress {@code true} to also compress the text and binary frames.
+     * @param compressionLevel the compression level, from {@code 0} to {@code 9}.
+     * @param windowBits the base two logarithm of the compression window size, from {@code 9} to {@code 15}.
+     */
+    public WebSocketFrameBroadcaster(ChannelGroup group, ByteBufAllocator alloc, boolean compress,
+                                     int compressionLevel, int windowBits) {
+        this.group = checkNotNull(group, "group");
+        this.alloc = checkNotNull(alloc, "alloc");
+        this.compress = compress;
+        this.compressionLevel = checkInRange(compressionLevel, 0, 9, "compressionLevel");
+        this.windowBits = checkInRange(windowBits, 9, 15, "windowBits");
+    }
+
+    /**
+     * Encodes the given frame, which is released afterwards.
+     */
+    public PreEncodedWebSocketFrame encode(WebSocketFrame frame) {
+        try {
+            return compress ? PreEncodedWebSocketFrame.encode(alloc, frame, compressionLevel, windowBits)
+                    : PreEncodedWebSocketFrame.encode(alloc, frame);
+        } finally {
+            frame.release();
+        }
+    }
+
+    /**
+     * Encodes the given frame once and writes it to all channels of the group. The frame is released.
+     */
+    public ChannelGroupFuture writeAndFlush(WebSocketFrame frame) {
+        return writeAndFlush(frame, ChannelMatchers.all());
+    }
+
+    /**
+     * Encodes the given frame once and writes it to the channels of the group which match the given
+     * {@link ChannelMatcher}. The frame is released.
+     */
+    public ChannelGroupFuture writeAndFlush(WebSocketFrame frame, ChannelMatcher matcher) {
+        PreEncodedWebSocketFrame encoded = frame instanceof PreEncodedWebSocketFrame ?
+                (PreEncodedWebSocketFrame) frame : encode(frame);
+        // Every channel gets its own retained duplicate, and the group releases the encoded frame afterwards.
+        return group.writeAndFlush(encoded, matcher);
+    }
+}
@@ -20,9 +20,11 @@ import io.netty.buffer.Unpooled;
 import io.netty.handler.codec.base64.Base64;
 import io.netty.util.CharsetUtil;
 import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.internal.MathUtil;
 import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.SuppressJava6Requirement;
 
+import java.nio.ByteOrder;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
@@ -160,6 +162,64 @@ final class WebSocketUtil {
         return (int) (minimum + fraction * (maximum - minimum));
     }
 
+    /**
+     * Masks or unmasks {@code length} bytes of {@code src} into {@code dst}, as specified by
+     * <a href="https://tools.ietf.org/html/rfc6455#section-5.3">RFC 6455, section 5.3</a>. Both may be the same
+     * buffer with the same index to unmask in place. The indexes of the buffers are not changed.
+     * <p>
+     * Eight bytes are masked at once, directly on the backing arrays or memory if both buffers have one, which
+     * avoids the bounds checks of the {@link ByteBuf} accessors.
+     *
+     * @param mask the masking key, of which the most significant byte is applied to the first byte.
+     */
+    static void mask(ByteBuf src, int srcIndex, ByteBuf dst, int dstIndex, int length, int mask) {
+        if (MathUtil.isOutOfBounds(srcIndex, length, src.capacity())) {
+            throw new IndexOutOfBoundsException("srcIndex: " + srcIndex + ", length: " + length +
+                    " (expected: range(0, " + src.capacity() + "))");
+        }
+        if (MathUtil.isOutOfBounds(dstIndex, length, dst.capacity())) {
+            throw new IndexOutOfBoundsException("dstIndex: " + dstIndex + ", length: " + length +
+                    " (expected: range(0, " + dst.capacity() + "))");
+        }
+
+        long longMask = mask & 0xFFFFFFFFL;
+        longMask |= longMask << 32;
+
+        int i = 0;
+        int longEnd = length & ~7;
+        if (PlatformDependent.hasUnsafe() && PlatformDependent.isUnaligned()) {
+            // The raw accessors use the native byte order.
+            long nativeMask = PlatformDependent.BIG_ENDIAN_NATIVE_ORDER ? longMask : Long.reverseBytes(longMask);
+            if (src.hasArray() && dst.hasArray()) {
+                byte[] srcArray = src.array();
+                byte[] dstArray = dst.array();
+                int srcOffset = src.arrayOffset() + srcIndex;
+                int dstOffset = dst.arrayOffset() + dstIndex;
+                for (; i < longEnd; i += 8) {
+                    PlatformDependent.putLong(dstArray, dstOffset + i,
+                            PlatformDependent.getLong(srcArray, srcOffset + i) ^ nativeMask);
+                }
+            } else if (src.hasMemoryAddress() && dst.hasMemoryAddress()) {
+                long srcAddress = src.memoryAddress() + srcIndex;
+                long dstAddress = dst.memoryAddress() + dstIndex;
+                for (; i < longEnd; i += 8) {
+                    PlatformDependent.putLong(dstAddress + i, PlatformDependent.getLong(srcAddress + i) ^ nativeMask);
+                }
+            }
+        }
+        if (i == 0 && src.order() == dst.order()) {
+            // If the byte order of our buffers it little endian we have to bring our mask
+            // into the same format, because getLong() and setLong() will use a reversed byte order
+            long orderedMask = src.order() == ByteOrder.LITTLE_ENDIAN ? Long.reverseBytes(longMask) : longMask;
+            for (; i < longEnd; i += 8) {
+                dst.setLong(dstIndex + i, src.getLong(srcIndex + i) ^ orderedMask);
+            }
+        }
+        for (; i < length; i++) {
+            dst.setByte(dstIndex + i, src.getByte(srcIndex + i) ^ mask >>> 24 - ((i & 3) << 3));
+        }
+    }
+
     /**
      * A private constructor to ensure that instances of this class cannot be made
      */
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.websocketx.extensions.compression;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+
+/**
+ * Bounds the memory which is used by the compression contexts of web socket connections which use context takeover,
+ * and may be shared by all of them.
+ * <p>
+ * A connection with context takeover keeps its own deflater or inflater, which needs
+ * {@link #deflaterMemory(int, int)} or {@link #inflaterMemory(int)} bytes. Once the budget is exhausted, new
+ * connections negotiate {@code server_no_context_takeover} and {@code client_no_context_takeover}, and the compression
+ * contexts of such connections are shared by all the connections of an event loop.
+ */
+public final class CompressionMemoryBudget {
+
+    private final long maxBytes;
+    private final AtomicLong usedBytes = new AtomicLong();
+
+    /**
+     * Creates a new budget.
+     *
+     * @param maxBytes the maximum number of bytes which may be used by compression contexts.
+     */
+    public CompressionMemoryBudget(long maxBytes) {
+        this.maxBytes = checkPositive(maxBytes, "maxBytes");
+    }
+
+    /**
+     * Returns the maximum number of bytes which may be used by compression contexts.
+     */
+    public long maxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Returns the number of bytes which are used by compression contexts right now.
+     */
+    public long usedBytes() {
+        return usedBytes.get();
+    }
+
+    /**
+     * Returns the memory which is used by a deflater, as documented by zlib.
+     *
+     * @param windowBits the base two logarithm of the window size, from {@code 8} to {@code 15}.
+     * @param memLevel the memory level, from {@code 1} to {@code 9}.
+     */
+    public static long deflaterMemory(int windowBits, int memLevel) {
+        return (1L << windowBits + 2) + (1L << memLevel + 9);
+    }
+
+    /**
+     * Returns the memory which is used by an inflater, as documented by zlib.
+     *
+     * @param windowBits the base two logarithm of the window size, from {@code 8} to {@code 15}.
+     */
+    public static long inflaterMemory(int windowBits) {
+        return (1L << windowBits) + 7 * 1024;
+    }
+
+    /**
+     * Returns {@code true} if the given number of bytes is available right now, without reserving it.
+     */
+    boolean isAvailable(long bytes) {
+        return usedBytes.get() <= maxBytes - bytes;
+    }
+
+    boolean tryReserve(long bytes) {
+        for (;;) {
+            long used = usedBytes.get();
+            if (used > maxBytes - bytes) {
+                return false;
+            }
+            if (usedBytes.compareAndSet(used, used + bytes)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Reserves the given number of bytes, even if the budget is exceeded afterwards.
+     */
+    void reserve(long bytes) {
+        usedBytes.addAndGet(bytes);
+    }
+
+    void release(long bytes) {
+        usedBytes.addAndGet(-bytes);
+    }
+}
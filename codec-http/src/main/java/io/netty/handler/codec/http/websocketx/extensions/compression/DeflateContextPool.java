@@ -0,0 +1,126 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.websocketx.extensions.compression;
+
+import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.SystemPropertyUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A per thread pool of {@link Deflater}s and {@link Inflater}s, which are shared by the connections of an event loop
+ * that do not use context takeover. A connection only holds an instance while it is compressing or decompressing a
+ * message.
+ */
+final class DeflateContextPool {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(DeflateContextPool.class);
+
+    private static final int MAX_POOLED_CONTEXTS;
+
+    static {
+        MAX_POOLED_CONTEXTS = Math.max(0, SystemPropertyUtil.getInt(
+                "io.netty.handler.codec.http.websocketx.extensions.compression.maxPooledContexts", 16));
+        logger.debug("-Dio.netty.handler.codec.http.websocketx.extensions.compression.maxPooledContexts: {}",
+                MAX_POOLED_CONTEXTS);
+    }
+
+    private static final FastThreadLocal<DeflateContextPool> POOL = new FastThreadLocal<DeflateContextPool>() {
+        @Override
+        protected DeflateContextPool initialValue() {
+            return new DeflateContextPool();
+        }
+
+        @Override
+        protected void onRemoval(DeflateContextPool pool) {
+            pool.clear();
+        }
+    };
+
+    private final ArrayDeque<Deflater> deflaters = new ArrayDeque<Deflater>();
+    private final ArrayDeque<Inflater> inflaters = new ArrayDeque<Inflater>();
+
+    private DeflateContextPool() {
+    }
+
+    /**
+     * Returns the pool of the current thread.
+     */
+    static DeflateContextPool current() {
+        return POOL.get();
+    }
+
+    /**
+     * Returns {@code true} if a pooled {@link Deflater} can be used with the given parameters, which is the case if
+     * they match the ones of the JDK and the JDK supports sync flushes.
+     */
+    static boolean isDeflaterSupported(int windowBits, int memLevel) {
+        return PlatformDependent.javaVersion() >= 7 && windowBits == 15 && memLevel == 8;
+    }
+
+    Deflater borrowDeflater(int compressionLevel) {
+        Deflater deflater = deflaters.pollLast();
+        if (deflater == null) {
+            return new Deflater(compressionLevel, true);
+        }
+        deflater.setLevel(compressionLevel);
+        return deflater;
+    }
+
+    void returnDeflater(Deflater deflater) {
+        if (deflaters.size() < MAX_POOLED_CONTEXTS) {
+            deflater.reset();
+            deflaters.addLast(deflater);
+        } else {
+            deflater.end();
+        }
+    }
+
+    Inflater borrowInflater() {
+        Inflater inflater = inflaters.pollLast();
+        return inflater == null ? new Inflater(true) : inflater;
+    }
+
+    void returnInflater(Inflater inflater) {
+        if (inflaters.size() < MAX_POOLED_CONTEXTS) {
+            inflater.reset();
+            inflaters.addLast(inflater);
+        } else {
+            inflater.end();
+        }
+    }
+
+    private void clear() {
+        for (;;) {
+            Deflater deflater = deflaters.pollLast();
+            if (deflater == null) {
+                break;
+            }
+            deflater.end();
+        }
+        for (;;) {
+            Inflater inflater = inflaters.pollLast();
+            if (inflater == null) {
+                break;
+            }
+            inflater.end();
+        }
+    }
+}
@@ -21,6 +21,7 @@ import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.handler.codec.CodecException;
+import io.netty.handler.codec.compression.DecompressionException;
 import io.netty.handler.codec.compression.ZlibCodecFactory;
 import io.netty.handler.codec.compression.ZlibWrapper;
 import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
@@ -31,6 +32,8 @@ import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionDecod
 import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionFilter;
 
 import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 import static io.netty.util.internal.ObjectUtil.*;
 
@@ -50,8 +53,12 @@ abstract class DeflateDecoder extends WebSocketExtensionDecoder {
 
     private final boolean noContext;
     private final WebSocketExtensionFilter extensionDecoderFilter;
+    private final CompressionMemoryBudget budget;
 
+    private long reservedBytes;
+    private WebSocketCompressionMetrics metrics;
     private EmbeddedChannel decoder;
+    private Inflater inflater;
 
     /**
      * Constructor
@@ -60,8 +67,22 @@ abstract class DeflateDecoder extends WebSocketExtensionDecoder {
      * @param extensionDecoderFilter extension decoder filter.
      */
     DeflateDecoder(boolean noContext, WebSocketExtensionFilter extensionDecoderFilter) {
+        this(noContext, extensionDecoderFilter, null);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param noContext true to disable context takeover.
+     * @param extensionDecoderFilter extension decoder filter.
+     * @param budget the budget which the decompression context is accounted to if context takeover is used,
+     *               or {@code null}.
+     */
+    DeflateDecoder(boolean noContext, WebSocketExtensionFilter extensionDecoderFilter,
+                   CompressionMemoryBudget budget) {
         this.noContext = noContext;
         this.extensionDecoderFilter = checkNotNull(extensionDecoderFilter, "extensionDecoderFilter");
+        this.budget = budget;
     }
 
     /**
@@ -75,9 +96,26 @@ abstract class DeflateDecoder extends WebSocketExtensionDecoder {
 
     protected abstract int newRsv(WebSocketFrame msg);
 
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        metrics = WebSocketCompressionMetrics.getOrCreate(ctx.channel());
+        if (!noContext && budget != null) {
+            // The context takeover was negotiated already, so the context is accounted even if the budget is
+            // exhausted by now.
+            reservedBytes = CompressionMemoryBudget.inflaterMemory(
+                    PerMessageDeflateServerExtensionHandshaker.MAX_WINDOW_SIZE);
+            budget.reserve(reservedBytes);
+        }
+        super.handlerAdded(ctx);
+    }
+
     @Override
     protected void decode(ChannelHandlerContext ctx, WebSocketFrame msg, List<Object> out) throws Exception {
-        final ByteBuf decompressedContent = decompressContent(ctx, msg);
+        final ByteBuf decompressedContent = noContext ?
+                decompressContentPooled(ctx, msg) : decompressContent(ctx, msg);
+        if (metrics != null) {
+            metrics.recordRead(msg.content().readableBytes(), decompressedContent.readableBytes());
+        }
 
         final WebSocketFrame outMsg;
         if (msg instanceof TextWebSocketFrame) {
@@ -96,15 +134,110 @@ abstract class DeflateDecoder extends WebSocketExtensionDecoder {
     @Override
     public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
         cleanup();
+        releaseBudget();
         super.handlerRemoved(ctx);
     }
 
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
         cleanup();
+        releaseBudget();
         super.channelInactive(ctx);
     }
 
+    private void releaseBudget() {
+        if (reservedBytes != 0) {
+            budget.release(reservedBytes);
+            reservedBytes = 0;
+        }
+    }
+
+    /**
+     * Decompresses the content with an {@link Inflater} which is shared with the other channels of the event loop,
+     * and only held until the end of the message.
+     */
+    private ByteBuf decompressContentPooled(ChannelHandlerContext ctx, WebSocketFrame msg) {
+        if (inflater == null) {
+            if (!(msg instanceof TextWebSocketFrame) && !(msg instanceof BinaryWebSocketFrame)) {
+                throw new CodecException("unexpected initial frame type: " + msg.getClass().getName());
+            }
+            inflater = DeflateContextPool.current().borrowInflater();
+        }
+
+        ByteBuf content = msg.content();
+        boolean readable = content.isReadable();
+        boolean emptyDeflateBlock = EMPTY_DEFLATE_BLOCK.equals(content);
+
+        boolean appendFrameTail = appendFrameTail(msg);
+        ByteBuf heapContent = null;
+        ByteBuf decompressedContent = ctx.alloc().heapBuffer(content.readableBytes() << 1);
+        boolean success = false;
+        try {
+            int len = content.readableBytes();
+            if (content.hasArray() && !appendFrameTail) {
+                inflater.setInput(content.array(), content.arrayOffset() + content.readerIndex(), len);
+            } else {
+                int heapLength = len + (appendFrameTail ? FRAME_TAIL.readableBytes() : 0);
+                heapContent = ctx.alloc().heapBuffer(heapLength, heapLength);
+                heapContent.writeBytes(content, content.readerIndex(), len);
+                if (appendFrameTail) {
+                    heapContent.writeBytes(FRAME_TAIL, FRAME_TAIL.readerIndex(), FRAME_TAIL.readableBytes());
+                }
+                inflater.setInput(heapContent.array(), heapContent.arrayOffset(), heapLength);
+            }
+            inflate(decompressedContent);
+            success = true;
+        } catch (DataFormatException e) {
+            throw new DecompressionException(e);
+        } finally {
+            if (heapContent != null) {
+                heapContent.release();
+            }
+            if (!success) {
+                decompressedContent.release();
+                returnInflater();
+            }
+        }
+
+        // Correctly handle empty frames
+        // See https://github.com/netty/netty/issues/4348
+        if (!emptyDeflateBlock && readable && !decompressedContent.isReadable() &&
+            !(msg instanceof ContinuationWebSocketFrame)) {
+            decompressedContent.release();
+            throw new CodecException("cannot read uncompressed buffer");
+        }
+
+        if (msg.isFinalFragment()) {
+            returnInflater();
+        }
+        return decompressedContent;
+    }
+
+    private void inflate(ByteBuf out) throws DataFormatException {
+        for (;;) {
+            int writerIndex = out.writerIndex();
+            int numBytes = inflater.inflate(out.array(), out.arrayOffset() + writerIndex, out.writableBytes());
+            out.writerIndex(writerIndex + numBytes);
+            if (!out.isWritable()) {
+                // There may be more output even if all the input was consumed.
+                out.ensureWritable(Math.max(out.capacity(), 64));
+            } else if (inflater.needsInput() || inflater.finished()) {
+                break;
+            } else if (inflater.needsDictionary()) {
+                throw new DecompressionException("decompression failure, preset dictionary is not supported");
+            } else if (numBytes == 0) {
+                throw new DecompressionException("decompression failure, no progress");
+            }
+        }
+    }
+
+    private void returnInflater() {
+        if (inflater != null) {
+            DeflateContextPool.current().returnInflater(inflater);
+            inflater = null;
+        }
+    }
+
     private ByteBuf decompressContent(ChannelHandlerContext ctx, WebSocketFrame msg) {
         if (decoder == null) {
             if (!(msg instanceof TextWebSocketFrame) && !(msg instanceof BinaryWebSocketFrame)) {
@@ -152,6 +285,7 @@ abstract class DeflateDecoder extends WebSocketExtensionDecoder {
     }
 
     private void cleanup() {
+        returnInflater();
         if (decoder != null) {
             // Clean-up the previous encoder if not cleaned up correctly.
             decoder.finishAndReleaseAll();
@@ -28,8 +28,11 @@ import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.WebSocketFrame;
 import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionEncoder;
 import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionFilter;
+import io.netty.util.internal.EmptyArrays;
+import io.netty.util.internal.SuppressJava6Requirement;
 
 import java.util.List;
+import java.util.zip.Deflater;
 
 import static io.netty.handler.codec.http.websocketx.extensions.compression.PerMessageDeflateDecoder.*;
 import static io.netty.util.internal.ObjectUtil.*;
@@ -42,10 +45,15 @@ abstract class DeflateEncoder extends WebSocketExtensionEncoder {
 
     private final int compressionLevel;
     private final int windowSize;
-    private final boolean noContext;
+    private final int memLevel;
+    private final CompressionMemoryBudget budget;
     private final WebSocketExtensionFilter extensionEncoderFilter;
 
+    private boolean noContext;
+    private long reservedBytes;
+    private WebSocketCompressionMetrics metrics;
     private EmbeddedChannel encoder;
+    private Deflater deflater;
 
     /**
      * Constructor
@@ -56,10 +64,27 @@ abstract class DeflateEncoder extends WebSocketExtensionEncoder {
      */
     DeflateEncoder(int compressionLevel, int windowSize, boolean noContext,
                    WebSocketExtensionFilter extensionEncoderFilter) {
+        this(compressionLevel, windowSize, 8, noContext, extensionEncoderFilter, null);
+    }
+
+    /**
+     * Constructor
+     * @param compressionLevel compression level of the compressor.
+     * @param windowSize maximum size of the window compressor buffer.
+     * @param memLevel memory level of the compressor.
+     * @param noContext true to disable context takeover.
+     * @param extensionEncoderFilter extension encoder filter.
+     * @param budget the budget of the compression context if context takeover is used, or {@code null}. If the
+     *               budget is exhausted, the context is discarded after every message.
+     */
+    DeflateEncoder(int compressionLevel, int windowSize, int memLevel, boolean noContext,
+                   WebSocketExtensionFilter extensionEncoderFilter, CompressionMemoryBudget budget) {
         this.compressionLevel = compressionLevel;
         this.windowSize = windowSize;
+        this.memLevel = memLevel;
         this.noContext = noContext;
         this.extensionEncoderFilter = checkNotNull(extensionEncoderFilter, "extensionEncoderFilter");
+        this.budget = budget;
     }
 
     /**
@@ -69,6 +94,20 @@ abstract class DeflateEncoder extends WebSocketExtensionEncoder {
         return extensionEncoderFilter;
     }
 
+    /**
+     * Returns the base two logarithm of the window size of the compressor.
+     */
+    int windowSize() {
+        return windowSize;
+    }
+
+    /**
+     * Discards the compression context, so the next frame is compressed without referring to previous frames.
+     */
+    void resetContext() {
+        cleanup();
+    }
+
     /**
      * @param msg the current frame.
      * @return the rsv bits to set in the compressed frame.
@@ -81,11 +120,40 @@ abstract class DeflateEncoder extends WebSocketExtensionEncoder {
      */
     protected abstract boolean removeFrameTail(WebSocketFrame msg);
 
+    /**
+     * Returns {@code true} if the compression context is discarded after every message.
+     */
+    boolean isNoContext() {
+        return noContext;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        metrics = WebSocketCompressionMetrics.getOrCreate(ctx.channel());
+        if (!noContext && budget != null) {
+            long bytes = CompressionMemoryBudget.deflaterMemory(windowSize, memLevel);
+            if (budget.tryReserve(bytes)) {
+                reservedBytes = bytes;
+            } else {
+                // The peer can always decompress messages which do not refer to previous ones.
+                noContext = true;
+            }
+        }
+        super.handlerAdded(ctx);
+    }
+
     @Override
     protected void encode(ChannelHandlerContext ctx, WebSocketFrame msg, List<Object> out) throws Exception {
         final ByteBuf compressedContent;
         if (msg.content().isReadable()) {
-            compressedContent = compressContent(ctx, msg);
+            if (noContext && DeflateContextPool.isDeflaterSupported(windowSize, memLevel)) {
+                compressedContent = compressContentPooled(ctx, msg);
+            } else {
+                compressedContent = compressContent(ctx, msg);
+            }
+            if (metrics != null) {
+                metrics.recordWrite(msg.content().readableBytes(), compressedContent.readableBytes());
+            }
         } else if (msg.isFinalFragment()) {
             // Set empty DEFLATE block manually for unknown buffer size
             // https://tools.ietf.org/html/rfc7692#section-7.2.3.6
@@ -111,13 +179,91 @@ abstract class DeflateEncoder extends WebSocketExtensionEncoder {
     @Override
     public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
         cleanup();
+        if (reservedBytes != 0) {
+            budget.release(reservedBytes);
+            reservedBytes = 0;
+        }
         super.handlerRemoved(ctx);
     }
 
+    /**
+     * Compresses the content with a {@link Deflater} which is shared with the other channels of the event loop, and
+     * only held until the end of the message.
+     */
+    private ByteBuf compressContentPooled(ChannelHandlerContext ctx, WebSocketFrame msg) {
+        if (deflater == null) {
+            deflater = DeflateContextPool.current().borrowDeflater(compressionLevel);
+        }
+
+        ByteBuf content = msg.content();
+        int len = content.readableBytes();
+        ByteBuf heapContent = null;
+        // Stored blocks add five bytes per 16KiB at most, the sync flush adds another five.
+        ByteBuf compressedContent = ctx.alloc().heapBuffer(len + (len >>> 12) + 16);
+        boolean success = false;
+        try {
+            if (content.hasArray()) {
+                deflater.setInput(content.array(), content.arrayOffset() + content.readerIndex(), len);
+            } else {
+                heapContent = ctx.alloc().heapBuffer(len, len);
+                heapContent.writeBytes(content, content.readerIndex(), len);
+                deflater.setInput(heapContent.array(), heapContent.arrayOffset(), len);
+            }
+            deflate(compressedContent);
+            // Do not keep a reference to the input.
+            deflater.setInput(EmptyArrays.EMPTY_BYTES);
+            success = true;
+        } finally {
+            if (heapContent != null) {
+                heapContent.release();
+            }
+            if (!success) {
+                compressedContent.release();
+                returnDeflater();
+            }
+        }
+
+        if (!compressedContent.isReadable()) {
+            compressedContent.release();
+            throw new CodecException("cannot read compressed buffer");
+        }
+
+        if (msg.isFinalFragment()) {
+            returnDeflater();
+        }
+
+        if (removeFrameTail(msg)) {
+            compressedContent.writerIndex(compressedContent.writerIndex() - FRAME_TAIL.readableBytes());
+        }
+        return compressedContent;
+    }
+
+    @SuppressJava6Requirement(reason = "Only used if DeflateContextPool.isDeflaterSupported(...) returns true")
+    private void deflate(ByteBuf out) {
+        for (;;) {
+            int writerIndex = out.writerIndex();
+            int numBytes = deflater.deflate(
+                    out.array(), out.arrayOffset() + writerIndex, out.writableBytes(), Deflater.SYNC_FLUSH);
+            out.writerIndex(writerIndex + numBytes);
+            if (out.isWritable()) {
+                // Everything was flushed.
+                break;
+            }
+            out.ensureWritable(out.capacity());
+        }
+    }
+
+    private void returnDeflater() {
+        if (deflater != null) {
+            DeflateContextPool.current().returnDeflater(deflater);
+            deflater = null;
+        }
+    }
+
     private ByteBuf compressContent(ChannelHandlerContext ctx, WebSocketFrame msg) {
         if (encoder == null) {
             encoder = new EmbeddedChannel(ZlibCodecFactory.newZlibEncoder(
-                    ZlibWrapper.NONE, compressionLevel, windowSize, 8));
+                    ZlibWrapper.NONE, compressionLevel, windowSize, memLevel));
         }
 
         encoder.writeOutbound(msg.content().retain());
@@ -156,6 +302,7 @@ abstract class DeflateEncoder extends WebSocketExtensionEncoder {
     }
 
     private void cleanup() {
+        returnDeflater();
         if (encoder != null) {
             // Clean-up the previous encoder if not cleaned up correctly.
             encoder.finishAndReleaseAll();
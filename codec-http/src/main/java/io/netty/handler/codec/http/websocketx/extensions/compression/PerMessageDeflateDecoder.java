@@ -51,6 +51,18 @@ class PerMessageDeflateDecoder extends DeflateDecoder {
         super(noContext, extensionDecoderFilter);
     }
 
+    /**
+     * Constructor
+     *
+     * @param noContext true to disable context takeover.
+     * @param extensionDecoderFilter extension decoder for per message deflate decoder.
+     * @param budget the budget of the decompression context, or {@code null}.
+     */
+    PerMessageDeflateDecoder(boolean noContext, WebSocketExtensionFilter extensionDecoderFilter,
+                             CompressionMemoryBudget budget) {
+        super(noContext, extensionDecoderFilter, budget);
+    }
+
     @Override
     public boolean acceptInboundMessage(Object msg) throws Exception {
         if (!super.acceptInboundMessage(msg)) {
@@ -18,6 +18,7 @@ package io.netty.handler.codec.http.websocketx.extensions.compression;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.PreEncodedWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.WebSocketFrame;
 import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtension;
@@ -56,6 +57,21 @@ class PerMessageDeflateEncoder extends DeflateEncoder {
         super(compressionLevel, windowSize, noContext, extensionEncoderFilter);
     }
 
+    /**
+     * Constructor
+     *
+     * @param compressionLevel compression level of the compressor.
+     * @param windowSize maximum size of the window compressor buffer.
+     * @param memLevel memory level of the compressor.
+     * @param noContext true to disable context takeover.
+     * @param extensionEncoderFilter extension filter for per message deflate encoder.
+     * @param budget the budget of the compression context, or {@code null}.
+     */
+    PerMessageDeflateEncoder(int compressionLevel, int windowSize, int memLevel, boolean noContext,
+                             WebSocketExtensionFilter extensionEncoderFilter, CompressionMemoryBudget budget) {
+        super(compressionLevel, windowSize, memLevel, noContext, extensionEncoderFilter, budget);
+    }
+
     @Override
     public boolean acceptOutboundMessage(Object msg) throws Exception {
         if (!super.acceptOutboundMessage(msg)) {
@@ -70,6 +86,13 @@ class PerMessageDeflateEncoder extends DeflateEncoder {
             return false;
         }
 
+        if (wsFrame instanceof PreEncodedWebSocketFrame) {
+            PreEncodedWebSocketFrame preEncoded = (PreEncodedWebSocketFrame) wsFrame;
+            // Otherwise the uncompressed encoding is written, which is always allowed.
+            return !compressing && preEncoded.hasCompressedFrame() &&
+                   preEncoded.compressedWindowBits() <= windowSize();
+        }
+
         return ((wsFrame instanceof TextWebSocketFrame || wsFrame instanceof BinaryWebSocketFrame) &&
                 (wsFrame.rsv() & WebSocketExtension.RSV1) == 0) ||
                (wsFrame instanceof ContinuationWebSocketFrame && compressing);
@@ -89,6 +112,13 @@ class PerMessageDeflateEncoder extends DeflateEncoder {
     @Override
     protected void encode(ChannelHandlerContext ctx, WebSocketFrame msg,
                           List<Object> out) throws Exception {
+        if (msg instanceof PreEncodedWebSocketFrame) {
+            // The compressed encoding does not refer to any previous message, but the peer has the message in its
+            // window now, which our compression context does not know about.
+            resetContext();
+            out.add(((PreEncodedWebSocketFrame) msg).retainedCompressedFrame());
+            return;
+        }
         super.encode(ctx, msg, out);
 
         if (msg.isFinalFragment()) {
@@ -50,6 +50,8 @@ public final class PerMessageDeflateServerExtensionHandshaker implements WebSock
     private final boolean allowServerNoContext;
     private final boolean preferredClientNoContext;
     private final WebSocketExtensionFilterProvider extensionFilterProvider;
+    private final int memLevel;
+    private final CompressionMemoryBudget budget;
 
     /**
      * Constructor with default configuration.
@@ -105,6 +107,41 @@ public final class PerMessageDeflateServerExtensionHandshaker implements WebSock
             int preferredClientWindowSize,
             boolean allowServerNoContext, boolean preferredClientNoContext,
             WebSocketExtensionFilterProvider extensionFilterProvider) {
+        this(compressionLevel, allowServerWindowSize, preferredClientWindowSize, allowServerNoContext,
+             preferredClientNoContext, extensionFilterProvider, 8, null);
+    }
+
+    /**
+     * Constructor with custom configuration.
+     *
+     * @param compressionLevel
+     *            Compression level between 0 and 9 (default is 6).
+     * @param allowServerWindowSize
+     *            allows WebSocket client to customize the server inflater window size
+     *            (default is false).
+     * @param preferredClientWindowSize
+     *            indicates the preferred client window size to use if client inflater is customizable.
+     * @param allowServerNoContext
+     *            allows WebSocket client to activate server_no_context_takeover
+     *            (default is false).
+     * @param preferredClientNoContext
+     *            indicates if server prefers to activate client_no_context_takeover
+     *            if client is compatible with (default is false).
+     * @param extensionFilterProvider
+     *            provides server extension filters for per message deflate encoder and decoder.
+     * @param memLevel
+     *            Memory level of the compressor between 1 and 9 (default is 8). Values other than 8 need
+     *            jzlib.
+     * @param budget
+     *            bounds the memory of the compression contexts of all the connections which share it, or
+     *            {@code null}. Once it is exhausted, server_no_context_takeover and client_no_context_takeover
+     *            are negotiated for new connections, of which the contexts are pooled per event loop.
+     */
+    public PerMessageDeflateServerExtensionHandshaker(int compressionLevel, boolean allowServerWindowSize,
+            int preferredClientWindowSize,
+            boolean allowServerNoContext, boolean preferredClientNoContext,
+            WebSocketExtensionFilterProvider extensionFilterProvider,
+            int memLevel, CompressionMemoryBudget budget) {
         if (preferredClientWindowSize > MAX_WINDOW_SIZE || preferredClientWindowSize < MIN_WINDOW_SIZE) {
             throw new IllegalArgumentException(
                     "preferredServerWindowSize: " + preferredClientWindowSize + " (expected: 8-15)");
@@ -113,12 +150,18 @@ public final class PerMessageDeflateServerExtensionHandshaker implements WebSock
             throw new IllegalArgumentException(
                     "compressionLevel: " + compressionLevel + " (expected: 0-9)");
         }
+        if (memLevel < 1 || memLevel > 9) {
+            throw new IllegalArgumentException(
+                    "memLevel: " + memLevel + " (expected: 1-9)");
+        }
         this.compressionLevel = compressionLevel;
         this.allowServerWindowSize = allowServerWindowSize;
         this.preferredClientWindowSize = preferredClientWindowSize;
         this.allowServerNoContext = allowServerNoContext;
         this.preferredClientNoContext = preferredClientNoContext;
         this.extensionFilterProvider = checkNotNull(extensionFilterProvider, "extensionFilterProvider");
+        this.memLevel = memLevel;
+        this.budget = budget;
     }
 
     @Override
@@ -167,9 +210,25 @@ public final class PerMessageDeflateServerExtensionHandshaker implements WebSock
             }
         }
 
+        if (deflateEnabled && budget != null) {
+            // Context takeover may be disabled by the server even if the client did not offer it, see
+            // https://tools.ietf.org/html/rfc7692#section-7.1.1
+            // Both contexts of the connection must fit into the budget together. If they do not, the deflater is
+            // dropped first as it needs more memory.
+            long inflaterMemory = clientNoContext ? 0 : CompressionMemoryBudget.inflaterMemory(MAX_WINDOW_SIZE);
+            long deflaterMemory = serverNoContext ? 0 :
+                    CompressionMemoryBudget.deflaterMemory(serverWindowSize, memLevel);
+            if (!budget.isAvailable(inflaterMemory + deflaterMemory)) {
+                serverNoContext = true;
+                if (!clientNoContext && !budget.isAvailable(inflaterMemory)) {
+                    clientNoContext = true;
+                }
+            }
+        }
+
         if (deflateEnabled) {
             return new PermessageDeflateExtension(compressionLevel, serverNoContext,
-                    serverWindowSize, clientNoContext, clientWindowSize, extensionFilterProvider);
+                    serverWindowSize, clientNoContext, clientWindowSize, extensionFilterProvider, memLevel, budget);
         } else {
             return null;
         }
@@ -183,16 +242,21 @@ public final class PerMessageDeflateServerExtensionHandshaker implements WebSock
         private final boolean clientNoContext;
         private final int clientWindowSize;
         private final WebSocketExtensionFilterProvider extensionFilterProvider;
+        private final int memLevel;
+        private final CompressionMemoryBudget budget;
 
         PermessageDeflateExtension(int compressionLevel, boolean serverNoContext,
                 int serverWindowSize, boolean clientNoContext, int clientWindowSize,
-                WebSocketExtensionFilterProvider extensionFilterProvider) {
+                WebSocketExtensionFilterProvider extensionFilterProvider, int memLevel,
+                CompressionMemoryBudget budget) {
             this.compressionLevel = compressionLevel;
             this.serverNoContext = serverNoContext;
             this.serverWindowSize = serverWindowSize;
             this.clientNoContext = clientNoContext;
             this.clientWindowSize = clientWindowSize;
             this.extensionFilterProvider = extensionFilterProvider;
+            this.memLevel = memLevel;
+            this.budget = budget;
         }
 
         @Override
@@ -202,13 +266,13 @@ public final class PerMessageDeflateServerExtensionHandshaker implements WebSock
 
         @Override
         public WebSocketExtensionEncoder newExtensionEncoder() {
-            return new PerMessageDeflateEncoder(compressionLevel, serverWindowSize, serverNoContext,
-                                                extensionFilterProvider.encoderFilter());
+            return new PerMessageDeflateEncoder(compressionLevel, serverWindowSize, memLevel, serverNoContext,
+                                                extensionFilterProvider.encoderFilter(), budget);
         }
 
         @Override
         public WebSocketExtensionDecoder newExtensionDecoder() {
-            return new PerMessageDeflateDecoder(clientNoContext, extensionFilterProvider.decoderFilter());
+            return new PerMessageDeflateDecoder(clientNoContext, extensionFilterProvider.decoderFilter(), budget);
         }
 
         @Override
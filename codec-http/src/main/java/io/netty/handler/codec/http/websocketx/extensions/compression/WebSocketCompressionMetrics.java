@@ -0,0 +1,121 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.websocketx.extensions.compression;
+
+import io.netty.channel.Channel;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+
+/**
+ * The number of bytes which were compressed and decompressed by the compression extension of a web socket
+ * connection.
+ * <p>
+ * The counters are updated by the event loop of the channel, and may be read by any thread.
+ */
+public final class WebSocketCompressionMetrics {
+
+    private static final AttributeKey<WebSocketCompressionMetrics> METRICS_KEY =
+            AttributeKey.valueOf(WebSocketCompressionMetrics.class, "METRICS");
+
+    private volatile long uncompressedBytesWritten;
+    private volatile long compressedBytesWritten;
+    private volatile long compressedBytesRead;
+    private volatile long uncompressedBytesRead;
+
+    private WebSocketCompressionMetrics() {
+    }
+
+    /**
+     * Returns the metrics of the given channel, or {@code null} if no compression extension was negotiated.
+     */
+    public static WebSocketCompressionMetrics get(Channel channel) {
+        return channel.attr(METRICS_KEY).get();
+    }
+
+    static WebSocketCompressionMetrics getOrCreate(Channel channel) {
+        Attribute<WebSocketCompressionMetrics> attr = channel.attr(METRICS_KEY);
+        WebSocketCompressionMetrics metrics = attr.get();
+        if (metrics == null) {
+            WebSocketCompressionMetrics newMetrics = new WebSocketCompressionMetrics();
+            metrics = attr.setIfAbsent(newMetrics);
+            if (metrics == null) {
+                metrics = newMetrics;
+            }
+        }
+        return metrics;
+    }
+
+    void recordWrite(int uncompressedBytes, int compressedBytes) {
+        // Only the event loop updates the counters.
+        uncompressedBytesWritten += uncompressedBytes;
+        compressedBytesWritten += compressedBytes;
+    }
+
+    void recordRead(int compressedBytes, int uncompressedBytes) {
+        compressedBytesRead += compressedBytes;
+        uncompressedBytesRead += uncompressedBytes;
+    }
+
+    /**
+     * Returns the number of payload bytes which were compressed before they were written.
+     */
+    public long uncompressedBytesWritten() {
+        return uncompressedBytesWritten;
+    }
+
+    /**
+     * Returns the number of compressed payload bytes which were written.
+     */
+    public long compressedBytesWritten() {
+        return compressedBytesWritten;
+    }
+
+    /**
+     * Returns the number of compressed payload bytes which were read.
+     */
+    public long compressedBytesRead() {
+        return compressedBytesRead;
+    }
+
+    /**
+     * Returns the number of payload bytes which the compressed payloads which were read decompressed to.
+     */
+    public long uncompressedBytesRead() {
+        return uncompressedBytesRead;
+    }
+
+    /**
+     * Returns the ratio of the uncompressed to the compressed size of the written payloads, or {@code 1} if nothing
+     * was written yet.
+     */
+    public double compressionRatio() {
+        long compressed = compressedBytesWritten;
+        return compressed == 0 ? 1 : (double) uncompressedBytesWritten / compressed;
+    }
+
+    /**
+     * Returns the number of bytes which compression saved on the wire, in both directions.
+     */
+    public long bytesSaved() {
+        return uncompressedBytesWritten - compressedBytesWritten + uncompressedBytesRead - compressedBytesRead;
+    }
+
+    @Override
+    public String toString() {
+        return "WebSocketCompressionMetrics(written: " + uncompressedBytesWritten + " -> " + compressedBytesWritten +
+                ", read: " + compressedBytesRead + " -> " + uncompressedBytesRead + ')';
+    }
+}
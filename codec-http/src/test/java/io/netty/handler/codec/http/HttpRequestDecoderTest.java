@@ -20,9 +20,13 @@ import io.netty.buffer.Unpooled;
 import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.util.AsciiString;
 import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
 import org.junit.jupiter.api.Test;
 
+import java.lang.reflect.Field;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import static io.netty.handler.codec.http.HttpHeaderNames.*;
 import static io.netty.handler.codec.http.HttpHeadersTestUtils.of;
@@ -34,6 +38,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class HttpRequestDecoderTest {
@@ -128,14 +133,30 @@ public class HttpRequestDecoderTest {
         testDecodeWholeRequestInMultipleSteps(CONTENT_MIXED_DELIMITERS);
     }
 
+    @Test
+    public void testDecodeWholeRequestInMultipleStepsAsciiStringHeaders() {
+        for (int i = 1; i < CONTENT_MIXED_DELIMITERS.length; i++) {
+            testDecodeWholeRequestInMultipleSteps(CONTENT_MIXED_DELIMITERS, i, newAsciiStringHeadersDecoder());
+        }
+    }
+
+    private static HttpRequestDecoder newAsciiStringHeadersDecoder() {
+        return new HttpRequestDecoder(HttpObjectDecoder.DEFAULT_MAX_INITIAL_LINE_LENGTH,
+                HttpObjectDecoder.DEFAULT_MAX_HEADER_SIZE, HttpObjectDecoder.DEFAULT_MAX_CHUNK_SIZE,
+                HttpObjectDecoder.DEFAULT_VALIDATE_HEADERS, HttpObjectDecoder.DEFAULT_INITIAL_BUFFER_SIZE,
+                HttpObjectDecoder.DEFAULT_ALLOW_DUPLICATE_CONTENT_LENGTHS,
+                HttpObjectDecoder.DEFAULT_ALLOW_PARTIAL_CHUNKS, true);
+    }
+
     private static void testDecodeWholeRequestInMultipleSteps(byte[] content) {
         for (int i = 1; i < content.length; i++) {
-            testDecodeWholeRequestInMultipleSteps(content, i);
+            testDecodeWholeRequestInMultipleSteps(content, i, new HttpRequestDecoder());
         }
     }
 
-    private static void testDecodeWholeRequestInMultipleSteps(byte[] content, int fragmentSize) {
-        EmbeddedChannel channel = new EmbeddedChannel(new HttpRequestDecoder());
+    private static void testDecodeWholeRequestInMultipleSteps(byte[] content, int fragmentSize,
+                                                              HttpRequestDecoder decoder) {
+        EmbeddedChannel channel = new EmbeddedChannel(decoder);
         int headerLength = content.length - CONTENT_LENGTH;
 
         // split up the header
@@ -568,6 +589,82 @@ public class HttpRequestDecoderTest {
         assertFalse(channel.finish());
     }
 
+    @Test
+    public void testAsciiStringHeaders() {
+        String requestStr = "GET /some/path HTTP/1.1\r\n" +
+                "Content-Length: 11\r\n" +
+                "X-Custom:  foo \r\n" +
+                "X-Folded: part1\r\n" +
+                "\t part2\r\n" +
+                "X-Empty:\r\n" +
+                "Connection: close\r\n\r\n" +
+                "Lorem ipsum";
+        EmbeddedChannel channel = new EmbeddedChannel(newAsciiStringHeadersDecoder());
+        assertTrue(channel.writeInbound(Unpooled.copiedBuffer(requestStr, CharsetUtil.US_ASCII)));
+        HttpRequest request = channel.readInbound();
+        assertTrue(request.decoderResult().isSuccess());
+        HttpMessageDecoderResult decoderResult = (HttpMessageDecoderResult) request.decoderResult();
+        assertThat(decoderResult.initialLineLength(), is(23));
+        assertThat(decoderResult.headerSize(), is(80));
+
+        HttpHeaders headers = request.headers();
+        assertEquals(5, headers.size());
+        assertEquals("foo", headers.get("X-Custom"));
+        assertEquals("11", headers.get(HttpHeaderNames.CONTENT_LENGTH));
+        assertEquals("part1 part2", headers.get("X-Folded"));
+        assertEquals("", headers.get("X-Empty"));
+        assertEquals("close", headers.get(CONNECTION));
+        Iterator<Map.Entry<CharSequence, CharSequence>> entries = headers.iteratorCharSequence();
+        Map.Entry<CharSequence, CharSequence> custom = entries.next();
+        assertThat(custom.getKey(), instanceOf(AsciiString.class));
+        assertThat(custom.getValue(), instanceOf(AsciiString.class));
+        entries.next();
+        entries.next();
+        // Well known names are replaced by the constants.
+        assertSame(CONNECTION, entries.next().getKey());
+
+        LastHttpContent c = channel.readInbound();
+        assertEquals("Lorem ipsum", c.content().toString(CharsetUtil.US_ASCII));
+        c.release();
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testAsciiStringHeadersReplaceAllKnownNames() throws Exception {
+        for (Field field : HttpHeaderNames.class.getFields()) {
+            AsciiString name = (AsciiString) field.get(null);
+            String requestStr = "GET /some/path HTTP/1.1\r\n" + name.toUpperCase() + ": 0\r\n\r\n";
+            EmbeddedChannel channel = new EmbeddedChannel(newAsciiStringHeadersDecoder());
+            assertTrue(channel.writeInbound(Unpooled.copiedBuffer(requestStr, CharsetUtil.US_ASCII)));
+            HttpRequest request = channel.readInbound();
+            assertTrue(request.decoderResult().isSuccess(), name.toString());
+            assertSame(name, request.headers().iteratorCharSequence().next().getKey(), name.toString());
+            ReferenceCountUtil.release(request);
+            channel.finishAndReleaseAll();
+        }
+    }
+
+    @Test
+    public void testAsciiStringHeadersTooLarge() {
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpRequestDecoder(
+                4096, 16, 8192, true, 128, false, true, true));
+        assertTrue(channel.writeInbound(Unpooled.copiedBuffer("GET / HTTP/1.1\r\nHost: localhost.localdomain\r\n",
+                CharsetUtil.US_ASCII)));
+        HttpRequest request = channel.readInbound();
+        assertThat(request.decoderResult().cause(), instanceOf(TooLongHttpHeaderException.class));
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testAsciiStringHeadersNoColon() {
+        EmbeddedChannel channel = new EmbeddedChannel(newAsciiStringHeadersDecoder());
+        assertTrue(channel.writeInbound(Unpooled.copiedBuffer("GET / HTTP/1.1\r\nHost\r\n\r\n",
+                CharsetUtil.US_ASCII)));
+        HttpRequest request = channel.readInbound();
+        assertThat(request.decoderResult().cause(), instanceOf(IllegalArgumentException.class));
+        assertFalse(channel.finish());
+    }
+
     private static void testInvalidHeaders0(String requestStr) {
         testInvalidHeaders0(Unpooled.copiedBuffer(requestStr, CharsetUtil.US_ASCII));
     }
@@ -21,6 +21,7 @@ import io.netty.channel.FileRegion;
 import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.util.CharsetUtil;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
 
 import java.io.IOException;
 import java.nio.channels.WritableByteChannel;
@@ -30,6 +31,7 @@ import static org.hamcrest.Matchers.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class HttpResponseEncoderTest {
@@ -401,4 +403,106 @@ public class HttpResponseEncoderTest {
         assertEquals(responseText.toString(), written.toString());
         assertFalse(channel.finish());
     }
+
+    @Test
+    public void testTemplate() {
+        HttpHeaders headers = new DefaultHttpHeaders();
+        headers.set(HttpHeaderNames.SERVER, "netty");
+        headers.set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.TEXT_PLAIN);
+        HttpResponseTemplate template = new HttpResponseTemplate(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, headers);
+
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpResponseEncoder());
+        FullHttpResponse response = template.newFullResponse(Unpooled.copiedBuffer("test", CharsetUtil.US_ASCII));
+        response.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, 4);
+        assertTrue(channel.writeOutbound(response));
+        assertEquals("HTTP/1.1 200 OK\r\n" +
+                "server: netty\r\n" +
+                "content-type: text/plain\r\n" +
+                "content-length: 4\r\n\r\ntest", readOutbound(channel));
+
+        // If the status was changed only the headers of the template are used.
+        HttpResponse notFound = template.newResponse();
+        notFound.setStatus(HttpResponseStatus.NOT_FOUND);
+        notFound.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, 0);
+        assertTrue(channel.writeOutbound(notFound));
+        assertTrue(channel.writeOutbound(LastHttpContent.EMPTY_LAST_CONTENT));
+        assertEquals("HTTP/1.1 404 Not Found\r\n" +
+                "server: netty\r\n" +
+                "content-type: text/plain\r\n" +
+                "content-length: 0\r\n\r\n", readOutbound(channel));
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testTemplateRejectsContentLength() {
+        final HttpHeaders headers = new DefaultHttpHeaders();
+        headers.setInt(HttpHeaderNames.CONTENT_LENGTH, 0);
+        assertThrows(IllegalArgumentException.class, new Executable() {
+            @Override
+            public void execute() {
+                new HttpResponseTemplate(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, headers);
+            }
+        });
+    }
+
+    @Test
+    public void testTemplateReplaceKeepsTemplate() {
+        HttpHeaders headers = new DefaultHttpHeaders();
+        headers.set(HttpHeaderNames.SERVER, "netty");
+        HttpResponseTemplate template = new HttpResponseTemplate(
+                HttpVersion.HTTP_1_1, HttpResponseStatus.NO_CONTENT, headers);
+        FullHttpResponse response = template.newFullResponse(Unpooled.EMPTY_BUFFER);
+        FullHttpResponse copy = response.copy();
+        assertSame(template, HttpResponseTemplate.templateOf(copy));
+        assertEquals(HttpResponseStatus.NO_CONTENT, copy.status());
+        response.release();
+        copy.release();
+    }
+
+    @Test
+    public void testDateHeader() {
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpResponseEncoder(true));
+        HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        response.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, 0);
+        assertTrue(channel.writeOutbound(response));
+        assertTrue(channel.writeOutbound(LastHttpContent.EMPTY_LAST_CONTENT));
+        String written = readOutbound(channel);
+        assertThat(written, startsWith("HTTP/1.1 200 OK\r\ndate: "));
+        assertThat(written, endsWith(" GMT\r\ncontent-length: 0\r\n\r\n"));
+
+        // Do not add the header if the response already has one.
+        response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        response.headers().set(HttpHeaderNames.DATE, "Thu, 01 Jan 1970 00:00:00 GMT");
+        response.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, 0);
+        assertTrue(channel.writeOutbound(response));
+        assertTrue(channel.writeOutbound(LastHttpContent.EMPTY_LAST_CONTENT));
+        assertEquals("HTTP/1.1 200 OK\r\n" +
+                "date: Thu, 01 Jan 1970 00:00:00 GMT\r\n" +
+                "content-length: 0\r\n\r\n", readOutbound(channel));
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testDateHeaderCache() {
+        HttpDateHeaderCache cache = new HttpDateHeaderCache();
+        ByteBuf buf = Unpooled.buffer();
+        cache.encode(buf, 999);
+        assertEquals("date: Thu, 01 Jan 1970 00:00:00 GMT\r\n", buf.toString(CharsetUtil.US_ASCII));
+        buf.clear();
+        cache.encode(buf, 1000);
+        assertEquals("date: Thu, 01 Jan 1970 00:00:01 GMT\r\n", buf.toString(CharsetUtil.US_ASCII));
+        buf.release();
+    }
+
+    private static String readOutbound(EmbeddedChannel channel) {
+        StringBuilder written = new StringBuilder();
+        for (;;) {
+            ByteBuf buffer = channel.readOutbound();
+            if (buffer == null) {
+                return written.toString();
+            }
+            written.append(buffer.toString(CharsetUtil.US_ASCII));
+            buffer.release();
+        }
+    }
 }
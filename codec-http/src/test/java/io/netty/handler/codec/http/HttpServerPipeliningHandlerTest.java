@@ -0,0 +1,268 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.CharsetUtil;
+import org.junit.jupiter.api.Test;
+
+import java.nio.channels.ClosedChannelException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HttpServerPipeliningHandlerTest {
+
+    @Test
+    public void testResponsesAreWrittenInOrder() {
+        FlushCounter flushCounter = new FlushCounter();
+        EmbeddedChannel channel = new EmbeddedChannel(flushCounter, new HttpServerPipeliningHandler());
+        HttpPipelinedRequest[] requests = readRequests(channel, 3);
+        assertEquals(3, ((HttpServerPipeliningHandler) channel.pipeline().last()).pendingResponses());
+        int flushes = flushCounter.flushes;
+
+        ChannelFuture future2 = channel.writeAndFlush(requests[2].response(response("2")));
+        assertFalse(future2.isDone());
+        assertNull(channel.readOutbound());
+        assertEquals(flushes, flushCounter.flushes);
+
+        channel.writeAndFlush(requests[0].response(response("0")));
+        assertResponse(channel, "0");
+        assertNull(channel.readOutbound());
+        assertEquals(flushes + 1, flushCounter.flushes);
+
+        // Completing the second response writes the third one as well, and both are flushed at once.
+        channel.writeAndFlush(requests[1].response(response("1")));
+        assertTrue(future2.isSuccess());
+        assertResponse(channel, "1");
+        assertResponse(channel, "2");
+        assertEquals(flushes + 2, flushCounter.flushes);
+        assertEquals(0, ((HttpServerPipeliningHandler) channel.pipeline().last()).pendingResponses());
+
+        releaseAll(requests);
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testFlushIsDelayedUntilReadComplete() {
+        FlushCounter flushCounter = new FlushCounter();
+        EmbeddedChannel channel = new EmbeddedChannel(flushCounter, new HttpServerPipeliningHandler(),
+                new ChannelInboundHandlerAdapter() {
+                    @Override
+                    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                        HttpPipelinedRequest request = (HttpPipelinedRequest) msg;
+                        ctx.writeAndFlush(request.response(response(request.request().uri())));
+                        request.release();
+                    }
+                });
+        int flushes = flushCounter.flushes;
+
+        assertFalse(channel.writeInbound(request("a"), request("b"), request("c")));
+        assertEquals(flushes + 1, flushCounter.flushes);
+        assertResponse(channel, "a");
+        assertResponse(channel, "b");
+        assertResponse(channel, "c");
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testStreamedResponse() {
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpServerPipeliningHandler());
+        HttpPipelinedRequest[] requests = readRequests(channel, 2);
+
+        channel.write(requests[1].response(new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK)));
+        channel.write(requests[1].response(
+                new DefaultHttpContent(Unpooled.copiedBuffer("streamed", CharsetUtil.US_ASCII))));
+        channel.writeAndFlush(
+                requests[0].response(new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK)));
+        assertTrue(channel.readOutbound() instanceof HttpResponse);
+        assertNull(channel.readOutbound());
+
+        channel.writeAndFlush(requests[0].response(LastHttpContent.EMPTY_LAST_CONTENT));
+        assertTrue(channel.readOutbound() instanceof LastHttpContent);
+        assertTrue(channel.readOutbound() instanceof HttpResponse);
+        HttpContent content = channel.readOutbound();
+        assertEquals("streamed", content.content().toString(CharsetUtil.US_ASCII));
+        content.release();
+        assertNull(channel.readOutbound());
+
+        // The current response is written right away.
+        channel.writeAndFlush(requests[1].response(LastHttpContent.EMPTY_LAST_CONTENT));
+        assertTrue(channel.readOutbound() instanceof LastHttpContent);
+
+        releaseAll(requests);
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testInterimResponseDoesNotCompleteResponse() {
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpServerPipeliningHandler());
+        HttpPipelinedRequest[] requests = readRequests(channel, 2);
+
+        channel.writeAndFlush(requests[1].response(response("1")));
+        channel.writeAndFlush(requests[0].response(
+                new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.CONTINUE)));
+        FullHttpResponse interim = channel.readOutbound();
+        assertEquals(HttpResponseStatus.CONTINUE, interim.status());
+        interim.release();
+        assertNull(channel.readOutbound());
+
+        channel.writeAndFlush(requests[0].response(response("0")));
+        assertResponse(channel, "0");
+        assertResponse(channel, "1");
+
+        releaseAll(requests);
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testReadsAreSuspendedWhileTooManyResponsesArePending() {
+        ReadCounter readCounter = new ReadCounter();
+        EmbeddedChannel channel = new EmbeddedChannel(readCounter, new HttpServerPipeliningHandler(2));
+        channel.config().setAutoRead(false);
+        int reads = readCounter.reads;
+
+        HttpPipelinedRequest[] requests = readRequests(channel, 2);
+        channel.read();
+        assertEquals(reads, readCounter.reads);
+
+        // The read which was suspended is issued once a response was written.
+        channel.writeAndFlush(requests[0].response(response("0")));
+        assertEquals(reads + 1, readCounter.reads);
+        assertResponse(channel, "0");
+
+        channel.read();
+        assertEquals(reads + 2, readCounter.reads);
+
+        channel.writeAndFlush(requests[1].response(response("1")));
+        assertResponse(channel, "1");
+
+        releaseAll(requests);
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testAutoReadIsSuspendedWhileTooManyResponsesArePending() {
+        ReadCounter readCounter = new ReadCounter();
+        EmbeddedChannel channel = new EmbeddedChannel(readCounter, new HttpServerPipeliningHandler(2));
+        assertTrue(channel.config().isAutoRead());
+
+        HttpPipelinedRequest[] requests = readRequests(channel, 2);
+        assertFalse(channel.config().isAutoRead());
+        int reads = readCounter.reads;
+
+        channel.writeAndFlush(requests[1].response(response("1")));
+        assertFalse(channel.config().isAutoRead());
+        assertEquals(reads, readCounter.reads);
+
+        // Auto read is restored, and a read issued, once the number of pending responses is below the limit.
+        channel.writeAndFlush(requests[0].response(response("0")));
+        assertTrue(channel.config().isAutoRead());
+        assertEquals(reads + 1, readCounter.reads);
+        assertResponse(channel, "0");
+        assertResponse(channel, "1");
+
+        releaseAll(requests);
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testResponseToUnknownRequestFails() {
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpServerPipeliningHandler());
+        HttpPipelinedRequest[] requests = readRequests(channel, 1);
+
+        FullHttpResponse response = response("1");
+        ChannelFuture future = channel.writeAndFlush(new HttpPipelinedResponse(1, response));
+        assertTrue(future.cause() instanceof IllegalStateException);
+        assertEquals(0, response.refCnt());
+
+        releaseAll(requests);
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testQueuedResponsesFailOnClose() {
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpServerPipeliningHandler());
+        HttpPipelinedRequest[] requests = readRequests(channel, 2);
+
+        FullHttpResponse response = response("1");
+        ChannelFuture future = channel.writeAndFlush(requests[1].response(response));
+        assertFalse(future.isDone());
+
+        assertFalse(channel.finish());
+        assertTrue(future.cause() instanceof ClosedChannelException);
+        assertEquals(0, response.refCnt());
+        releaseAll(requests);
+    }
+
+    private static HttpPipelinedRequest[] readRequests(EmbeddedChannel channel, int count) {
+        HttpPipelinedRequest[] requests = new HttpPipelinedRequest[count];
+        for (int i = 0; i < count; i++) {
+            assertTrue(channel.writeInbound(request(String.valueOf(i))));
+            requests[i] = channel.readInbound();
+            assertEquals(i, requests[i].sequence());
+        }
+        return requests;
+    }
+
+    private static void releaseAll(HttpPipelinedRequest[] requests) {
+        for (HttpPipelinedRequest request : requests) {
+            assertTrue(request.release());
+        }
+    }
+
+    private static FullHttpRequest request(String uri) {
+        return new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, uri);
+    }
+
+    private static FullHttpResponse response(String content) {
+        return new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                Unpooled.copiedBuffer(content, CharsetUtil.US_ASCII));
+    }
+
+    private static void assertResponse(EmbeddedChannel channel, String content) {
+        FullHttpResponse response = channel.readOutbound();
+        assertEquals(content, response.content().toString(CharsetUtil.US_ASCII));
+        response.release();
+    }
+
+    private static final class FlushCounter extends ChannelOutboundHandlerAdapter {
+        int flushes;
+
+        @Override
+        public void flush(ChannelHandlerContext ctx) throws Exception {
+            flushes++;
+            super.flush(ctx);
+        }
+    }
+
+    private static final class ReadCounter extends ChannelOutboundHandlerAdapter {
+        int reads;
+
+        @Override
+        public void read(ChannelHandlerContext ctx) throws Exception {
+            reads++;
+            super.read(ctx);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.SpillingHttpObjectAggregator.MemoryBudget;
+import io.netty.util.CharsetUtil;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SpillingHttpObjectAggregatorTest {
+
+    @TempDir
+    File spillDirectory;
+
+    private EmbeddedChannel newChannel(int maxContentLength, int maxInMemoryContentLength, MemoryBudget budget) {
+        return new EmbeddedChannel(new SpillingHttpObjectAggregator(
+                maxContentLength, maxInMemoryContentLength, budget, spillDirectory, false));
+    }
+
+    private static HttpRequest newRequest() {
+        return new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/upload");
+    }
+
+    private static HttpContent chunk(String content) {
+        return new DefaultHttpContent(Unpooled.copiedBuffer(content, CharsetUtil.US_ASCII));
+    }
+
+    private static LastHttpContent lastChunk(String content) {
+        return new DefaultLastHttpContent(Unpooled.copiedBuffer(content, CharsetUtil.US_ASCII));
+    }
+
+    private int spilledFiles() {
+        return spillDirectory.list().length;
+    }
+
+    @Test
+    public void testAggregateInMemory() {
+        MemoryBudget budget = new MemoryBudget(1024);
+        EmbeddedChannel channel = newChannel(1024, 16, budget);
+
+        HttpRequest request = newRequest();
+        HttpUtil.setTransferEncodingChunked(request, true);
+        assertFalse(channel.writeInbound(request));
+        assertFalse(channel.writeInbound(chunk("test")));
+        assertTrue(channel.writeInbound(lastChunk("test2")));
+
+        FullHttpRequest aggregated = channel.readInbound();
+        assertNotNull(aggregated);
+        assertEquals(HttpMethod.POST, aggregated.method());
+        assertEquals("/upload", aggregated.uri());
+        assertFalse(HttpUtil.isTransferEncodingChunked(aggregated));
+        assertEquals(9, HttpUtil.getContentLength(aggregated));
+        assertEquals("testtest2", aggregated.content().toString(CharsetUtil.US_ASCII));
+        // The chunks are not copied.
+        assertEquals(2, ((CompositeByteBuf) aggregated.content()).numComponents());
+        assertEquals(0, spilledFiles());
+        assertEquals(9, budget.usedBytes());
+
+        assertTrue(aggregated.release());
+        assertEquals(0, budget.usedBytes());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testSpillToFile() {
+        MemoryBudget budget = new MemoryBudget(1024);
+        EmbeddedChannel channel = newChannel(1024, 8, budget);
+
+        assertFalse(channel.writeInbound(newRequest()));
+        assertFalse(channel.writeInbound(chunk("0123")));
+        assertEquals(0, spilledFiles());
+        assertEquals(4, budget.usedBytes());
+
+        assertFalse(channel.writeInbound(chunk("456789")));
+        assertEquals(1, spilledFiles());
+        assertEquals(0, budget.usedBytes());
+
+        LastHttpContent last = lastChunk("abc");
+        last.trailingHeaders().set("X-Trailer", "value");
+        assertTrue(channel.writeInbound(last));
+
+        FullHttpRequest aggregated = channel.readInbound();
+        assertEquals("0123456789abc", aggregated.content().toString(CharsetUtil.US_ASCII));
+        assertEquals(13, HttpUtil.getContentLength(aggregated));
+        assertEquals("value", aggregated.trailingHeaders().get("X-Trailer"));
+        assertTrue(aggregated.content().isDirect());
+        assertEquals(1, spilledFiles());
+
+        assertTrue(aggregated.release());
+        assertEquals(0, spilledFiles());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testSharedMemoryBudget() {
+        MemoryBudget budget = new MemoryBudget(8);
+        EmbeddedChannel first = newChannel(1024, 1024, budget);
+        EmbeddedChannel second = newChannel(1024, 1024, budget);
+
+        assertFalse(first.writeInbound(newRequest()));
+        assertTrue(first.writeInbound(lastChunk("01234567")));
+        FullHttpRequest firstAggregated = first.readInbound();
+        assertEquals(8, budget.usedBytes());
+
+        // The budget is exhausted as long as the first message is not released.
+        assertFalse(second.writeInbound(newRequest()));
+        assertTrue(second.writeInbound(lastChunk("abc")));
+        FullHttpRequest secondAggregated = second.readInbound();
+        assertEquals("abc", secondAggregated.content().toString(CharsetUtil.US_ASCII));
+        assertEquals(1, spilledFiles());
+
+        assertTrue(firstAggregated.release());
+        assertEquals(0, budget.usedBytes());
+        assertFalse(second.writeInbound(newRequest()));
+        assertTrue(second.writeInbound(lastChunk("def")));
+        FullHttpRequest thirdAggregated = second.readInbound();
+        assertEquals(3, budget.usedBytes());
+
+        assertTrue(secondAggregated.release());
+        assertTrue(thirdAggregated.release());
+        assertEquals(0, spilledFiles());
+        assertEquals(0, budget.usedBytes());
+        assertFalse(first.finish());
+        assertFalse(second.finish());
+    }
+
+    @Test
+    public void testOversizedContentDeletesFile() {
+        MemoryBudget budget = new MemoryBudget(1024);
+        EmbeddedChannel channel = newChannel(10, 4, budget);
+
+        assertFalse(channel.writeInbound(newRequest()));
+        assertFalse(channel.writeInbound(chunk("012345")));
+        assertEquals(1, spilledFiles());
+        assertFalse(channel.writeInbound(chunk("6789a")));
+        assertEquals(0, spilledFiles());
+
+        FullHttpResponse response = channel.readOutbound();
+        assertEquals(HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE, response.status());
+        response.release();
+        assertFalse(channel.isOpen());
+        assertNull(channel.readInbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testOversizedContentLength() {
+        EmbeddedChannel channel = newChannel(10, 4, new MemoryBudget(1024));
+
+        HttpRequest request = newRequest();
+        HttpUtil.setContentLength(request, 11);
+        assertFalse(channel.writeInbound(request));
+        FullHttpResponse response = channel.readOutbound();
+        assertEquals(HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE, response.status());
+        response.release();
+        assertTrue(channel.isOpen());
+
+        // The content of the oversized request is discarded.
+        assertFalse(channel.writeInbound(lastChunk("0123456789a")));
+        assertEquals(0, spilledFiles());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testContinue() {
+        EmbeddedChannel channel = newChannel(10, 4, new MemoryBudget(1024));
+
+        HttpRequest request = newRequest();
+        HttpUtil.set100ContinueExpected(request, true);
+        HttpUtil.setContentLength(request, 3);
+        assertFalse(channel.writeInbound(request));
+        FullHttpResponse response = channel.readOutbound();
+        assertEquals(HttpResponseStatus.CONTINUE, response.status());
+        response.release();
+
+        assertTrue(channel.writeInbound(lastChunk("abc")));
+        FullHttpRequest aggregated = channel.readInbound();
+        assertFalse(HttpUtil.is100ContinueExpected(aggregated));
+        assertEquals("abc", aggregated.content().toString(CharsetUtil.US_ASCII));
+        aggregated.release();
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testCloseWhileSpilling() {
+        MemoryBudget budget = new MemoryBudget(1024);
+        EmbeddedChannel channel = newChannel(1024, 4, budget);
+
+        assertFalse(channel.writeInbound(newRequest()));
+        assertFalse(channel.writeInbound(chunk("0123456789")));
+        assertEquals(1, spilledFiles());
+
+        assertFalse(channel.finish());
+        assertEquals(0, spilledFiles());
+        assertEquals(0, budget.usedBytes());
+    }
+
+    @Test
+    public void testCloseWhileInMemory() {
+        MemoryBudget budget = new MemoryBudget(1024);
+        EmbeddedChannel channel = newChannel(1024, 1024, budget);
+
+        assertFalse(channel.writeInbound(newRequest()));
+        assertFalse(channel.writeInbound(chunk("0123456789")));
+        assertEquals(10, budget.usedBytes());
+
+        assertFalse(channel.finish());
+        assertEquals(0, budget.usedBytes());
+    }
+
+    @Test
+    public void testFullMessagePassesThrough() {
+        EmbeddedChannel channel = newChannel(1024, 4, new MemoryBudget(1024));
+        FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/",
+                Unpooled.copiedBuffer("0123456789", CharsetUtil.US_ASCII));
+        assertTrue(channel.writeInbound(request));
+        FullHttpRequest read = channel.readInbound();
+        assertEquals(request, read);
+        read.release();
+        assertEquals(0, spilledFiles());
+        assertFalse(channel.finish());
+    }
+}
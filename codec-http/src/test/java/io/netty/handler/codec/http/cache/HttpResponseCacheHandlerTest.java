@@ -0,0 +1,406 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.cache;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseEncoder;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.CharsetUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HttpResponseCacheHandlerTest {
+
+    private final HttpResponseCache cache = new HttpResponseCache(UnpooledByteBufAllocator.DEFAULT, 1 << 20, 1024);
+
+    @AfterEach
+    public void tearDown() {
+        cache.clear();
+        assertEquals(0, cache.usedBytes());
+    }
+
+    private EmbeddedChannel newChannel() {
+        return new EmbeddedChannel(new HttpResponseCacheHandler(cache));
+    }
+
+    private static FullHttpRequest get(String uri) {
+        FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, uri);
+        request.headers().set(HttpHeaderNames.HOST, "example.com");
+        return request;
+    }
+
+    private static FullHttpResponse response(HttpResponseStatus status, String body, String cacheControl) {
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status,
+                Unpooled.copiedBuffer(body, CharsetUtil.US_ASCII));
+        response.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, body.length());
+        response.headers().set(HttpHeaderNames.CONTENT_TYPE, "text/plain");
+        if (cacheControl != null) {
+            response.headers().set(HttpHeaderNames.CACHE_CONTROL, cacheControl);
+        }
+        return response;
+    }
+
+    /**
+     * Writes the request and answers it with the given response if it reaches the end of the pipeline.
+     */
+    private static FullHttpResponse exchange(EmbeddedChannel channel, FullHttpRequest request,
+                                             FullHttpResponse response) {
+        channel.writeInbound(request);
+        FullHttpRequest forwarded = channel.readInbound();
+        if (forwarded != null) {
+            forwarded.release();
+            channel.writeOutbound(response);
+        } else if (response != null) {
+            response.release();
+        }
+        return channel.readOutbound();
+    }
+
+    private static String body(FullHttpResponse response) {
+        String body = response.content().toString(CharsetUtil.US_ASCII);
+        response.release();
+        return body;
+    }
+
+    @Test
+    public void testFreshResponseIsServedFromCache() {
+        EmbeddedChannel channel = newChannel();
+        FullHttpResponse first = exchange(channel, get("/a"),
+                response(HttpResponseStatus.OK, "hello", "max-age=60"));
+        assertEquals("hello", body(first));
+
+        FullHttpResponse second = exchange(channel, get("/a"), null);
+        assertEquals(HttpResponseStatus.OK, second.status());
+        assertEquals("5", second.headers().get(HttpHeaderNames.CONTENT_LENGTH));
+        assertEquals("0", second.headers().get(HttpHeaderNames.AGE));
+        assertEquals("hello", body(second));
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+
+        // A different host is a different resource.
+        FullHttpRequest other = get("/a");
+        other.headers().set(HttpHeaderNames.HOST, "other.com");
+        assertEquals("other", body(exchange(channel, other, response(HttpResponseStatus.OK, "other", null))));
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testHitIsEncodedWithTemplate() {
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpResponseEncoder(), new HttpResponseCacheHandler(cache));
+        channel.writeInbound(get("/a"));
+        ((FullHttpRequest) channel.readInbound()).release();
+        channel.writeOutbound(response(HttpResponseStatus.OK, "hello", "max-age=60"));
+        releaseOutbound(channel);
+
+        channel.writeInbound(get("/a"));
+        assertNull(channel.readInbound());
+        ByteBuf encoded = Unpooled.buffer();
+        for (;;) {
+            ByteBuf buf = channel.readOutbound();
+            if (buf == null) {
+                break;
+            }
+            encoded.writeBytes(buf);
+            buf.release();
+        }
+        String response = encoded.toString(CharsetUtil.US_ASCII);
+        encoded.release();
+        assertTrue(response.startsWith("HTTP/1.1 200 OK\r\n"), response);
+        assertTrue(response.contains("cache-control: max-age=60\r\n"), response);
+        assertTrue(response.contains("content-length: 5\r\n"), response);
+        assertTrue(response.endsWith("\r\n\r\nhello"), response);
+        assertFalse(channel.finish());
+    }
+
+    private static void releaseOutbound(EmbeddedChannel channel) {
+        for (;;) {
+            ByteBuf buf = channel.readOutbound();
+            if (buf == null) {
+                return;
+            }
+            buf.release();
+        }
+    }
+
+    @Test
+    public void testNotStorableResponses() {
+        EmbeddedChannel channel = newChannel();
+        body(exchange(channel, get("/a"), response(HttpResponseStatus.OK, "a", "no-store, max-age=60")));
+        body(exchange(channel, get("/b"), response(HttpResponseStatus.OK, "b", "private, max-age=60")));
+        body(exchange(channel, get("/c"), response(HttpResponseStatus.OK, "c", null)));
+        body(exchange(channel, get("/d"), response(HttpResponseStatus.INTERNAL_SERVER_ERROR, "d", "max-age=60")));
+        FullHttpResponse cookie = response(HttpResponseStatus.OK, "e", "max-age=60");
+        cookie.headers().set(HttpHeaderNames.SET_COOKIE, "a=b");
+        body(exchange(channel, get("/e"), cookie));
+        assertEquals(0, cache.usedBytes());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testRequestNoCacheRevalidates() {
+        EmbeddedChannel channel = newChannel();
+        FullHttpResponse response = response(HttpResponseStatus.OK, "hello", "max-age=60");
+        response.headers().set(HttpHeaderNames.ETAG, "\"v1\"");
+        body(exchange(channel, get("/a"), response));
+
+        FullHttpRequest request = get("/a");
+        request.headers().set(HttpHeaderNames.CACHE_CONTROL, "no-cache");
+        channel.writeInbound(request);
+        FullHttpRequest forwarded = channel.readInbound();
+        assertNotNull(forwarded);
+        assertEquals("\"v1\"", forwarded.headers().get(HttpHeaderNames.IF_NONE_MATCH));
+        forwarded.release();
+
+        FullHttpResponse notModified = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
+                HttpResponseStatus.NOT_MODIFIED, Unpooled.EMPTY_BUFFER);
+        notModified.headers().set(HttpHeaderNames.CACHE_CONTROL, "max-age=120");
+        channel.writeOutbound(notModified);
+        FullHttpResponse freshened = channel.readOutbound();
+        assertEquals(HttpResponseStatus.OK, freshened.status());
+        assertEquals("hello", body(freshened));
+
+        // The freshened response is used for the next request.
+        FullHttpResponse hit = exchange(channel, get("/a"), null);
+        assertEquals("hello", body(hit));
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testStreamedNotModifiedIsReplacedByStoredResponse() {
+        EmbeddedChannel channel = newChannel();
+        FullHttpResponse response = response(HttpResponseStatus.OK, "hello", "max-age=60");
+        response.headers().set(HttpHeaderNames.ETAG, "\"v1\"");
+        body(exchange(channel, get("/a"), response));
+
+        FullHttpRequest request = get("/a");
+        request.headers().set(HttpHeaderNames.CACHE_CONTROL, "no-cache");
+        channel.writeInbound(request);
+        FullHttpRequest forwarded = channel.readInbound();
+        assertEquals("\"v1\"", forwarded.headers().get(HttpHeaderNames.IF_NONE_MATCH));
+        forwarded.release();
+
+        HttpResponse notModified = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.NOT_MODIFIED);
+        notModified.headers().set(HttpHeaderNames.CACHE_CONTROL, "max-age=120");
+        channel.write(notModified);
+        ChannelFuture future = channel.writeAndFlush(new DefaultLastHttpContent());
+        assertTrue(future.isSuccess());
+
+        // The client did not send a conditional request, so it must not see the 304.
+        FullHttpResponse freshened = channel.readOutbound();
+        assertEquals(HttpResponseStatus.OK, freshened.status());
+        assertEquals("hello", body(freshened));
+        assertNull(channel.readOutbound());
+        assertEquals("hello", body(exchange(channel, get("/a"), null)));
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testRevalidationKeepsOtherVariants() {
+        EmbeddedChannel channel = newChannel();
+        FullHttpRequest gzip = get("/a");
+        gzip.headers().set(HttpHeaderNames.ACCEPT_ENCODING, "gzip");
+        FullHttpResponse response = response(HttpResponseStatus.OK, "gzipped", "max-age=60");
+        response.headers().set(HttpHeaderNames.VARY, "Accept-Encoding");
+        body(exchange(channel, gzip, response));
+        response = response(HttpResponseStatus.OK, "identity", "max-age=60");
+        response.headers().set(HttpHeaderNames.VARY, "Accept-Encoding");
+        response.headers().set(HttpHeaderNames.ETAG, "\"v1\"");
+        body(exchange(channel, get("/a"), response));
+
+        FullHttpRequest request = get("/a");
+        request.headers().set(HttpHeaderNames.CACHE_CONTROL, "no-cache");
+        FullHttpResponse notModified = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
+                HttpResponseStatus.NOT_MODIFIED, Unpooled.EMPTY_BUFFER);
+        notModified.headers().set(HttpHeaderNames.CACHE_CONTROL, "max-age=120");
+        assertEquals("identity", body(exchange(channel, request, notModified)));
+
+        // Both variants are still stored.
+        gzip = get("/a");
+        gzip.headers().set(HttpHeaderNames.ACCEPT_ENCODING, "gzip");
+        assertEquals("gzipped", body(exchange(channel, gzip, null)));
+        assertEquals("identity", body(exchange(channel, get("/a"), null)));
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testConditionalRequestHit() {
+        EmbeddedChannel channel = newChannel();
+        FullHttpResponse response = response(HttpResponseStatus.OK, "hello", "max-age=60");
+        response.headers().set(HttpHeaderNames.ETAG, "\"v1\"");
+        body(exchange(channel, get("/a"), response));
+
+        FullHttpRequest request = get("/a");
+        request.headers().set(HttpHeaderNames.IF_NONE_MATCH, "\"v1\"");
+        FullHttpResponse notModified = exchange(channel, request, null);
+        assertEquals(HttpResponseStatus.NOT_MODIFIED, notModified.status());
+        assertEquals("", body(notModified));
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testVary() {
+        EmbeddedChannel channel = newChannel();
+        FullHttpRequest gzip = get("/a");
+        gzip.headers().set(HttpHeaderNames.ACCEPT_ENCODING, "gzip");
+        FullHttpResponse response = response(HttpResponseStatus.OK, "gzipped", "max-age=60");
+        response.headers().set(HttpHeaderNames.VARY, "Accept-Encoding");
+        body(exchange(channel, gzip, response));
+
+        FullHttpRequest identity = get("/a");
+        response = response(HttpResponseStatus.OK, "identity", "max-age=60");
+        response.headers().set(HttpHeaderNames.VARY, "Accept-Encoding");
+        assertEquals("identity", body(exchange(channel, identity, response)));
+
+        gzip = get("/a");
+        gzip.headers().set(HttpHeaderNames.ACCEPT_ENCODING, "gzip");
+        assertEquals("gzipped", body(exchange(channel, gzip, null)));
+        assertEquals("identity", body(exchange(channel, get("/a"), null)));
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testUnsafeMethodInvalidates() {
+        EmbeddedChannel channel = newChannel();
+        body(exchange(channel, get("/a"), response(HttpResponseStatus.OK, "hello", "max-age=60")));
+        FullHttpRequest post = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/a");
+        post.headers().set(HttpHeaderNames.HOST, "example.com");
+        body(exchange(channel, post, response(HttpResponseStatus.OK, "posted", null)));
+        assertEquals("new", body(exchange(channel, get("/a"), response(HttpResponseStatus.OK, "new", null))));
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testOnlyIfCached() {
+        EmbeddedChannel channel = newChannel();
+        FullHttpRequest request = get("/a");
+        request.headers().set(HttpHeaderNames.CACHE_CONTROL, "only-if-cached");
+        FullHttpResponse response = exchange(channel, request, null);
+        assertEquals(HttpResponseStatus.GATEWAY_TIMEOUT, response.status());
+        response.release();
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testConcurrentMissesAreCoalesced() {
+        EmbeddedChannel first = newChannel();
+        EmbeddedChannel second = newChannel();
+        first.writeInbound(get("/a"));
+        FullHttpRequest forwarded = first.readInbound();
+        forwarded.release();
+
+        // The identical request waits for the response to the first one, and no more requests are read meanwhile.
+        second.writeInbound(get("/a"));
+        assertNull(second.readInbound());
+        assertNull(second.readOutbound());
+        assertEquals(1, cache.coalesced());
+        assertFalse(second.config().isAutoRead());
+
+        first.writeOutbound(response(HttpResponseStatus.OK, "hello", "max-age=60"));
+        assertEquals("hello", body((FullHttpResponse) first.readOutbound()));
+        second.runPendingTasks();
+        assertEquals("hello", body((FullHttpResponse) second.readOutbound()));
+        assertTrue(second.config().isAutoRead());
+        assertFalse(first.finish());
+        assertFalse(second.finish());
+    }
+
+    @Test
+    public void testCoalescedRequestIsDroppedWhenChannelIsClosed() {
+        EmbeddedChannel first = newChannel();
+        EmbeddedChannel second = newChannel();
+        first.writeInbound(get("/a"));
+        ((FullHttpRequest) first.readInbound()).release();
+        FullHttpRequest waiting = get("/a");
+        second.writeInbound(waiting);
+        assertNull(second.readInbound());
+
+        // The waiting request is released right away rather than once the response to the first one was received.
+        assertFalse(second.finish());
+        assertEquals(0, waiting.refCnt());
+
+        first.writeOutbound(response(HttpResponseStatus.OK, "hello", "max-age=60"));
+        assertEquals("hello", body((FullHttpResponse) first.readOutbound()));
+        second.runPendingTasks();
+        assertNull(second.readOutbound());
+        assertFalse(first.finish());
+    }
+
+    @Test
+    public void testCoalescedRequestIsForwardedIfNotStored() {
+        EmbeddedChannel first = newChannel();
+        EmbeddedChannel second = newChannel();
+        first.writeInbound(get("/a"));
+        ((FullHttpRequest) first.readInbound()).release();
+        second.writeInbound(get("/a"));
+        assertNull(second.readInbound());
+
+        first.writeOutbound(response(HttpResponseStatus.OK, "private", "private"));
+        body((FullHttpResponse) first.readOutbound());
+        second.runPendingTasks();
+        FullHttpRequest forwarded = second.readInbound();
+        assertNotNull(forwarded);
+        forwarded.release();
+        assertFalse(first.finish());
+        assertFalse(second.finish());
+    }
+
+    @Test
+    public void testEviction() {
+        HttpResponseCache small = new HttpResponseCache(UnpooledByteBufAllocator.DEFAULT, 2048, 1024);
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpResponseCacheHandler(small));
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 800; i++) {
+            body.append('x');
+        }
+        body(exchange(channel, get("/a"), response(HttpResponseStatus.OK, body.toString(), "max-age=60")));
+        body(exchange(channel, get("/b"), response(HttpResponseStatus.OK, body.toString(), "max-age=60")));
+        assertEquals(1, small.evictions());
+        assertTrue(small.usedBytes() <= 2048);
+        small.clear();
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testParseCacheControl() {
+        CacheControl cacheControl = CacheControl.parse("public, max-age=\"60\", s-maxage=30, no-cache=\"a,b\"");
+        assertTrue(cacheControl.isPublic);
+        assertTrue(cacheControl.noCache);
+        assertEquals(60, cacheControl.maxAge);
+        assertEquals(30, cacheControl.sMaxAge);
+        assertFalse(cacheControl.noStore);
+        assertEquals(0, CacheControl.parse("max-age=abc").maxAge);
+    }
+}
@@ -0,0 +1,340 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.file;
+
+import io.netty.channel.FileRegion;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.DateFormatter;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.CharsetUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HttpStaticFileHandlerTest {
+
+    @TempDir
+    File root;
+
+    private File file;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        file = write(new File(root, "index.html"), "0123456789");
+        file.setLastModified(1600000000000L);
+        write(new File(root, ".hidden"), "secret");
+    }
+
+    private static File write(File file, String content) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes(CharsetUtil.US_ASCII));
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private EmbeddedChannel newChannel(HttpStaticFileConfig config) {
+        return new EmbeddedChannel(new HttpStaticFileHandler(config));
+    }
+
+    private EmbeddedChannel newChannel() {
+        return newChannel(HttpStaticFileConfig.newBuilder(root).build());
+    }
+
+    private static FullHttpRequest request(HttpMethod method, String uri) {
+        return new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, method, uri);
+    }
+
+    @Test
+    public void testGet() {
+        EmbeddedChannel channel = newChannel();
+        assertFalse(channel.writeInbound(request(HttpMethod.GET, "/index.html?query")));
+
+        HttpResponse response = channel.readOutbound();
+        assertEquals(HttpResponseStatus.OK, response.status());
+        assertEquals("10", response.headers().get(HttpHeaderNames.CONTENT_LENGTH));
+        assertEquals("text/html; charset=UTF-8", response.headers().get(HttpHeaderNames.CONTENT_TYPE));
+        assertEquals("bytes", response.headers().get(HttpHeaderNames.ACCEPT_RANGES));
+        assertEquals(DateFormatter.format(new Date(1600000000000L)),
+                response.headers().get(HttpHeaderNames.LAST_MODIFIED));
+        assertNotNull(response.headers().get(HttpHeaderNames.ETAG));
+
+        FileRegion region = channel.readOutbound();
+        assertEquals(0, region.position());
+        assertEquals(10, region.count());
+        assertTrue(region.release());
+        assertSame(LastHttpContent.EMPTY_LAST_CONTENT, channel.readOutbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testOpenFileIsCached() throws IOException {
+        StaticFileCache cache = new StaticFileCache(HttpStaticFileConfig.newBuilder(root).build());
+        StaticFile staticFile = cache.lookup("/index.html");
+        assertSame(staticFile, cache.lookup("/index.html"));
+
+        StaticFileCache.OpenFile first = cache.open(staticFile);
+        StaticFileCache.OpenFile second = cache.open(staticFile);
+        assertSame(first, second);
+        assertEquals(3, first.refCnt());
+        first.release();
+        second.release();
+        assertTrue(first.channel.isOpen());
+
+        cache.clear();
+        assertFalse(first.channel.isOpen());
+        assertEquals(0, cache.openFiles());
+    }
+
+    @Test
+    public void testModifiedFileIsReopened() throws IOException {
+        StaticFileCache cache = new StaticFileCache(HttpStaticFileConfig.newBuilder(root).metadataTtlMillis(0).build());
+        StaticFileCache.OpenFile first = cache.open(cache.lookup("/index.html"));
+
+        assertTrue(file.setLastModified(1700000000000L));
+        StaticFileCache.OpenFile second = cache.open(cache.lookup("/index.html"));
+        assertNotSame(first, second);
+        // Still referenced by the first transfer.
+        assertTrue(first.channel.isOpen());
+        assertTrue(first.release());
+        assertFalse(first.channel.isOpen());
+
+        second.release();
+        cache.clear();
+    }
+
+    @Test
+    public void testOpenFilesAreEvicted() throws IOException {
+        write(new File(root, "other.txt"), "other");
+        StaticFileCache cache = new StaticFileCache(HttpStaticFileConfig.newBuilder(root).maxOpenFiles(1).build());
+        StaticFileCache.OpenFile first = cache.open(cache.lookup("/index.html"));
+        first.release();
+        StaticFileCache.OpenFile second = cache.open(cache.lookup("/other.txt"));
+        assertFalse(first.channel.isOpen());
+        assertEquals(1, cache.openFiles());
+        second.release();
+        cache.clear();
+        assertFalse(second.channel.isOpen());
+    }
+
+    @Test
+    public void testHead() {
+        EmbeddedChannel channel = newChannel();
+        channel.writeInbound(request(HttpMethod.HEAD, "/index.html"));
+        HttpResponse response = channel.readOutbound();
+        assertEquals(HttpResponseStatus.OK, response.status());
+        assertEquals("10", response.headers().get(HttpHeaderNames.CONTENT_LENGTH));
+        assertSame(LastHttpContent.EMPTY_LAST_CONTENT, channel.readOutbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testNotFound() {
+        EmbeddedChannel channel = newChannel();
+        assertStatus(channel, request(HttpMethod.GET, "/missing.html"), HttpResponseStatus.NOT_FOUND);
+        assertStatus(channel, request(HttpMethod.GET, "/.hidden"), HttpResponseStatus.NOT_FOUND);
+        assertStatus(channel, request(HttpMethod.GET, "/../" + root.getName() + "/index.html"),
+                HttpResponseStatus.NOT_FOUND);
+        assertStatus(channel, request(HttpMethod.GET, "/%2e%2e/" + root.getName() + "/index.html"),
+                HttpResponseStatus.NOT_FOUND);
+        assertStatus(channel, request(HttpMethod.GET, "/"), HttpResponseStatus.NOT_FOUND);
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testMethodNotAllowed() {
+        EmbeddedChannel channel = newChannel();
+        channel.writeInbound(request(HttpMethod.POST, "/index.html"));
+        FullHttpResponse response = channel.readOutbound();
+        assertEquals(HttpResponseStatus.METHOD_NOT_ALLOWED, response.status());
+        assertEquals("GET, HEAD", response.headers().get(HttpHeaderNames.ALLOW));
+        response.release();
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testIfNoneMatch() {
+        EmbeddedChannel channel = newChannel();
+        channel.writeInbound(request(HttpMethod.HEAD, "/index.html"));
+        HttpResponse response = channel.readOutbound();
+        String etag = response.headers().get(HttpHeaderNames.ETAG);
+        assertSame(LastHttpContent.EMPTY_LAST_CONTENT, channel.readOutbound());
+
+        FullHttpRequest request = request(HttpMethod.GET, "/index.html");
+        request.headers().set(HttpHeaderNames.IF_NONE_MATCH, "\"other\", W/" + etag);
+        assertStatus(channel, request, HttpResponseStatus.NOT_MODIFIED);
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testIfModifiedSince() {
+        EmbeddedChannel channel = newChannel();
+        FullHttpRequest request = request(HttpMethod.GET, "/index.html");
+        request.headers().set(HttpHeaderNames.IF_MODIFIED_SINCE, DateFormatter.format(new Date(1600000000000L)));
+        assertStatus(channel, request, HttpResponseStatus.NOT_MODIFIED);
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testRange() {
+        EmbeddedChannel channel = newChannel();
+        FullHttpRequest request = request(HttpMethod.GET, "/index.html");
+        request.headers().set(HttpHeaderNames.RANGE, "bytes=2-5");
+        channel.writeInbound(request);
+
+        HttpResponse response = channel.readOutbound();
+        assertEquals(HttpResponseStatus.PARTIAL_CONTENT, response.status());
+        assertEquals("4", response.headers().get(HttpHeaderNames.CONTENT_LENGTH));
+        assertEquals("bytes 2-5/10", response.headers().get(HttpHeaderNames.CONTENT_RANGE));
+        FileRegion region = channel.readOutbound();
+        assertEquals(2, region.position());
+        assertEquals(4, region.count());
+        region.release();
+        assertSame(LastHttpContent.EMPTY_LAST_CONTENT, channel.readOutbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testRangeNotSatisfiable() {
+        EmbeddedChannel channel = newChannel();
+        FullHttpRequest request = request(HttpMethod.GET, "/index.html");
+        request.headers().set(HttpHeaderNames.RANGE, "bytes=10-");
+        channel.writeInbound(request);
+        FullHttpResponse response = channel.readOutbound();
+        assertEquals(HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE, response.status());
+        assertEquals("bytes */10", response.headers().get(HttpHeaderNames.CONTENT_RANGE));
+        response.release();
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testIfRangeMismatch() {
+        EmbeddedChannel channel = newChannel();
+        FullHttpRequest request = request(HttpMethod.GET, "/index.html");
+        request.headers().set(HttpHeaderNames.RANGE, "bytes=2-5");
+        request.headers().set(HttpHeaderNames.IF_RANGE, "\"outdated\"");
+        channel.writeInbound(request);
+        HttpResponse response = channel.readOutbound();
+        assertEquals(HttpResponseStatus.OK, response.status());
+        FileRegion region = channel.readOutbound();
+        assertEquals(10, region.count());
+        region.release();
+        assertSame(LastHttpContent.EMPTY_LAST_CONTENT, channel.readOutbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testPrecompressed() throws IOException {
+        write(new File(root, "index.html.gz"), "gz");
+        write(new File(root, "index.html.br"), "b");
+        EmbeddedChannel channel = newChannel(HttpStaticFileConfig.newBuilder(root).precompressed(true).build());
+
+        FullHttpRequest request = request(HttpMethod.HEAD, "/index.html");
+        request.headers().set(HttpHeaderNames.ACCEPT_ENCODING, "gzip, deflate, br;q=0");
+        channel.writeInbound(request);
+        HttpResponse response = channel.readOutbound();
+        assertEquals("gzip", response.headers().get(HttpHeaderNames.CONTENT_ENCODING));
+        assertEquals("2", response.headers().get(HttpHeaderNames.CONTENT_LENGTH));
+        assertEquals("text/html; charset=UTF-8", response.headers().get(HttpHeaderNames.CONTENT_TYPE));
+        assertEquals("accept-encoding", response.headers().get(HttpHeaderNames.VARY));
+        assertSame(LastHttpContent.EMPTY_LAST_CONTENT, channel.readOutbound());
+
+        request = request(HttpMethod.HEAD, "/index.html");
+        request.headers().set(HttpHeaderNames.ACCEPT_ENCODING, "gzip, br");
+        channel.writeInbound(request);
+        response = channel.readOutbound();
+        assertEquals("br", response.headers().get(HttpHeaderNames.CONTENT_ENCODING));
+        assertSame(LastHttpContent.EMPTY_LAST_CONTENT, channel.readOutbound());
+
+        channel.writeInbound(request(HttpMethod.HEAD, "/index.html"));
+        response = channel.readOutbound();
+        assertNull(response.headers().get(HttpHeaderNames.CONTENT_ENCODING));
+        assertEquals("10", response.headers().get(HttpHeaderNames.CONTENT_LENGTH));
+        assertSame(LastHttpContent.EMPTY_LAST_CONTENT, channel.readOutbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testConnectionClose() {
+        EmbeddedChannel channel = newChannel();
+        FullHttpRequest request = request(HttpMethod.HEAD, "/index.html");
+        request.headers().set(HttpHeaderNames.CONNECTION, "close");
+        channel.writeInbound(request);
+        HttpResponse response = channel.readOutbound();
+        assertEquals("close", response.headers().get(HttpHeaderNames.CONNECTION));
+        assertSame(LastHttpContent.EMPTY_LAST_CONTENT, channel.readOutbound());
+        assertFalse(channel.isOpen());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testParseRange() {
+        assertArrayEquals(new long[] { 0, 9 }, HttpStaticFileHandler.parseRange("bytes=0-", 10));
+        assertArrayEquals(new long[] { 3, 9 }, HttpStaticFileHandler.parseRange("bytes=3-20", 10));
+        assertArrayEquals(new long[] { 7, 9 }, HttpStaticFileHandler.parseRange("bytes=-3", 10));
+        assertArrayEquals(new long[] { 0, 9 }, HttpStaticFileHandler.parseRange("bytes=-30", 10));
+        assertArrayEquals(new long[0], HttpStaticFileHandler.parseRange("bytes=10-11", 10));
+        assertArrayEquals(new long[0], HttpStaticFileHandler.parseRange("bytes=-0", 10));
+        assertNull(HttpStaticFileHandler.parseRange("bytes=0-1,3-4", 10));
+        assertNull(HttpStaticFileHandler.parseRange("bytes=5-3", 10));
+        assertNull(HttpStaticFileHandler.parseRange("bytes=a-3", 10));
+        assertNull(HttpStaticFileHandler.parseRange("bytes=-", 10));
+        assertNull(HttpStaticFileHandler.parseRange("items=0-1", 10));
+    }
+
+    @Test
+    public void testSafePath() {
+        assertTrue(StaticFileCache.isSafePath("/index.html"));
+        assertTrue(StaticFileCache.isSafePath("/a/b.c/d"));
+        assertFalse(StaticFileCache.isSafePath("index.html"));
+        assertFalse(StaticFileCache.isSafePath("/a/../b"));
+        assertFalse(StaticFileCache.isSafePath("/a/./b"));
+        assertFalse(StaticFileCache.isSafePath("/a/.git/config"));
+        assertFalse(StaticFileCache.isSafePath("/a\\..\\b"));
+        assertFalse(StaticFileCache.isSafePath("/a/"));
+    }
+
+    private static void assertStatus(EmbeddedChannel channel, FullHttpRequest request, HttpResponseStatus status) {
+        channel.writeInbound(request);
+        FullHttpResponse response = channel.readOutbound();
+        assertEquals(status, response.status());
+        response.release();
+    }
+}
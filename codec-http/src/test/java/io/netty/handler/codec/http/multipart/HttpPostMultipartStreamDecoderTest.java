@@ -0,0 +1,262 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.multipart;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.multipart.HttpPostRequestDecoder.ErrorDataDecoderException;
+import io.netty.util.CharsetUtil;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HttpPostMultipartStreamDecoderTest {
+
+    private static final String BODY = "preamble\r\n" +
+            "--boundary\r\n" +
+            "Content-Disposition: form-data; name=\"field\"\r\n" +
+            "\r\n" +
+            "value\r\n" +
+            "--boundary  \r\n" +
+            "Content-Disposition: form-data; name=\"file\"; filename=\"a;b.txt\"\r\n" +
+            "Content-Type: text/plain\r\n" +
+            "\r\n" +
+            "line1\r\n--bound\r\nline2\r\n" +
+            "--boundary\r\n" +
+            "Content-Disposition: form-data; name=\"empty\"\r\n" +
+            "\r\n" +
+            "\r\n" +
+            "--boundary--\r\n" +
+            "epilogue";
+
+    private static HttpRequest newRequest() {
+        HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/upload");
+        request.headers().set(HttpHeaderNames.CONTENT_TYPE, "multipart/form-data; boundary=boundary");
+        return request;
+    }
+
+    @Test
+    public void testDecodeSplitAtEveryIndex() {
+        byte[] bytes = BODY.getBytes(CharsetUtil.US_ASCII);
+        for (int split = 0; split <= bytes.length; split++) {
+            RecordingSink sink = new RecordingSink();
+            HttpPostMultipartStreamDecoder decoder = new HttpPostMultipartStreamDecoder(newRequest(), sink);
+            offer(decoder, new DefaultHttpContent(Unpooled.wrappedBuffer(bytes, 0, split)));
+            offer(decoder, new DefaultLastHttpContent(Unpooled.wrappedBuffer(bytes, split, bytes.length - split)));
+            assertTrue(decoder.isEndOfData());
+            decoder.destroy();
+
+            assertEquals(3, sink.parts.size(), "split at " + split);
+            assertEquals("value", sink.parts.get(0));
+            assertEquals("line1\r\n--bound\r\nline2", sink.parts.get(1));
+            assertEquals("", sink.parts.get(2));
+            assertEquals("form-data; name=\"field\"", sink.headers.get(0).get(HttpHeaderNames.CONTENT_DISPOSITION));
+            assertEquals("text/plain", sink.headers.get(1).get(HttpHeaderNames.CONTENT_TYPE));
+        }
+    }
+
+    @Test
+    public void testDecodeByteByByte() {
+        byte[] bytes = BODY.getBytes(CharsetUtil.US_ASCII);
+        RecordingSink sink = new RecordingSink();
+        HttpPostMultipartStreamDecoder decoder = new HttpPostMultipartStreamDecoder(newRequest(), sink);
+        for (int i = 0; i < bytes.length - 1; i++) {
+            offer(decoder, new DefaultHttpContent(Unpooled.wrappedBuffer(bytes, i, 1)));
+        }
+        offer(decoder, new DefaultLastHttpContent(Unpooled.wrappedBuffer(bytes, bytes.length - 1, 1)));
+        assertTrue(decoder.isEndOfData());
+        decoder.destroy();
+
+        assertEquals(3, sink.parts.size());
+        assertEquals("value", sink.parts.get(0));
+        assertEquals("line1\r\n--bound\r\nline2", sink.parts.get(1));
+    }
+
+    @Test
+    public void testDecodeLineFeedOnly() {
+        String body = "--boundary\n" +
+                "Content-Disposition: form-data; name=\"field\"\n" +
+                "\n" +
+                "value\n" +
+                "--boundary--\n";
+        RecordingSink sink = new RecordingSink();
+        HttpPostMultipartStreamDecoder decoder = new HttpPostMultipartStreamDecoder(newRequest(), sink);
+        offer(decoder, new DefaultLastHttpContent(Unpooled.copiedBuffer(body, CharsetUtil.US_ASCII)));
+        assertTrue(decoder.isEndOfData());
+        assertEquals(1, sink.parts.size());
+        assertEquals("value", sink.parts.get(0));
+        decoder.destroy();
+    }
+
+    @Test
+    public void testContentIsSlicedNotCopied() {
+        byte[] content = new byte[1024];
+        ByteBuf body = Unpooled.buffer();
+        body.writeCharSequence("--boundary\r\nContent-Disposition: form-data; name=\"f\"\r\n\r\n",
+                CharsetUtil.US_ASCII);
+        body.writeBytes(content);
+        final List<ByteBuf> slices = new ArrayList<ByteBuf>();
+        HttpPostMultipartStreamDecoder decoder = new HttpPostMultipartStreamDecoder(newRequest(),
+                new HttpPostMultipartStreamDecoder.Sink() {
+                    @Override
+                    public void partStarted(HttpHeaders headers) {
+                    }
+
+                    @Override
+                    public void partContent(ByteBuf content) {
+                        slices.add(content);
+                    }
+
+                    @Override
+                    public void partEnded() {
+                    }
+                });
+        HttpContent httpContent = new DefaultHttpContent(body);
+        decoder.offer(httpContent);
+        assertEquals(0, body.readerIndex());
+        assertFalse(httpContent.release());
+
+        assertEquals(1, slices.size());
+        ByteBuf slice = slices.get(0);
+        assertTrue(slice.refCnt() > 0);
+        assertTrue(slice.readableBytes() > content.length - 16);
+        assertTrue(slice.release());
+        assertEquals(0, body.refCnt());
+        decoder.destroy();
+    }
+
+    @Test
+    public void testHeadersTooLarge() {
+        final HttpPostMultipartStreamDecoder decoder =
+                new HttpPostMultipartStreamDecoder(newRequest(), new RecordingSink(), 32);
+        final StringBuilder body = new StringBuilder("--boundary\r\nContent-Disposition: form-data; name=\"");
+        for (int i = 0; i < 64; i++) {
+            body.append('x');
+        }
+        assertThrows(ErrorDataDecoderException.class, new Executable() {
+            @Override
+            public void execute() {
+                offer(decoder, new DefaultHttpContent(Unpooled.copiedBuffer(body, CharsetUtil.US_ASCII)));
+            }
+        });
+        decoder.destroy();
+    }
+
+    @Test
+    public void testIncompleteBody() {
+        final HttpPostMultipartStreamDecoder decoder =
+                new HttpPostMultipartStreamDecoder(newRequest(), new RecordingSink());
+        assertThrows(ErrorDataDecoderException.class, new Executable() {
+            @Override
+            public void execute() {
+                offer(decoder, new DefaultLastHttpContent(Unpooled.copiedBuffer(
+                        "--boundary\r\nContent-Disposition: form-data; name=\"f\"\r\n\r\nvalue",
+                        CharsetUtil.US_ASCII)));
+            }
+        });
+        assertFalse(decoder.isEndOfData());
+        decoder.destroy();
+    }
+
+    @Test
+    public void testNotMultipart() {
+        final HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/");
+        request.headers().set(HttpHeaderNames.CONTENT_TYPE, "application/x-www-form-urlencoded");
+        assertThrows(ErrorDataDecoderException.class, new Executable() {
+            @Override
+            public void execute() {
+                new HttpPostMultipartStreamDecoder(request, new RecordingSink());
+            }
+        });
+    }
+
+    @Test
+    public void testHttpDataSink() throws IOException {
+        HttpRequest request = newRequest();
+        HttpPostMultipartStreamDecoder.HttpDataSink sink = new HttpPostMultipartStreamDecoder.HttpDataSink(
+                new DefaultHttpDataFactory(DefaultHttpDataFactory.MINSIZE), request);
+        HttpPostMultipartStreamDecoder decoder = new HttpPostMultipartStreamDecoder(request, sink);
+        byte[] bytes = BODY.getBytes(CharsetUtil.US_ASCII);
+        int split = bytes.length / 2;
+        offer(decoder, new DefaultHttpContent(Unpooled.wrappedBuffer(bytes, 0, split)));
+        offer(decoder, new DefaultLastHttpContent(Unpooled.wrappedBuffer(bytes, split, bytes.length - split)));
+        decoder.destroy();
+
+        List<InterfaceHttpData> datas = sink.getBodyHttpDatas();
+        assertEquals(3, datas.size());
+        Attribute field = (Attribute) datas.get(0);
+        assertEquals("field", field.getName());
+        assertEquals("value", field.getValue());
+        FileUpload file = (FileUpload) datas.get(1);
+        assertEquals("file", file.getName());
+        assertEquals("a;b.txt", file.getFilename());
+        assertEquals("text/plain", file.getContentType());
+        assertTrue(file.isCompleted());
+        assertEquals("line1\r\n--bound\r\nline2", file.getString(CharsetUtil.US_ASCII));
+        Attribute empty = (Attribute) datas.get(2);
+        assertEquals("", empty.getValue());
+        sink.destroy();
+    }
+
+    private static void offer(HttpPostMultipartStreamDecoder decoder, HttpContent content) {
+        try {
+            decoder.offer(content);
+        } finally {
+            content.release();
+        }
+    }
+
+    private static final class RecordingSink implements HttpPostMultipartStreamDecoder.Sink {
+        final List<HttpHeaders> headers = new ArrayList<HttpHeaders>();
+        final List<String> parts = new ArrayList<String>();
+        private StringBuilder current;
+
+        @Override
+        public void partStarted(HttpHeaders headers) {
+            this.headers.add(headers);
+            current = new StringBuilder();
+        }
+
+        @Override
+        public void partContent(ByteBuf content) {
+            current.append(content.toString(CharsetUtil.US_ASCII));
+            content.release();
+        }
+
+        @Override
+        public void partEnded() {
+            parts.add(current.toString());
+            current = null;
+        }
+    }
+}
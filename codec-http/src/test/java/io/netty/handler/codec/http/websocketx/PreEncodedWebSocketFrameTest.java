@@ -0,0 +1,141 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http.websocketx;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.DefaultChannelId;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.handler.codec.EncoderException;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PreEncodedWebSocketFrameTest {
+
+    private static final Random random = new Random();
+
+    private static ByteBuf encode(WebSocketFrame frame) {
+        EmbeddedChannel channel = new EmbeddedChannel(new WebSocket08FrameEncoder(false));
+        assertTrue(channel.writeOutbound(frame));
+        ByteBuf encoded = Unpooled.buffer();
+        for (;;) {
+            ByteBuf buf = channel.readOutbound();
+            if (buf == null) {
+                break;
+            }
+            encoded.writeBytes(buf);
+            buf.release();
+        }
+        assertFalse(channel.finish());
+        return encoded;
+    }
+
+    @Test
+    public void testSameEncodingAsEncoder() {
+        for (int length : new int[] { 0, 10, 300, 70000 }) {
+            byte[] payload = new byte[length];
+            random.nextBytes(payload);
+            BinaryWebSocketFrame frame = new BinaryWebSocketFrame(Unpooled.wrappedBuffer(payload));
+            PreEncodedWebSocketFrame preEncoded = PreEncodedWebSocketFrame.encode(
+                    UnpooledByteBufAllocator.DEFAULT, frame);
+            assertEquals(1, frame.refCnt());
+            assertFalse(preEncoded.hasCompressedFrame());
+
+            ByteBuf expected = encode(frame);
+            ByteBuf actual = encode(preEncoded);
+            assertTrue(ByteBufUtil.equals(expected, actual));
+            expected.release();
+            actual.release();
+        }
+    }
+
+    @Test
+    public void testDecode() {
+        TextWebSocketFrame frame = new TextWebSocketFrame(false, 0, "hello");
+        PreEncodedWebSocketFrame preEncoded = PreEncodedWebSocketFrame.encode(
+                UnpooledByteBufAllocator.DEFAULT, frame, 6, 15);
+        frame.release();
+        // Only complete messages are compressed.
+        assertFalse(preEncoded.hasCompressedFrame());
+        assertFalse(preEncoded.isFinalFragment());
+
+        EmbeddedChannel decoder = new EmbeddedChannel(new WebSocket08FrameDecoder(false, false, 65536));
+        assertTrue(decoder.writeInbound(encode(preEncoded)));
+        TextWebSocketFrame decoded = decoder.readInbound();
+        assertEquals("hello", decoded.text());
+        assertFalse(decoded.isFinalFragment());
+        decoded.release();
+        assertFalse(decoder.finish());
+    }
+
+    @Test
+    public void testMaskedEncoderRejectsPreEncodedFrame() {
+        final EmbeddedChannel channel = new EmbeddedChannel(new WebSocket08FrameEncoder(true));
+        TextWebSocketFrame frame = new TextWebSocketFrame("hello");
+        final PreEncodedWebSocketFrame preEncoded = PreEncodedWebSocketFrame.encode(
+                UnpooledByteBufAllocator.DEFAULT, frame);
+        frame.release();
+
+        assertThrows(EncoderException.class, new Executable() {
+            @Override
+            public void execute() {
+                channel.writeOutbound(preEncoded);
+            }
+        });
+        assertEquals(0, preEncoded.refCnt());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testBroadcast() {
+        ChannelGroup group = new DefaultChannelGroup(ImmediateEventExecutor.INSTANCE);
+        EmbeddedChannel[] channels = new EmbeddedChannel[3];
+        for (int i = 0; i < channels.length; i++) {
+            channels[i] = new EmbeddedChannel(DefaultChannelId.newInstance(), new WebSocket08FrameEncoder(false));
+            group.add(channels[i]);
+        }
+
+        WebSocketFrameBroadcaster broadcaster = new WebSocketFrameBroadcaster(group, 6, 15);
+        TextWebSocketFrame frame = new TextWebSocketFrame("hello everyone");
+        assertTrue(broadcaster.writeAndFlush(frame).isSuccess());
+        assertEquals(0, frame.refCnt());
+
+        TextWebSocketFrame expectedFrame = new TextWebSocketFrame("hello everyone");
+        ByteBuf expected = encode(expectedFrame);
+        for (EmbeddedChannel channel : channels) {
+            ByteBuf encoded = channel.readOutbound();
+            assertTrue(ByteBufUtil.equals(expected, encoded));
+            // All channels share the same content.
+            encoded.release();
+            assertNull(channel.readOutbound());
+            assertFalse(channel.finish());
+        }
+        expected.release();
+    }
+}
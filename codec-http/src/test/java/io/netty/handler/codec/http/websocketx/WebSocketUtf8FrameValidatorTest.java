@@ -17,9 +17,12 @@ package io.netty.handler.codec.http.websocketx;
 
 import io.netty.buffer.Unpooled;
 import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.CharsetUtil;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.function.Executable;
 
+import java.util.Arrays;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -38,6 +41,28 @@ public class WebSocketUtf8FrameValidatorTest {
         assertCorruptedFrameExceptionHandling(new byte[]{-8, -120, -128, -128, -128});
     }
 
+    @Test
+    public void testCorruptedFrameExceptionAfterAscii() {
+        byte[] data = new byte[100];
+        Arrays.fill(data, (byte) 'a');
+        data[data.length - 2] = -50;
+        assertCorruptedFrameExceptionHandling(data);
+    }
+
+    @Test
+    public void testValidMixedText() {
+        EmbeddedChannel channel = new EmbeddedChannel(new Utf8FrameValidator());
+        String text = "ascii text which is long enough to be skipped at once, \u00e9\u20ac\ud83d\ude00 and more ascii";
+        // Split the text within the four bytes sequence of the emoji.
+        byte[] bytes = text.getBytes(CharsetUtil.UTF_8);
+        int split = text.indexOf('\ud83d') + 6;
+        assertTrue(channel.writeInbound(new TextWebSocketFrame(false, 0,
+                Unpooled.wrappedBuffer(bytes, 0, split))));
+        assertTrue(channel.writeInbound(new ContinuationWebSocketFrame(true, 0,
+                Unpooled.wrappedBuffer(bytes, split, bytes.length - split))));
+        assertTrue(channel.finishAndReleaseAll());
+    }
+
     @Test
     void testNotCloseOnProtocolViolation() {
         final EmbeddedChannel channel = new EmbeddedChannel(new Utf8FrameValidator(false));
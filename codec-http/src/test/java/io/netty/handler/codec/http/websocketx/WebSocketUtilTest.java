@@ -23,7 +23,11 @@ import io.netty.buffer.Unpooled;
 import io.netty.handler.codec.base64.Base64;
 import io.netty.util.CharsetUtil;
 import io.netty.util.internal.EmptyArrays;
+import io.netty.util.internal.PlatformDependent;
 
+import java.nio.ByteOrder;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -71,4 +75,41 @@ public class WebSocketUtilTest {
             src.release();
         }
     }
+
+    @Test
+    public void testMask() {
+        byte[] data = new byte[37];
+        PlatformDependent.threadLocalRandom().nextBytes(data);
+        int mask = 0xCAFEBABE;
+        byte[] expected = new byte[data.length];
+        for (int i = 0; i < data.length; i++) {
+            expected[i] = (byte) (data[i] ^ mask >>> 24 - (i & 3) * 8);
+        }
+
+        ByteBuf[] sources = {
+                Unpooled.wrappedBuffer(data), Unpooled.directBuffer().writeBytes(data),
+                Unpooled.wrappedBuffer(data).order(ByteOrder.LITTLE_ENDIAN), Unpooled.wrappedBuffer(data).asReadOnly()
+        };
+        for (ByteBuf src : sources) {
+            ByteBuf[] destinations = { Unpooled.buffer(data.length + 3), Unpooled.directBuffer(data.length + 3) };
+            for (ByteBuf dst : destinations) {
+                // Use an index which is not aligned to eight bytes.
+                WebSocketUtil.mask(src, 0, dst, 3, data.length, mask);
+                byte[] masked = new byte[data.length];
+                dst.getBytes(3, masked);
+                assertArrayEquals(expected, masked);
+                dst.release();
+            }
+            src.release();
+        }
+
+        // Unmask in place.
+        ByteBuf buf = Unpooled.copiedBuffer(expected);
+        WebSocketUtil.mask(buf, 1, buf, 1, data.length - 1, mask << 8 | mask >>> 24);
+        assertEquals(expected[0], buf.getByte(0));
+        for (int i = 1; i < data.length; i++) {
+            assertEquals(data[i], buf.getByte(i));
+        }
+        buf.release();
+    }
 }
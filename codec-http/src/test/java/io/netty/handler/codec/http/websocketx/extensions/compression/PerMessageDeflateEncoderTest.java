@@ -18,13 +18,17 @@ package io.netty.handler.codec.http.websocketx.extensions.compression;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
 import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.handler.codec.EncoderException;
 import io.netty.handler.codec.compression.ZlibCodecFactory;
 import io.netty.handler.codec.compression.ZlibWrapper;
 import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.PreEncodedWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocket08FrameDecoder;
+import io.netty.handler.codec.http.websocketx.WebSocket08FrameEncoder;
 import io.netty.handler.codec.http.websocketx.WebSocketFrame;
 import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtension;
 import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionFilter;
@@ -41,6 +45,7 @@ import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -321,4 +326,140 @@ public class PerMessageDeflateEncoderTest {
         }
     }
 
+    @Test
+    public void testPreEncodedFrameResetsContext() {
+        EmbeddedChannel encoderChannel = new EmbeddedChannel(
+                new WebSocket08FrameEncoder(false), new PerMessageDeflateEncoder(6, 15, false));
+        EmbeddedChannel decoderChannel = new EmbeddedChannel(
+                new WebSocket08FrameDecoder(false, true, 65536), new PerMessageDeflateDecoder(false));
+
+        String text = "hello world, hello broadcast";
+        assertTrue(encoderChannel.writeOutbound(new TextWebSocketFrame(text)));
+        TextWebSocketFrame frame = new TextWebSocketFrame(text + text);
+        PreEncodedWebSocketFrame preEncoded = PreEncodedWebSocketFrame.encode(
+                UnpooledByteBufAllocator.DEFAULT, frame, 6, 15);
+        frame.release();
+        assertTrue(encoderChannel.writeOutbound(preEncoded));
+        // Would refer to the previous frames if the context was not reset.
+        assertTrue(encoderChannel.writeOutbound(new TextWebSocketFrame(text + text + text)));
+
+        for (;;) {
+            ByteBuf encoded = encoderChannel.readOutbound();
+            if (encoded == null) {
+                break;
+            }
+            decoderChannel.writeInbound(encoded);
+        }
+        for (int i = 1; i <= 3; i++) {
+            TextWebSocketFrame decoded = decoderChannel.readInbound();
+            StringBuilder expected = new StringBuilder();
+            for (int j = 0; j < i; j++) {
+                expected.append(text);
+            }
+            assertEquals(expected.toString(), decoded.text());
+            decoded.release();
+        }
+
+        assertFalse(encoderChannel.finish());
+        assertFalse(decoderChannel.finish());
+    }
+
+    @Test
+    public void testPreEncodedFrameWithLargerWindow() {
+        EmbeddedChannel encoderChannel = new EmbeddedChannel(new PerMessageDeflateEncoder(6, 10, false));
+
+        TextWebSocketFrame frame = new TextWebSocketFrame("hello world");
+        PreEncodedWebSocketFrame preEncoded = PreEncodedWebSocketFrame.encode(
+                UnpooledByteBufAllocator.DEFAULT, frame, 6, 15);
+        frame.release();
+        assertTrue(encoderChannel.writeOutbound(preEncoded.retain()));
+
+        // The peer only accepts a smaller window, so the uncompressed encoding is used.
+        PreEncodedWebSocketFrame written = encoderChannel.readOutbound();
+        assertSame(preEncoded, written);
+        assertEquals(0, written.rsv());
+        assertFalse(written.release());
+        assertTrue(preEncoded.release());
+        assertFalse(encoderChannel.finish());
+    }
+
+    @Test
+    public void testPreEncodedFrameCompressed() {
+        EmbeddedChannel encoderChannel = new EmbeddedChannel(new PerMessageDeflateEncoder(6, 15, false));
+
+        TextWebSocketFrame frame = new TextWebSocketFrame("hello world");
+        PreEncodedWebSocketFrame preEncoded = PreEncodedWebSocketFrame.encode(
+                UnpooledByteBufAllocator.DEFAULT, frame, 6, 15);
+        frame.release();
+        assertTrue(encoderChannel.writeOutbound(preEncoded.retain()));
+
+        PreEncodedWebSocketFrame written = encoderChannel.readOutbound();
+        assertEquals(WebSocketExtension.RSV1, written.rsv());
+        assertFalse(written.hasCompressedFrame());
+        // The first byte is FIN | RSV1 | TEXT
+        assertEquals(0xC1, written.encodedFrame().getUnsignedByte(0));
+        // The content is shared.
+        assertEquals(2, preEncoded.refCnt());
+        assertFalse(written.release());
+        assertTrue(preEncoded.release());
+        assertFalse(encoderChannel.finish());
+    }
+
+    @Test
+    public void testNoContextRoundTripWithPooledContexts() {
+        EmbeddedChannel encoderChannel = new EmbeddedChannel(new PerMessageDeflateEncoder(6, 15, true));
+        EmbeddedChannel decoderChannel = new EmbeddedChannel(new PerMessageDeflateDecoder(true));
+
+        byte[] payload = new byte[1000];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) ('a' + i % 7);
+        }
+        for (int i = 0; i < 3; i++) {
+            // Alternate between heap and direct buffers, which are copied before they are compressed.
+            ByteBuf content = i % 2 == 0 ? Unpooled.wrappedBuffer(payload) :
+                    Unpooled.directBuffer().writeBytes(payload);
+            assertTrue(encoderChannel.writeOutbound(new TextWebSocketFrame(true, 0, content)));
+            TextWebSocketFrame compressedFrame = encoderChannel.readOutbound();
+            assertEquals(WebSocketExtension.RSV1, compressedFrame.rsv());
+            assertTrue(compressedFrame.content().readableBytes() < payload.length);
+
+            assertTrue(decoderChannel.writeInbound(compressedFrame));
+            TextWebSocketFrame uncompressedFrame = decoderChannel.readInbound();
+            assertEquals(0, uncompressedFrame.rsv());
+            assertEquals(Unpooled.wrappedBuffer(payload), uncompressedFrame.content());
+            uncompressedFrame.release();
+        }
+
+        WebSocketCompressionMetrics encoderMetrics = WebSocketCompressionMetrics.get(encoderChannel);
+        assertEquals(3 * payload.length, encoderMetrics.uncompressedBytesWritten());
+        assertTrue(encoderMetrics.compressionRatio() > 1);
+        assertTrue(encoderMetrics.bytesSaved() > 0);
+        WebSocketCompressionMetrics decoderMetrics = WebSocketCompressionMetrics.get(decoderChannel);
+        assertEquals(3 * payload.length, decoderMetrics.uncompressedBytesRead());
+        assertEquals(encoderMetrics.compressedBytesWritten(), decoderMetrics.compressedBytesRead());
+
+        assertFalse(encoderChannel.finish());
+        assertFalse(decoderChannel.finish());
+    }
+
+    @Test
+    public void testMemoryBudget() {
+        long deflaterMemory = CompressionMemoryBudget.deflaterMemory(15, 8);
+        CompressionMemoryBudget budget = new CompressionMemoryBudget(deflaterMemory);
+
+        PerMessageDeflateEncoder encoder = new PerMessageDeflateEncoder(6, 15, 8, false, NEVER_SKIP, budget);
+        EmbeddedChannel encoderChannel = new EmbeddedChannel(encoder);
+        assertFalse(encoder.isNoContext());
+        assertEquals(deflaterMemory, budget.usedBytes());
+
+        // The budget is exhausted, so the second encoder discards its context after every message.
+        PerMessageDeflateEncoder encoder2 = new PerMessageDeflateEncoder(6, 15, 8, false, NEVER_SKIP, budget);
+        EmbeddedChannel encoderChannel2 = new EmbeddedChannel(encoder2);
+        assertTrue(encoder2.isNoContext());
+        assertEquals(deflaterMemory, budget.usedBytes());
+
+        assertFalse(encoderChannel.finish());
+        assertFalse(encoderChannel2.finish());
+        assertEquals(0, budget.usedBytes());
+    }
 }
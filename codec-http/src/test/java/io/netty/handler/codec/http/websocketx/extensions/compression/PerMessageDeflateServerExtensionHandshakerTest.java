@@ -24,6 +24,7 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import io.netty.handler.codec.http.websocketx.extensions.WebSocketServerExtension;
 import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionData;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionFilterProvider;
 
 import java.util.Collections;
 import java.util.HashMap;
@@ -173,4 +174,54 @@ public class PerMessageDeflateServerExtensionHandshakerTest {
         assertEquals(PERMESSAGE_DEFLATE_EXTENSION, data.name());
         assertTrue(data.parameters().isEmpty());
     }
+
+    @Test
+    public void testHandshakeWithExhaustedMemoryBudget() {
+        CompressionMemoryBudget budget = new CompressionMemoryBudget(
+                CompressionMemoryBudget.inflaterMemory(MAX_WINDOW_SIZE));
+        PerMessageDeflateServerExtensionHandshaker handshaker =
+                new PerMessageDeflateServerExtensionHandshaker(6, false, MAX_WINDOW_SIZE, false, false,
+                        WebSocketExtensionFilterProvider.DEFAULT, 8, budget);
+
+        // execute
+        WebSocketServerExtension extension = handshaker.handshakeExtension(
+                new WebSocketExtensionData(PERMESSAGE_DEFLATE_EXTENSION, Collections.<String, String>emptyMap()));
+
+        // test
+        assertNotNull(extension);
+        WebSocketExtensionData data = extension.newReponseData();
+        assertEquals(1, data.parameters().size());
+        assertTrue(data.parameters().containsKey(SERVER_NO_CONTEXT));
+
+        // execute
+        budget.reserve(1);
+        extension = handshaker.handshakeExtension(
+                new WebSocketExtensionData(PERMESSAGE_DEFLATE_EXTENSION, Collections.<String, String>emptyMap()));
+
+        // test
+        data = extension.newReponseData();
+        assertEquals(2, data.parameters().size());
+        assertTrue(data.parameters().containsKey(SERVER_NO_CONTEXT));
+        assertTrue(data.parameters().containsKey(CLIENT_NO_CONTEXT));
+    }
+
+    @Test
+    public void testHandshakeChecksCombinedMemoryOfBothContexts() {
+        // Both the deflater and the inflater fit into the budget, but not together.
+        CompressionMemoryBudget budget = new CompressionMemoryBudget(
+                CompressionMemoryBudget.deflaterMemory(MAX_WINDOW_SIZE, 8));
+        PerMessageDeflateServerExtensionHandshaker handshaker =
+                new PerMessageDeflateServerExtensionHandshaker(6, false, MAX_WINDOW_SIZE, false, false,
+                        WebSocketExtensionFilterProvider.DEFAULT, 8, budget);
+
+        // execute
+        WebSocketServerExtension extension = handshaker.handshakeExtension(
+                new WebSocketExtensionData(PERMESSAGE_DEFLATE_EXTENSION, Collections.<String, String>emptyMap()));
+
+        // test
+        assertNotNull(extension);
+        WebSocketExtensionData data = extension.newReponseData();
+        assertEquals(1, data.parameters().size());
+        assertTrue(data.parameters().containsKey(SERVER_NO_CONTEXT));
+    }
 }
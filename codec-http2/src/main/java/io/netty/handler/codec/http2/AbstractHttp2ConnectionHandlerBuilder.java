@@ -59,6 +59,7 @@ import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
  *   <li>{@link #server(boolean)}</li>
  *   <li>{@link #connection(Http2Connection)}</li>
  *   <li>{@link #frameLogger(Http2FrameLogger)}</li>
+ *   <li>{@link #metrics(Http2ConnectionMetrics)}</li>
  *   <li>{@link #headerSensitivityDetector(SensitivityDetector)}</li>
  *   <li>{@link #encoderEnforceMaxConcurrentStreams(boolean)}</li>
  *   <li>{@link #encoderIgnoreMaxHeaderListSize(boolean)}</li>
@@ -101,6 +102,7 @@ public abstract class AbstractHttp2ConnectionHandlerBuilder<T extends Http2Conne
     // * OK to use with server() and connection()
     private Boolean validateHeaders;
     private Http2FrameLogger frameLogger;
+    private Http2ConnectionMetrics metrics;
     private SensitivityDetector headerSensitivityDetector;
     private Boolean encoderEnforceMaxConcurrentStreams;
     private Boolean encoderIgnoreMaxHeaderListSize;
@@ -256,6 +258,7 @@ public abstract class AbstractHttp2ConnectionHandlerBuilder<T extends Http2Conne
         enforceConstraint("codec", "maxReservedStreams", maxReservedStreams);
         enforceConstraint("codec", "connection", connection);
         enforceConstraint("codec", "frameLogger", frameLogger);
+        enforceConstraint("codec", "metrics", metrics);
         enforceConstraint("codec", "validateHeaders", validateHeaders);
         enforceConstraint("codec", "headerSensitivityDetector", headerSensitivityDetector);
         enforceConstraint("codec", "encoderEnforceMaxConcurrentStreams", encoderEnforceMaxConcurrentStreams);
@@ -309,6 +312,25 @@ public abstract class AbstractHttp2ConnectionHandlerBuilder<T extends Http2Conne
         return self();
     }
 
+    /**
+     * Returns the {@link Http2ConnectionMetrics} that are collected for the connection.
+     *
+     * @return {@link Http2ConnectionMetrics} if set, or {@code null} if not set.
+     */
+    protected Http2ConnectionMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the {@link Http2ConnectionMetrics} that are collected for the connection. As the metrics are collected for
+     * a single connection, a new builder or a new instance has to be used for every connection.
+     */
+    protected B metrics(Http2ConnectionMetrics metrics) {
+        enforceNonCodecConstraints("metrics");
+        this.metrics = checkNotNull(metrics, "metrics");
+        return self();
+    }
+
     /**
      * Returns if the encoder should queue frames if the maximum number of concurrent streams
      * would otherwise be exceeded.
@@ -536,12 +558,19 @@ public abstract class AbstractHttp2ConnectionHandlerBuilder<T extends Http2Conne
 
     private T buildFromConnection(Http2Connection connection) {
         Long maxHeaderListSize = initialSettings.maxHeaderListSize();
-        Http2FrameReader reader = new DefaultHttp2FrameReader(new DefaultHttp2HeadersDecoder(isValidateHeaders(),
-                maxHeaderListSize == null ? DEFAULT_HEADER_LIST_SIZE : maxHeaderListSize,
+        DefaultHttp2FrameReader defaultReader = new DefaultHttp2FrameReader(new DefaultHttp2HeadersDecoder(
+                isValidateHeaders(), maxHeaderListSize == null ? DEFAULT_HEADER_LIST_SIZE : maxHeaderListSize,
                 /* initialHuffmanDecodeCapacity= */ -1));
-        Http2FrameWriter writer = encoderIgnoreMaxHeaderListSize == null ?
+        DefaultHttp2FrameWriter defaultWriter = encoderIgnoreMaxHeaderListSize == null ?
                 new DefaultHttp2FrameWriter(headerSensitivityDetector()) :
                 new DefaultHttp2FrameWriter(headerSensitivityDetector(), encoderIgnoreMaxHeaderListSize);
+        if (metrics != null) {
+            metrics.connection(connection);
+            defaultReader.metrics(metrics);
+            defaultWriter.metrics(metrics);
+        }
+        Http2FrameReader reader = defaultReader;
+        Http2FrameWriter writer = defaultWriter;
 
         if (frameLogger != null) {
             reader = new Http2InboundFrameLogger(reader, frameLogger);
@@ -549,6 +578,9 @@ public abstract class AbstractHttp2ConnectionHandlerBuilder<T extends Http2Conne
         }
 
         Http2ConnectionEncoder encoder = new DefaultHttp2ConnectionEncoder(connection, writer);
+        if (metrics != null && connection.remote().flowController() instanceof DefaultHttp2RemoteFlowController) {
+            ((DefaultHttp2RemoteFlowController) connection.remote().flowController()).metrics(metrics);
+        }
         boolean encoderEnforceMaxConcurrentStreams = encoderEnforceMaxConcurrentStreams();
 
         if (maxQueuedControlFrames != 0) {
@@ -0,0 +1,288 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http2;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.UnstableApi;
+
+import static io.netty.handler.codec.http2.Http2CodecUtil.MAX_INITIAL_WINDOW_SIZE;
+import static io.netty.util.internal.ObjectUtil.checkInRange;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * A {@link DefaultHttp2LocalFlowController} which sizes the flow-control windows after the bandwidth-delay product of
+ * the connection, so that transfers over links with a high bandwidth and latency are not limited by the windows,
+ * without configuring large windows for all connections.
+ * <p>
+ * When {@code DATA} is received and no measurement is in progress, a {@code PING} is sent and the bytes which are
+ * received until its acknowledgement arrives are counted, which estimates the bandwidth-delay product. If they
+ * are close to the current connection window and the bandwidth went up, the connection window and the target window
+ * of the streams are grown to twice the estimate, up to the configured maximums. The acknowledgement of such a
+ * {@code PING} is not passed to the {@link Http2FrameListener}.
+ * <p>
+ * The windows of the streams are adjusted when a {@code WINDOW_UPDATE} is due for them anyway, so streams which only
+ * carry little data do not cause additional frames. The initial window size which is advertised in the
+ * {@code SETTINGS} stays unchanged.
+ * <p>
+ * While {@link #isUnderMemoryPressure()} returns {@code true}, each measurement halves the windows instead, down
+ * to the initial ones. Shrinking a window only takes effect once the peer used it up, as advertised windows can not
+ * be revoked.
+ * <p>
+ * This class is <strong>NOT</strong> thread safe, except for the methods which return measurements. The assumption is
+ * all other methods must be invoked from the event loop of the connection.
+ */
+@UnstableApi
+public class AutoTuningHttp2LocalFlowController extends DefaultHttp2LocalFlowController {
+
+    // "BDP_PING" in ASCII.
+    static final long BDP_PING_DATA = 0x4244505f50494e47L;
+
+    /**
+     * The share of the maximum direct memory above which {@link #isUnderMemoryPressure()} returns {@code true} by
+     * default.
+     */
+    private static final double MEMORY_PRESSURE_RATIO = 0.9;
+
+    private final Http2Stream connectionStream;
+    private final int maxConnectionWindowSize;
+    private final int maxStreamWindowSize;
+    private Http2FrameWriter frameWriter;
+    private ChannelHandlerContext ctx;
+
+    private int minConnectionWindowSize = -1;
+    private int streamWindowSize = -1;
+    private boolean pingInFlight;
+    private long pingSentNanos;
+    private long bytesSincePing;
+    private double maxBandwidth;
+    private long stallStartNanos;
+
+    private volatile long bandwidthDelayProduct;
+    private volatile long roundTripTimeNanos;
+    private volatile int connectionWindowSize;
+    private volatile int currentStreamWindowSize;
+    private volatile long stallCount;
+    private volatile long stallTimeNanos;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param connection the connection state.
+     * @param maxConnectionWindowSize the maximum size to which the connection window is grown.
+     * @param maxStreamWindowSize the maximum size to which the windows of the streams are grown.
+     */
+    public AutoTuningHttp2LocalFlowController(Http2Connection connection, int maxConnectionWindowSize,
+                                              int maxStreamWindowSize) {
+        this(connection, DEFAULT_WINDOW_UPDATE_RATIO, false, maxConnectionWindowSize, maxStreamWindowSize);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param connection the connection state.
+     * @param windowUpdateRatio the window percentage below which to send a {@code WINDOW_UPDATE}.
+     * @param autoRefillConnectionWindow if {@code true}, the connection window is refilled as soon as data is
+     * received, see {@link DefaultHttp2LocalFlowController#DefaultHttp2LocalFlowController(Http2Connection,
+     * float, boolean)}.
+     * @param maxConnectionWindowSize the maximum size to which the connection window is grown.
+     * @param maxStreamWindowSize the maximum size to which the windows of the streams are grown.
+     */
+    public AutoTuningHttp2LocalFlowController(Http2Connection connection, float windowUpdateRatio,
+                                              boolean autoRefillConnectionWindow, int maxConnectionWindowSize,
+                                              int maxStreamWindowSize) {
+        super(connection, windowUpdateRatio, autoRefillConnectionWindow);
+        connectionStream = connection.connectionStream();
+        this.maxConnectionWindowSize = checkInRange(maxConnectionWindowSize, 0, MAX_INITIAL_WINDOW_SIZE,
+                "maxConnectionWindowSize");
+        this.maxStreamWindowSize = checkInRange(maxStreamWindowSize, 0, MAX_INITIAL_WINDOW_SIZE,
+                "maxStreamWindowSize");
+        connectionWindowSize = initialWindowSize(connectionStream);
+        currentStreamWindowSize = initialWindowSize();
+    }
+
+    @Override
+    public AutoTuningHttp2LocalFlowController frameWriter(Http2FrameWriter frameWriter) {
+        super.frameWriter(frameWriter);
+        this.frameWriter = frameWriter;
+        return this;
+    }
+
+    @Override
+    public void channelHandlerContext(ChannelHandlerContext ctx) {
+        super.channelHandlerContext(ctx);
+        this.ctx = ctx;
+    }
+
+    /**
+     * Returns the bandwidth-delay product in bytes, as measured by the last {@code PING}, or {@code 0} if none
+     * was measured yet.
+     */
+    public long bandwidthDelayProduct() {
+        return bandwidthDelayProduct;
+    }
+
+    /**
+     * Returns the round-trip time in nanoseconds, as measured by the last {@code PING}, or {@code 0} if none was
+     * measured yet.
+     */
+    public long roundTripTimeNanos() {
+        return roundTripTimeNanos;
+    }
+
+    /**
+     * Returns the size of the connection window, as of the last measurement.
+     */
+    public int connectionWindowSize() {
+        return connectionWindowSize;
+    }
+
+    /**
+     * Returns the size to which the windows of the streams are adjusted, as of the last measurement.
+     */
+    public int streamWindowSize() {
+        return currentStreamWindowSize;
+    }
+
+    /**
+     * Returns how often the peer used up the connection window, which stalls all its streams until the window is
+     * updated.
+     */
+    public long stallCount() {
+        return stallCount;
+    }
+
+    /**
+     * Returns the time in nanoseconds during which the connection window was used up.
+     */
+    public long stallTimeNanos() {
+        return stallTimeNanos;
+    }
+
+    /**
+     * Returns {@code true} if the windows should be shrunk because the memory is getting scarce. By default this is
+     * the case once {@code 90%} of the maximum direct memory are used, if the direct memory usage is tracked.
+     */
+    protected boolean isUnderMemoryPressure() {
+        long usedDirectMemory = PlatformDependent.usedDirectMemory();
+        return usedDirectMemory >= 0 &&
+               usedDirectMemory > PlatformDependent.maxDirectMemory() * MEMORY_PRESSURE_RATIO;
+    }
+
+    @Override
+    public void receiveFlowControlledFrame(Http2Stream stream, ByteBuf data, int padding, boolean endOfStream)
+            throws Http2Exception {
+        super.receiveFlowControlledFrame(stream, data, padding, endOfStream);
+        int dataLength = data.readableBytes() + padding;
+        if (dataLength == 0) {
+            return;
+        }
+
+        if (!pingInFlight) {
+            pingInFlight = true;
+            pingSentNanos = System.nanoTime();
+            bytesSincePing = 0;
+            frameWriter.writePing(ctx, false, BDP_PING_DATA, ctx.newPromise());
+        }
+        bytesSincePing += dataLength;
+
+        if (stallStartNanos == 0 && windowSize(connectionStream) <= 0) {
+            stallStartNanos = System.nanoTime();
+            stallCount++;
+        }
+
+        if (stream != null && !endOfStream && streamWindowSize >= 0 && isReceiving(stream)) {
+            adjustStreamWindow(stream);
+        }
+    }
+
+    @Override
+    public boolean consumeBytes(Http2Stream stream, int numBytes) throws Http2Exception {
+        boolean windowUpdateSent = super.consumeBytes(stream, numBytes);
+        if (stallStartNanos != 0 && windowSize(connectionStream) > 0) {
+            stallTimeNanos += System.nanoTime() - stallStartNanos;
+            stallStartNanos = 0;
+        }
+        return windowUpdateSent;
+    }
+
+    private static boolean isReceiving(Http2Stream stream) {
+        Http2Stream.State state = stream.state();
+        return state == Http2Stream.State.OPEN || state == Http2Stream.State.HALF_CLOSED_LOCAL;
+    }
+
+    private void adjustStreamWindow(Http2Stream stream) throws Http2Exception {
+        int initialWindowSize = initialWindowSize(stream);
+        // Only adjust the window once a WINDOW_UPDATE is due anyway, so it does not cause an additional frame.
+        if (initialWindowSize != streamWindowSize &&
+                windowSize(stream) <= initialWindowSize * windowUpdateRatio(stream)) {
+            incrementWindowSize(stream, streamWindowSize - initialWindowSize);
+        }
+    }
+
+    /**
+     * Called when a {@code PING} acknowledgement was received.
+     *
+     * @return {@code true} if the {@code PING} was sent by this flow controller.
+     */
+    boolean onPingAckRead(long data) throws Http2Exception {
+        if (data != BDP_PING_DATA || !pingInFlight) {
+            return false;
+        }
+        pingInFlight = false;
+        long rtt = max(1, System.nanoTime() - pingSentNanos);
+        long bdp = bytesSincePing;
+        roundTripTimeNanos = rtt;
+        bandwidthDelayProduct = bdp;
+
+        int currentConnectionWindowSize = initialWindowSize(connectionStream);
+        if (minConnectionWindowSize < 0) {
+            minConnectionWindowSize = currentConnectionWindowSize;
+            streamWindowSize = initialWindowSize();
+        }
+
+        if (isUnderMemoryPressure()) {
+            maxBandwidth = 0;
+            resize(max(minConnectionWindowSize, currentConnectionWindowSize >>> 1),
+                   max(initialWindowSize(), streamWindowSize >>> 1));
+            return true;
+        }
+
+        double bandwidth = (double) bdp / rtt;
+        if (bdp >= currentConnectionWindowSize * 2L / 3 && bandwidth > maxBandwidth) {
+            maxBandwidth = bandwidth;
+            // Twice the estimate, as the data of the next round trip arrives while the WINDOW_UPDATE is in flight.
+            int target = (int) min(bdp * 2, MAX_INITIAL_WINDOW_SIZE);
+            resize(max(currentConnectionWindowSize, min(target, maxConnectionWindowSize)),
+                   max(streamWindowSize, min(target, maxStreamWindowSize)));
+        } else {
+            resize(currentConnectionWindowSize, streamWindowSize);
+        }
+        return true;
+    }
+
+    private void resize(int newConnectionWindowSize, int newStreamWindowSize) throws Http2Exception {
+        int delta = newConnectionWindowSize - initialWindowSize(connectionStream);
+        if (delta != 0) {
+            incrementWindowSize(connectionStream, delta);
+        }
+        streamWindowSize = newStreamWindowSize;
+        connectionWindowSize = initialWindowSize(connectionStream);
+        currentStreamWindowSize = newStreamWindowSize;
+    }
+}
@@ -34,7 +34,6 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Queue;
 import java.util.Set;
@@ -387,10 +386,20 @@ public class DefaultHttp2Connection implements Http2Connection {
         private static final byte META_STATE_SENT_PUSHPROMISE = 1 << 3;
         private static final byte META_STATE_RECV_HEADERS = 1 << 4;
         private static final byte META_STATE_RECV_TRAILERS = 1 << 5;
+        private static final byte META_STATE_ACTIVE = 1 << 6;
         private final int id;
-        private final PropertyMap properties = new PropertyMap();
+        /**
+         * The values of the properties, indexed by {@link DefaultPropertyKey#index} and lazily allocated.
+         */
+        private Object[] properties = EmptyArrays.EMPTY_OBJECTS;
         private State state;
         private byte metaState;
+        /**
+         * The neighbours in the list of active streams, which is kept in the streams themselves rather than in a
+         * separate collection, to save allocating an entry for every active stream.
+         */
+        private DefaultStream prevActive;
+        private DefaultStream nextActive;
 
         DefaultStream(int id, State state) {
             this.id = id;
@@ -467,17 +476,36 @@ public class DefaultHttp2Connection implements Http2Connection {
 
         @Override
         public final <V> V setProperty(PropertyKey key, V value) {
-            return properties.add(verifyKey(key), value);
+            int index = verifyKey(key).index;
+            if (index >= properties.length) {
+                properties = Arrays.copyOf(properties, propertyKeyRegistry.size());
+            }
+            @SuppressWarnings("unchecked")
+            V prevValue = (V) properties[index];
+            properties[index] = value;
+            return prevValue;
         }
 
+        @SuppressWarnings("unchecked")
         @Override
         public final <V> V getProperty(PropertyKey key) {
-            return properties.get(verifyKey(key));
+            int index = verifyKey(key).index;
+            if (index >= properties.length) {
+                return null;
+            }
+            return (V) properties[index];
         }
 
+        @SuppressWarnings("unchecked")
         @Override
         public final <V> V removeProperty(PropertyKey key) {
-            return properties.remove(verifyKey(key));
+            int index = verifyKey(key).index;
+            V prevValue = null;
+            if (index < properties.length) {
+                prevValue = (V) properties[index];
+                properties[index] = null;
+            }
+            return prevValue;
         }
 
         @Override
@@ -561,43 +589,8 @@ public class DefaultHttp2Connection implements Http2Connection {
             return localEndpoint.isValidStreamId(id);
         }
 
-        /**
-         * Provides the lazy initialization for the {@link DefaultStream} data map.
-         */
-        private class PropertyMap {
-            Object[] values = EmptyArrays.EMPTY_OBJECTS;
-
-            <V> V add(DefaultPropertyKey key, V value) {
-                resizeIfNecessary(key.index);
-                @SuppressWarnings("unchecked")
-                V prevValue = (V) values[key.index];
-                values[key.index] = value;
-                return prevValue;
-            }
-
-            @SuppressWarnings("unchecked")
-            <V> V get(DefaultPropertyKey key) {
-                if (key.index >= values.length) {
-                    return null;
-                }
-                return (V) values[key.index];
-            }
-
-            @SuppressWarnings("unchecked")
-            <V> V remove(DefaultPropertyKey key) {
-                V prevValue = null;
-                if (key.index < values.length) {
-                    prevValue = (V) values[key.index];
-                    values[key.index] = null;
-                }
-                return prevValue;
-            }
-
-            void resizeIfNecessary(int index) {
-                if (index >= values.length) {
-                    values = Arrays.copyOf(values, propertyKeyRegistry.size());
-                }
-            }
+        final boolean isActive() {
+            return (metaState & META_STATE_ACTIVE) != 0;
         }
     }
 
@@ -934,7 +927,9 @@ public class DefaultHttp2Connection implements Http2Connection {
     private final class ActiveStreams {
         private final List<Listener> listeners;
         private final Queue<Event> pendingEvents = new ArrayDeque<Event>(4);
-        private final Set<Http2Stream> streams = new LinkedHashSet<Http2Stream>();
+        private DefaultStream head;
+        private DefaultStream tail;
+        private int size;
         private int pendingIterations;
 
         ActiveStreams(List<Listener> listeners) {
@@ -942,7 +937,7 @@ public class DefaultHttp2Connection implements Http2Connection {
         }
 
         public int size() {
-            return streams.size();
+            return size;
         }
 
         public void activate(final DefaultStream stream) {
@@ -974,10 +969,14 @@ public class DefaultHttp2Connection implements Http2Connection {
         public Http2Stream forEachActiveStream(Http2StreamVisitor visitor) throws Http2Exception {
             incrementPendingIterations();
             try {
-                for (Http2Stream stream : streams) {
+                DefaultStream stream = head;
+                while (stream != null) {
+                    // Modifications are deferred while iterating, except when closing the connection.
+                    DefaultStream next = stream.nextActive;
                     if (!visitor.visit(stream)) {
                         return stream;
                     }
+                    stream = next;
                 }
                 return null;
             } finally {
@@ -986,7 +985,7 @@ public class DefaultHttp2Connection implements Http2Connection {
         }
 
         void addToActiveStreams(DefaultStream stream) {
-            if (streams.add(stream)) {
+            if (add(stream)) {
                 // Update the number of active streams initiated by the endpoint.
                 stream.createdBy().numActiveStreams++;
 
@@ -1001,7 +1000,7 @@ public class DefaultHttp2Connection implements Http2Connection {
         }
 
         void removeFromActiveStreams(DefaultStream stream, Iterator<?> itr) {
-            if (streams.remove(stream)) {
+            if (remove(stream)) {
                 // Update the number of active streams initiated by the endpoint.
                 stream.createdBy().numActiveStreams--;
                 notifyClosed(stream);
@@ -1009,6 +1008,45 @@ public class DefaultHttp2Connection implements Http2Connection {
             removeStream(stream, itr);
         }
 
+        private boolean add(DefaultStream stream) {
+            if (stream.isActive()) {
+                return false;
+            }
+            stream.metaState |= DefaultStream.META_STATE_ACTIVE;
+            stream.prevActive = tail;
+            if (tail == null) {
+                head = stream;
+            } else {
+                tail.nextActive = stream;
+            }
+            tail = stream;
+            size++;
+            return true;
+        }
+
+        private boolean remove(DefaultStream stream) {
+            if (!stream.isActive()) {
+                return false;
+            }
+            stream.metaState &= ~DefaultStream.META_STATE_ACTIVE;
+            DefaultStream prev = stream.prevActive;
+            DefaultStream next = stream.nextActive;
+            if (prev == null) {
+                head = next;
+            } else {
+                prev.nextActive = next;
+            }
+            if (next == null) {
+                tail = prev;
+            } else {
+                next.prevActive = prev;
+            }
+            stream.prevActive = null;
+            stream.nextActive = null;
+            size--;
+            return true;
+        }
+
         boolean allowModifications() {
             return pendingIterations == 0;
         }
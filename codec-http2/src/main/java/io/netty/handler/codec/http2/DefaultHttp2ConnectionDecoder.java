@@ -526,6 +526,12 @@ public class DefaultHttp2ConnectionDecoder implements Http2ConnectionDecoder {
 
         @Override
         public void onPingAckRead(ChannelHandlerContext ctx, long data) throws Http2Exception {
+            Http2LocalFlowController flowController = flowController();
+            if (flowController instanceof AutoTuningHttp2LocalFlowController &&
+                    ((AutoTuningHttp2LocalFlowController) flowController).onPingAckRead(data)) {
+                // The PING was sent by the flow controller to measure the bandwidth-delay product.
+                return;
+            }
             listener.onPingAckRead(ctx, data);
         }
 
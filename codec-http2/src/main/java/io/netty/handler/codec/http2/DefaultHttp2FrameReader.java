@@ -69,6 +69,7 @@ public class DefaultHttp2FrameReader implements Http2FrameReader, Http2FrameSize
     private int payloadLength;
     private HeadersContinuation headersContinuation;
     private int maxFrameSize;
+    private Http2ConnectionMetrics metrics;
 
     /**
      * Create a new instance.
@@ -93,6 +94,17 @@ public class DefaultHttp2FrameReader implements Http2FrameReader, Http2FrameSize
         maxFrameSize = DEFAULT_MAX_FRAME_SIZE;
     }
 
+    /**
+     * Sets the {@link Http2ConnectionMetrics} which count the frames read, the {@code PING} acknowledgements and, if
+     * the {@link Http2HeadersDecoder} is a {@link DefaultHttp2HeadersDecoder}, the decoded header fields.
+     */
+    void metrics(Http2ConnectionMetrics metrics) {
+        this.metrics = metrics;
+        if (headersDecoder instanceof DefaultHttp2HeadersDecoder) {
+            ((DefaultHttp2HeadersDecoder) headersDecoder).metrics(metrics);
+        }
+    }
+
     @Override
     public Http2HeadersDecoder.Configuration headersConfiguration() {
         return headersDecoder.configuration();
@@ -244,6 +256,10 @@ public class DefaultHttp2FrameReader implements Http2FrameReader, Http2FrameSize
         // We have consumed the data, next time we read we will be expecting to read a frame header.
         readingHeaders = true;
 
+        if (metrics != null) {
+            metrics.frameRead(frameType);
+        }
+
         // Read the payload and fire the frame event to the listener.
         switch (frameType) {
             case DATA:
@@ -567,6 +583,9 @@ public class DefaultHttp2FrameReader implements Http2FrameReader, Http2FrameSize
     private void readPingFrame(ChannelHandlerContext ctx, long data,
             Http2FrameListener listener) throws Http2Exception {
         if (flags.ack()) {
+            if (metrics != null) {
+                metrics.pingAckRead(data);
+            }
             listener.onPingAckRead(ctx, data);
         } else {
             listener.onPingRead(ctx, data);
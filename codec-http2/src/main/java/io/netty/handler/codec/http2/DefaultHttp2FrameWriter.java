@@ -83,6 +83,7 @@ public class DefaultHttp2FrameWriter implements Http2FrameWriter, Http2FrameSize
 
     private final Http2HeadersEncoder headersEncoder;
     private int maxFrameSize;
+    private Http2ConnectionMetrics metrics;
 
     public DefaultHttp2FrameWriter() {
         this(new DefaultHttp2HeadersEncoder());
@@ -101,6 +102,17 @@ public class DefaultHttp2FrameWriter implements Http2FrameWriter, Http2FrameSize
         maxFrameSize = DEFAULT_MAX_FRAME_SIZE;
     }
 
+    /**
+     * Sets the {@link Http2ConnectionMetrics} which count the frames written, the {@code PING} frames sent and, if
+     * the {@link Http2HeadersEncoder} is a {@link DefaultHttp2HeadersEncoder}, the encoded header fields.
+     */
+    void metrics(Http2ConnectionMetrics metrics) {
+        this.metrics = metrics;
+        if (headersEncoder instanceof DefaultHttp2HeadersEncoder) {
+            ((DefaultHttp2HeadersEncoder) headersEncoder).metrics(metrics);
+        }
+    }
+
     @Override
     public Configuration configuration() {
         return this;
@@ -153,6 +165,7 @@ public class DefaultHttp2FrameWriter implements Http2FrameWriter, Http2FrameSize
                 do {
                     // Write the header.
                     ctx.write(frameHeader.retainedSlice(), promiseAggregator.newPromise());
+                    frameWritten(DATA);
 
                     // Write the payload.
                     ctx.write(data.readRetainedSlice(maxFrameSize), promiseAggregator.newPromise());
@@ -172,6 +185,7 @@ public class DefaultHttp2FrameWriter implements Http2FrameWriter, Http2FrameSize
                 flags.endOfStream(endStream);
                 writeFrameHeaderInternal(frameHeader2, remainingData, DATA, flags, streamId);
                 ctx.write(frameHeader2, promiseAggregator.newPromise());
+                frameWritten(DATA);
 
                 // Write the payload.
                 ByteBuf lastFrame = data.readSlice(remainingData);
@@ -195,6 +209,7 @@ public class DefaultHttp2FrameWriter implements Http2FrameWriter, Http2FrameSize
                         frameHeader = null;
                     }
                     ctx.write(lastFrame, promiseAggregator.newPromise());
+                    frameWritten(DATA);
 
                     // Write the payload.
                     lastFrame = data.readableBytes() != maxFrameSize ? data.readSlice(maxFrameSize) : data;
@@ -217,6 +232,7 @@ public class DefaultHttp2FrameWriter implements Http2FrameWriter, Http2FrameSize
                     writeFrameHeaderInternal(frameHeader2, framePaddingBytes + frameDataBytes, DATA, flags, streamId);
                     writePaddingLength(frameHeader2, framePaddingBytes);
                     ctx.write(frameHeader2, promiseAggregator.newPromise());
+                    frameWritten(DATA);
 
                     // Write the payload.
                     if (data != null) { // Make sure Data is not null
@@ -282,6 +298,7 @@ public class DefaultHttp2FrameWriter implements Http2FrameWriter, Http2FrameSize
             buf.writeInt(exclusive ? (int) (0x80000000L | streamDependency) : streamDependency);
             // Adjust the weight so that it fits into a single byte on the wire.
             buf.writeByte(weight - 1);
+            frameWritten(PRIORITY);
             return ctx.write(buf, promise);
         } catch (Throwable t) {
             return promise.setFailure(t);
@@ -298,6 +315,7 @@ public class DefaultHttp2FrameWriter implements Http2FrameWriter, Http2FrameSize
             ByteBuf buf = ctx.alloc().buffer(RST_STREAM_FRAME_LENGTH);
             writeFrameHeaderInternal(buf, INT_FIELD_LENGTH, RST_STREAM, new Http2Flags(), streamId);
             buf.writeInt((int) errorCode);
+            frameWritten(RST_STREAM);
             return ctx.write(buf, promise);
         } catch (Throwable t) {
             return promise.setFailure(t);
@@ -316,6 +334,7 @@ public class DefaultHttp2FrameWriter implements Http2FrameWriter, Http2FrameSize
                 buf.writeChar(entry.key());
                 buf.writeInt(entry.value().intValue());
             }
+            frameWritten(SETTINGS);
             return ctx.write(buf, promise);
         } catch (Throwable t) {
             return promise.setFailure(t);
@@ -327,6 +346,7 @@ public class DefaultHttp2FrameWriter implements Http2FrameWriter, Http2FrameSize
         try {
             ByteBuf buf = ctx.alloc().buffer(FRAME_HEADER_LENGTH);
             writeFrameHeaderInternal(buf, 0, SETTINGS, new Http2Flags().ack(true), 0);
+            frameWritten(SETTINGS);
             return ctx.write(buf, promise);
         } catch (Throwable t) {
             return promise.setFailure(t);
@@ -341,6 +361,12 @@ public class DefaultHttp2FrameWriter implements Http2FrameWriter, Http2FrameSize
         // in the catch block.
         writeFrameHeaderInternal(buf, PING_FRAME_PAYLOAD_LENGTH, PING, flags, 0);
         buf.writeLong(data);
+        if (metrics != null) {
+            metrics.frameWritten(PING);
+            if (!ack) {
+                metrics.pingSent(data);
+            }
+        }
         return ctx.write(buf, promise);
     }
 
@@ -376,6 +402,7 @@ public class DefaultHttp2FrameWriter implements Http2FrameWriter, Http2FrameSize
             // Write out the promised stream ID.
             buf.writeInt(promisedStreamId);
             ctx.write(buf, promiseAggregator.newPromise());
+            frameWritten(PUSH_PROMISE);
 
             // Write the first fragment.
             ctx.write(fragment, promiseAggregator.newPromise());
@@ -419,6 +446,7 @@ public class DefaultHttp2FrameWriter implements Http2FrameWriter, Http2FrameSize
             buf.writeInt(lastStreamId);
             buf.writeInt((int) errorCode);
             ctx.write(buf, promiseAggregator.newPromise());
+            frameWritten(GO_AWAY);
         } catch (Throwable t) {
             try {
                 debugData.release();
@@ -447,6 +475,7 @@ public class DefaultHttp2FrameWriter implements Http2FrameWriter, Http2FrameSize
             ByteBuf buf = ctx.alloc().buffer(WINDOW_UPDATE_FRAME_LENGTH);
             writeFrameHeaderInternal(buf, INT_FIELD_LENGTH, WINDOW_UPDATE, new Http2Flags(), streamId);
             buf.writeInt(windowSizeIncrement);
+            frameWritten(WINDOW_UPDATE);
             return ctx.write(buf, promise);
         } catch (Throwable t) {
             return promise.setFailure(t);
@@ -465,6 +494,7 @@ public class DefaultHttp2FrameWriter implements Http2FrameWriter, Http2FrameSize
             // in the catch block.
             writeFrameHeaderInternal(buf, payload.readableBytes(), frameType, flags, streamId);
             ctx.write(buf, promiseAggregator.newPromise());
+            frameWritten(frameType);
         } catch (Throwable t) {
             try {
                 payload.release();
@@ -523,6 +553,7 @@ public class DefaultHttp2FrameWriter implements Http2FrameWriter, Http2FrameSize
                 buf.writeByte(weight - 1);
             }
             ctx.write(buf, promiseAggregator.newPromise());
+            frameWritten(HEADERS);
 
             // Write the first fragment.
             ctx.write(fragment, promiseAggregator.newPromise());
@@ -568,6 +599,7 @@ public class DefaultHttp2FrameWriter implements Http2FrameWriter, Http2FrameSize
 
                 if (headerBlock.isReadable()) {
                     ctx.write(buf.retain(), promiseAggregator.newPromise());
+                    frameWritten(CONTINUATION);
                 } else {
                     // The frame header is different for the last frame, so re-allocate and release the old buffer
                     flags = flags.endOfHeaders(true);
@@ -575,6 +607,7 @@ public class DefaultHttp2FrameWriter implements Http2FrameWriter, Http2FrameSize
                     buf = ctx.alloc().buffer(CONTINUATION_FRAME_HEADER_LENGTH);
                     writeFrameHeaderInternal(buf, fragmentReadableBytes, CONTINUATION, flags, streamId);
                     ctx.write(buf, promiseAggregator.newPromise());
+                    frameWritten(CONTINUATION);
                 }
 
                 ctx.write(fragment, promiseAggregator.newPromise());
@@ -584,6 +617,12 @@ public class DefaultHttp2FrameWriter implements Http2FrameWriter, Http2FrameSize
         return promiseAggregator;
     }
 
+    private void frameWritten(byte frameType) {
+        if (metrics != null) {
+            metrics.frameWritten(frameType);
+        }
+    }
+
     /**
      * Returns the number of padding bytes that should be appended to the end of a frame.
      */
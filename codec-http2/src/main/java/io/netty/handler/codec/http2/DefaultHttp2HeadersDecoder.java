@@ -148,6 +148,10 @@ public class DefaultHttp2HeadersDecoder implements Http2HeadersDecoder, Http2Hea
         return maxHeaderListSizeGoAway;
     }
 
+    void metrics(Http2ConnectionMetrics metrics) {
+        hpackDecoder.metrics(metrics);
+    }
+
     @Override
     public Configuration configuration() {
         return this;
@@ -16,18 +16,23 @@
 package io.netty.handler.codec.http2;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
 import io.netty.util.internal.UnstableApi;
 
 import static io.netty.handler.codec.http2.Http2Error.COMPRESSION_ERROR;
 import static io.netty.handler.codec.http2.Http2Exception.connectionError;
 import static io.netty.util.internal.ObjectUtil.checkNotNull;
+import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
 
 @UnstableApi
 public class DefaultHttp2HeadersEncoder implements Http2HeadersEncoder, Http2HeadersEncoder.Configuration {
     private final HpackEncoder hpackEncoder;
     private final SensitivityDetector sensitivityDetector;
     private final ByteBuf tableSizeChangeOutput = Unpooled.buffer();
+    private final CachedHeaderBlock[] headerBlockCache;
+    private int nextCacheSlot;
+    private Http2ConnectionMetrics metrics;
 
     public DefaultHttp2HeadersEncoder() {
         this(NEVER_SENSITIVE);
@@ -48,8 +53,27 @@ public class DefaultHttp2HeadersEncoder implements Http2HeadersEncoder, Http2Hea
 
     public DefaultHttp2HeadersEncoder(SensitivityDetector sensitivityDetector, boolean ignoreMaxHeaderListSize,
                                       int dynamicTableArraySizeHint, int huffCodeThreshold) {
+        this(sensitivityDetector, ignoreMaxHeaderListSize, dynamicTableArraySizeHint, huffCodeThreshold, 0);
+    }
+
+    /**
+     * Creates a new instance which caches the encoded header blocks of up to {@code headerBlockCacheSize}
+     * {@link ReadOnlyHttp2Headers} instances.
+     * <p>
+     * When such an instance is encoded again and the encoding neither added nor removed entries of the dynamic
+     * table, the cached header block is written instead of encoding each header field again, as long as the dynamic
+     * table stays unchanged. This helps when the same immutable set of headers is sent on many streams, for example
+     * the request headers of a client which always calls the same service. Other {@link Http2Headers} are always
+     * encoded, as they may be modified between two calls.
+     *
+     * @param headerBlockCacheSize the maximum number of cached header blocks, or {@code 0} to disable the cache.
+     */
+    public DefaultHttp2HeadersEncoder(SensitivityDetector sensitivityDetector, boolean ignoreMaxHeaderListSize,
+                                      int dynamicTableArraySizeHint, int huffCodeThreshold,
+                                      int headerBlockCacheSize) {
         this(sensitivityDetector,
-                new HpackEncoder(ignoreMaxHeaderListSize, dynamicTableArraySizeHint, huffCodeThreshold));
+                new HpackEncoder(ignoreMaxHeaderListSize, dynamicTableArraySizeHint, huffCodeThreshold),
+                headerBlockCacheSize);
     }
 
     /**
@@ -57,8 +81,15 @@ public class DefaultHttp2HeadersEncoder implements Http2HeadersEncoder, Http2Hea
      * for testing but violate the RFC if used outside the scope of testing.
      */
     DefaultHttp2HeadersEncoder(SensitivityDetector sensitivityDetector, HpackEncoder hpackEncoder) {
+        this(sensitivityDetector, hpackEncoder, 0);
+    }
+
+    DefaultHttp2HeadersEncoder(SensitivityDetector sensitivityDetector, HpackEncoder hpackEncoder,
+                               int headerBlockCacheSize) {
         this.sensitivityDetector = checkNotNull(sensitivityDetector, "sensitiveDetector");
         this.hpackEncoder = checkNotNull(hpackEncoder, "hpackEncoder");
+        headerBlockCache = checkPositiveOrZero(headerBlockCacheSize, "headerBlockCacheSize") == 0 ?
+                null : new CachedHeaderBlock[headerBlockCacheSize];
     }
 
     @Override
@@ -71,7 +102,11 @@ public class DefaultHttp2HeadersEncoder implements Http2HeadersEncoder, Http2Hea
                 tableSizeChangeOutput.clear();
             }
 
-            hpackEncoder.encodeHeaders(streamId, buffer, headers, sensitivityDetector);
+            if (headerBlockCache != null && headers instanceof ReadOnlyHttp2Headers) {
+                encodeHeadersCached(streamId, headers, buffer);
+            } else {
+                hpackEncoder.encodeHeaders(streamId, buffer, headers, sensitivityDetector);
+            }
         } catch (Http2Exception e) {
             throw e;
         } catch (Throwable t) {
@@ -79,6 +114,54 @@ public class DefaultHttp2HeadersEncoder implements Http2HeadersEncoder, Http2Hea
         }
     }
 
+    private void encodeHeadersCached(int streamId, Http2Headers headers, ByteBuf buffer) throws Http2Exception {
+        long tableVersion = hpackEncoder.tableVersion();
+        CachedHeaderBlock cached = null;
+        for (CachedHeaderBlock block : headerBlockCache) {
+            if (block != null && block.headers == headers) {
+                cached = block;
+                break;
+            }
+        }
+        if (cached != null && cached.tableVersion == tableVersion) {
+            buffer.writeBytes(cached.headerBlock);
+            if (metrics != null) {
+                // Count the replayed header fields as if they were encoded again.
+                metrics.hpackEncoderReplayed(cached.indexedHeaders, cached.literalHeaders);
+            }
+            return;
+        }
+
+        int startIndex = buffer.writerIndex();
+        long indexedBefore = metrics == null ? 0 : metrics.hpackEncoderIndexedHeaders();
+        long literalBefore = metrics == null ? 0 : metrics.hpackEncoderLiteralHeaders();
+        hpackEncoder.encodeHeaders(streamId, buffer, headers, sensitivityDetector);
+        // The header block can only be replayed if it does not modify the dynamic table, otherwise the tables of the
+        // peer and the encoder would diverge.
+        if (hpackEncoder.tableVersion() == tableVersion) {
+            byte[] headerBlock = ByteBufUtil.getBytes(buffer, startIndex, buffer.writerIndex() - startIndex);
+            if (cached == null) {
+                cached = new CachedHeaderBlock(headers);
+                headerBlockCache[nextCacheSlot] = cached;
+                nextCacheSlot = (nextCacheSlot + 1) % headerBlockCache.length;
+            }
+            cached.headerBlock = headerBlock;
+            cached.tableVersion = tableVersion;
+            if (metrics != null) {
+                cached.indexedHeaders = (int) (metrics.hpackEncoderIndexedHeaders() - indexedBefore);
+                cached.literalHeaders = (int) (metrics.hpackEncoderLiteralHeaders() - literalBefore);
+            }
+        }
+    }
+
+    private void clearHeaderBlockCache() {
+        if (headerBlockCache != null) {
+            for (int i = 0; i < headerBlockCache.length; i++) {
+                headerBlockCache[i] = null;
+            }
+        }
+    }
+
     @Override
     public void maxHeaderTableSize(long max) throws Http2Exception {
         hpackEncoder.setMaxHeaderTableSize(tableSizeChangeOutput, max);
@@ -92,6 +175,8 @@ public class DefaultHttp2HeadersEncoder implements Http2HeadersEncoder, Http2Hea
     @Override
     public void maxHeaderListSize(long max) throws Http2Exception {
         hpackEncoder.setMaxHeaderListSize(max);
+        // The cached header blocks were only checked against the previous limit.
+        clearHeaderBlockCache();
     }
 
     @Override
@@ -99,8 +184,25 @@ public class DefaultHttp2HeadersEncoder implements Http2HeadersEncoder, Http2Hea
         return hpackEncoder.getMaxHeaderListSize();
     }
 
+    void metrics(Http2ConnectionMetrics metrics) {
+        this.metrics = metrics;
+        hpackEncoder.metrics(metrics);
+    }
+
     @Override
     public Configuration configuration() {
         return this;
     }
+
+    private static final class CachedHeaderBlock {
+        final Http2Headers headers;
+        byte[] headerBlock;
+        long tableVersion;
+        int indexedHeaders;
+        int literalHeaders;
+
+        CachedHeaderBlock(Http2Headers headers) {
+            this.headers = headers;
+        }
+    }
 }
@@ -53,6 +53,7 @@ public class DefaultHttp2RemoteFlowController implements Http2RemoteFlowControll
     private int initialWindowSize = DEFAULT_WINDOW_SIZE;
     private WritabilityMonitor monitor;
     private ChannelHandlerContext ctx;
+    private Http2ConnectionMetrics metrics;
 
     public DefaultHttp2RemoteFlowController(Http2Connection connection) {
         this(connection, (Listener) null);
@@ -125,6 +126,13 @@ public class DefaultHttp2RemoteFlowController implements Http2RemoteFlowControll
         });
     }
 
+    /**
+     * Sets the {@link Http2ConnectionMetrics} which record the time streams are blocked on the flow control windows.
+     */
+    void metrics(Http2ConnectionMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     /**
      * {@inheritDoc}
      * <p>
@@ -343,6 +351,10 @@ public class DefaultHttp2RemoteFlowController implements Http2RemoteFlowControll
             // In case an exception is thrown we want to remember it and pass it to cancel(Throwable).
             Throwable cause = null;
             FlowControlled frame;
+            if (metrics != null) {
+                // The connection window may have been opened since the stream was last updated.
+                updateBlocked();
+            }
             try {
                 assert !writing;
                 writing = true;
@@ -411,6 +423,9 @@ public class DefaultHttp2RemoteFlowController implements Http2RemoteFlowControll
             window += delta;
 
             streamByteDistributor.updateStreamableBytes(this);
+            if (metrics != null) {
+                updateBlocked();
+            }
             return window;
         }
 
@@ -501,6 +516,20 @@ public class DefaultHttp2RemoteFlowController implements Http2RemoteFlowControll
             if (updateStreamableBytes) {
                 streamByteDistributor.updateStreamableBytes(this);
             }
+            if (metrics != null) {
+                updateBlocked();
+            }
+        }
+
+        /**
+         * Starts or stops timing how long the pending data of this stream is blocked by the flow control windows.
+         */
+        private void updateBlocked() {
+            if (pendingBytes > 0 && !cancelled && writableWindow() <= 0) {
+                metrics.flowControlBlocked(stream.id());
+            } else {
+                metrics.flowControlUnblocked(stream.id());
+            }
         }
 
         /**
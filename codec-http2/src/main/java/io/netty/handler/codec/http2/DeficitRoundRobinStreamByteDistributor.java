@@ -0,0 +1,399 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http2;
+
+import io.netty.util.internal.UnstableApi;
+
+import static io.netty.handler.codec.http2.Http2CodecUtil.DEFAULT_MIN_ALLOCATION_CHUNK;
+import static io.netty.handler.codec.http2.Http2CodecUtil.DEFAULT_PRIORITY_WEIGHT;
+import static io.netty.handler.codec.http2.Http2CodecUtil.MAX_WEIGHT;
+import static io.netty.handler.codec.http2.Http2CodecUtil.MIN_WEIGHT;
+import static io.netty.handler.codec.http2.Http2CodecUtil.streamableBytes;
+import static io.netty.handler.codec.http2.Http2Error.INTERNAL_ERROR;
+import static io.netty.handler.codec.http2.Http2Exception.connectionError;
+import static io.netty.util.internal.ObjectUtil.checkInRange;
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * A {@link StreamByteDistributor} which allocates the bytes to the streams by weighted
+ * <a href="https://en.wikipedia.org/wiki/Deficit_round_robin">deficit round robin</a>. All operations take constant
+ * time, regardless of the number of streams, which makes it suitable for connections with many concurrent streams.
+ * <p>
+ * In each round, every stream which has data to send is granted a quantum which is proportional to its weight, and
+ * may write up to the bytes it was granted but did not use yet. The weights are taken from the {@code PRIORITY}
+ * information of <a href="https://tools.ietf.org/html/rfc7540#section-5.3">RFC 7540</a>, while the dependencies are
+ * ignored.
+ * <p>
+ * Optionally, the urgency and incremental parameters of the
+ * <a href="https://www.rfc-editor.org/rfc/rfc9218.html">Extensible Prioritization Scheme</a> can be set with
+ * {@link #updatePriority(int, int, boolean)}. Streams of a lower urgency are only written once no stream of a higher
+ * urgency can be written. Among the streams of the same urgency, non-incremental streams are written one after the
+ * other before the incremental ones share the remaining bytes. Streams are incremental and of urgency
+ * {@value #DEFAULT_URGENCY} unless configured otherwise.
+ */
+@UnstableApi
+public final class DeficitRoundRobinStreamByteDistributor implements StreamByteDistributor {
+
+    /**
+     * The urgency of streams for which {@link #updatePriority(int, int, boolean)} was not called.
+     */
+    public static final int DEFAULT_URGENCY = 3;
+
+    private static final int URGENCY_LEVELS = 8;
+
+    private final Http2Connection connection;
+    private final Http2Connection.PropertyKey stateKey;
+    private final StateQueue[] incrementalQueues = new StateQueue[URGENCY_LEVELS];
+    private final StateQueue[] nonIncrementalQueues = new StateQueue[URGENCY_LEVELS];
+
+    /**
+     * The number of bytes granted per round to a stream of the default weight, if the bytes to distribute do not
+     * allow more.
+     */
+    private int minAllocationChunk = DEFAULT_MIN_ALLOCATION_CHUNK;
+    private long totalStreamableBytes;
+    private long totalIncrementalWeight;
+
+    public DeficitRoundRobinStreamByteDistributor(Http2Connection connection) {
+        this.connection = checkNotNull(connection, "connection");
+        for (int i = 0; i < URGENCY_LEVELS; i++) {
+            incrementalQueues[i] = new StateQueue(true);
+            nonIncrementalQueues[i] = new StateQueue(false);
+        }
+
+        // Add a state for the connection.
+        stateKey = connection.newKey();
+        Http2Stream connectionStream = connection.connectionStream();
+        connectionStream.setProperty(stateKey, new State(connectionStream));
+
+        // Register for notification of new streams.
+        connection.addListener(new Http2ConnectionAdapter() {
+            @Override
+            public void onStreamAdded(Http2Stream stream) {
+                stream.setProperty(stateKey, new State(stream));
+            }
+
+            @Override
+            public void onStreamClosed(Http2Stream stream) {
+                state(stream).close();
+            }
+        });
+    }
+
+    /**
+     * Sets the number of bytes which are granted per round to a stream of the default weight, if the bytes to
+     * distribute do not allow to grant more. Defaults to 1KiB.
+     *
+     * @param minAllocationChunk the minimum number of bytes that will be allocated to each stream.
+     * Must be > 0.
+     */
+    public void minAllocationChunk(int minAllocationChunk) {
+        checkPositive(minAllocationChunk, "minAllocationChunk");
+        this.minAllocationChunk = minAllocationChunk;
+    }
+
+    /**
+     * Sets the priority of a stream, as defined by the
+     * <a href="https://www.rfc-editor.org/rfc/rfc9218.html#section-4">Extensible Prioritization Scheme</a>.
+     *
+     * @param streamId the id of the stream.
+     * @param urgency the urgency of the stream, from {@code 0} (highest) to {@code 7} (lowest).
+     * @param incremental {@code true} if the stream shares the bytes with the other incremental streams of the same
+     * urgency, {@code false} if it is written on its own.
+     */
+    public void updatePriority(int streamId, int urgency, boolean incremental) {
+        checkInRange(urgency, 0, URGENCY_LEVELS - 1, "urgency");
+        Http2Stream stream = connection.stream(streamId);
+        if (stream == null) {
+            return;
+        }
+        State state = state(stream);
+        if (state.urgency == urgency && state.incremental == incremental) {
+            return;
+        }
+        StateQueue queue = state.queue;
+        if (queue != null) {
+            queue.remove(state);
+        }
+        state.urgency = urgency;
+        state.incremental = incremental;
+        if (queue != null) {
+            state.addToQueue();
+        }
+    }
+
+    @Override
+    public void updateStreamableBytes(StreamState streamState) {
+        state(streamState.stream()).updateStreamableBytes(streamableBytes(streamState),
+                                                          streamState.hasFrame(),
+                                                          streamState.windowSize());
+    }
+
+    @Override
+    public void updateDependencyTree(int childStreamId, int parentStreamId, short weight, boolean exclusive) {
+        // Only the weight is used, the dependencies are ignored.
+        checkInRange(weight, MIN_WEIGHT, MAX_WEIGHT, "weight");
+        Http2Stream stream = connection.stream(childStreamId);
+        if (stream != null) {
+            State state = state(stream);
+            if (state.queue != null && state.queue.incremental) {
+                totalIncrementalWeight += weight - state.weight;
+            }
+            state.weight = weight;
+        }
+    }
+
+    @Override
+    public boolean distribute(int maxBytes, Writer writer) throws Http2Exception {
+        for (int urgency = 0; urgency < URGENCY_LEVELS; urgency++) {
+            maxBytes = distributeNonIncremental(nonIncrementalQueues[urgency], maxBytes, writer);
+            maxBytes = distributeIncremental(incrementalQueues[urgency], maxBytes, writer);
+        }
+        return totalStreamableBytes > 0;
+    }
+
+    private static int distributeNonIncremental(StateQueue queue, int maxBytes, Writer writer)
+            throws Http2Exception {
+        State state;
+        while ((state = queue.poll()) != null) {
+            if (state.windowNegative) {
+                continue;
+            }
+            if (maxBytes == 0 && state.streamableBytes > 0) {
+                queue.addFirst(state);
+                break;
+            }
+            // The stream is added back to the head of the queue if it has more frames, so it is written until it is
+            // done or blocked before the next stream is written.
+            int chunk = min(maxBytes, state.streamableBytes);
+            maxBytes -= chunk;
+            state.write(chunk, writer);
+        }
+        return maxBytes;
+    }
+
+    private int distributeIncremental(StateQueue queue, int maxBytes, Writer writer) throws Http2Exception {
+        if (queue.isEmpty()) {
+            return maxBytes;
+        }
+        // Grant larger quanta if there are enough bytes, so few streams are not written in many small chunks.
+        final long bytesToShare = maxBytes;
+        final long totalWeight = max(1, totalIncrementalWeight);
+
+        State state;
+        while ((state = queue.poll()) != null) {
+            if (state.windowNegative) {
+                continue;
+            }
+            if (maxBytes == 0 && state.streamableBytes > 0) {
+                // Stop at the first state that can't send, it is first in line once there are bytes again. Note
+                // that empty frames at the head of the queue will always be written, assuming the stream window
+                // is not negative.
+                queue.addFirst(state);
+                break;
+            }
+
+            long quantum = max((long) minAllocationChunk * state.weight / DEFAULT_PRIORITY_WEIGHT,
+                               bytesToShare * state.weight / totalWeight);
+            state.deficit = (int) min(Integer.MAX_VALUE, state.deficit + max(1, quantum));
+            int chunk = min(state.deficit, min(maxBytes, state.streamableBytes));
+            maxBytes -= chunk;
+            state.deficit -= chunk;
+
+            // Write the allocated bytes, which enqueues the state again if it has more to write.
+            state.write(chunk, writer);
+            if (state.streamableBytes == 0) {
+                // As in plain deficit round robin, a stream that has nothing to send does not keep its deficit.
+                state.deficit = 0;
+            }
+        }
+        return maxBytes;
+    }
+
+    private State state(Http2Stream stream) {
+        return checkNotNull(stream, "stream").getProperty(stateKey);
+    }
+
+    /**
+     * Returns the number of bytes which {@link #distribute(int, Writer)} granted to the stream in the current round
+     * but which it did not write yet.
+     * <p>
+     * This is package-private for testing only.
+     */
+    int deficit(int streamId) {
+        return state(connection.stream(streamId)).deficit;
+    }
+
+    /**
+     * The remote flow control state for a single stream.
+     */
+    private final class State {
+        final Http2Stream stream;
+        int streamableBytes;
+        int deficit;
+        short weight = DEFAULT_PRIORITY_WEIGHT;
+        int urgency = DEFAULT_URGENCY;
+        boolean incremental = true;
+        boolean windowNegative;
+        boolean writing;
+
+        // The queue this state is part of, if any, and its neighbours in it.
+        StateQueue queue;
+        State prev;
+        State next;
+
+        State(Http2Stream stream) {
+            this.stream = stream;
+        }
+
+        void updateStreamableBytes(int newStreamableBytes, boolean hasFrame, int windowSize) {
+            assert hasFrame || newStreamableBytes == 0 :
+                "hasFrame: " + hasFrame + " newStreamableBytes: " + newStreamableBytes;
+
+            int delta = newStreamableBytes - streamableBytes;
+            if (delta != 0) {
+                streamableBytes = newStreamableBytes;
+                totalStreamableBytes += delta;
+            }
+            // States with a negative window are skipped by the distribution loop, which removes them from the queue.
+            // If the window is zero we only want to queue if we are not writing. If we are writing that means we gave
+            // the state a chance to write zero length frames. We wait until updateStreamableBytes is called again
+            // before this state is allowed to write.
+            windowNegative = windowSize < 0;
+            if (hasFrame && (windowSize > 0 || windowSize == 0 && !writing)) {
+                addToQueue();
+            }
+        }
+
+        /**
+         * Write any allocated bytes for the given stream and updates the streamable bytes,
+         * assuming all of the bytes will be written.
+         */
+        void write(int numBytes, Writer writer) throws Http2Exception {
+            writing = true;
+            try {
+                // Write the allocated bytes.
+                writer.write(stream, numBytes);
+            } catch (Throwable t) {
+                throw connectionError(INTERNAL_ERROR, t, "byte distribution write error");
+            } finally {
+                writing = false;
+            }
+        }
+
+        void addToQueue() {
+            if (queue != null) {
+                return;
+            }
+            if (incremental) {
+                incrementalQueues[urgency].addLast(this);
+            } else if (writing) {
+                // A non-incremental stream keeps its place while it is written.
+                nonIncrementalQueues[urgency].addFirst(this);
+            } else {
+                nonIncrementalQueues[urgency].addLast(this);
+            }
+        }
+
+        void close() {
+            // Remove this state from the queue.
+            if (queue != null) {
+                queue.remove(this);
+            }
+
+            // Clear the streamable bytes.
+            updateStreamableBytes(0, false, 0);
+        }
+    }
+
+    /**
+     * A doubly linked list of {@link State}s, which allows to remove any of them in constant time.
+     */
+    private final class StateQueue {
+        private final boolean incremental;
+        private State head;
+        private State tail;
+
+        StateQueue(boolean incremental) {
+            this.incremental = incremental;
+        }
+
+        boolean isEmpty() {
+            return head == null;
+        }
+
+        State poll() {
+            State state = head;
+            if (state != null) {
+                remove(state);
+            }
+            return state;
+        }
+
+        void addFirst(State state) {
+            assert state.queue == null;
+            state.queue = this;
+            state.next = head;
+            if (head != null) {
+                head.prev = state;
+            } else {
+                tail = state;
+            }
+            head = state;
+            if (incremental) {
+                totalIncrementalWeight += state.weight;
+            }
+        }
+
+        void addLast(State state) {
+            assert state.queue == null;
+            state.queue = this;
+            state.prev = tail;
+            if (tail != null) {
+                tail.next = state;
+            } else {
+                head = state;
+            }
+            tail = state;
+            if (incremental) {
+                totalIncrementalWeight += state.weight;
+            }
+        }
+
+        void remove(State state) {
+            assert state.queue == this;
+            if (state.prev != null) {
+                state.prev.next = state.next;
+            } else {
+                head = state.next;
+            }
+            if (state.next != null) {
+                state.next.prev = state.prev;
+            } else {
+                tail = state.prev;
+            }
+            state.prev = null;
+            state.next = null;
+            state.queue = null;
+            if (incremental) {
+                totalIncrementalWeight -= state.weight;
+            }
+        }
+    }
+}
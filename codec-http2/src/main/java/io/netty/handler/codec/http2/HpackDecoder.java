@@ -94,6 +94,7 @@ final class HpackDecoder {
     private long maxDynamicTableSize;
     private long encoderMaxDynamicTableSize;
     private boolean maxDynamicTableSizeChangeRequired;
+    private Http2ConnectionMetrics metrics;
 
     /**
      * Create a new instance.
@@ -337,6 +338,13 @@ final class HpackDecoder {
         return maxHeaderListSize;
     }
 
+    /**
+     * Sets the {@link Http2ConnectionMetrics} which count the indexed and literal header fields.
+     */
+    void metrics(Http2ConnectionMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     /**
      * Return the maximum table size. This is the maximum size allowed by both the encoder and the
      * decoder.
@@ -441,6 +449,9 @@ final class HpackDecoder {
     }
 
     private HpackHeaderField getIndexedHeader(int index) throws Http2Exception {
+        if (metrics != null) {
+            metrics.hpackDecoderIndexed();
+        }
         if (index <= HpackStaticTable.length) {
             return HpackStaticTable.getEntry(index);
         }
@@ -452,6 +463,9 @@ final class HpackDecoder {
 
     private void insertHeader(Http2HeadersSink sink, AsciiString name, AsciiString value, IndexType indexType) {
         sink.appendToHeaderList(name, value);
+        if (metrics != null) {
+            metrics.hpackDecoderLiteral();
+        }
 
         switch (indexType) {
             case NONE:
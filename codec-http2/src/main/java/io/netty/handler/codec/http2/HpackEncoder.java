@@ -79,8 +79,10 @@ final class HpackEncoder {
     private final boolean ignoreMaxHeaderListSize;
     private final int huffCodeThreshold;
     private long size;
+    private long tableVersion;
     private long maxHeaderTableSize;
     private long maxHeaderListSize;
+    private Http2ConnectionMetrics metrics;
 
     /**
      * Creates a new encoder.
@@ -174,6 +176,9 @@ final class HpackEncoder {
                 encodeLiteral(out, name, value, IndexType.NONE, nameIndex);
             } else {
                 encodeInteger(out, 0x80, 7, staticTableIndex);
+                if (metrics != null) {
+                    metrics.hpackEncoderIndexed();
+                }
             }
             return;
         }
@@ -191,11 +196,17 @@ final class HpackEncoder {
         if (headerField != null) {
             // Section 6.1. Indexed Header Field Representation
             encodeInteger(out, 0x80, 7, getIndexPlusOffset(headerField.counter));
+            if (metrics != null) {
+                metrics.hpackEncoderIndexed();
+            }
         } else {
             int staticTableIndex = HpackStaticTable.getIndexInsensitive(name, value);
             if (staticTableIndex != HpackStaticTable.NOT_FOUND) {
                 // Section 6.1. Indexed Header Field Representation
                 encodeInteger(out, 0x80, 7, staticTableIndex);
+                if (metrics != null) {
+                    metrics.hpackEncoderIndexed();
+                }
             } else {
                 ensureCapacity(headerSize);
                 encodeAndAddEntries(out, name, nameHash, value, valueHash);
@@ -317,6 +328,9 @@ final class HpackEncoder {
      */
     private void encodeLiteral(ByteBuf out, CharSequence name, CharSequence value, IndexType indexType,
                                int nameIndex) {
+        if (metrics != null) {
+            metrics.hpackEncoderLiteral();
+        }
         boolean nameIndexValid = nameIndex != NOT_FOUND;
         switch (indexType) {
             case INCREMENTAL:
@@ -363,6 +377,21 @@ final class HpackEncoder {
         return isEmpty() ? 0 : getIndex(head.after.counter);
     }
 
+    /**
+     * Return a number which changes whenever a header field is added to or removed from the dynamic table, so
+     * indices into the dynamic table stay valid as long as it does not change.
+     */
+    long tableVersion() {
+        return tableVersion;
+    }
+
+    /**
+     * Sets the {@link Http2ConnectionMetrics} which count the indexed and literal header fields.
+     */
+    void metrics(Http2ConnectionMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     /**
      * Return the size of the dynamic table. Exposed for testing.
      */
@@ -436,6 +465,7 @@ final class HpackEncoder {
         nameValueEntries[bucket] = e;
         latest.after = e;
         latest = e;
+        tableVersion++;
     }
 
     /**
@@ -451,6 +481,7 @@ final class HpackEncoder {
         if (isEmpty()) {
             latest = head;
         }
+        tableVersion++;
     }
 
     private boolean isEmpty() {
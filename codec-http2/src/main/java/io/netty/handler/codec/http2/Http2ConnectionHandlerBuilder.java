@@ -76,6 +76,11 @@ public final class Http2ConnectionHandlerBuilder
         return super.frameLogger(frameLogger);
     }
 
+    @Override
+    public Http2ConnectionHandlerBuilder metrics(Http2ConnectionMetrics metrics) {
+        return super.metrics(metrics);
+    }
+
     @Override
     public Http2ConnectionHandlerBuilder encoderEnforceMaxConcurrentStreams(
             boolean encoderEnforceMaxConcurrentStreams) {
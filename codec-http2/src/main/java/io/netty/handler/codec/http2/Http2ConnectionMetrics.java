@@ -0,0 +1,520 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http2;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+
+/**
+ * Collects metrics of a single HTTP/2 connection: the active streams and their lifetimes, the time streams are blocked
+ * on the flow control windows of the remote endpoint, the HPACK encoding and decoding hits, the frames read and
+ * written by type, the {@code PING} round trip times and the {@code GOAWAY} error codes.
+ * <p>
+ * An instance is registered via the {@code metrics(Http2ConnectionMetrics)} method of the connection handler
+ * builders and must only be used for a single connection. The metrics are updated from the event loop of the
+ * connection without allocating or synchronizing, and can be read from any thread. Values read from another thread
+ * may lag slightly behind.
+ */
+@UnstableApi
+public final class Http2ConnectionMetrics {
+
+    private static final int ACTIVE_STREAMS = 0;
+    private static final int STREAMS_OPENED = 1;
+    private static final int HPACK_ENCODER_INDEXED = 2;
+    private static final int HPACK_ENCODER_LITERAL = 3;
+    private static final int HPACK_DECODER_INDEXED = 4;
+    private static final int HPACK_DECODER_LITERAL = 5;
+    private static final int GO_AWAYS_RECEIVED = 6;
+    private static final int GO_AWAYS_SENT = 7;
+    private static final int COUNTERS = 8;
+
+    private static final int MAX_ERROR_CODE = (int) Http2Error.HTTP_1_1_REQUIRED.code();
+
+    private final AtomicLongArray counters = new AtomicLongArray(COUNTERS);
+    private final AtomicLongArray framesRead = new AtomicLongArray(256);
+    private final AtomicLongArray framesWritten = new AtomicLongArray(256);
+    private final AtomicLongArray goAwaysReceived = new AtomicLongArray(MAX_ERROR_CODE + 1);
+    private final AtomicLongArray goAwaysSent = new AtomicLongArray(MAX_ERROR_CODE + 1);
+    private final Histogram streamLifetimes = new Histogram();
+    private final Histogram flowControlBlockedTimes = new Histogram();
+    private final Histogram pingRoundTripTimes = new Histogram();
+
+    // Only accessed from the event loop.
+    private final StreamTimes activeSince = new StreamTimes();
+    private final StreamTimes blockedSince = new StreamTimes();
+    private long pingData;
+    private long pingSentNanos;
+    private Http2Connection connection;
+
+    /**
+     * Returns the number of currently active streams.
+     */
+    public long activeStreams() {
+        return counters.get(ACTIVE_STREAMS);
+    }
+
+    /**
+     * Returns the number of streams which became active since the connection was created.
+     */
+    public long streamsOpened() {
+        return counters.get(STREAMS_OPENED);
+    }
+
+    /**
+     * Returns the times in nanoseconds between a stream becoming active and being closed.
+     */
+    public Histogram streamLifetimes() {
+        return streamLifetimes;
+    }
+
+    /**
+     * Returns the times in nanoseconds streams had data queued which could not be written because the stream or
+     * the connection flow control window of the remote endpoint was exhausted. Only streams of connections using a
+     * {@link DefaultHttp2RemoteFlowController} are tracked.
+     */
+    public Histogram flowControlBlockedTimes() {
+        return flowControlBlockedTimes;
+    }
+
+    /**
+     * Returns the round trip times in nanoseconds of the {@code PING} frames sent to the remote endpoint. Only the
+     * most recently sent {@code PING} is timed, if several are outstanding.
+     */
+    public Histogram pingRoundTripTimes() {
+        return pingRoundTripTimes;
+    }
+
+    /**
+     * Returns the number of frames of the given type read from the remote endpoint.
+     */
+    public long framesRead(byte frameType) {
+        return framesRead.get(frameType & 0xFF);
+    }
+
+    /**
+     * Returns the number of frames of the given type written to the remote endpoint.
+     */
+    public long framesWritten(byte frameType) {
+        return framesWritten.get(frameType & 0xFF);
+    }
+
+    /**
+     * Returns the number of header fields which were encoded as an index into the static or dynamic HPACK table.
+     */
+    public long hpackEncoderIndexedHeaders() {
+        return counters.get(HPACK_ENCODER_INDEXED);
+    }
+
+    /**
+     * Returns the number of header fields which were encoded as a literal.
+     */
+    public long hpackEncoderLiteralHeaders() {
+        return counters.get(HPACK_ENCODER_LITERAL);
+    }
+
+    /**
+     * Returns the ratio of the header fields which were encoded as an index, or {@code 0} if no header field was
+     * encoded yet.
+     */
+    public double hpackEncoderHitRate() {
+        return hitRate(hpackEncoderIndexedHeaders(), hpackEncoderLiteralHeaders());
+    }
+
+    /**
+     * Returns the number of header fields which were decoded from an index into the static or dynamic HPACK table.
+     */
+    public long hpackDecoderIndexedHeaders() {
+        return counters.get(HPACK_DECODER_INDEXED);
+    }
+
+    /**
+     * Returns the number of header fields which were decoded from a literal.
+     */
+    public long hpackDecoderLiteralHeaders() {
+        return counters.get(HPACK_DECODER_LITERAL);
+    }
+
+    /**
+     * Returns the ratio of the header fields which were decoded from an index, or {@code 0} if no header field was
+     * decoded yet.
+     */
+    public double hpackDecoderHitRate() {
+        return hitRate(hpackDecoderIndexedHeaders(), hpackDecoderLiteralHeaders());
+    }
+
+    /**
+     * Returns the number of {@code GOAWAY} frames received.
+     */
+    public long goAwaysReceived() {
+        return counters.get(GO_AWAYS_RECEIVED);
+    }
+
+    /**
+     * Returns the number of {@code GOAWAY} frames received with the given error.
+     */
+    public long goAwaysReceived(Http2Error error) {
+        return goAwaysReceived.get((int) error.code());
+    }
+
+    /**
+     * Returns the number of {@code GOAWAY} frames sent.
+     */
+    public long goAwaysSent() {
+        return counters.get(GO_AWAYS_SENT);
+    }
+
+    /**
+     * Returns the number of {@code GOAWAY} frames sent with the given error.
+     */
+    public long goAwaysSent(Http2Error error) {
+        return goAwaysSent.get((int) error.code());
+    }
+
+    /**
+     * Registers this instance with the given {@link Http2Connection}.
+     */
+    void connection(Http2Connection connection) {
+        checkNotNull(connection, "connection");
+        if (this.connection != null) {
+            throw new IllegalStateException("Http2ConnectionMetrics can only be used for a single connection");
+        }
+        this.connection = connection;
+        connection.addListener(new MetricsListener());
+    }
+
+    void frameRead(byte frameType) {
+        increment(framesRead, frameType & 0xFF);
+    }
+
+    void frameWritten(byte frameType) {
+        increment(framesWritten, frameType & 0xFF);
+    }
+
+    void hpackEncoderIndexed() {
+        increment(counters, HPACK_ENCODER_INDEXED);
+    }
+
+    void hpackEncoderLiteral() {
+        increment(counters, HPACK_ENCODER_LITERAL);
+    }
+
+    void hpackEncoderReplayed(int indexed, int literal) {
+        counters.lazySet(HPACK_ENCODER_INDEXED, counters.get(HPACK_ENCODER_INDEXED) + indexed);
+        counters.lazySet(HPACK_ENCODER_LITERAL, counters.get(HPACK_ENCODER_LITERAL) + literal);
+    }
+
+    void hpackDecoderIndexed() {
+        increment(counters, HPACK_DECODER_INDEXED);
+    }
+
+    void hpackDecoderLiteral() {
+        increment(counters, HPACK_DECODER_LITERAL);
+    }
+
+    /**
+     * Starts timing how long the pending data of the given stream is blocked by the flow control windows, unless it
+     * is timed already.
+     */
+    void flowControlBlocked(int streamId) {
+        if (blockedSince.indexOf(streamId) < 0) {
+            blockedSince.put(streamId, System.nanoTime());
+        }
+    }
+
+    /**
+     * Records how long the pending data of the given stream was blocked by the flow control windows, if it was.
+     */
+    void flowControlUnblocked(int streamId) {
+        int index = blockedSince.indexOf(streamId);
+        if (index >= 0) {
+            flowControlBlockedTimes.record(System.nanoTime() - blockedSince.removeAt(index));
+        }
+    }
+
+    void pingSent(long data) {
+        pingData = data;
+        pingSentNanos = System.nanoTime();
+    }
+
+    void pingAckRead(long data) {
+        if (pingSentNanos != 0 && data == pingData) {
+            pingRoundTripTimes.record(System.nanoTime() - pingSentNanos);
+            pingSentNanos = 0;
+        }
+    }
+
+    private static double hitRate(long hits, long misses) {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    private static void goAway(AtomicLongArray errors, long errorCode) {
+        if (errorCode >= 0 && errorCode <= MAX_ERROR_CODE) {
+            increment(errors, (int) errorCode);
+        }
+    }
+
+    /**
+     * Increments a counter which is only ever written by the event loop, which allows to avoid the atomic update.
+     */
+    private static void increment(AtomicLongArray array, int index) {
+        array.lazySet(index, array.get(index) + 1);
+    }
+
+    private final class MetricsListener extends Http2ConnectionAdapter {
+
+        @Override
+        public void onStreamActive(Http2Stream stream) {
+            activeSince.put(stream.id(), System.nanoTime());
+            increment(counters, STREAMS_OPENED);
+            increment(counters, ACTIVE_STREAMS);
+        }
+
+        @Override
+        public void onStreamClosed(Http2Stream stream) {
+            int index = activeSince.indexOf(stream.id());
+            if (index >= 0) {
+                streamLifetimes.record(System.nanoTime() - activeSince.removeAt(index));
+                counters.lazySet(ACTIVE_STREAMS, counters.get(ACTIVE_STREAMS) - 1);
+            }
+            // The stream may have been closed while its data was blocked.
+            flowControlUnblocked(stream.id());
+        }
+
+        @Override
+        public void onGoAwaySent(int lastStreamId, long errorCode, ByteBuf debugData) {
+            increment(counters, GO_AWAYS_SENT);
+            goAway(goAwaysSent, errorCode);
+        }
+
+        @Override
+        public void onGoAwayReceived(int lastStreamId, long errorCode, ByteBuf debugData) {
+            increment(counters, GO_AWAYS_RECEIVED);
+            goAway(goAwaysReceived, errorCode);
+        }
+    }
+
+    /**
+     * Maps the ids of streams to times in nanoseconds, using open addressing with linear probing so that neither
+     * the entries nor the times need to be allocated. Only accessed from the event loop.
+     */
+    private static final class StreamTimes {
+        private static final int EMPTY = -1;
+
+        private int[] ids = newIds(16);
+        private long[] times = new long[16];
+        private int size;
+
+        private static int[] newIds(int capacity) {
+            int[] ids = new int[capacity];
+            Arrays.fill(ids, EMPTY);
+            return ids;
+        }
+
+        /**
+         * Returns the index of the given stream, or {@code -1} if it is not contained.
+         */
+        int indexOf(int streamId) {
+            int mask = ids.length - 1;
+            for (int i = hash(streamId) & mask;; i = (i + 1) & mask) {
+                int id = ids[i];
+                if (id == streamId) {
+                    return i;
+                }
+                if (id == EMPTY) {
+                    return -1;
+                }
+            }
+        }
+
+        /**
+         * Adds the given stream, which must not be contained yet.
+         */
+        void put(int streamId, long nanos) {
+            if (size + 1 > ids.length >> 1) {
+                grow();
+            }
+            int mask = ids.length - 1;
+            int i = hash(streamId) & mask;
+            while (ids[i] != EMPTY) {
+                i = (i + 1) & mask;
+            }
+            ids[i] = streamId;
+            times[i] = nanos;
+            size++;
+        }
+
+        /**
+         * Removes the entry at the given index and returns its time.
+         */
+        long removeAt(int index) {
+            long nanos = times[index];
+            int mask = ids.length - 1;
+            // Shift the following entries of the probe sequence back, so no tombstones are needed.
+            int hole = index;
+            for (int i = (index + 1) & mask; ids[i] != EMPTY; i = (i + 1) & mask) {
+                int home = hash(ids[i]) & mask;
+                if (((i - home) & mask) >= ((i - hole) & mask)) {
+                    ids[hole] = ids[i];
+                    times[hole] = times[i];
+                    hole = i;
+                }
+            }
+            ids[hole] = EMPTY;
+            size--;
+            return nanos;
+        }
+
+        private void grow() {
+            int[] oldIds = ids;
+            long[] oldTimes = times;
+            ids = newIds(oldIds.length << 1);
+            times = new long[oldIds.length << 1];
+            size = 0;
+            for (int i = 0; i < oldIds.length; i++) {
+                if (oldIds[i] != EMPTY) {
+                    put(oldIds[i], oldTimes[i]);
+                }
+            }
+        }
+
+        private static int hash(int streamId) {
+            // Stream ids of an endpoint are either all odd or all even.
+            return streamId >>> 1;
+        }
+    }
+
+    /**
+     * A histogram of non-negative values, counted in buckets of powers of two. The bucket at index {@code i} counts
+     * the values which are less than {@code 2^i} and not counted by a lower bucket, that is bucket {@code 0} counts
+     * the value {@code 0}, bucket {@code 1} the value {@code 1}, bucket {@code 2} the values {@code 2} and {@code 3}
+     * and so on.
+     */
+    public static final class Histogram {
+        private static final int BUCKETS = 64;
+        private static final int COUNT = BUCKETS;
+        private static final int SUM = BUCKETS + 1;
+        private static final int MAX = BUCKETS + 2;
+
+        private final AtomicLongArray values = new AtomicLongArray(BUCKETS + 3);
+
+        Histogram() { }
+
+        /**
+         * Returns the number of recorded values.
+         */
+        public long count() {
+            return values.get(COUNT);
+        }
+
+        /**
+         * Returns the sum of the recorded values.
+         */
+        public long sum() {
+            return values.get(SUM);
+        }
+
+        /**
+         * Returns the largest recorded value, or {@code 0} if no value was recorded.
+         */
+        public long max() {
+            return values.get(MAX);
+        }
+
+        /**
+         * Returns the mean of the recorded values, or {@code 0} if no value was recorded.
+         */
+        public double mean() {
+            long count = count();
+            return count == 0 ? 0 : (double) sum() / count;
+        }
+
+        /**
+         * Returns the number of buckets.
+         */
+        public int buckets() {
+            return BUCKETS;
+        }
+
+        /**
+         * Returns the number of values counted in the bucket at the given index.
+         */
+        public long bucketCount(int index) {
+            if (index < 0 || index >= BUCKETS) {
+                throw new IndexOutOfBoundsException("index: " + index + " (expected: 0-" + (BUCKETS - 1) + ')');
+            }
+            return values.get(index);
+        }
+
+        /**
+         * Returns the exclusive upper bound of the values counted in the bucket at the given index.
+         */
+        public long bucketUpperBound(int index) {
+            if (index < 0 || index >= BUCKETS) {
+                throw new IndexOutOfBoundsException("index: " + index + " (expected: 0-" + (BUCKETS - 1) + ')');
+            }
+            return index == BUCKETS - 1 ? Long.MAX_VALUE : 1L << index;
+        }
+
+        /**
+         * Returns an upper bound of the value at the given percentile, which is the upper bound of the bucket it is
+         * counted in, capped at {@link #max()}.
+         *
+         * @param percentile the percentile, between {@code 0} and {@code 100}.
+         */
+        public long percentile(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("percentile: " + percentile + " (expected: 0-100)");
+            }
+            long count = count();
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += values.get(i);
+                if (seen >= rank) {
+                    return Math.min(bucketUpperBound(i) - 1, max());
+                }
+            }
+            return max();
+        }
+
+        void record(long value) {
+            if (value < 0) {
+                value = 0;
+            }
+            int bucket = Math.min(BUCKETS - Long.numberOfLeadingZeros(value), BUCKETS - 1);
+            increment(values, bucket);
+            values.lazySet(SUM, values.get(SUM) + value);
+            if (value > values.get(MAX)) {
+                values.lazySet(MAX, value);
+            }
+            increment(values, COUNT);
+        }
+
+        @Override
+        public String toString() {
+            return "Histogram(count: " + count() + ", mean: " + mean() + ", max: " + max() + ')';
+        }
+    }
+}
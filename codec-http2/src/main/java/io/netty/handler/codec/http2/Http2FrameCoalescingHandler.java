@@ -0,0 +1,165 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http2;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.concurrent.PromiseNotifier;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.netty.handler.codec.http2.Http2CodecUtil.DEFAULT_MAX_FRAME_SIZE;
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+
+/**
+ * A {@link ChannelHandler} which copies the small buffers written by a {@link Http2FrameWriter} into a single buffer
+ * until the next flush, so that the frame headers and small frames like {@code HEADERS}, {@code WINDOW_UPDATE},
+ * {@code RST_STREAM} and small {@code DATA} frames do not end up as separate entries of the outbound buffer, each
+ * taking up an iovec when writing to the socket.
+ * <p>
+ * Buffers which are larger than the configured threshold, which are usually the payloads of {@code DATA} frames, are
+ * passed on as they are, after the buffer which was accumulated so far. The order of the writes is preserved.
+ * <p>
+ * This handler must be placed between the transport and the {@link Http2ConnectionHandler} in the
+ * {@link ChannelPipeline}, that is added before it.
+ */
+@UnstableApi
+public class Http2FrameCoalescingHandler extends ChannelOutboundHandlerAdapter {
+
+    /**
+     * The default size up to which written buffers are copied.
+     */
+    public static final int DEFAULT_COALESCE_THRESHOLD = 1024;
+
+    private final int coalesceThreshold;
+    private final int bufferSize;
+    private final List<ChannelPromise> promises = new ArrayList<ChannelPromise>();
+    private ByteBuf buffer;
+
+    /**
+     * Creates a new instance which copies buffers of up to {@value #DEFAULT_COALESCE_THRESHOLD} bytes into buffers
+     * of the default maximum frame size.
+     */
+    public Http2FrameCoalescingHandler() {
+        this(DEFAULT_COALESCE_THRESHOLD, DEFAULT_MAX_FRAME_SIZE);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param coalesceThreshold the maximum size of the written buffers which are copied.
+     * @param bufferSize the size of the buffers into which the written buffers are copied. Once a buffer is full, it
+     * is written and a new one is allocated.
+     */
+    public Http2FrameCoalescingHandler(int coalesceThreshold, int bufferSize) {
+        this.coalesceThreshold = checkPositive(coalesceThreshold, "coalesceThreshold");
+        if (bufferSize < coalesceThreshold) {
+            throw new IllegalArgumentException(
+                    "bufferSize: " + bufferSize + " (expected: >= coalesceThreshold: " + coalesceThreshold + ')');
+        }
+        this.bufferSize = bufferSize;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (!(msg instanceof ByteBuf)) {
+            writeBuffer(ctx);
+            ctx.write(msg, promise);
+            return;
+        }
+        ByteBuf buf = (ByteBuf) msg;
+        int readableBytes = buf.readableBytes();
+        if (readableBytes > coalesceThreshold) {
+            writeBuffer(ctx);
+            ctx.write(buf, promise);
+            return;
+        }
+
+        try {
+            if (buffer != null && buffer.writableBytes() < readableBytes) {
+                writeBuffer(ctx);
+            }
+            if (buffer == null) {
+                buffer = ctx.alloc().ioBuffer(bufferSize);
+            }
+            buffer.writeBytes(buf, buf.readerIndex(), readableBytes);
+        } catch (Throwable cause) {
+            promise.tryFailure(cause);
+            return;
+        } finally {
+            buf.release();
+        }
+        if (!promise.isVoid()) {
+            promises.add(promise);
+        }
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        writeBuffer(ctx);
+        ctx.flush();
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        writeBuffer(ctx);
+        ctx.close(promise);
+    }
+
+    @Override
+    public void disconnect(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        writeBuffer(ctx);
+        ctx.disconnect(promise);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        writeBuffer(ctx);
+    }
+
+    private void writeBuffer(ChannelHandlerContext ctx) {
+        ByteBuf buffer = this.buffer;
+        if (buffer == null) {
+            return;
+        }
+        this.buffer = null;
+        if (!buffer.isReadable()) {
+            buffer.release();
+            return;
+        }
+
+        switch (promises.size()) {
+            case 0:
+                ctx.write(buffer, ctx.voidPromise());
+                break;
+            case 1:
+                ctx.write(buffer, promises.get(0));
+                break;
+            default:
+                ChannelPromise[] notified = promises.toArray(new ChannelPromise[0]);
+                ctx.write(buffer).addListener(new PromiseNotifier<Void, ChannelFuture>(notified));
+                break;
+        }
+        promises.clear();
+    }
+}
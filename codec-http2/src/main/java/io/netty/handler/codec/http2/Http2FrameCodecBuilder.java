@@ -122,6 +122,16 @@ public class Http2FrameCodecBuilder extends
         return super.frameLogger(frameLogger);
     }
 
+    @Override
+    public Http2ConnectionMetrics metrics() {
+        return super.metrics();
+    }
+
+    @Override
+    public Http2FrameCodecBuilder metrics(Http2ConnectionMetrics metrics) {
+        return super.metrics(metrics);
+    }
+
     @Override
     public boolean encoderEnforceMaxConcurrentStreams() {
         return super.encoderEnforceMaxConcurrentStreams();
@@ -0,0 +1,529 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http2;
+
+import io.netty.handler.codec.CharSequenceValueConverter;
+import io.netty.handler.codec.HeadersUtils;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValidationUtil;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http2.Http2Headers.PseudoHeaderName;
+import io.netty.handler.codec.http2.HttpConversionUtil.ExtensionHeaderNames;
+import io.netty.util.AsciiString;
+import io.netty.util.internal.InternalThreadLocalMap;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+
+/**
+ * {@link HttpHeaders} which are a view of {@link Http2Headers}, so that converting a HTTP/2 message to HTTP/1.x does
+ * not copy its headers.
+ * <p>
+ * The view contains the same headers as the result of {@link HttpConversionUtil#addHttp2ToHttpHeaders(int,
+ * Http2Headers, HttpHeaders, io.netty.handler.codec.http.HttpVersion, boolean, boolean)} for {@code HTTP/1.1}: the
+ * pseudo-headers are mapped to their HTTP/1.x equivalents when they are looked up, {@code cookie} headers are
+ * combined and the {@link ExtensionHeaderNames#STREAM_ID} header is added. Unknown pseudo-headers are left out
+ * instead of failing the conversion.
+ * <p>
+ * The first modification copies the headers into {@link DefaultHttpHeaders}, which all following operations use.
+ * Modifications are not visible in the {@link Http2Headers}, and modifications of the {@link Http2Headers} are only
+ * visible until then. If validation is enabled, the names and values of the {@link Http2Headers} are validated when
+ * the view is created, so modifications of the {@link Http2Headers} after that are not validated until the headers
+ * are copied.
+ */
+@UnstableApi
+public final class Http2HttpHeaders extends HttpHeaders {
+    private static final AsciiString STREAM_ID = ExtensionHeaderNames.STREAM_ID.text();
+    private static final AsciiString SCHEME = ExtensionHeaderNames.SCHEME.text();
+    private static final AsciiString PATH = ExtensionHeaderNames.PATH.text();
+
+    private final Http2Headers headers;
+    private final int streamId;
+    private final boolean request;
+    private final boolean trailer;
+    private final boolean validate;
+    private HttpHeaders materialized;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param streamId the stream on which the headers were received.
+     * @param headers the {@link Http2Headers} to view.
+     * @param request {@code true} if the headers belong to a request.
+     * @param trailer {@code true} if the headers are trailing headers.
+     * @param validate {@code true} to validate the names and values of the headers.
+     * @throws IllegalArgumentException if {@code validate} is {@code true} and a header name or value is not valid
+     *         for HTTP/1.x.
+     */
+    public Http2HttpHeaders(int streamId, Http2Headers headers, boolean request, boolean trailer, boolean validate) {
+        this.headers = checkNotNull(headers, "headers");
+        this.streamId = streamId;
+        this.request = request;
+        this.trailer = trailer;
+        this.validate = validate;
+        if (validate) {
+            validate();
+        }
+    }
+
+    /**
+     * Validates the headers which are part of the view in the same way as {@link DefaultHttpHeaders} does, as the
+     * values of {@link Http2Headers} are not validated by default but are returned as they are by the view.
+     */
+    private void validate() {
+        for (Entry<CharSequence, CharSequence> entry : headers) {
+            CharSequence name = entry.getKey();
+            if (translatePseudoHeader(name) == null) {
+                if (isHidden(name)) {
+                    continue;
+                }
+                if (name.length() == 0) {
+                    throw new IllegalArgumentException("empty headers are not allowed [" + name + ']');
+                }
+                int index = HttpHeaderValidationUtil.validateToken(name);
+                if (index != -1) {
+                    throw new IllegalArgumentException("a header name can only contain \"token\" characters, " +
+                            "but found invalid character 0x" + Integer.toHexString(name.charAt(index)) +
+                            " at index " + index + " of header '" + name + "'.");
+                }
+            }
+            CharSequence value = entry.getValue();
+            int index = HttpHeaderValidationUtil.validateValidHeaderValue(value);
+            if (index != -1) {
+                throw new IllegalArgumentException("a header value contains prohibited character 0x" +
+                        Integer.toHexString(value.charAt(index)) + " at index " + index + '.');
+            }
+        }
+    }
+
+    /**
+     * Returns {@code true} if the headers were not modified yet and so are still a view of the {@link Http2Headers}.
+     */
+    public boolean isView() {
+        return materialized == null;
+    }
+
+    private CharSequence get0(CharSequence name) {
+        if (!trailer && STREAM_ID.contentEqualsIgnoreCase(name)) {
+            return String.valueOf(streamId);
+        }
+        if (HttpHeaderNames.COOKIE.contentEqualsIgnoreCase(name)) {
+            return cookies();
+        }
+        if (isHidden(name)) {
+            return null;
+        }
+        PseudoHeaderName pseudoHeader = pseudoHeader(name);
+        if (pseudoHeader != null) {
+            CharSequence value = headers.get(pseudoHeader.value());
+            if (value != null) {
+                return value;
+            }
+        }
+        return headers.get(toLowerCase(name));
+    }
+
+    private List<String> getAll0(CharSequence name) {
+        if (HttpHeaderNames.COOKIE.contentEqualsIgnoreCase(name) ||
+                !trailer && STREAM_ID.contentEqualsIgnoreCase(name)) {
+            CharSequence value = get0(name);
+            return value == null ? Collections.<String>emptyList() : Collections.singletonList(value.toString());
+        }
+        if (isHidden(name)) {
+            return Collections.emptyList();
+        }
+        List<String> values = new ArrayList<String>(2);
+        PseudoHeaderName pseudoHeader = pseudoHeader(name);
+        if (pseudoHeader != null) {
+            addAll(values, headers.getAll(pseudoHeader.value()));
+        }
+        addAll(values, headers.getAll(toLowerCase(name)));
+        return values;
+    }
+
+    /**
+     * Returns the name in lower case, as names of {@link Http2Headers} are always in lower case. Only allocates if the
+     * name contains upper case characters, which is not the case for the constants of {@link HttpHeaderNames}.
+     */
+    private static CharSequence toLowerCase(CharSequence name) {
+        for (int i = 0; i < name.length(); i++) {
+            if (AsciiString.isUpperCase(name.charAt(i))) {
+                return AsciiString.of(name).toLowerCase();
+            }
+        }
+        return name;
+    }
+
+    private static void addAll(List<String> values, List<CharSequence> toAdd) {
+        for (int i = 0; i < toAdd.size(); i++) {
+            values.add(toAdd.get(i).toString());
+        }
+    }
+
+    private CharSequence cookies() {
+        List<CharSequence> cookies = headers.getAll(HttpHeaderNames.COOKIE);
+        switch (cookies.size()) {
+            case 0:
+                return null;
+            case 1:
+                return cookies.get(0);
+            default:
+                // combine the cookie values into 1 header entry.
+                // https://tools.ietf.org/html/rfc7540#section-8.1.2.5
+                StringBuilder builder = InternalThreadLocalMap.get().stringBuilder();
+                for (int i = 0; i < cookies.size(); i++) {
+                    if (i > 0) {
+                        builder.append("; ");
+                    }
+                    builder.append(cookies.get(i));
+                }
+                return builder.toString();
+        }
+    }
+
+    /**
+     * Returns the pseudo-header which is translated to the given HTTP/1.x header name.
+     */
+    private PseudoHeaderName pseudoHeader(CharSequence name) {
+        if (HttpHeaderNames.HOST.contentEqualsIgnoreCase(name)) {
+            return PseudoHeaderName.AUTHORITY;
+        }
+        if (SCHEME.contentEqualsIgnoreCase(name)) {
+            return PseudoHeaderName.SCHEME;
+        }
+        if (!request && PATH.contentEqualsIgnoreCase(name)) {
+            return PseudoHeaderName.PATH;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the HTTP/1.x header name to which the given pseudo-header is translated, or {@code null}.
+     */
+    private AsciiString translatePseudoHeader(CharSequence name) {
+        if (PseudoHeaderName.AUTHORITY.value().contentEquals(name)) {
+            return HttpHeaderNames.HOST;
+        }
+        if (PseudoHeaderName.SCHEME.value().contentEquals(name)) {
+            return SCHEME;
+        }
+        if (!request && PseudoHeaderName.PATH.value().contentEquals(name)) {
+            return PATH;
+        }
+        return null;
+    }
+
+    /**
+     * Returns {@code true} if the header is not part of the translated headers.
+     */
+    private boolean isHidden(CharSequence name) {
+        if (name.length() > 0 && name.charAt(0) == ':') {
+            return true;
+        }
+        if (HttpHeaderNames.TRANSFER_ENCODING.contentEqualsIgnoreCase(name) ||
+                HttpHeaderNames.TRAILER.contentEqualsIgnoreCase(name)) {
+            return true;
+        }
+        // The connection is kept alive, which removes the connection header for HTTP/1.1, and the stream id is
+        // replaced.
+        return !trailer && (HttpHeaderNames.CONNECTION.contentEqualsIgnoreCase(name) ||
+                STREAM_ID.contentEqualsIgnoreCase(name));
+    }
+
+    private List<Entry<CharSequence, CharSequence>> translatedEntries() {
+        List<Entry<CharSequence, CharSequence>> entries =
+                new ArrayList<Entry<CharSequence, CharSequence>>(headers.size() + 1);
+        boolean hasCookies = false;
+        for (Entry<CharSequence, CharSequence> entry : headers) {
+            CharSequence name = entry.getKey();
+            AsciiString translatedName = translatePseudoHeader(name);
+            if (translatedName != null) {
+                entries.add(new SimpleImmutableEntry<CharSequence, CharSequence>(translatedName, entry.getValue()));
+            } else if (HttpHeaderNames.COOKIE.contentEquals(name)) {
+                hasCookies = true;
+            } else if (!isHidden(name)) {
+                entries.add(entry);
+            }
+        }
+        if (hasCookies) {
+            entries.add(new SimpleImmutableEntry<CharSequence, CharSequence>(HttpHeaderNames.COOKIE, cookies()));
+        }
+        if (!trailer) {
+            entries.add(new SimpleImmutableEntry<CharSequence, CharSequence>(STREAM_ID, String.valueOf(streamId)));
+        }
+        return entries;
+    }
+
+    private HttpHeaders materialize() {
+        if (materialized == null) {
+            HttpHeaders headers = new DefaultHttpHeaders(validate);
+            for (Entry<CharSequence, CharSequence> entry : translatedEntries()) {
+                headers.add(entry.getKey(), entry.getValue());
+            }
+            materialized = headers;
+        }
+        return materialized;
+    }
+
+    @Override
+    public String get(String name) {
+        return get((CharSequence) name);
+    }
+
+    @Override
+    public String get(CharSequence name) {
+        if (materialized != null) {
+            return materialized.get(name);
+        }
+        CharSequence value = get0(name);
+        return value == null ? null : value.toString();
+    }
+
+    @Override
+    public Integer getInt(CharSequence name) {
+        if (materialized != null) {
+            return materialized.getInt(name);
+        }
+        CharSequence value = get0(name);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return CharSequenceValueConverter.INSTANCE.convertToInt(value);
+        } catch (RuntimeException ignore) {
+            return null;
+        }
+    }
+
+    @Override
+    public int getInt(CharSequence name, int defaultValue) {
+        Integer value = getInt(name);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public Short getShort(CharSequence name) {
+        if (materialized != null) {
+            return materialized.getShort(name);
+        }
+        CharSequence value = get0(name);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return CharSequenceValueConverter.INSTANCE.convertToShort(value);
+        } catch (RuntimeException ignore) {
+            return null;
+        }
+    }
+
+    @Override
+    public short getShort(CharSequence name, short defaultValue) {
+        Short value = getShort(name);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public Long getTimeMillis(CharSequence name) {
+        if (materialized != null) {
+            return materialized.getTimeMillis(name);
+        }
+        CharSequence value = get0(name);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return CharSequenceValueConverter.INSTANCE.convertToTimeMillis(value);
+        } catch (RuntimeException ignore) {
+            return null;
+        }
+    }
+
+    @Override
+    public long getTimeMillis(CharSequence name, long defaultValue) {
+        Long value = getTimeMillis(name);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public List<String> getAll(String name) {
+        return getAll((CharSequence) name);
+    }
+
+    @Override
+    public List<String> getAll(CharSequence name) {
+        return materialized != null ? materialized.getAll(name) : getAll0(name);
+    }
+
+    @Override
+    public List<Entry<String, String>> entries() {
+        if (materialized != null) {
+            return materialized.entries();
+        }
+        List<Entry<CharSequence, CharSequence>> translatedEntries = translatedEntries();
+        List<Entry<String, String>> entries = new ArrayList<Entry<String, String>>(translatedEntries.size());
+        for (Entry<CharSequence, CharSequence> entry : translatedEntries) {
+            entries.add(new SimpleImmutableEntry<String, String>(
+                    entry.getKey().toString(), entry.getValue().toString()));
+        }
+        return entries;
+    }
+
+    @Override
+    public boolean contains(String name) {
+        return contains((CharSequence) name);
+    }
+
+    @Override
+    public boolean contains(CharSequence name) {
+        return materialized != null ? materialized.contains(name) : get0(name) != null;
+    }
+
+    @Override
+    public Iterator<Entry<String, String>> iterator() {
+        return materialized != null ? materialized.iterator() : HeadersUtils.iteratorAsString(translatedEntries());
+    }
+
+    @Override
+    public Iterator<Entry<CharSequence, CharSequence>> iteratorCharSequence() {
+        return materialized != null ? materialized.iteratorCharSequence() : translatedEntries().iterator();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        if (materialized != null) {
+            return materialized.isEmpty();
+        }
+        return trailer && translatedEntries().isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return materialized != null ? materialized.size() : translatedEntries().size();
+    }
+
+    @Override
+    public Set<String> names() {
+        if (materialized != null) {
+            return materialized.names();
+        }
+        Set<String> names = new LinkedHashSet<String>();
+        for (Entry<CharSequence, CharSequence> entry : translatedEntries()) {
+            names.add(entry.getKey().toString());
+        }
+        return names;
+    }
+
+    @Override
+    public HttpHeaders add(String name, Object value) {
+        materialize().add(name, value);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders add(CharSequence name, Object value) {
+        materialize().add(name, value);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders add(String name, Iterable<?> values) {
+        materialize().add(name, values);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders add(CharSequence name, Iterable<?> values) {
+        materialize().add(name, values);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders addInt(CharSequence name, int value) {
+        materialize().addInt(name, value);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders addShort(CharSequence name, short value) {
+        materialize().addShort(name, value);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders set(String name, Object value) {
+        materialize().set(name, value);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders set(CharSequence name, Object value) {
+        materialize().set(name, value);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders set(String name, Iterable<?> values) {
+        materialize().set(name, values);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders set(CharSequence name, Iterable<?> values) {
+        materialize().set(name, values);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders setInt(CharSequence name, int value) {
+        materialize().setInt(name, value);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders setShort(CharSequence name, short value) {
+        materialize().setShort(name, value);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders remove(String name) {
+        materialize().remove(name);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders remove(CharSequence name) {
+        materialize().remove(name);
+        return this;
+    }
+
+    @Override
+    public HttpHeaders clear() {
+        materialized = new DefaultHttpHeaders(validate);
+        return this;
+    }
+}
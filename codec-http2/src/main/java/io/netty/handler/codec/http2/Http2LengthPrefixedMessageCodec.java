@@ -0,0 +1,327 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http2;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.DecoderException;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.handler.codec.compression.JdkZlibDecoder;
+import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.util.AsciiString;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.List;
+
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+
+/**
+ * A codec for {@link Http2StreamChannel} pipelines which carry messages prefixed by a compressed flag byte and a
+ * 4 byte length, as done by gRPC, inside {@code DATA} frames.
+ * <p>
+ * Inbound, the content of the {@link Http2DataFrame}s is accumulated in a {@link CompositeByteBuf} without copying,
+ * and every complete message is fired as a {@link ByteBuf} made of slices of the frame contents, without the prefix.
+ * Messages may span any number of frames, and a frame may contain any number of messages. Once the remote endpoint
+ * ended the stream, an empty {@link Http2DataFrame} with the {@code endStream} flag set is fired after the last
+ * message. All other frames are passed on as they are. If the stream ends, with a {@link Http2DataFrame} or with
+ * trailers, while a message is incomplete, a {@link CorruptedFrameException} is fired.
+ * <p>
+ * If the message encoding header is set, its value in the first {@link Http2HeadersFrame} of the stream determines
+ * how messages with the compressed flag set are decompressed, see {@link #newMessageDecompressor(ChannelHandlerContext,
+ * CharSequence)}. A compressed message of an unsupported encoding fails with a {@link CorruptedFrameException}.
+ * <p>
+ * The {@link Http2StreamChannel} returns the flow control credit of a frame once the frame was read. If
+ * {@link ChannelConfig#isAutoRead()} is disabled, this codec only requests more frames when they are needed to
+ * complete a message, so the credit is returned at the pace the messages are consumed.
+ * <p>
+ * Outbound, every {@link ByteBuf} is written as an uncompressed message in a single {@link Http2DataFrame}, the
+ * prefix being prepended without copying the message. All other messages, including the {@link Http2DataFrame} or
+ * {@link Http2HeadersFrame} ending the stream, are written as they are.
+ */
+@UnstableApi
+public class Http2LengthPrefixedMessageCodec extends ChannelDuplexHandler {
+
+    private static final int PREFIX_LENGTH = 5;
+    private static final int COMPRESSED_FLAG = 0x01;
+    private static final AsciiString GZIP = AsciiString.cached("gzip");
+    private static final AsciiString DEFLATE = AsciiString.cached("deflate");
+    private static final AsciiString IDENTITY = AsciiString.cached("identity");
+
+    private final int maxMessageLength;
+    private final CharSequence messageEncodingHeader;
+    private CompositeByteBuf cumulation;
+    private CharSequence messageEncoding;
+    private boolean headersRead;
+    private boolean firedChannelRead;
+    private boolean failed;
+
+    /**
+     * Creates a new instance which does not decompress messages.
+     *
+     * @param maxMessageLength the maximum length of a message. If a message is longer, a {@link TooLongFrameException}
+     * is fired and the remaining data of the stream is discarded.
+     */
+    public Http2LengthPrefixedMessageCodec(int maxMessageLength) {
+        this(maxMessageLength, null);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maxMessageLength the maximum length of a message, before and after decompression. If a message is
+     * longer, a {@link TooLongFrameException} is fired and the remaining data of the stream is discarded.
+     * @param messageEncodingHeader the name of the header which holds the encoding of the compressed messages, like
+     * {@code grpc-encoding}, or {@code null} if messages should not be decompressed.
+     */
+    public Http2LengthPrefixedMessageCodec(int maxMessageLength, CharSequence messageEncodingHeader) {
+        this.maxMessageLength = checkPositive(maxMessageLength, "maxMessageLength");
+        this.messageEncodingHeader = messageEncodingHeader;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof Http2DataFrame) {
+            Http2DataFrame frame = (Http2DataFrame) msg;
+            try {
+                if (!failed) {
+                    cumulate(ctx, frame.content());
+                    decode(ctx);
+                }
+            } finally {
+                frame.release();
+            }
+            if (frame.isEndStream()) {
+                endStream(ctx, frame);
+            }
+            return;
+        }
+        if (msg instanceof Http2HeadersFrame) {
+            Http2HeadersFrame frame = (Http2HeadersFrame) msg;
+            if (!headersRead) {
+                headersRead = true;
+                if (messageEncodingHeader != null) {
+                    messageEncoding = frame.headers().get(messageEncodingHeader);
+                }
+            }
+            if (frame.isEndStream()) {
+                // Trailers end the stream, so the buffered data must not be part of an incomplete message.
+                failIfIncomplete(ctx);
+            }
+        }
+        firedChannelRead = true;
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        if (!firedChannelRead && !ctx.channel().config().isAutoRead()) {
+            // No message was completed by the frames read, so we need to read more to make progress.
+            ctx.read();
+        }
+        firedChannelRead = false;
+        ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (!(msg instanceof ByteBuf)) {
+            ctx.write(msg, promise);
+            return;
+        }
+        ByteBuf message = (ByteBuf) msg;
+        CompositeByteBuf content;
+        try {
+            ByteBuf prefix = ctx.alloc().buffer(PREFIX_LENGTH);
+            prefix.writeByte(0);
+            prefix.writeInt(message.readableBytes());
+            content = ctx.alloc().compositeBuffer(2).addComponents(true, prefix, message);
+        } catch (Throwable cause) {
+            message.release();
+            promise.setFailure(cause);
+            return;
+        }
+        ctx.write(new DefaultHttp2DataFrame(content), promise);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        releaseCumulation();
+        ctx.fireChannelInactive();
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        releaseCumulation();
+    }
+
+    /**
+     * Returns a new {@link EmbeddedChannel} which decompresses messages of the given encoding, or {@code null} if the
+     * encoding is not supported. A new decompressor is used for every compressed message. This method supports
+     * {@code gzip} and {@code deflate} by default, and the returned decompressors stop inflating a message once it
+     * exceeds the maximum message length. Implementations should limit the decompressed length as well, as the
+     * maximum message length is otherwise only checked once a message was decompressed completely.
+     *
+     * @param messageEncoding the value of the message encoding header.
+     */
+    protected EmbeddedChannel newMessageDecompressor(ChannelHandlerContext ctx, CharSequence messageEncoding) {
+        if (GZIP.contentEqualsIgnoreCase(messageEncoding)) {
+            return new EmbeddedChannel(ctx.channel().id(), ctx.channel().metadata().hasDisconnect(),
+                    ctx.channel().config(), new JdkZlibDecoder(ZlibWrapper.GZIP, maxMessageLength));
+        }
+        if (DEFLATE.contentEqualsIgnoreCase(messageEncoding)) {
+            return new EmbeddedChannel(ctx.channel().id(), ctx.channel().metadata().hasDisconnect(),
+                    ctx.channel().config(), new JdkZlibDecoder(ZlibWrapper.ZLIB, maxMessageLength));
+        }
+        // 'identity' or unsupported
+        return null;
+    }
+
+    private void cumulate(ChannelHandlerContext ctx, ByteBuf content) {
+        if (!content.isReadable()) {
+            return;
+        }
+        if (cumulation == null) {
+            cumulation = ctx.alloc().compositeBuffer(Integer.MAX_VALUE);
+        }
+        cumulation.addComponent(true, content.retain());
+    }
+
+    private void decode(ChannelHandlerContext ctx) {
+        CompositeByteBuf cumulation = this.cumulation;
+        while (cumulation != null && cumulation.readableBytes() >= PREFIX_LENGTH) {
+            int readerIndex = cumulation.readerIndex();
+            boolean compressed = (cumulation.getUnsignedByte(readerIndex) & COMPRESSED_FLAG) != 0;
+            long length = cumulation.getUnsignedInt(readerIndex + 1);
+            if (length > maxMessageLength) {
+                fail(ctx, new TooLongFrameException(
+                        "Message length: " + length + " (expected: <= " + maxMessageLength + ')'));
+                return;
+            }
+            if (cumulation.readableBytes() - PREFIX_LENGTH < length) {
+                break;
+            }
+            cumulation.skipBytes(PREFIX_LENGTH);
+            ByteBuf message = readMessage(ctx, cumulation, (int) length);
+            if (compressed) {
+                try {
+                    message = decompress(ctx, message);
+                } catch (DecoderException e) {
+                    fail(ctx, e);
+                    return;
+                }
+            }
+            firedChannelRead = true;
+            ctx.fireChannelRead(message);
+            // The handlers may have closed the channel or removed this handler.
+            cumulation = this.cumulation;
+        }
+        if (cumulation != null) {
+            if (cumulation.isReadable()) {
+                cumulation.discardReadComponents();
+            } else {
+                releaseCumulation();
+            }
+        }
+    }
+
+    /**
+     * Reads a message from the cumulation, which refers to the components directly rather than to the cumulation,
+     * so that the read components can be discarded from it.
+     */
+    private static ByteBuf readMessage(ChannelHandlerContext ctx, CompositeByteBuf cumulation, int length) {
+        List<ByteBuf> slices = cumulation.decompose(cumulation.readerIndex(), length);
+        cumulation.skipBytes(length);
+        switch (slices.size()) {
+            case 0:
+                return Unpooled.EMPTY_BUFFER;
+            case 1:
+                return slices.get(0).retain();
+            default:
+                CompositeByteBuf message = ctx.alloc().compositeBuffer(slices.size());
+                for (ByteBuf slice : slices) {
+                    message.addComponent(true, slice.retain());
+                }
+                return message;
+        }
+    }
+
+    private ByteBuf decompress(ChannelHandlerContext ctx, ByteBuf message) {
+        EmbeddedChannel decompressor = null;
+        if (messageEncoding != null && !IDENTITY.contentEqualsIgnoreCase(messageEncoding)) {
+            decompressor = newMessageDecompressor(ctx, messageEncoding);
+        }
+        if (decompressor == null) {
+            message.release();
+            throw new CorruptedFrameException("Compressed message with unsupported encoding: " + messageEncoding);
+        }
+        CompositeByteBuf decompressed = ctx.alloc().compositeBuffer(Integer.MAX_VALUE);
+        try {
+            decompressor.writeInbound(message);
+            decompressor.finish();
+            for (;;) {
+                ByteBuf buf = decompressor.readInbound();
+                if (buf == null) {
+                    break;
+                }
+                decompressed.addComponent(true, buf);
+                if (decompressed.readableBytes() > maxMessageLength) {
+                    throw new TooLongFrameException("Decompressed message length exceeds " + maxMessageLength);
+                }
+            }
+            return decompressed;
+        } catch (Throwable cause) {
+            decompressed.release();
+            decompressor.finishAndReleaseAll();
+            if (cause instanceof DecoderException) {
+                throw (DecoderException) cause;
+            }
+            throw new CorruptedFrameException("Failed to decompress message", cause);
+        }
+    }
+
+    private void endStream(ChannelHandlerContext ctx, Http2DataFrame frame) {
+        failIfIncomplete(ctx);
+        firedChannelRead = true;
+        ctx.fireChannelRead(new DefaultHttp2DataFrame(Unpooled.EMPTY_BUFFER, true).stream(frame.stream()));
+    }
+
+    private void failIfIncomplete(ChannelHandlerContext ctx) {
+        if (!failed && cumulation != null && cumulation.isReadable()) {
+            fail(ctx, new CorruptedFrameException(
+                    "Stream ended with " + cumulation.readableBytes() + " bytes of an incomplete message"));
+        }
+    }
+
+    private void fail(ChannelHandlerContext ctx, DecoderException cause) {
+        failed = true;
+        releaseCumulation();
+        ctx.fireExceptionCaught(cause);
+    }
+
+    private void releaseCumulation() {
+        if (cumulation != null) {
+            cumulation.release();
+            cumulation = null;
+        }
+    }
+}
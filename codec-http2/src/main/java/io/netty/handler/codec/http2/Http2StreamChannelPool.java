@@ -0,0 +1,455 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http2;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.pool.ChannelPool;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.concurrent.PromiseCombiner;
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.UnstableApi;
+
+import java.io.Closeable;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
+import static java.lang.Math.min;
+
+/**
+ * A pool which hands out {@link Http2StreamChannel}s, multiplexed over a set of HTTP/2 connections.
+ * <p>
+ * Unlike a {@link ChannelPool}, which lends whole connections, this pool opens a new stream on the connection with
+ * the fewest active streams. A new connection is only established once all connections reached their stream limit,
+ * which is the {@code SETTINGS_MAX_CONCURRENT_STREAMS} of the peer or the configured maximum, whichever is smaller.
+ * Once all {@code maxConnections} are busy, acquisitions wait until a stream is closed.
+ * <p>
+ * A connection which received a {@code GOAWAY} is drained: no new streams are opened on it and it is closed once
+ * its last stream was closed.
+ * <p>
+ * The {@link Bootstrap} must be configured with the remote address, and its handler must add a
+ * {@link Http2FrameCodec} and a {@link Http2MultiplexHandler} to the pipeline of each connection by the time the
+ * connection is established.
+ */
+@UnstableApi
+public class Http2StreamChannelPool implements Closeable {
+
+    private final Bootstrap bootstrap;
+    private final ChannelHandler streamHandler;
+    private final EventExecutor executor;
+    private final int maxConnections;
+    private final int maxStreamsPerConnection;
+    private final int maxPendingAcquires;
+
+    // Only modified from the executor, but may be read from any thread.
+    private final List<PooledConnection> connections = new CopyOnWriteArrayList<PooledConnection>();
+    private final Queue<Promise<Http2StreamChannel>> pendingAcquires = new ArrayDeque<Promise<Http2StreamChannel>>();
+    private boolean connecting;
+    private boolean closed;
+
+    /**
+     * Creates a new instance which opens at most {@code maxConnections} connections, with as many streams as the
+     * peers allow on each, and an unbounded number of pending acquisitions.
+     *
+     * @param bootstrap the {@link Bootstrap} used to establish the connections.
+     * @param streamHandler the {@link ChannelHandler} added to the pipeline of each stream.
+     * @param maxConnections the maximum number of connections which are not draining.
+     */
+    public Http2StreamChannelPool(Bootstrap bootstrap, ChannelHandler streamHandler, int maxConnections) {
+        this(bootstrap, streamHandler, maxConnections, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param bootstrap the {@link Bootstrap} used to establish the connections.
+     * @param streamHandler the {@link ChannelHandler} added to the pipeline of each stream.
+     * @param maxConnections the maximum number of connections which are not draining.
+     * @param maxStreamsPerConnection the maximum number of streams opened on a connection, regardless of the
+     * {@code SETTINGS_MAX_CONCURRENT_STREAMS} of the peer.
+     * @param maxPendingAcquires the maximum number of acquisitions which wait for a stream. Once exceeded,
+     * acquisitions fail with an {@link IllegalStateException}.
+     */
+    public Http2StreamChannelPool(Bootstrap bootstrap, ChannelHandler streamHandler, int maxConnections,
+                                  int maxStreamsPerConnection, int maxPendingAcquires) {
+        this.bootstrap = ObjectUtil.checkNotNull(bootstrap, "bootstrap");
+        this.streamHandler = ObjectUtil.checkNotNull(streamHandler, "streamHandler");
+        this.maxConnections = checkPositive(maxConnections, "maxConnections");
+        this.maxStreamsPerConnection = checkPositive(maxStreamsPerConnection, "maxStreamsPerConnection");
+        this.maxPendingAcquires = checkPositiveOrZero(maxPendingAcquires, "maxPendingAcquires");
+        executor = bootstrap.config().group().next();
+    }
+
+    /**
+     * Returns a snapshot of the connections of this pool, including the ones which are draining.
+     */
+    public List<PooledConnection> connections() {
+        return Collections.unmodifiableList(new ArrayList<PooledConnection>(connections));
+    }
+
+    /**
+     * Opens a new {@link Http2StreamChannel}, establishing a new connection if needed.
+     */
+    public Future<Http2StreamChannel> acquire() {
+        return acquire(executor.<Http2StreamChannel>newPromise());
+    }
+
+    /**
+     * Opens a new {@link Http2StreamChannel}, establishing a new connection if needed, and notifies the given
+     * {@link Promise}.
+     */
+    public Future<Http2StreamChannel> acquire(final Promise<Http2StreamChannel> promise) {
+        ObjectUtil.checkNotNull(promise, "promise");
+        try {
+            if (executor.inEventLoop()) {
+                acquire0(promise);
+            } else {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        acquire0(promise);
+                    }
+                });
+            }
+        } catch (Throwable cause) {
+            promise.tryFailure(cause);
+        }
+        return promise;
+    }
+
+    /**
+     * Closes the given {@link Http2StreamChannel}, which frees its slot on the connection. Closing the stream
+     * directly has the same effect.
+     */
+    public Future<Void> release(Http2StreamChannel channel) {
+        return channel.close();
+    }
+
+    private void acquire0(Promise<Http2StreamChannel> promise) {
+        assert executor.inEventLoop();
+
+        if (closed) {
+            promise.setFailure(new IllegalStateException("Http2StreamChannelPool was closed"));
+            return;
+        }
+        if (pendingAcquires.isEmpty()) {
+            PooledConnection connection = leastLoadedConnection();
+            if (connection != null) {
+                openStream(connection, promise);
+                return;
+            }
+        }
+        if (pendingAcquires.size() >= maxPendingAcquires) {
+            promise.setFailure(new IllegalStateException("Too many outstanding acquire operations"));
+            return;
+        }
+        pendingAcquires.add(promise);
+        runPendingAcquires();
+    }
+
+    private void runPendingAcquires() {
+        assert executor.inEventLoop();
+
+        while (!pendingAcquires.isEmpty()) {
+            PooledConnection connection = leastLoadedConnection();
+            if (connection == null) {
+                if (!connecting && !closed && usableConnections() < maxConnections) {
+                    connect();
+                }
+                return;
+            }
+            Promise<Http2StreamChannel> promise = pendingAcquires.poll();
+            if (!promise.isDone()) {
+                openStream(connection, promise);
+            }
+        }
+    }
+
+    private PooledConnection leastLoadedConnection() {
+        PooledConnection leastLoaded = null;
+        for (PooledConnection connection : connections) {
+            if (connection.isUsable() && connection.activeStreams < connection.maxStreams() &&
+                    (leastLoaded == null || connection.activeStreams < leastLoaded.activeStreams)) {
+                leastLoaded = connection;
+            }
+        }
+        return leastLoaded;
+    }
+
+    private int usableConnections() {
+        int usable = 0;
+        for (PooledConnection connection : connections) {
+            if (connection.isUsable()) {
+                usable++;
+            }
+        }
+        return usable;
+    }
+
+    private void openStream(final PooledConnection connection, final Promise<Http2StreamChannel> promise) {
+        connection.activeStreams++;
+        connection.streamBootstrap.open(executor.<Http2StreamChannel>newPromise()).addListener(
+                new FutureListener<Http2StreamChannel>() {
+                    @Override
+                    public void operationComplete(Future<Http2StreamChannel> future) {
+                        if (!future.isSuccess()) {
+                            streamClosed(connection);
+                            promise.tryFailure(future.cause());
+                            return;
+                        }
+                        Http2StreamChannel stream = future.getNow();
+                        stream.closeFuture().addListener(new ChannelFutureListener() {
+                            @Override
+                            public void operationComplete(ChannelFuture future) {
+                                executor.execute(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        streamClosed(connection);
+                                    }
+                                });
+                            }
+                        });
+                        if (!promise.trySuccess(stream)) {
+                            stream.close();
+                        }
+                    }
+                });
+    }
+
+    private void streamClosed(PooledConnection connection) {
+        assert executor.inEventLoop();
+
+        connection.activeStreams--;
+        if (connection.draining && connection.activeStreams == 0) {
+            connection.channel.close();
+        }
+        runPendingAcquires();
+    }
+
+    private void connect() {
+        connecting = true;
+        bootstrap.connect().addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                final PooledConnection connection;
+                Throwable cause = future.cause();
+                if (cause == null) {
+                    Channel channel = future.channel();
+                    Http2FrameCodec codec = channel.pipeline().get(Http2FrameCodec.class);
+                    if (codec != null) {
+                        connection = new PooledConnection(channel, codec.connection());
+                    } else {
+                        connection = null;
+                        cause = new IllegalStateException("No Http2FrameCodec in the pipeline of " + channel);
+                        channel.close();
+                    }
+                } else {
+                    connection = null;
+                }
+                final Throwable connectCause = cause;
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        connected(connection, connectCause);
+                    }
+                });
+            }
+        });
+    }
+
+    private void connected(PooledConnection connection, Throwable cause) {
+        assert executor.inEventLoop();
+
+        connecting = false;
+        if (connection == null) {
+            // Only fail the waiting acquisitions if there is no connection which may free up a stream.
+            if (usableConnections() == 0) {
+                for (;;) {
+                    Promise<Http2StreamChannel> promise = pendingAcquires.poll();
+                    if (promise == null) {
+                        break;
+                    }
+                    promise.tryFailure(cause);
+                }
+            }
+            return;
+        }
+        if (closed) {
+            connection.channel.close();
+            return;
+        }
+        connections.add(connection);
+        runPendingAcquires();
+    }
+
+    private void goAwayReceived(PooledConnection connection) {
+        assert executor.inEventLoop();
+
+        connection.draining = true;
+        if (connection.activeStreams == 0) {
+            connection.channel.close();
+        }
+        runPendingAcquires();
+    }
+
+    private void connectionClosed(PooledConnection connection) {
+        assert executor.inEventLoop();
+
+        connections.remove(connection);
+        runPendingAcquires();
+    }
+
+    /**
+     * Closes the pool and all of its connections.
+     */
+    @Override
+    public void close() {
+        try {
+            closeAsync().await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Closes the pool and all of its connections in an async manner.
+     *
+     * @return Future which represents completion of the close task
+     */
+    public Future<Void> closeAsync() {
+        final Promise<Void> closeComplete = executor.newPromise();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                close0(closeComplete);
+            }
+        });
+        return closeComplete;
+    }
+
+    private void close0(Promise<Void> closeComplete) {
+        assert executor.inEventLoop();
+
+        closed = true;
+        for (;;) {
+            Promise<Http2StreamChannel> promise = pendingAcquires.poll();
+            if (promise == null) {
+                break;
+            }
+            promise.tryFailure(new ClosedChannelException());
+        }
+        PromiseCombiner combiner = new PromiseCombiner(executor);
+        for (PooledConnection connection : connections) {
+            combiner.add(connection.channel.close());
+        }
+        combiner.finish(closeComplete);
+    }
+
+    /**
+     * A connection of a {@link Http2StreamChannelPool}.
+     */
+    public final class PooledConnection {
+        private final Channel channel;
+        private final Http2Connection connection;
+        private final Http2StreamChannelBootstrap streamBootstrap;
+        private volatile int activeStreams;
+        private volatile boolean draining;
+
+        PooledConnection(Channel channel, Http2Connection connection) {
+            this.channel = channel;
+            this.connection = connection;
+            streamBootstrap = new Http2StreamChannelBootstrap(channel).handler(streamHandler);
+
+            // Called from the event loop of the connection.
+            connection.addListener(new Http2ConnectionAdapter() {
+                @Override
+                public void onGoAwayReceived(int lastStreamId, long errorCode, ByteBuf debugData) {
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            goAwayReceived(PooledConnection.this);
+                        }
+                    });
+                }
+            });
+            channel.closeFuture().addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) {
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            connectionClosed(PooledConnection.this);
+                        }
+                    });
+                }
+            });
+        }
+
+        boolean isUsable() {
+            return !draining && channel.isActive();
+        }
+
+        /**
+         * Returns the parent {@link Channel} of the streams.
+         */
+        public Channel channel() {
+            return channel;
+        }
+
+        /**
+         * Returns the number of streams which were acquired from this connection and are not closed yet.
+         */
+        public int activeStreams() {
+            return activeStreams;
+        }
+
+        /**
+         * Returns the maximum number of streams which are opened on this connection.
+         */
+        public int maxStreams() {
+            return min(maxStreamsPerConnection, connection.local().maxActiveStreams());
+        }
+
+        /**
+         * Returns the share of {@link #maxStreams()} which is in use, between {@code 0} and {@code 1}.
+         */
+        public float utilization() {
+            return min(1f, (float) activeStreams / maxStreams());
+        }
+
+        /**
+         * Returns {@code true} if a {@code GOAWAY} was received and the connection is closed once its streams are.
+         */
+        public boolean isDraining() {
+            return draining;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http2;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.internal.UnstableApi;
+
+/**
+ * A stream of a {@link Http2StreamHandlerCodec}, which is passed to the {@link Http2StreamHandler} and used to write
+ * to the stream.
+ * <p>
+ * Per-stream state of the application can be kept in the {@link #attachment()}, which is cleared once
+ * {@link Http2StreamHandler#onStreamClosed(Http2StreamContext)} returned. Writes issued after the stream was closed
+ * fail with a {@link Http2Error#STREAM_CLOSED} {@link Http2Exception}.
+ * <p>
+ * The write methods may be called from any thread; the writes of a stream are performed in the order they were
+ * issued. Writes are subject to the flow control of the remote endpoint, and are only sent once {@link #flush()}
+ * was called or the codec flushes, which it does once the frames which were read together have been handled.
+ */
+@UnstableApi
+public interface Http2StreamContext {
+
+    /**
+     * Returns the id of the stream, or {@code -1} if the stream was created by
+     * {@link Http2StreamHandlerCodec#newStream()} and its headers were not written yet.
+     */
+    int id();
+
+    /**
+     * Returns the stream of the {@link Http2Connection}, or {@code null} if it was not created yet.
+     */
+    Http2Stream stream();
+
+    /**
+     * Returns the {@link ChannelHandlerContext} of the {@link Http2StreamHandlerCodec}.
+     */
+    ChannelHandlerContext ctx();
+
+    /**
+     * Returns the object which was attached to this stream, or {@code null} if none was attached.
+     */
+    Object attachment();
+
+    /**
+     * Attaches the given object to this stream.
+     */
+    void attachment(Object attachment);
+
+    /**
+     * Returns {@code true} if the flow-control window of the remote endpoint allows to send more data on this stream
+     * right away. Data which is written while the stream is not writable is queued.
+     */
+    boolean isWritable();
+
+    /**
+     * Writes the given headers. This starts the stream if it was created by
+     * {@link Http2StreamHandlerCodec#newStream()}.
+     */
+    ChannelFuture writeHeaders(Http2Headers headers, boolean endStream);
+
+    /**
+     * Writes the given headers. This starts the stream if it was created by
+     * {@link Http2StreamHandlerCodec#newStream()}.
+     */
+    ChannelFuture writeHeaders(Http2Headers headers, boolean endStream, ChannelPromise promise);
+
+    /**
+     * Writes the given data, which is released once it was written.
+     */
+    ChannelFuture writeData(ByteBuf data, boolean endStream);
+
+    /**
+     * Writes the given data, which is released once it was written.
+     */
+    ChannelFuture writeData(ByteBuf data, boolean endStream, ChannelPromise promise);
+
+    /**
+     * Resets the stream with the given error code.
+     */
+    ChannelFuture writeReset(long errorCode);
+
+    /**
+     * Returns the given number of bytes, which were not returned by
+     * {@link Http2StreamHandler#onDataRead(Http2StreamContext, ByteBuf, int, boolean)}, to the flow-control window
+     * of the stream. The resulting {@code WINDOW_UPDATE} is sent with the next flush.
+     */
+    void consumeBytes(int numBytes);
+
+    /**
+     * Flushes the writes of the connection.
+     */
+    void flush();
+}
@@ -65,11 +65,27 @@ public class Http2StreamFrameToHttpObjectCodec extends MessageToMessageCodec<Htt
 
     private final boolean isServer;
     private final boolean validateHeaders;
+    private final boolean headersView;
 
     public Http2StreamFrameToHttpObjectCodec(final boolean isServer,
                                              final boolean validateHeaders) {
+        this(isServer, validateHeaders, false);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param isServer {@code true} if the codec is used on the server side.
+     * @param validateHeaders {@code true} to validate the headers of the HTTP/1.x messages.
+     * @param headersView {@code true} to decode the headers into a {@link Http2HttpHeaders} view of the HTTP/2
+     * headers, which avoids copying them unless they are modified.
+     */
+    public Http2StreamFrameToHttpObjectCodec(final boolean isServer,
+                                             final boolean validateHeaders,
+                                             final boolean headersView) {
         this.isServer = isServer;
         this.validateHeaders = validateHeaders;
+        this.headersView = headersView;
     }
 
     public Http2StreamFrameToHttpObjectCodec(final boolean isServer) {
@@ -101,9 +117,15 @@ public class Http2StreamFrameToHttpObjectCodec extends MessageToMessageCodec<Htt
 
             if (headersFrame.isEndStream()) {
                 if (headers.method() == null && status == null) {
-                    LastHttpContent last = new DefaultLastHttpContent(Unpooled.EMPTY_BUFFER, validateHeaders);
-                    HttpConversionUtil.addHttp2ToHttpHeaders(id, headers, last.trailingHeaders(),
-                                                             HttpVersion.HTTP_1_1, true, true);
+                    LastHttpContent last;
+                    if (headersView) {
+                        last = new DefaultLastHttpContent(Unpooled.EMPTY_BUFFER,
+                                HttpConversionUtil.toHttpHeadersView(id, headers, true, true, validateHeaders));
+                    } else {
+                        last = new DefaultLastHttpContent(Unpooled.EMPTY_BUFFER, validateHeaders);
+                        HttpConversionUtil.addHttp2ToHttpHeaders(id, headers, last.trailingHeaders(),
+                                                                 HttpVersion.HTTP_1_1, true, true);
+                    }
                     out.add(last);
                 } else {
                     FullHttpMessage full = newFullMessage(id, headers, ctx.alloc());
@@ -199,6 +221,11 @@ public class Http2StreamFrameToHttpObjectCodec extends MessageToMessageCodec<Htt
 
     private HttpMessage newMessage(final int id,
                                    final Http2Headers headers) throws Http2Exception {
+        if (headersView) {
+            return isServer ?
+                    HttpConversionUtil.toHttpRequestView(id, headers, null, validateHeaders) :
+                    HttpConversionUtil.toHttpResponseView(id, headers, null, validateHeaders);
+        }
         return isServer ?
                 HttpConversionUtil.toHttpRequest(id, headers, validateHeaders) :
                 HttpConversionUtil.toHttpResponse(id, headers, validateHeaders);
@@ -207,6 +234,11 @@ public class Http2StreamFrameToHttpObjectCodec extends MessageToMessageCodec<Htt
     private FullHttpMessage newFullMessage(final int id,
                                            final Http2Headers headers,
                                            final ByteBufAllocator alloc) throws Http2Exception {
+        if (headersView) {
+            return (FullHttpMessage) (isServer ?
+                    HttpConversionUtil.toHttpRequestView(id, headers, alloc.buffer(), validateHeaders) :
+                    HttpConversionUtil.toHttpResponseView(id, headers, alloc.buffer(), validateHeaders));
+        }
         return isServer ?
                 HttpConversionUtil.toFullHttpRequest(id, headers, alloc, validateHeaders) :
                 HttpConversionUtil.toFullHttpResponse(id, headers, alloc, validateHeaders);
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http2;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.internal.UnstableApi;
+
+/**
+ * Handles the streams of a {@link Http2StreamHandlerCodec}. A single instance receives the events of all the streams
+ * of a connection, each of which is identified by its {@link Http2StreamContext}. All methods are called from the
+ * event loop of the connection.
+ * <p>
+ * If a method throws an exception, the stream is reset with {@link Http2Error#INTERNAL_ERROR}, unless the exception
+ * is a {@link Http2Exception} which is handled like an exception of the codec.
+ */
+@UnstableApi
+public interface Http2StreamHandler {
+
+    /**
+     * Handles the {@code HEADERS} of a stream, which are the request headers or trailers on the server, and the
+     * response headers, interim responses or trailers on the client.
+     *
+     * @param stream the stream the headers belong to.
+     * @param headers the received headers.
+     * @param endOfStream {@code true} if the remote endpoint will not send anything else on this stream.
+     */
+    void onHeadersRead(Http2StreamContext stream, Http2Headers headers, boolean endOfStream) throws Exception;
+
+    /**
+     * Handles a {@code DATA} frame of a stream.
+     *
+     * @param stream the stream the data belongs to.
+     * @param data the payload of the frame, which is released by the codec once this method returns.
+     * @param padding the number of padding bytes of the frame.
+     * @param endOfStream {@code true} if the remote endpoint will not send anything else on this stream.
+     * @return the number of bytes which were processed. Returning the length of {@code data} + {@code padding}
+     * opts out of application-level flow control for this frame. The remaining bytes must be returned later
+     * via {@link Http2StreamContext#consumeBytes(int)}.
+     */
+    int onDataRead(Http2StreamContext stream, ByteBuf data, int padding, boolean endOfStream) throws Exception;
+
+    /**
+     * Handles a {@code RST_STREAM} frame sent by the remote endpoint. {@link #onStreamClosed(Http2StreamContext)}
+     * is called right after.
+     *
+     * @param stream the stream which was reset.
+     * @param errorCode the error code of the reset.
+     */
+    void onStreamReset(Http2StreamContext stream, long errorCode) throws Exception;
+
+    /**
+     * Called when the writability of the stream changed, which depends on the flow-control window of the remote
+     * endpoint. See {@link Http2StreamContext#isWritable()}.
+     */
+    void onWritabilityChanged(Http2StreamContext stream) throws Exception;
+
+    /**
+     * Called once the stream was closed, for whatever reason. Writes to the {@link Http2StreamContext} fail once
+     * this method returns.
+     */
+    void onStreamClosed(Http2StreamContext stream) throws Exception;
+}
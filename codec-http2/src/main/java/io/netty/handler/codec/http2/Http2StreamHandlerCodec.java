@@ -0,0 +1,458 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http2;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http2.Http2Connection.PropertyKey;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+import io.netty.util.internal.StringUtil;
+import io.netty.util.internal.UnstableApi;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import static io.netty.handler.codec.http2.Http2Error.INTERNAL_ERROR;
+import static io.netty.handler.codec.http2.Http2Error.REFUSED_STREAM;
+import static io.netty.handler.codec.http2.Http2Error.STREAM_CLOSED;
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
+
+/**
+ * An HTTP/2 handler which passes the events of all streams to a single {@link Http2StreamHandler}, instead of creating
+ * a child channel with its own pipeline per stream like {@link Http2MultiplexHandler} does. Each stream is represented
+ * by a lightweight {@link Http2StreamContext}, through which the handler writes to the stream. This avoids most of
+ * the per-stream allocations, which matters for connections that carry many short-lived streams.
+ * <p>
+ * The flow control and the ordering of the frames are handled by the {@link Http2ConnectionEncoder} and
+ * {@link Http2ConnectionDecoder} of this handler, just like for the other HTTP/2 handlers. Server push is not
+ * supported: promised streams are refused. Upgrades from HTTP/1.1 are not supported either.
+ * <p>
+ * Use {@link Http2StreamHandlerCodecBuilder} to create instances of this handler.
+ */
+@UnstableApi
+public class Http2StreamHandlerCodec extends Http2ConnectionHandler {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(Http2StreamHandlerCodec.class);
+
+    private final Http2StreamHandler streamHandler;
+    private final PropertyKey contextKey;
+    private final IntObjectMap<DefaultHttp2StreamContext> contextsToInitialize =
+            new IntObjectHashMap<DefaultHttp2StreamContext>(8);
+    private ChannelHandlerContext ctx;
+
+    Http2StreamHandlerCodec(Http2ConnectionDecoder decoder, Http2ConnectionEncoder encoder,
+                            Http2Settings initialSettings, boolean decoupleCloseAndGoAway, boolean flushPreface,
+                            Http2StreamHandler streamHandler) {
+        super(decoder, encoder, initialSettings, decoupleCloseAndGoAway, flushPreface);
+        this.streamHandler = checkNotNull(streamHandler, "streamHandler");
+        contextKey = connection().newKey();
+        decoder.frameListener(new FrameListener());
+        connection().addListener(new ConnectionListener());
+        connection().remote().flowController().listener(new WritabilityListener());
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        this.ctx = ctx;
+        super.handlerAdded(ctx);
+    }
+
+    /**
+     * Creates a new outbound stream, which is started by the first
+     * {@link Http2StreamContext#writeHeaders(Http2Headers, boolean)}. May be called from any thread once this handler
+     * was added to the pipeline.
+     */
+    public Http2StreamContext newStream() {
+        if (ctx == null) {
+            throw new IllegalStateException("Http2StreamHandlerCodec not added to a pipeline");
+        }
+        return new DefaultHttp2StreamContext(this);
+    }
+
+    private DefaultHttp2StreamContext context(int streamId) {
+        Http2Stream stream = connection().stream(streamId);
+        if (stream == null) {
+            return null;
+        }
+        DefaultHttp2StreamContext context = stream.getProperty(contextKey);
+        if (context == null) {
+            context = new DefaultHttp2StreamContext(this);
+            context.bind(stream);
+        }
+        return context;
+    }
+
+    void writeHeaders(final DefaultHttp2StreamContext context, final Http2Headers headers, final boolean endStream,
+                      final ChannelPromise promise) {
+        if (!ctx.executor().inEventLoop()) {
+            ctx.executor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    writeHeaders(context, headers, endStream, promise);
+                }
+            });
+            return;
+        }
+        if (context.closed) {
+            promise.setFailure(streamClosedException(context));
+        } else if (context.id >= 0) {
+            encoder().writeHeaders(ctx, context.id, headers, 0, endStream, promise);
+        } else {
+            writeInitialHeaders(context, headers, endStream, promise);
+        }
+    }
+
+    private void writeInitialHeaders(DefaultHttp2StreamContext context, Http2Headers headers, boolean endStream,
+                                     ChannelPromise promise) {
+        final int streamId = connection().local().incrementAndGetNextStreamId();
+        if (streamId < 0) {
+            promise.setFailure(new Http2NoMoreStreamIdsException());
+            return;
+        }
+        context.id = streamId;
+        // The stream is bound to the context once it was added to the connection, which may happen later if the
+        // encoder buffers the stream.
+        contextsToInitialize.put(streamId, context);
+        encoder().writeHeaders(ctx, streamId, headers, 0, endStream, promise);
+        if (promise.isDone()) {
+            handleHeadersFuture(promise, streamId);
+        } else {
+            promise.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) {
+                    handleHeadersFuture(future, streamId);
+                }
+            });
+        }
+    }
+
+    private void handleHeadersFuture(ChannelFuture future, int streamId) {
+        if (!future.isSuccess()) {
+            contextsToInitialize.remove(streamId);
+        }
+    }
+
+    void writeData(final DefaultHttp2StreamContext context, final ByteBuf data, final boolean endStream,
+                   final ChannelPromise promise) {
+        if (!ctx.executor().inEventLoop()) {
+            ctx.executor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    writeData(context, data, endStream, promise);
+                }
+            });
+            return;
+        }
+        if (context.closed) {
+            ReferenceCountUtil.safeRelease(data);
+            promise.setFailure(streamClosedException(context));
+            return;
+        }
+        encoder().writeData(ctx, context.id, data, 0, endStream, promise);
+    }
+
+    void writeReset(final DefaultHttp2StreamContext context, final long errorCode, final ChannelPromise promise) {
+        if (!ctx.executor().inEventLoop()) {
+            ctx.executor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    writeReset(context, errorCode, promise);
+                }
+            });
+            return;
+        }
+        if (context.closed) {
+            promise.setFailure(streamClosedException(context));
+            return;
+        }
+        resetStream(ctx, context.id, errorCode, promise);
+    }
+
+    void consumeBytes(final DefaultHttp2StreamContext context, final int numBytes) {
+        if (!ctx.executor().inEventLoop()) {
+            ctx.executor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    consumeBytes(context, numBytes);
+                }
+            });
+            return;
+        }
+        Http2Stream stream = context.closed ? null : connection().stream(context.id);
+        if (stream == null) {
+            // The stream was closed already, in which case the bytes were returned to the connection window.
+            return;
+        }
+        try {
+            connection().local().flowController().consumeBytes(stream, numBytes);
+        } catch (Http2Exception e) {
+            onError(ctx, false, e);
+        }
+    }
+
+    void flush() {
+        if (ctx.executor().inEventLoop()) {
+            flush(ctx);
+        } else {
+            ctx.executor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    flush(ctx);
+                }
+            });
+        }
+    }
+
+    boolean isWritable(Http2Stream stream) {
+        return connection().remote().flowController().isWritable(stream);
+    }
+
+    private static Http2Exception streamClosedException(DefaultHttp2StreamContext context) {
+        return Http2Exception.streamError(context.id, STREAM_CLOSED, "Stream %d was closed", context.id);
+    }
+
+    private static Http2Exception handlerException(int streamId, Throwable cause) {
+        if (cause instanceof Http2Exception) {
+            return (Http2Exception) cause;
+        }
+        logger.warn("{} failed, resetting stream {}.", Http2StreamHandler.class.getSimpleName(), streamId, cause);
+        return Http2Exception.streamError(streamId, INTERNAL_ERROR, cause, "Stream handler failed");
+    }
+
+    private final class FrameListener extends Http2FrameAdapter {
+
+        @Override
+        public void onHeadersRead(ChannelHandlerContext ctx, int streamId, Http2Headers headers, int padding,
+                                  boolean endOfStream) throws Http2Exception {
+            DefaultHttp2StreamContext context = context(streamId);
+            if (context == null) {
+                return;
+            }
+            try {
+                streamHandler.onHeadersRead(context, headers, endOfStream);
+            } catch (Throwable cause) {
+                throw handlerException(streamId, cause);
+            }
+        }
+
+        @Override
+        public void onHeadersRead(ChannelHandlerContext ctx, int streamId, Http2Headers headers,
+                                  int streamDependency, short weight, boolean exclusive, int padding,
+                                  boolean endOfStream) throws Http2Exception {
+            onHeadersRead(ctx, streamId, headers, padding, endOfStream);
+        }
+
+        @Override
+        public int onDataRead(ChannelHandlerContext ctx, int streamId, ByteBuf data, int padding,
+                              boolean endOfStream) throws Http2Exception {
+            DefaultHttp2StreamContext context = context(streamId);
+            if (context == null) {
+                return data.readableBytes() + padding;
+            }
+            try {
+                return streamHandler.onDataRead(context, data, padding, endOfStream);
+            } catch (Throwable cause) {
+                throw handlerException(streamId, cause);
+            }
+        }
+
+        @Override
+        public void onRstStreamRead(ChannelHandlerContext ctx, int streamId, long errorCode) throws Http2Exception {
+            Http2Stream stream = connection().stream(streamId);
+            DefaultHttp2StreamContext context = stream == null ? null :
+                    stream.<DefaultHttp2StreamContext>getProperty(contextKey);
+            if (context == null) {
+                return;
+            }
+            try {
+                streamHandler.onStreamReset(context, errorCode);
+            } catch (Throwable cause) {
+                throw handlerException(streamId, cause);
+            }
+        }
+
+        @Override
+        public void onPushPromiseRead(ChannelHandlerContext ctx, int streamId, int promisedStreamId,
+                                      Http2Headers headers, int padding) {
+            resetStream(ctx, promisedStreamId, REFUSED_STREAM.code(), ctx.newPromise());
+        }
+    }
+
+    private final class ConnectionListener extends Http2ConnectionAdapter {
+
+        @Override
+        public void onStreamAdded(Http2Stream stream) {
+            DefaultHttp2StreamContext context = contextsToInitialize.remove(stream.id());
+            if (context != null) {
+                context.bind(stream);
+            }
+        }
+
+        @Override
+        public void onStreamClosed(Http2Stream stream) {
+            DefaultHttp2StreamContext context = stream.removeProperty(contextKey);
+            if (context == null) {
+                return;
+            }
+            try {
+                streamHandler.onStreamClosed(context);
+            } catch (Throwable cause) {
+                logger.warn("{}.onStreamClosed() failed for stream {}.",
+                        Http2StreamHandler.class.getSimpleName(), stream.id(), cause);
+            } finally {
+                context.close();
+            }
+        }
+    }
+
+    private final class WritabilityListener implements Http2RemoteFlowController.Listener {
+
+        @Override
+        public void writabilityChanged(Http2Stream stream) {
+            DefaultHttp2StreamContext context = stream.getProperty(contextKey);
+            if (context == null) {
+                return;
+            }
+            try {
+                streamHandler.onWritabilityChanged(context);
+            } catch (Throwable cause) {
+                onError(ctx, false, handlerException(stream.id(), cause));
+            }
+        }
+    }
+
+    static final class DefaultHttp2StreamContext implements Http2StreamContext {
+
+        // Contexts are not pooled, as the application may still hold on to a context and write to it from another
+        // thread after the stream was closed. Such writes are failed once they reach the event loop.
+        private final Http2StreamHandlerCodec codec;
+        private volatile Http2Stream stream;
+        volatile int id = -1;
+        // Only accessed from the event loop.
+        boolean closed;
+        private Object attachment;
+
+        DefaultHttp2StreamContext(Http2StreamHandlerCodec codec) {
+            this.codec = codec;
+        }
+
+        void bind(Http2Stream stream) {
+            id = stream.id();
+            this.stream = stream;
+            stream.setProperty(codec.contextKey, this);
+        }
+
+        void close() {
+            closed = true;
+            stream = null;
+            attachment = null;
+        }
+
+        @Override
+        public int id() {
+            return id;
+        }
+
+        @Override
+        public Http2Stream stream() {
+            return stream;
+        }
+
+        @Override
+        public ChannelHandlerContext ctx() {
+            return codec.ctx;
+        }
+
+        @Override
+        public Object attachment() {
+            return attachment;
+        }
+
+        @Override
+        public void attachment(Object attachment) {
+            this.attachment = attachment;
+        }
+
+        @Override
+        public boolean isWritable() {
+            Http2Stream stream = this.stream;
+            return stream != null && codec.isWritable(stream);
+        }
+
+        @Override
+        public ChannelFuture writeHeaders(Http2Headers headers, boolean endStream) {
+            return writeHeaders(headers, endStream, codec.ctx.newPromise());
+        }
+
+        @Override
+        public ChannelFuture writeHeaders(Http2Headers headers, boolean endStream, ChannelPromise promise) {
+            checkNotNull(headers, "headers");
+            checkNotNull(promise, "promise");
+            codec.writeHeaders(this, headers, endStream, promise);
+            return promise;
+        }
+
+        @Override
+        public ChannelFuture writeData(ByteBuf data, boolean endStream) {
+            return writeData(data, endStream, codec.ctx.newPromise());
+        }
+
+        @Override
+        public ChannelFuture writeData(ByteBuf data, boolean endStream, ChannelPromise promise) {
+            checkNotNull(data, "data");
+            checkNotNull(promise, "promise");
+            if (id < 0) {
+                ReferenceCountUtil.safeRelease(data);
+                return promise.setFailure(new IllegalStateException("headers must be written first"));
+            }
+            codec.writeData(this, data, endStream, promise);
+            return promise;
+        }
+
+        @Override
+        public ChannelFuture writeReset(long errorCode) {
+            ChannelPromise promise = codec.ctx.newPromise();
+            if (id < 0) {
+                return promise.setFailure(new IllegalStateException("stream was not started"));
+            }
+            codec.writeReset(this, errorCode, promise);
+            return promise;
+        }
+
+        @Override
+        public void consumeBytes(int numBytes) {
+            checkPositiveOrZero(numBytes, "numBytes");
+            if (id >= 0 && numBytes > 0) {
+                codec.consumeBytes(this, numBytes);
+            }
+        }
+
+        @Override
+        public void flush() {
+            codec.flush();
+        }
+
+        @Override
+        public String toString() {
+            return StringUtil.simpleClassName(this) + "(id=" + id + ')';
+        }
+    }
+}
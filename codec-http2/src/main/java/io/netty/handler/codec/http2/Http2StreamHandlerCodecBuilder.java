@@ -0,0 +1,176 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http2;
+
+import io.netty.util.internal.UnstableApi;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+
+/**
+ * Builder for the {@link Http2StreamHandlerCodec}.
+ */
+@UnstableApi
+public final class Http2StreamHandlerCodecBuilder extends
+        AbstractHttp2ConnectionHandlerBuilder<Http2StreamHandlerCodec, Http2StreamHandlerCodecBuilder> {
+
+    private final Http2StreamHandler streamHandler;
+
+    private Http2StreamHandlerCodecBuilder(boolean server, Http2StreamHandler streamHandler) {
+        this.streamHandler = checkNotNull(streamHandler, "streamHandler");
+        server(server);
+    }
+
+    /**
+     * Creates a builder for an HTTP/2 client, whose streams are handled by the given {@link Http2StreamHandler}.
+     */
+    public static Http2StreamHandlerCodecBuilder forClient(Http2StreamHandler streamHandler) {
+        return new Http2StreamHandlerCodecBuilder(false, streamHandler);
+    }
+
+    /**
+     * Creates a builder for an HTTP/2 server, whose streams are handled by the given {@link Http2StreamHandler}.
+     */
+    public static Http2StreamHandlerCodecBuilder forServer(Http2StreamHandler streamHandler) {
+        return new Http2StreamHandlerCodecBuilder(true, streamHandler);
+    }
+
+    @Override
+    public Http2Settings initialSettings() {
+        return super.initialSettings();
+    }
+
+    @Override
+    public Http2StreamHandlerCodecBuilder initialSettings(Http2Settings settings) {
+        return super.initialSettings(settings);
+    }
+
+    @Override
+    public long gracefulShutdownTimeoutMillis() {
+        return super.gracefulShutdownTimeoutMillis();
+    }
+
+    @Override
+    public Http2StreamHandlerCodecBuilder gracefulShutdownTimeoutMillis(long gracefulShutdownTimeoutMillis) {
+        return super.gracefulShutdownTimeoutMillis(gracefulShutdownTimeoutMillis);
+    }
+
+    @Override
+    public boolean isServer() {
+        return super.isServer();
+    }
+
+    @Override
+    public int maxReservedStreams() {
+        return super.maxReservedStreams();
+    }
+
+    @Override
+    public Http2StreamHandlerCodecBuilder maxReservedStreams(int maxReservedStreams) {
+        return super.maxReservedStreams(maxReservedStreams);
+    }
+
+    @Override
+    public boolean isValidateHeaders() {
+        return super.isValidateHeaders();
+    }
+
+    @Override
+    public Http2StreamHandlerCodecBuilder validateHeaders(boolean validateHeaders) {
+        return super.validateHeaders(validateHeaders);
+    }
+
+    @Override
+    public Http2FrameLogger frameLogger() {
+        return super.frameLogger();
+    }
+
+    @Override
+    public Http2StreamHandlerCodecBuilder frameLogger(Http2FrameLogger frameLogger) {
+        return super.frameLogger(frameLogger);
+    }
+
+    @Override
+    public boolean encoderEnforceMaxConcurrentStreams() {
+        return super.encoderEnforceMaxConcurrentStreams();
+    }
+
+    @Override
+    public Http2StreamHandlerCodecBuilder encoderEnforceMaxConcurrentStreams(
+            boolean encoderEnforceMaxConcurrentStreams) {
+        return super.encoderEnforceMaxConcurrentStreams(encoderEnforceMaxConcurrentStreams);
+    }
+
+    @Override
+    public int encoderEnforceMaxQueuedControlFrames() {
+        return super.encoderEnforceMaxQueuedControlFrames();
+    }
+
+    @Override
+    public Http2StreamHandlerCodecBuilder encoderEnforceMaxQueuedControlFrames(int maxQueuedControlFrames) {
+        return super.encoderEnforceMaxQueuedControlFrames(maxQueuedControlFrames);
+    }
+
+    @Override
+    public Http2HeadersEncoder.SensitivityDetector headerSensitivityDetector() {
+        return super.headerSensitivityDetector();
+    }
+
+    @Override
+    public Http2StreamHandlerCodecBuilder headerSensitivityDetector(
+            Http2HeadersEncoder.SensitivityDetector headerSensitivityDetector) {
+        return super.headerSensitivityDetector(headerSensitivityDetector);
+    }
+
+    @Override
+    public Http2StreamHandlerCodecBuilder encoderIgnoreMaxHeaderListSize(boolean ignoreMaxHeaderListSize) {
+        return super.encoderIgnoreMaxHeaderListSize(ignoreMaxHeaderListSize);
+    }
+
+    @Override
+    public Http2StreamHandlerCodecBuilder decoupleCloseAndGoAway(boolean decoupleCloseAndGoAway) {
+        return super.decoupleCloseAndGoAway(decoupleCloseAndGoAway);
+    }
+
+    @Override
+    public Http2StreamHandlerCodecBuilder flushPreface(boolean flushPreface) {
+        return super.flushPreface(flushPreface);
+    }
+
+    @Override
+    public int decoderEnforceMaxConsecutiveEmptyDataFrames() {
+        return super.decoderEnforceMaxConsecutiveEmptyDataFrames();
+    }
+
+    @Override
+    public Http2StreamHandlerCodecBuilder decoderEnforceMaxConsecutiveEmptyDataFrames(int maxConsecutiveEmptyFrames) {
+        return super.decoderEnforceMaxConsecutiveEmptyDataFrames(maxConsecutiveEmptyFrames);
+    }
+
+    /**
+     * Build a {@link Http2StreamHandlerCodec} object.
+     */
+    @Override
+    public Http2StreamHandlerCodec build() {
+        return super.build();
+    }
+
+    @Override
+    protected Http2StreamHandlerCodec build(
+            Http2ConnectionDecoder decoder, Http2ConnectionEncoder encoder, Http2Settings initialSettings) {
+        return new Http2StreamHandlerCodec(decoder, encoder, initialSettings, decoupleCloseAndGoAway(),
+                flushPreface(), streamHandler);
+    }
+}
@@ -19,6 +19,7 @@ import io.netty.buffer.ByteBufAllocator;
 import io.netty.handler.codec.UnsupportedValueConverter;
 import io.netty.handler.codec.http.DefaultFullHttpRequest;
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
 import io.netty.handler.codec.http.DefaultHttpRequest;
 import io.netty.handler.codec.http.DefaultHttpResponse;
 import io.netty.handler.codec.http.FullHttpMessage;
@@ -372,6 +373,76 @@ public final class HttpConversionUtil {
         return msg;
     }
 
+    /**
+     * Create a new object to contain the request data, whose headers are a {@link Http2HttpHeaders} view of the given
+     * HTTP/2 headers instead of a copy.
+     *
+     * @param streamId The stream associated with the request
+     * @param http2Headers The initial set of HTTP/2 headers to create the request with
+     * @param content {@link ByteBuf} content to put in the request, or {@code null} to create a request which is not
+     *        a {@link FullHttpRequest}
+     * @param validateHttpHeaders <ul>
+     *        <li>{@code true} to validate HTTP headers in the http-codec</li>
+     *        <li>{@code false} not to validate HTTP headers in the http-codec</li>
+     *        </ul>
+     * @return A new request object which represents the headers
+     * @throws Http2Exception If a header is not valid for HTTP/1.x and {@code validateHttpHeaders} is {@code true}
+     */
+    public static HttpRequest toHttpRequestView(int streamId, Http2Headers http2Headers, ByteBuf content,
+                                                boolean validateHttpHeaders) throws Http2Exception {
+        final CharSequence method = checkNotNull(http2Headers.method(),
+                "method header cannot be null in conversion to HTTP/1.x");
+        final CharSequence path = extractPath(method, http2Headers);
+        HttpHeaders headers = toHttpHeadersView(streamId, http2Headers, true, false, validateHttpHeaders);
+        HttpMethod httpMethod = HttpMethod.valueOf(method.toString());
+        if (content == null) {
+            return new DefaultHttpRequest(HttpVersion.HTTP_1_1, httpMethod, path.toString(), headers);
+        }
+        return new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, httpMethod, path.toString(), content, headers,
+                new DefaultHttpHeaders(validateHttpHeaders));
+    }
+
+    /**
+     * Create a new object to contain the response data, whose headers are a {@link Http2HttpHeaders} view of the
+     * given HTTP/2 headers instead of a copy.
+     *
+     * @param streamId The stream associated with the response
+     * @param http2Headers The initial set of HTTP/2 headers to create the response with
+     * @param content {@link ByteBuf} content to put in the response, or {@code null} to create a response which is
+     *        not a {@link FullHttpResponse}
+     * @param validateHttpHeaders <ul>
+     *        <li>{@code true} to validate HTTP headers in the http-codec</li>
+     *        <li>{@code false} not to validate HTTP headers in the http-codec</li>
+     *        </ul>
+     * @return A new response object which represents the headers
+     * @throws Http2Exception If the status of the response is invalid, or a header is not valid for HTTP/1.x and
+     *         {@code validateHttpHeaders} is {@code true}
+     */
+    public static HttpResponse toHttpResponseView(int streamId, Http2Headers http2Headers, ByteBuf content,
+                                                  boolean validateHttpHeaders) throws Http2Exception {
+        final HttpResponseStatus status = parseStatus(http2Headers.status());
+        HttpHeaders headers = toHttpHeadersView(streamId, http2Headers, false, false, validateHttpHeaders);
+        if (content == null) {
+            return new DefaultHttpResponse(HttpVersion.HTTP_1_1, status, headers);
+        }
+        return new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status, content, headers,
+                new DefaultHttpHeaders(validateHttpHeaders));
+    }
+
+    /**
+     * Creates a {@link Http2HttpHeaders} view of the given HTTP/2 headers, failing the stream like
+     * {@link #addHttp2ToHttpHeaders(int, Http2Headers, HttpHeaders, HttpVersion, boolean, boolean)} does if a header
+     * is not valid.
+     */
+    static Http2HttpHeaders toHttpHeadersView(int streamId, Http2Headers http2Headers, boolean isRequest,
+                                              boolean isTrailer, boolean validateHttpHeaders) throws Http2Exception {
+        try {
+            return new Http2HttpHeaders(streamId, http2Headers, isRequest, isTrailer, validateHttpHeaders);
+        } catch (IllegalArgumentException e) {
+            throw streamError(streamId, PROTOCOL_ERROR, e, "HTTP/2 to HTTP/1.x headers conversion error");
+        }
+    }
+
     /**
      * Translate and add HTTP/2 headers to HTTP/1.x headers.
      *
@@ -70,6 +70,11 @@ public final class HttpToHttp2ConnectionHandlerBuilder extends
         return super.frameLogger(frameLogger);
     }
 
+    @Override
+    public HttpToHttp2ConnectionHandlerBuilder metrics(Http2ConnectionMetrics metrics) {
+        return super.metrics(metrics);
+    }
+
     @Override
     public HttpToHttp2ConnectionHandlerBuilder encoderEnforceMaxConcurrentStreams(
             boolean encoderEnforceMaxConcurrentStreams) {
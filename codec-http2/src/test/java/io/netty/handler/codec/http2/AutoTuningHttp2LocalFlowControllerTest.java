@@ -0,0 +1,170 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http2;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.concurrent.EventExecutor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import static io.netty.handler.codec.http2.AutoTuningHttp2LocalFlowController.BDP_PING_DATA;
+import static io.netty.handler.codec.http2.Http2CodecUtil.CONNECTION_STREAM_ID;
+import static io.netty.handler.codec.http2.Http2CodecUtil.DEFAULT_WINDOW_SIZE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link AutoTuningHttp2LocalFlowController}.
+ */
+public class AutoTuningHttp2LocalFlowControllerTest {
+    private static final int STREAM_ID = 1;
+    private static final int MAX_WINDOW_SIZE = 1024 * 1024;
+
+    private TestController controller;
+
+    @Mock
+    private Http2FrameWriter frameWriter;
+
+    @Mock
+    private ChannelHandlerContext ctx;
+
+    @Mock
+    private EventExecutor executor;
+
+    @Mock
+    private ChannelPromise promise;
+
+    private DefaultHttp2Connection connection;
+
+    @BeforeEach
+    public void setup() throws Http2Exception {
+        MockitoAnnotations.initMocks(this);
+        when(ctx.newPromise()).thenReturn(promise);
+        when(ctx.executor()).thenReturn(executor);
+        when(executor.inEventLoop()).thenReturn(true);
+
+        connection = new DefaultHttp2Connection(false);
+        controller = new TestController(connection);
+        controller.frameWriter(frameWriter);
+        connection.local().flowController(controller);
+        connection.local().createStream(STREAM_ID, false);
+        controller.channelHandlerContext(ctx);
+    }
+
+    @Test
+    public void testWindowsGrowWithBandwidthDelayProduct() throws Http2Exception {
+        receiveFlowControlledFrame(30000);
+        receiveFlowControlledFrame(30000);
+        // Only a single PING is in flight at any time.
+        verify(frameWriter, times(1)).writePing(eq(ctx), eq(false), eq(BDP_PING_DATA), eq(promise));
+
+        assertFalse(controller.onPingAckRead(42));
+        assertTrue(controller.onPingAckRead(BDP_PING_DATA));
+        assertFalse(controller.onPingAckRead(BDP_PING_DATA));
+        assertEquals(60000, controller.bandwidthDelayProduct());
+        assertTrue(controller.roundTripTimeNanos() > 0);
+        assertEquals(120000, controller.connectionWindowSize());
+        assertEquals(120000, controller.streamWindowSize());
+        assertEquals(120000, controller.initialWindowSize(connection.connectionStream()));
+
+        // The connection window is refilled up to the new size.
+        assertTrue(controller.consumeBytes(stream(), 60000));
+        verify(frameWriter).writeWindowUpdate(eq(ctx), eq(CONNECTION_STREAM_ID), eq(120000 - 5535), eq(promise));
+        verify(frameWriter).writeWindowUpdate(eq(ctx), eq(STREAM_ID), eq(60000), eq(promise));
+
+        // The stream window is grown once a WINDOW_UPDATE is due for the stream.
+        receiveFlowControlledFrame(40000);
+        verify(frameWriter, never()).writeWindowUpdate(eq(ctx), eq(STREAM_ID), eq(120000 - 25535), eq(promise));
+        assertEquals(120000, controller.initialWindowSize(stream()));
+        assertTrue(controller.consumeBytes(stream(), 40000));
+        verify(frameWriter).writeWindowUpdate(eq(ctx), eq(STREAM_ID), eq(120000 - 25535), eq(promise));
+        verify(frameWriter, times(2)).writePing(eq(ctx), eq(false), eq(BDP_PING_DATA), eq(promise));
+    }
+
+    @Test
+    public void testWindowsDoNotGrowForSmallTransfers() throws Http2Exception {
+        receiveFlowControlledFrame(1000);
+        assertTrue(controller.onPingAckRead(BDP_PING_DATA));
+        assertEquals(1000, controller.bandwidthDelayProduct());
+        assertEquals(DEFAULT_WINDOW_SIZE, controller.connectionWindowSize());
+        assertEquals(DEFAULT_WINDOW_SIZE, controller.streamWindowSize());
+    }
+
+    @Test
+    public void testWindowsShrinkUnderMemoryPressure() throws Http2Exception {
+        receiveFlowControlledFrame(60000);
+        assertTrue(controller.onPingAckRead(BDP_PING_DATA));
+        assertEquals(120000, controller.connectionWindowSize());
+        controller.consumeBytes(stream(), 60000);
+
+        controller.memoryPressure = true;
+        receiveFlowControlledFrame(100);
+        assertTrue(controller.onPingAckRead(BDP_PING_DATA));
+        assertEquals(DEFAULT_WINDOW_SIZE, controller.connectionWindowSize());
+        assertEquals(DEFAULT_WINDOW_SIZE, controller.streamWindowSize());
+        assertEquals(DEFAULT_WINDOW_SIZE, controller.initialWindowSize(connection.connectionStream()));
+    }
+
+    @Test
+    public void testStallsAreMeasured() throws Http2Exception {
+        receiveFlowControlledFrame(DEFAULT_WINDOW_SIZE);
+        assertEquals(1, controller.stallCount());
+        assertEquals(0, controller.stallTimeNanos());
+
+        assertTrue(controller.consumeBytes(stream(), DEFAULT_WINDOW_SIZE));
+        verify(frameWriter).writeWindowUpdate(eq(ctx), eq(CONNECTION_STREAM_ID), anyInt(), eq(promise));
+        assertEquals(1, controller.stallCount());
+        assertTrue(controller.stallTimeNanos() >= 0);
+    }
+
+    private void receiveFlowControlledFrame(int dataSize) throws Http2Exception {
+        ByteBuf buf = Unpooled.buffer(dataSize).writerIndex(dataSize);
+        try {
+            controller.receiveFlowControlledFrame(stream(), buf, 0, false);
+        } finally {
+            buf.release();
+        }
+    }
+
+    private Http2Stream stream() {
+        return connection.stream(STREAM_ID);
+    }
+
+    private static final class TestController extends AutoTuningHttp2LocalFlowController {
+        boolean memoryPressure;
+
+        TestController(Http2Connection connection) {
+            super(connection, MAX_WINDOW_SIZE, MAX_WINDOW_SIZE);
+        }
+
+        @Override
+        protected boolean isUnderMemoryPressure() {
+            return memoryPressure;
+        }
+    }
+}
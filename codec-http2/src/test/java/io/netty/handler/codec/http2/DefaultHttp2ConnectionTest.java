@@ -34,6 +34,9 @@ import org.mockito.MockitoAnnotations;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
@@ -213,6 +216,40 @@ public class DefaultHttp2ConnectionTest {
         assertTrue(latch.await(5, TimeUnit.SECONDS));
     }
 
+    @Test
+    public void activeStreamsAreVisitedInActivationOrder() throws Exception {
+        final Http2Stream stream3 = client.local().createStream(3, false);
+        Http2Stream stream5 = client.local().createStream(5, false);
+        client.remote().createStream(2, false);
+        client.local().createStream(7, false);
+        stream5.close();
+        client.local().createStream(9, false);
+        assertEquals(4, client.numActiveStreams());
+
+        final List<Integer> visited = new ArrayList<Integer>();
+        client.forEachActiveStream(new Http2StreamVisitor() {
+            @Override
+            public boolean visit(Http2Stream stream) {
+                visited.add(stream.id());
+                // Closing a stream while iterating is deferred until the iteration is done.
+                stream3.close();
+                return true;
+            }
+        });
+        assertEquals(Arrays.asList(3, 2, 7, 9), visited);
+        assertEquals(3, client.numActiveStreams());
+
+        visited.clear();
+        client.forEachActiveStream(new Http2StreamVisitor() {
+            @Override
+            public boolean visit(Http2Stream stream) {
+                visited.add(stream.id());
+                return true;
+            }
+        });
+        assertEquals(Arrays.asList(2, 7, 9), visited);
+    }
+
     @Test
     public void goAwayReceivedShouldCloseStreamsGreaterThanLastStream() throws Exception {
         Http2Stream stream1 = client.local().createStream(3, false);
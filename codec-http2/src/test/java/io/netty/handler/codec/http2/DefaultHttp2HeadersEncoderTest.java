@@ -24,6 +24,8 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.function.Executable;
 
 import static io.netty.handler.codec.http2.Http2TestUtil.newTestEncoder;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -63,6 +65,89 @@ public class DefaultHttp2HeadersEncoderTest {
         });
     }
 
+    @Test
+    public void readOnlyHeaderBlockIsCached() throws Http2Exception {
+        CountingSensitivityDetector detector = new CountingSensitivityDetector();
+        encoder = new DefaultHttp2HeadersEncoder(detector, newTestEncoder(), 4);
+        DefaultHttp2HeadersDecoder decoder = new DefaultHttp2HeadersDecoder();
+        Http2Headers headers = readOnlyHeaders();
+
+        // The first encoding adds the fields to the dynamic table, so it can not be replayed.
+        ByteBuf first = encodeAndDecode(decoder, headers);
+        ByteBuf second = encodeAndDecode(decoder, headers);
+        assertEquals(2 * headers.size(), detector.calls);
+        ByteBuf third = encodeAndDecode(decoder, headers);
+        try {
+            assertEquals(2 * headers.size(), detector.calls);
+            assertNotEquals(first, second);
+            assertEquals(second, third);
+        } finally {
+            first.release();
+            second.release();
+            third.release();
+        }
+    }
+
+    @Test
+    public void cachedHeaderBlockIsNotUsedAfterDynamicTableChanged() throws Http2Exception {
+        CountingSensitivityDetector detector = new CountingSensitivityDetector();
+        encoder = new DefaultHttp2HeadersEncoder(detector, newTestEncoder(), 4);
+        DefaultHttp2HeadersDecoder decoder = new DefaultHttp2HeadersDecoder();
+        Http2Headers headers = readOnlyHeaders();
+
+        encodeAndDecode(decoder, headers).release();
+        ByteBuf cached = encodeAndDecode(decoder, headers);
+        encodeAndDecode(decoder, new DefaultHttp2Headers().add(new AsciiString("other"), new AsciiString("1")))
+                .release();
+        int calls = detector.calls;
+        ByteBuf reencoded = encodeAndDecode(decoder, headers);
+        try {
+            assertEquals(calls + headers.size(), detector.calls);
+            // The indices of the dynamic table were shifted by the other header.
+            assertNotEquals(cached, reencoded);
+        } finally {
+            cached.release();
+            reencoded.release();
+        }
+    }
+
+    @Test
+    public void mutableHeadersAreNotCached() throws Http2Exception {
+        CountingSensitivityDetector detector = new CountingSensitivityDetector();
+        encoder = new DefaultHttp2HeadersEncoder(detector, newTestEncoder(), 4);
+        DefaultHttp2HeadersDecoder decoder = new DefaultHttp2HeadersDecoder();
+        Http2Headers headers = headers();
+
+        for (int i = 0; i < 3; i++) {
+            encodeAndDecode(decoder, headers).release();
+        }
+        assertEquals(3 * headers.size(), detector.calls);
+    }
+
+    private ByteBuf encodeAndDecode(DefaultHttp2HeadersDecoder decoder, Http2Headers headers) throws Http2Exception {
+        ByteBuf buf = Unpooled.buffer();
+        encoder.encodeHeaders(3 /* randomly chosen */, headers, buf);
+        assertEquals(decoder.decodeHeaders(3, buf.duplicate()), headers);
+        return buf;
+    }
+
+    private static Http2Headers readOnlyHeaders() {
+        return ReadOnlyHttp2Headers.clientHeaders(false, new AsciiString("POST"), new AsciiString("/service/method"),
+                new AsciiString("https"), new AsciiString("example.com"),
+                new AsciiString("content-type"), new AsciiString("application/grpc"),
+                new AsciiString("te"), new AsciiString("trailers"));
+    }
+
+    private static final class CountingSensitivityDetector implements Http2HeadersEncoder.SensitivityDetector {
+        int calls;
+
+        @Override
+        public boolean isSensitive(CharSequence name, CharSequence value) {
+            calls++;
+            return false;
+        }
+    }
+
     private static Http2Headers headers() {
         return new DefaultHttp2Headers().method(new AsciiString("GET")).add(new AsciiString("a"), new AsciiString("1"))
                 .add(new AsciiString("a"), new AsciiString("2"));
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http2;
+
+import io.netty.handler.codec.http2.Http2TestUtil.TestStreamByteDistributorStreamState;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.netty.handler.codec.http2.Http2CodecUtil.DEFAULT_PRIORITY_WEIGHT;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link DeficitRoundRobinStreamByteDistributor}.
+ */
+public class DeficitRoundRobinStreamByteDistributorTest {
+    private static final int STREAM_A = 1;
+    private static final int STREAM_B = 3;
+    private static final int STREAM_C = 5;
+    private static final int STREAM_D = 7;
+
+    private Http2Connection connection;
+    private DeficitRoundRobinStreamByteDistributor distributor;
+    private IntObjectMap<TestStreamByteDistributorStreamState> stateMap;
+    private RecordingWriter writer;
+
+    @BeforeEach
+    public void setup() throws Http2Exception {
+        stateMap = new IntObjectHashMap<TestStreamByteDistributorStreamState>();
+        connection = new DefaultHttp2Connection(false);
+        distributor = new DeficitRoundRobinStreamByteDistributor(connection);
+        writer = new RecordingWriter();
+
+        connection.local().createStream(STREAM_A, false);
+        connection.local().createStream(STREAM_B, false);
+        connection.local().createStream(STREAM_C, false);
+        connection.local().createStream(STREAM_D, false);
+    }
+
+    @Test
+    public void bytesUnassignedAfterProcessing() throws Http2Exception {
+        initState(STREAM_A, 1, true);
+        initState(STREAM_B, 2, true);
+        initState(STREAM_C, 3, true);
+        initState(STREAM_D, 4, true);
+
+        assertFalse(write(10));
+        assertEquals(1, writer.written(STREAM_A));
+        assertEquals(2, writer.written(STREAM_B));
+        assertEquals(3, writer.written(STREAM_C));
+        assertEquals(4, writer.written(STREAM_D));
+
+        writer.clear();
+        assertFalse(write(10));
+        assertTrue(writer.writes.isEmpty());
+    }
+
+    @Test
+    public void bytesAreDistributedByWeight() throws Http2Exception {
+        distributor.minAllocationChunk(1);
+        setWeight(STREAM_A, DEFAULT_PRIORITY_WEIGHT * 2);
+        initState(STREAM_A, 10000, true);
+        initState(STREAM_B, 10000, true);
+
+        assertTrue(write(480));
+        assertEquals(320, writer.written(STREAM_A));
+        assertEquals(160, writer.written(STREAM_B));
+
+        writer.clear();
+        for (int i = 0; i < 10; i++) {
+            assertTrue(write(100));
+        }
+        assertEquals(1000, writer.written(STREAM_A) + writer.written(STREAM_B));
+        assertEquals(2.0, (double) writer.written(STREAM_A) / writer.written(STREAM_B), 0.2);
+    }
+
+    @Test
+    public void minAllocationChunkIsGrantedPerRound() throws Http2Exception {
+        distributor.minAllocationChunk(100);
+        initState(STREAM_A, 1000, true);
+        initState(STREAM_B, 1000, true);
+
+        assertTrue(write(150));
+        assertEquals(100, writer.written(STREAM_A));
+        assertEquals(50, writer.written(STREAM_B));
+        // The remainder of the quantum of B is kept for the next round.
+        assertEquals(50, distributor.deficit(STREAM_B));
+        assertEquals(0, distributor.deficit(STREAM_A));
+    }
+
+    @Test
+    public void higherUrgencyIsWrittenFirst() throws Http2Exception {
+        initState(STREAM_A, 1000, true);
+        initState(STREAM_B, 1000, true);
+        distributor.updatePriority(STREAM_B, 0, true);
+
+        assertTrue(write(1500));
+        assertEquals(1000, writer.written(STREAM_B));
+        assertEquals(500, writer.written(STREAM_A));
+        assertEquals(STREAM_B, writer.writes.get(0).intValue());
+    }
+
+    @Test
+    public void nonIncrementalStreamsAreWrittenOneAfterTheOther() throws Http2Exception {
+        distributor.minAllocationChunk(1);
+        distributor.updatePriority(STREAM_C, DeficitRoundRobinStreamByteDistributor.DEFAULT_URGENCY, false);
+        distributor.updatePriority(STREAM_D, DeficitRoundRobinStreamByteDistributor.DEFAULT_URGENCY, false);
+        initState(STREAM_C, 500, true);
+        initState(STREAM_D, 500, true);
+        initState(STREAM_A, 500, true);
+
+        assertTrue(write(600));
+        assertEquals(500, writer.written(STREAM_C));
+        assertEquals(100, writer.written(STREAM_D));
+        assertEquals(0, writer.written(STREAM_A));
+
+        writer.clear();
+        assertFalse(write(1000));
+        assertEquals(400, writer.written(STREAM_D));
+        assertEquals(500, writer.written(STREAM_A));
+    }
+
+    @Test
+    public void closedStreamIsNotWritten() throws Http2Exception {
+        initState(STREAM_A, 100, true);
+        initState(STREAM_B, 100, true);
+        initState(STREAM_C, 100, true);
+
+        stream(STREAM_B).close();
+        assertFalse(write(1000));
+        assertEquals(100, writer.written(STREAM_A));
+        assertEquals(0, writer.written(STREAM_B));
+        assertEquals(100, writer.written(STREAM_C));
+    }
+
+    @Test
+    public void emptyFramesAreWrittenWithoutBytes() throws Http2Exception {
+        initState(STREAM_A, 0, true);
+        initState(STREAM_B, 100, true);
+        distributor.updatePriority(STREAM_A, 7, true);
+
+        assertTrue(write(0));
+        assertEquals(1, writer.writes.size());
+        assertEquals(STREAM_A, writer.writes.get(0).intValue());
+    }
+
+    @Test
+    public void negativeWindowIsNotWritten() throws Http2Exception {
+        initState(STREAM_A, 100, true, false);
+        initState(STREAM_B, 100, true);
+
+        write(1000);
+        assertEquals(0, writer.written(STREAM_A));
+        assertEquals(100, writer.written(STREAM_B));
+    }
+
+    private Http2Stream stream(int streamId) {
+        return connection.stream(streamId);
+    }
+
+    private void initState(int streamId, long pendingBytes, boolean hasFrame) {
+        initState(streamId, pendingBytes, hasFrame, hasFrame);
+    }
+
+    private void initState(int streamId, long pendingBytes, boolean hasFrame, boolean isWriteAllowed) {
+        TestStreamByteDistributorStreamState state = new TestStreamByteDistributorStreamState(stream(streamId),
+                pendingBytes, hasFrame, isWriteAllowed);
+        stateMap.put(streamId, state);
+        distributor.updateStreamableBytes(state);
+    }
+
+    private void setWeight(int streamId, int weight) {
+        distributor.updateDependencyTree(streamId, 0, (short) weight, false);
+    }
+
+    private boolean write(int numBytes) throws Http2Exception {
+        return distributor.distribute(numBytes, writer);
+    }
+
+    private final class RecordingWriter implements StreamByteDistributor.Writer {
+        final List<Integer> writes = new ArrayList<Integer>();
+        final IntObjectMap<Integer> written = new IntObjectHashMap<Integer>();
+
+        @Override
+        public void write(Http2Stream stream, int numBytes) {
+            writes.add(stream.id());
+            written.put(stream.id(), Integer.valueOf(written(stream.id()) + numBytes));
+            TestStreamByteDistributorStreamState state = stateMap.get(stream.id());
+            state.pendingBytes -= numBytes;
+            state.hasFrame = state.pendingBytes > 0;
+            distributor.updateStreamableBytes(state);
+        }
+
+        int written(int streamId) {
+            Integer bytes = written.get(streamId);
+            return bytes == null ? 0 : bytes;
+        }
+
+        void clear() {
+            writes.clear();
+            written.clear();
+        }
+    }
+}
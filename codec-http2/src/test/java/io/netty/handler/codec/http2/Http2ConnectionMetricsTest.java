@@ -0,0 +1,282 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http2;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http2.Http2HeadersEncoder.SensitivityDetector;
+import io.netty.util.AsciiString;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import static io.netty.handler.codec.http2.Http2FrameTypes.DATA;
+import static io.netty.handler.codec.http2.Http2FrameTypes.HEADERS;
+import static io.netty.handler.codec.http2.Http2FrameTypes.PING;
+import static io.netty.handler.codec.http2.Http2FrameTypes.SETTINGS;
+import static io.netty.handler.codec.http2.Http2FrameTypes.WINDOW_UPDATE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link Http2ConnectionMetrics}.
+ */
+public class Http2ConnectionMetricsTest {
+
+    private Http2ConnectionMetrics clientMetrics;
+    private Http2ConnectionMetrics serverMetrics;
+    private Http2ConnectionHandler clientHandler;
+    private Http2ConnectionHandler serverHandler;
+    private EmbeddedChannel client;
+    private EmbeddedChannel server;
+
+    @BeforeEach
+    public void setUp() {
+        clientMetrics = new Http2ConnectionMetrics();
+        serverMetrics = new Http2ConnectionMetrics();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (client != null) {
+            client.finishAndReleaseAll();
+            server.finishAndReleaseAll();
+        }
+    }
+
+    @Test
+    public void testStreamsFramesAndHpack() throws Exception {
+        connect(Http2Settings.defaultSettings());
+        // The initial SETTINGS frame and the acknowledgement of the remote one.
+        assertEquals(2, clientMetrics.framesWritten(SETTINGS));
+        assertEquals(2, clientMetrics.framesRead(SETTINGS));
+
+        Http2Headers headers = new DefaultHttp2Headers()
+                .method("GET").scheme("https").path("/").authority("example.com").add("x-custom", "value");
+        ChannelHandlerContext ctx = client.pipeline().firstContext();
+        clientHandler.encoder().writeHeaders(ctx, 3, headers, 0, true, ctx.newPromise());
+        clientHandler.encoder().writeHeaders(ctx, 5, headers, 0, true, ctx.newPromise());
+        client.flush();
+        exchange();
+
+        assertEquals(2, clientMetrics.framesWritten(HEADERS));
+        assertEquals(2, serverMetrics.framesRead(HEADERS));
+        assertEquals(2, clientMetrics.streamsOpened());
+        assertEquals(2, clientMetrics.activeStreams());
+        assertEquals(2, serverMetrics.activeStreams());
+
+        // The second header block only refers to the entries which were added to the dynamic table by the first one.
+        assertEquals(8, clientMetrics.hpackEncoderIndexedHeaders());
+        assertEquals(2, clientMetrics.hpackEncoderLiteralHeaders());
+        assertEquals(0.8, clientMetrics.hpackEncoderHitRate(), 0.001);
+        assertEquals(8, serverMetrics.hpackDecoderIndexedHeaders());
+        assertEquals(2, serverMetrics.hpackDecoderLiteralHeaders());
+
+        ctx = server.pipeline().firstContext();
+        Http2Headers response = new DefaultHttp2Headers().status("200");
+        serverHandler.encoder().writeHeaders(ctx, 3, response, 0, true, ctx.newPromise());
+        serverHandler.encoder().writeHeaders(ctx, 5, response, 0, true, ctx.newPromise());
+        server.flush();
+        exchange();
+
+        assertEquals(0, clientMetrics.activeStreams());
+        assertEquals(0, serverMetrics.activeStreams());
+        assertEquals(2, clientMetrics.streamLifetimes().count());
+        assertEquals(2, serverMetrics.streamLifetimes().count());
+        assertEquals(2, serverMetrics.hpackEncoderIndexedHeaders());
+        assertEquals(0, clientMetrics.flowControlBlockedTimes().count());
+    }
+
+    @Test
+    public void testPingAndGoAway() throws Exception {
+        connect(Http2Settings.defaultSettings());
+        ChannelHandlerContext ctx = client.pipeline().firstContext();
+        clientHandler.encoder().writePing(ctx, false, 42, ctx.newPromise());
+        client.flush();
+        exchange();
+
+        assertEquals(1, clientMetrics.framesWritten(PING));
+        assertEquals(2, serverMetrics.framesRead(PING) + serverMetrics.framesWritten(PING));
+        assertEquals(1, clientMetrics.pingRoundTripTimes().count());
+        assertEquals(0, serverMetrics.pingRoundTripTimes().count());
+
+        ctx = server.pipeline().firstContext();
+        serverHandler.goAway(ctx, 0, Http2Error.ENHANCE_YOUR_CALM.code(), Unpooled.EMPTY_BUFFER, ctx.newPromise());
+        server.flush();
+        exchange();
+
+        assertEquals(1, serverMetrics.goAwaysSent());
+        assertEquals(1, serverMetrics.goAwaysSent(Http2Error.ENHANCE_YOUR_CALM));
+        assertEquals(1, clientMetrics.goAwaysReceived());
+        assertEquals(1, clientMetrics.goAwaysReceived(Http2Error.ENHANCE_YOUR_CALM));
+        assertEquals(0, clientMetrics.goAwaysReceived(Http2Error.NO_ERROR));
+    }
+
+    @Test
+    public void testFlowControlBlockedTime() throws Exception {
+        connect(Http2Settings.defaultSettings().initialWindowSize(16));
+        ChannelHandlerContext ctx = client.pipeline().firstContext();
+        Http2Headers headers = new DefaultHttp2Headers().method("POST").scheme("https").path("/");
+        clientHandler.encoder().writeHeaders(ctx, 3, headers, 0, false, ctx.newPromise());
+        clientHandler.encoder().writeData(ctx, 3, Unpooled.wrappedBuffer(new byte[32]), 0, true, ctx.newPromise());
+        client.flush();
+        assertEquals(0, clientMetrics.flowControlBlockedTimes().count());
+        exchange();
+
+        assertEquals(1, clientMetrics.flowControlBlockedTimes().count());
+        assertEquals(2, clientMetrics.framesWritten(DATA));
+        assertEquals(2, serverMetrics.framesRead(DATA));
+        assertTrue(serverMetrics.framesWritten(WINDOW_UPDATE) > 0);
+    }
+
+    @Test
+    public void testHpackCountsReplayedHeaderBlocks() throws Exception {
+        final AsciiString secret = AsciiString.of("x-secret");
+        DefaultHttp2HeadersEncoder encoder = new DefaultHttp2HeadersEncoder(new SensitivityDetector() {
+            @Override
+            public boolean isSensitive(CharSequence name, CharSequence value) {
+                return secret.contentEqualsIgnoreCase(name);
+            }
+        }, new HpackEncoder(), 1);
+        encoder.metrics(clientMetrics);
+        // Neither header field is added to the dynamic table, so the second and third blocks are replayed.
+        Http2Headers headers = ReadOnlyHttp2Headers.serverHeaders(false, AsciiString.of("200"),
+                secret, AsciiString.of("value"));
+        ByteBuf buffer = Unpooled.buffer();
+        try {
+            for (int i = 0; i < 3; i++) {
+                encoder.encodeHeaders(3 + i * 2, headers, buffer);
+            }
+        } finally {
+            buffer.release();
+        }
+
+        assertEquals(3, clientMetrics.hpackEncoderIndexedHeaders());
+        assertEquals(3, clientMetrics.hpackEncoderLiteralHeaders());
+    }
+
+    @Test
+    public void testFlowControlBlockedTimeOfResetStream() throws Exception {
+        connect(Http2Settings.defaultSettings().initialWindowSize(16));
+        ChannelHandlerContext ctx = client.pipeline().firstContext();
+        Http2Headers headers = new DefaultHttp2Headers().method("POST").scheme("https").path("/");
+        clientHandler.encoder().writeHeaders(ctx, 3, headers, 0, false, ctx.newPromise());
+        clientHandler.encoder().writeData(ctx, 3, Unpooled.wrappedBuffer(new byte[32]), 0, true, ctx.newPromise());
+        client.flush();
+        assertEquals(0, clientMetrics.flowControlBlockedTimes().count());
+
+        // The data is still blocked when the stream is closed.
+        clientHandler.resetStream(ctx, 3, Http2Error.CANCEL.code(), ctx.newPromise());
+        client.flush();
+        assertEquals(1, clientMetrics.flowControlBlockedTimes().count());
+        assertEquals(0, clientMetrics.activeStreams());
+    }
+
+    @Test
+    public void testManyActiveStreams() throws Exception {
+        connect(Http2Settings.defaultSettings());
+        ChannelHandlerContext ctx = client.pipeline().firstContext();
+        Http2Headers headers = new DefaultHttp2Headers().method("GET").scheme("https").path("/");
+        int streams = 50;
+        for (int i = 0; i < streams; i++) {
+            clientHandler.encoder().writeHeaders(ctx, 3 + i * 2, headers, 0, false, ctx.newPromise());
+        }
+        assertEquals(streams, clientMetrics.activeStreams());
+
+        // Close the streams out of order.
+        for (int i = 0; i < streams; i += 2) {
+            clientHandler.resetStream(ctx, 3 + i * 2, Http2Error.CANCEL.code(), ctx.newPromise());
+        }
+        client.flush();
+        assertEquals(streams / 2, clientMetrics.activeStreams());
+        for (int i = streams - 1; i > 0; i -= 2) {
+            clientHandler.resetStream(ctx, 3 + i * 2, Http2Error.CANCEL.code(), ctx.newPromise());
+        }
+        client.flush();
+        assertEquals(0, clientMetrics.activeStreams());
+        assertEquals(streams, clientMetrics.streamsOpened());
+        assertEquals(streams, clientMetrics.streamLifetimes().count());
+    }
+
+    @Test
+    public void testMetricsCanOnlyBeUsedOnce() {
+        Http2ConnectionHandlerBuilder builder = new Http2ConnectionHandlerBuilder()
+                .frameListener(new Http2EventAdapter()).metrics(clientMetrics);
+        builder.build();
+        assertThrows(IllegalStateException.class, new Executable() {
+            @Override
+            public void execute() {
+                new Http2ConnectionHandlerBuilder()
+                        .frameListener(new Http2EventAdapter()).metrics(clientMetrics).build();
+            }
+        });
+    }
+
+    @Test
+    public void testHistogram() {
+        Http2ConnectionMetrics.Histogram histogram = new Http2ConnectionMetrics.Histogram();
+        assertEquals(0, histogram.percentile(99));
+        histogram.record(0);
+        histogram.record(1);
+        histogram.record(3);
+        histogram.record(100);
+
+        assertEquals(4, histogram.count());
+        assertEquals(104, histogram.sum());
+        assertEquals(100, histogram.max());
+        assertEquals(26, histogram.mean(), 0);
+        assertEquals(1, histogram.bucketCount(0));
+        assertEquals(1, histogram.bucketCount(1));
+        assertEquals(1, histogram.bucketCount(2));
+        assertEquals(1, histogram.bucketCount(7));
+        assertEquals(128, histogram.bucketUpperBound(7));
+        assertEquals(3, histogram.percentile(75));
+        assertEquals(100, histogram.percentile(100));
+    }
+
+    private void connect(Http2Settings serverSettings) throws Exception {
+        clientHandler = new Http2ConnectionHandlerBuilder().server(false)
+                .frameListener(new Http2EventAdapter()).metrics(clientMetrics).build();
+        serverHandler = new Http2ConnectionHandlerBuilder().server(true).initialSettings(serverSettings)
+                .frameListener(new Http2EventAdapter()).metrics(serverMetrics).build();
+        client = new EmbeddedChannel(clientHandler);
+        server = new EmbeddedChannel(serverHandler);
+        exchange();
+    }
+
+    private void exchange() {
+        boolean transferred;
+        do {
+            transferred = transfer(client, server) | transfer(server, client);
+        } while (transferred);
+    }
+
+    private static boolean transfer(EmbeddedChannel from, EmbeddedChannel to) {
+        boolean transferred = false;
+        for (;;) {
+            ByteBuf buf = from.readOutbound();
+            if (buf == null) {
+                return transferred;
+            }
+            to.writeInbound(buf);
+            transferred = true;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http2;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link Http2FrameCoalescingHandler}.
+ */
+public class Http2FrameCoalescingHandlerTest {
+
+    private EmbeddedChannel channel;
+    private ChannelHandlerContext ctx;
+
+    @BeforeEach
+    public void setUp() {
+        channel = new EmbeddedChannel(new Http2FrameCoalescingHandler(16, 32), new ChannelInboundHandlerAdapter());
+        ctx = channel.pipeline().lastContext();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testSmallBuffersAreCoalescedUntilFlush() {
+        ChannelFuture first = ctx.write(buffer(1, 10));
+        ChannelFuture second = ctx.write(buffer(2, 10));
+        ChannelFuture large = ctx.write(buffer(3, 17));
+        ChannelFuture third = ctx.write(buffer(4, 5));
+        assertNull(channel.readOutbound());
+        assertFalse(first.isDone());
+        ctx.flush();
+
+        assertBuffer(channel.<ByteBuf>readOutbound(), 1, 10, 2, 10);
+        assertBuffer(channel.<ByteBuf>readOutbound(), 3, 17);
+        assertBuffer(channel.<ByteBuf>readOutbound(), 4, 5);
+        assertNull(channel.readOutbound());
+        assertTrue(first.isSuccess());
+        assertTrue(second.isSuccess());
+        assertTrue(large.isSuccess());
+        assertTrue(third.isSuccess());
+    }
+
+    @Test
+    public void testFullBufferIsWritten() {
+        ctx.write(buffer(1, 16), ctx.voidPromise());
+        ctx.write(buffer(2, 16), ctx.voidPromise());
+        ctx.write(buffer(3, 1), ctx.voidPromise());
+        ctx.flush();
+
+        assertBuffer(channel.<ByteBuf>readOutbound(), 1, 16, 2, 16);
+        assertBuffer(channel.<ByteBuf>readOutbound(), 3, 1);
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    public void testFramesAreCoalesced() throws Http2Exception {
+        channel.finishAndReleaseAll();
+        channel = new EmbeddedChannel(new Http2FrameCoalescingHandler(), new ChannelInboundHandlerAdapter());
+        ctx = channel.pipeline().lastContext();
+        DefaultHttp2FrameWriter writer = new DefaultHttp2FrameWriter();
+        writer.writeWindowUpdate(ctx, 0, 1024, ctx.newPromise());
+        writer.writeRstStream(ctx, 3, Http2Error.CANCEL.code(), ctx.newPromise());
+        writer.writeData(ctx, 5, buffer(1, 100), 0, true, ctx.newPromise());
+        writer.writeData(ctx, 7, buffer(2, 4096), 0, true, ctx.newPromise());
+        ctx.flush();
+
+        // WINDOW_UPDATE, RST_STREAM and the small DATA frame, followed by the header of the large DATA frame.
+        ByteBuf buf = channel.readOutbound();
+        assertEquals(13 + 13 + 9 + 100 + 9, buf.readableBytes());
+        buf.release();
+        assertBuffer(channel.<ByteBuf>readOutbound(), 2, 4096);
+        assertNull(channel.readOutbound());
+    }
+
+    private static ByteBuf buffer(int value, int length) {
+        ByteBuf buf = Unpooled.buffer(length);
+        for (int i = 0; i < length; i++) {
+            buf.writeByte(value);
+        }
+        return buf;
+    }
+
+    private static void assertBuffer(ByteBuf buf, int... valueAndLengthPairs) {
+        try {
+            for (int i = 0; i < valueAndLengthPairs.length; i += 2) {
+                for (int j = 0; j < valueAndLengthPairs[i + 1]; j++) {
+                    assertEquals(valueAndLengthPairs[i], buf.readByte());
+                }
+            }
+            assertFalse(buf.isReadable());
+        } finally {
+            buf.release();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http2;
+
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http2.HttpConversionUtil.ExtensionHeaderNames;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link Http2HttpHeaders}.
+ */
+public class Http2HttpHeadersTest {
+
+    @Test
+    public void testRequestHeadersMatchConversion() throws Http2Exception {
+        Http2Headers http2Headers = requestHeaders();
+        Http2HttpHeaders view = new Http2HttpHeaders(3, http2Headers, true, false, true);
+        assertSameHeaders(convert(3, http2Headers, true, false), view);
+
+        assertEquals("example.com", view.get("Host"));
+        assertEquals(Arrays.asList("example.com", "other.example.com"), view.getAll(HttpHeaderNames.HOST));
+        assertEquals("https", view.get(ExtensionHeaderNames.SCHEME.text()));
+        assertEquals("a=b; c=d", view.get(HttpHeaderNames.COOKIE));
+        assertEquals(3, (int) view.getInt(ExtensionHeaderNames.STREAM_ID.text()));
+        assertEquals(42, view.getInt(HttpHeaderNames.CONTENT_LENGTH, 0));
+        assertNull(view.get(":method"));
+        assertNull(view.get(ExtensionHeaderNames.PATH.text()));
+        assertNull(view.get(HttpHeaderNames.CONNECTION));
+        assertNull(view.get(HttpHeaderNames.TRANSFER_ENCODING));
+        assertTrue(view.contains("x-custom"));
+        assertFalse(view.contains("x-missing"));
+        assertTrue(view.isView());
+    }
+
+    @Test
+    public void testResponseHeadersMatchConversion() throws Http2Exception {
+        Http2Headers http2Headers = new DefaultHttp2Headers().status("200").path("/pushed")
+                .add("x-custom", "1").add("x-custom", "2");
+        Http2HttpHeaders view = new Http2HttpHeaders(5, http2Headers, false, false, true);
+        assertSameHeaders(convert(5, http2Headers, false, false), view);
+        assertEquals("/pushed", view.get(ExtensionHeaderNames.PATH.text()));
+        assertEquals(Arrays.asList("1", "2"), view.getAll("X-Custom"));
+    }
+
+    @Test
+    public void testTrailersMatchConversion() throws Http2Exception {
+        Http2Headers http2Headers = new DefaultHttp2Headers().add("grpc-status", "0");
+        Http2HttpHeaders view = new Http2HttpHeaders(7, http2Headers, true, true, true);
+        assertSameHeaders(convert(7, http2Headers, true, true), view);
+        assertNull(view.get(ExtensionHeaderNames.STREAM_ID.text()));
+        assertTrue(new Http2HttpHeaders(7, new DefaultHttp2Headers(), true, true, true).isEmpty());
+    }
+
+    @Test
+    public void testModificationCopiesHeaders() {
+        Http2Headers http2Headers = requestHeaders();
+        Http2HttpHeaders view = new Http2HttpHeaders(3, http2Headers, true, false, true);
+        view.set("x-custom", "changed");
+        view.remove(HttpHeaderNames.COOKIE);
+        assertFalse(view.isView());
+
+        assertEquals("changed", view.get("x-custom"));
+        assertNull(view.get(HttpHeaderNames.COOKIE));
+        assertEquals("example.com", view.get(HttpHeaderNames.HOST));
+        assertEquals("value", http2Headers.get("x-custom").toString());
+        assertEquals(2, http2Headers.getAll(HttpHeaderNames.COOKIE).size());
+    }
+
+    @Test
+    public void testRequestView() throws Http2Exception {
+        Http2Headers http2Headers = requestHeaders();
+        HttpRequest request = HttpConversionUtil.toHttpRequestView(3, http2Headers, null, true);
+        assertEquals("POST", request.method().name());
+        assertEquals("/path?query", request.uri());
+        assertEquals(HttpVersion.HTTP_1_1, request.protocolVersion());
+        assertTrue(((Http2HttpHeaders) request.headers()).isView());
+    }
+
+    @Test
+    public void testInvalidHeaderValueIsRejected() {
+        final Http2Headers http2Headers = requestHeaders().add("x-injected", "value\r\nx-other: value");
+        assertThrows(IllegalArgumentException.class, new Executable() {
+            @Override
+            public void execute() {
+                new Http2HttpHeaders(3, http2Headers, true, false, true);
+            }
+        });
+        assertThrows(Http2Exception.class, new Executable() {
+            @Override
+            public void execute() throws Throwable {
+                HttpConversionUtil.toHttpRequestView(3, http2Headers, null, true);
+            }
+        });
+
+        // Translated pseudo-headers are validated as well.
+        final Http2Headers authority = new DefaultHttp2Headers().method("GET").path("/").authority("a\nb");
+        assertThrows(Http2Exception.class, new Executable() {
+            @Override
+            public void execute() throws Throwable {
+                HttpConversionUtil.toHttpRequestView(3, authority, null, true);
+            }
+        });
+
+        // Without validation the value is passed on as it is.
+        Http2HttpHeaders view = new Http2HttpHeaders(3, http2Headers, true, false, false);
+        assertEquals("value\r\nx-other: value", view.get("x-injected"));
+    }
+
+    private static Http2Headers requestHeaders() {
+        return new DefaultHttp2Headers()
+                .method("POST").path("/path?query").scheme("https").authority("example.com")
+                .add(HttpHeaderNames.HOST, "other.example.com")
+                .add(HttpHeaderNames.COOKIE, "a=b")
+                .add("x-custom", "value")
+                .add(HttpHeaderNames.COOKIE, "c=d")
+                .add(HttpHeaderNames.CONTENT_LENGTH, "42");
+    }
+
+    private static HttpHeaders convert(int streamId, Http2Headers http2Headers, boolean request, boolean trailer)
+            throws Http2Exception {
+        HttpHeaders headers = new DefaultHttpHeaders();
+        HttpConversionUtil.addHttp2ToHttpHeaders(streamId, http2Headers, headers, HttpVersion.HTTP_1_1, trailer,
+                request);
+        return headers;
+    }
+
+    private static void assertSameHeaders(HttpHeaders expected, HttpHeaders actual) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(new ArrayList<String>(expected.names()), new ArrayList<String>(actual.names()));
+        for (String name : expected.names()) {
+            assertEquals(expected.getAll(name), actual.getAll(name), name);
+        }
+        assertEquals(Collections.emptyList(), actual.getAll("x-missing"));
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http2;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.handler.codec.compression.DecompressionException;
+import io.netty.handler.codec.compression.ZlibCodecFactory;
+import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.util.CharsetUtil;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link Http2LengthPrefixedMessageCodec}.
+ */
+public class Http2LengthPrefixedMessageCodecTest {
+
+    @Test
+    public void testMessagesAreReassembled() {
+        EmbeddedChannel ch = new EmbeddedChannel(new Http2LengthPrefixedMessageCodec(1024));
+        ByteBuf data = Unpooled.buffer();
+        writeMessage(data, false, "hello");
+        writeMessage(data, false, "");
+        writeMessage(data, false, "world");
+
+        // Split the data, so that one frame contains several messages and one message spans several frames.
+        assertFalse(ch.writeInbound(new DefaultHttp2DataFrame(data.readRetainedSlice(3))));
+        assertTrue(ch.writeInbound(new DefaultHttp2DataFrame(data.readRetainedSlice(14))));
+        assertTrue(ch.writeInbound(new DefaultHttp2DataFrame(data.readRetainedSlice(data.readableBytes()), true)));
+        data.release();
+
+        assertMessage("hello", ch.<ByteBuf>readInbound());
+        assertMessage("", ch.<ByteBuf>readInbound());
+        assertMessage("world", ch.<ByteBuf>readInbound());
+        Http2DataFrame endStream = ch.readInbound();
+        assertTrue(endStream.isEndStream());
+        assertFalse(endStream.content().isReadable());
+        assertNull(ch.readInbound());
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testOtherFramesArePassedOn() {
+        EmbeddedChannel ch = new EmbeddedChannel(new Http2LengthPrefixedMessageCodec(1024));
+        Http2HeadersFrame headers = new DefaultHttp2HeadersFrame(new DefaultHttp2Headers().status("200"));
+        Http2ResetFrame reset = new DefaultHttp2ResetFrame(Http2Error.CANCEL);
+        assertTrue(ch.writeInbound(headers, reset));
+        assertEquals(headers, ch.readInbound());
+        assertEquals(reset, ch.readInbound());
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testTooLongMessage() {
+        final EmbeddedChannel ch = new EmbeddedChannel(new Http2LengthPrefixedMessageCodec(4));
+        final ByteBuf data = Unpooled.buffer();
+        writeMessage(data, false, "hello");
+        assertThrows(TooLongFrameException.class, new Executable() {
+            @Override
+            public void execute() {
+                ch.writeInbound(new DefaultHttp2DataFrame(data));
+            }
+        });
+        assertNull(ch.readInbound());
+
+        // The remaining data of the stream is discarded.
+        ByteBuf next = Unpooled.buffer();
+        writeMessage(next, false, "a");
+        assertTrue(ch.writeInbound(new DefaultHttp2DataFrame(next, true)));
+        Http2DataFrame endStream = ch.readInbound();
+        assertTrue(endStream.isEndStream());
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testIncompleteMessageAtEndOfStream() {
+        final EmbeddedChannel ch = new EmbeddedChannel(new Http2LengthPrefixedMessageCodec(1024));
+        final ByteBuf data = Unpooled.buffer();
+        writeMessage(data, false, "hello");
+        data.writerIndex(data.writerIndex() - 1);
+        assertThrows(CorruptedFrameException.class, new Executable() {
+            @Override
+            public void execute() {
+                ch.writeInbound(new DefaultHttp2DataFrame(data, true));
+            }
+        });
+        Http2DataFrame endStream = ch.readInbound();
+        assertTrue(endStream.isEndStream());
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testCompressedMessages() {
+        EmbeddedChannel ch = new EmbeddedChannel(new Http2LengthPrefixedMessageCodec(1024, "grpc-encoding"));
+        assertTrue(ch.writeInbound(new DefaultHttp2HeadersFrame(
+                new DefaultHttp2Headers().status("200").set("grpc-encoding", "gzip"))));
+        assertTrue(ch.<Object>readInbound() instanceof Http2HeadersFrame);
+
+        ByteBuf data = Unpooled.buffer();
+        writeMessage(data, true, gzip("compressed"));
+        writeMessage(data, false, "plain");
+        assertTrue(ch.writeInbound(new DefaultHttp2DataFrame(data)));
+        assertMessage("compressed", ch.<ByteBuf>readInbound());
+        assertMessage("plain", ch.<ByteBuf>readInbound());
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testCompressedMessageIsNotInflatedBeyondLimit() {
+        final EmbeddedChannel ch = new EmbeddedChannel(new Http2LengthPrefixedMessageCodec(1024, "grpc-encoding"));
+        assertTrue(ch.writeInbound(new DefaultHttp2HeadersFrame(
+                new DefaultHttp2Headers().status("200").set("grpc-encoding", "gzip"))));
+        assertTrue(ch.<Object>readInbound() instanceof Http2HeadersFrame);
+
+        // A small message which inflates far beyond the limit.
+        byte[] compressed = gzip(new byte[256 * 1024]);
+        assertTrue(compressed.length < 1024);
+        final ByteBuf data = Unpooled.buffer();
+        writeMessage(data, true, compressed);
+        assertThrows(DecompressionException.class, new Executable() {
+            @Override
+            public void execute() {
+                ch.writeInbound(new DefaultHttp2DataFrame(data));
+            }
+        });
+        assertNull(ch.readInbound());
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testIncompleteMessageAtTrailers() {
+        final EmbeddedChannel ch = new EmbeddedChannel(new Http2LengthPrefixedMessageCodec(1024));
+        ByteBuf data = Unpooled.buffer();
+        writeMessage(data, false, "hello");
+        data.writerIndex(data.writerIndex() - 1);
+        assertFalse(ch.writeInbound(new DefaultHttp2DataFrame(data)));
+
+        final Http2HeadersFrame trailers = new DefaultHttp2HeadersFrame(
+                new DefaultHttp2Headers().set("grpc-status", "0"), true);
+        assertThrows(CorruptedFrameException.class, new Executable() {
+            @Override
+            public void execute() {
+                ch.writeInbound(trailers);
+            }
+        });
+        assertEquals(trailers, ch.readInbound());
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testCompressedMessageWithoutEncoding() {
+        final EmbeddedChannel ch = new EmbeddedChannel(new Http2LengthPrefixedMessageCodec(1024));
+        final ByteBuf data = Unpooled.buffer();
+        writeMessage(data, true, gzip("compressed"));
+        assertThrows(CorruptedFrameException.class, new Executable() {
+            @Override
+            public void execute() {
+                ch.writeInbound(new DefaultHttp2DataFrame(data));
+            }
+        });
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testReadIsRequestedUntilMessageIsComplete() {
+        final AtomicInteger reads = new AtomicInteger();
+        EmbeddedChannel ch = new EmbeddedChannel(new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void read(ChannelHandlerContext ctx) {
+                reads.incrementAndGet();
+                ctx.read();
+            }
+        }, new Http2LengthPrefixedMessageCodec(1024));
+        ch.config().setAutoRead(false);
+        reads.set(0);
+
+        ByteBuf data = Unpooled.buffer();
+        writeMessage(data, false, "hello");
+        ch.writeOneInbound(new DefaultHttp2DataFrame(data.readRetainedSlice(4)));
+        ch.pipeline().fireChannelReadComplete();
+        assertEquals(1, reads.get());
+
+        ch.writeOneInbound(new DefaultHttp2DataFrame(data.readRetainedSlice(data.readableBytes())));
+        ch.pipeline().fireChannelReadComplete();
+        assertEquals(1, reads.get());
+        data.release();
+
+        assertMessage("hello", ch.<ByteBuf>readInbound());
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testMessagesArePrefixed() {
+        EmbeddedChannel ch = new EmbeddedChannel(new Http2LengthPrefixedMessageCodec(1024));
+        assertTrue(ch.writeOutbound(Unpooled.copiedBuffer("hello", CharsetUtil.UTF_8)));
+        Http2DataFrame frame = ch.readOutbound();
+        try {
+            assertFalse(frame.isEndStream());
+            ByteBuf content = frame.content();
+            assertEquals(0, content.readByte());
+            assertEquals(5, content.readInt());
+            assertEquals("hello", content.toString(CharsetUtil.UTF_8));
+        } finally {
+            frame.release();
+        }
+        assertFalse(ch.finish());
+    }
+
+    private static void writeMessage(ByteBuf out, boolean compressed, String message) {
+        writeMessage(out, compressed, message.getBytes(CharsetUtil.UTF_8));
+    }
+
+    private static void writeMessage(ByteBuf out, boolean compressed, byte[] message) {
+        out.writeByte(compressed ? 1 : 0);
+        out.writeInt(message.length);
+        out.writeBytes(message);
+    }
+
+    private static byte[] gzip(String message) {
+        return gzip(message.getBytes(CharsetUtil.UTF_8));
+    }
+
+    private static byte[] gzip(byte[] message) {
+        EmbeddedChannel compressor = new EmbeddedChannel(ZlibCodecFactory.newZlibEncoder(ZlibWrapper.GZIP));
+        compressor.writeOutbound(Unpooled.wrappedBuffer(message));
+        compressor.finish();
+        ByteBuf compressed = Unpooled.buffer();
+        for (;;) {
+            ByteBuf buf = compressor.readOutbound();
+            if (buf == null) {
+                break;
+            }
+            compressed.writeBytes(buf);
+            buf.release();
+        }
+        byte[] bytes = new byte[compressed.readableBytes()];
+        compressed.readBytes(bytes);
+        compressed.release();
+        return bytes;
+    }
+
+    private static void assertMessage(String expected, ByteBuf message) {
+        try {
+            assertEquals(expected, message.toString(CharsetUtil.UTF_8));
+        } finally {
+            message.release();
+        }
+    }
+}
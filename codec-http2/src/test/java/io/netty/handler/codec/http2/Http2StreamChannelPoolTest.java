@@ -0,0 +1,216 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http2;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.util.concurrent.Future;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static io.netty.handler.codec.http2.Http2FrameCodecBuilder.forClient;
+import static io.netty.handler.codec.http2.Http2FrameCodecBuilder.forServer;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class Http2StreamChannelPoolTest {
+    private static final int SERVER_MAX_STREAMS = 2;
+
+    private EventLoopGroup group;
+    private Channel serverChannel;
+    private Bootstrap bootstrap;
+    private final Queue<Channel> serverConnections = new LinkedBlockingQueue<Channel>();
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        group = new DefaultEventLoopGroup(2);
+        LocalAddress address = new LocalAddress(getClass());
+        serverChannel = new ServerBootstrap()
+                .channel(LocalServerChannel.class)
+                .group(group)
+                .childHandler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        serverConnections.add(ch);
+                        ch.pipeline().addLast(forServer()
+                                .initialSettings(Http2Settings.defaultSettings().maxConcurrentStreams(
+                                        SERVER_MAX_STREAMS)).build(), newMultiplexHandler());
+                    }
+                }).bind(address).sync().channel();
+        bootstrap = new Bootstrap()
+                .channel(LocalChannel.class)
+                .group(group)
+                .remoteAddress(address)
+                .handler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline().addLast(forClient().build(), newMultiplexHandler());
+                    }
+                });
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        serverChannel.close().sync();
+        group.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+    }
+
+    @Test
+    public void testStreamsAreBalancedAcrossConnections() throws Exception {
+        Http2StreamChannelPool pool = newPool(2, 2, Integer.MAX_VALUE);
+        try {
+            Http2StreamChannel stream1 = pool.acquire().sync().getNow();
+            Http2StreamChannel stream2 = pool.acquire().sync().getNow();
+            assertSame(stream1.parent(), stream2.parent());
+            assertEquals(1, pool.connections().size());
+            assertEquals(1f, pool.connections().get(0).utilization(), 0f);
+
+            Http2StreamChannel stream3 = pool.acquire().sync().getNow();
+            assertNotSame(stream1.parent(), stream3.parent());
+            assertEquals(2, pool.connections().size());
+
+            // The next stream is opened on the connection with the fewest streams.
+            pool.release(stream1).sync();
+            pool.release(stream3).sync();
+            awaitActiveStreams(pool, stream1.parent(), 1);
+            awaitActiveStreams(pool, stream3.parent(), 0);
+            Http2StreamChannel stream4 = pool.acquire().sync().getNow();
+            assertSame(stream3.parent(), stream4.parent());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testPeerStreamLimitIsHonored() throws Exception {
+        Http2StreamChannelPool pool = newPool(2, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        try {
+            Http2StreamChannel stream1 = pool.acquire().sync().getNow();
+            Http2StreamChannelPool.PooledConnection connection = pool.connections().get(0);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (connection.maxStreams() != SERVER_MAX_STREAMS && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(SERVER_MAX_STREAMS, connection.maxStreams());
+
+            Http2StreamChannel stream2 = pool.acquire().sync().getNow();
+            Http2StreamChannel stream3 = pool.acquire().sync().getNow();
+            assertSame(stream1.parent(), stream2.parent());
+            assertNotSame(stream1.parent(), stream3.parent());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testAcquireWaitsForFreeStream() throws Exception {
+        Http2StreamChannelPool pool = newPool(1, 1, 1);
+        try {
+            Http2StreamChannel stream1 = pool.acquire().sync().getNow();
+            Future<Http2StreamChannel> pending = pool.acquire();
+            Future<Http2StreamChannel> rejected = pool.acquire().await();
+            assertTrue(rejected.cause() instanceof IllegalStateException);
+            assertFalse(pending.isDone());
+
+            pool.release(stream1);
+            Http2StreamChannel stream2 = pending.sync().getNow();
+            assertSame(stream1.parent(), stream2.parent());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testConnectionIsDrainedOnGoAway() throws Exception {
+        Http2StreamChannelPool pool = newPool(1, 2, Integer.MAX_VALUE);
+        try {
+            Http2StreamChannel stream1 = pool.acquire().sync().getNow();
+            Channel serverConnection = serverConnections.poll();
+            serverConnection.writeAndFlush(new DefaultHttp2GoAwayFrame(Http2Error.NO_ERROR)).sync();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!pool.connections().get(0).isDraining() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(pool.connections().get(0).isDraining());
+
+            // A new connection is established, even though the limit of connections is one.
+            Http2StreamChannel stream2 = pool.acquire().sync().getNow();
+            assertNotSame(stream1.parent(), stream2.parent());
+            assertTrue(stream1.parent().isActive());
+
+            pool.release(stream1);
+            stream1.parent().closeFuture().sync();
+            deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (pool.connections().size() != 1 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            List<Http2StreamChannelPool.PooledConnection> connections = pool.connections();
+            assertEquals(1, connections.size());
+            assertSame(stream2.parent(), connections.get(0).channel());
+        } finally {
+            pool.close();
+        }
+    }
+
+    private Http2StreamChannelPool newPool(int maxConnections, int maxStreamsPerConnection, int maxPendingAcquires) {
+        return new Http2StreamChannelPool(bootstrap, newNoopInitializer(), maxConnections,
+                maxStreamsPerConnection, maxPendingAcquires);
+    }
+
+    private static void awaitActiveStreams(Http2StreamChannelPool pool, Channel parent, int activeStreams)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        for (;;) {
+            for (Http2StreamChannelPool.PooledConnection connection : pool.connections()) {
+                if (connection.channel() == parent && connection.activeStreams() == activeStreams) {
+                    return;
+                }
+            }
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static ChannelHandler newMultiplexHandler() {
+        return new Http2MultiplexHandler(newNoopInitializer());
+    }
+
+    private static ChannelHandler newNoopInitializer() {
+        return new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) {
+                // noop
+            }
+        };
+    }
+}
@@ -727,6 +727,28 @@ public class Http2StreamFrameToHttpObjectCodecTest {
         assertFalse(ch.finish());
     }
 
+    @Test
+    public void testDecodeResponseHeadersAsView() throws Exception {
+        EmbeddedChannel ch = new EmbeddedChannel(new Http2StreamFrameToHttpObjectCodec(false, true, true));
+        Http2Headers headers = new DefaultHttp2Headers();
+        headers.scheme(HttpScheme.HTTP.name());
+        headers.status(HttpResponseStatus.OK.codeAsText());
+        headers.setInt("content-length", 0);
+        headers.set("x-custom", "value");
+
+        assertTrue(ch.writeInbound(new DefaultHttp2HeadersFrame(headers)));
+
+        HttpResponse response = ch.readInbound();
+        assertThat(response.status(), is(HttpResponseStatus.OK));
+        assertTrue(response.headers() instanceof Http2HttpHeaders);
+        assertTrue(((Http2HttpHeaders) response.headers()).isView());
+        assertThat(response.headers().get("x-custom"), is("value"));
+        assertThat(response.headers().getInt("content-length"), is(0));
+
+        assertThat(ch.readInbound(), is(nullValue()));
+        assertFalse(ch.finish());
+    }
+
     @Test
     public void testDecodeResponseHeadersWithContentLength() throws Exception {
         EmbeddedChannel ch = new EmbeddedChannel(new Http2StreamFrameToHttpObjectCodec(false));
@@ -0,0 +1,279 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http2;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.CharsetUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class Http2StreamHandlerCodecTest {
+
+    private RecordingStreamHandler clientHandler;
+    private RecordingStreamHandler serverHandler;
+    private EmbeddedChannel clientChannel;
+    private EmbeddedChannel serverChannel;
+    private Http2StreamHandlerCodec clientCodec;
+    private Http2StreamHandlerCodec serverCodec;
+
+    @BeforeEach
+    public void setUp() {
+        clientHandler = new RecordingStreamHandler();
+        serverHandler = new RecordingStreamHandler();
+        clientCodec = Http2StreamHandlerCodecBuilder.forClient(clientHandler).build();
+        serverCodec = Http2StreamHandlerCodecBuilder.forServer(serverHandler).build();
+        clientChannel = new EmbeddedChannel(clientCodec);
+        serverChannel = new EmbeddedChannel(serverCodec);
+        exchange();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        clientChannel.finishAndReleaseAll();
+        serverChannel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testRequestAndResponse() {
+        serverHandler.respond = true;
+        Http2StreamContext stream = clientCodec.newStream();
+        assertEquals(-1, stream.id());
+        stream.attachment("request");
+        stream.writeHeaders(new DefaultHttp2Headers().method("POST").path("/echo").scheme("http"), false);
+        stream.writeData(Unpooled.copiedBuffer("hello", CharsetUtil.US_ASCII), true);
+        stream.flush();
+        assertEquals(3, stream.id());
+        exchange();
+
+        assertEquals("/echo", serverHandler.headers.get(0).path().toString());
+        assertEquals("hello", serverHandler.data.toString());
+        assertEquals(1, serverHandler.closed);
+        assertEquals(1, serverHandler.closedIds.size());
+        assertEquals(3, (int) serverHandler.closedIds.get(0));
+
+        assertEquals("200", clientHandler.headers.get(0).status().toString());
+        assertEquals("hello", clientHandler.data.toString());
+        assertEquals(1, clientHandler.closed);
+        assertEquals("request", clientHandler.closedAttachments.get(0));
+        assertNull(stream.attachment());
+        assertEquals(0, clientCodec.connection().numActiveStreams());
+        assertEquals(0, serverCodec.connection().numActiveStreams());
+    }
+
+    @Test
+    public void testManyStreams() {
+        serverHandler.respond = true;
+        for (int i = 0; i < 10; i++) {
+            Http2StreamContext stream = clientCodec.newStream();
+            stream.writeHeaders(new DefaultHttp2Headers().method("GET").path("/" + i).scheme("http"), true);
+            stream.flush();
+            exchange();
+        }
+        assertEquals(10, serverHandler.headers.size());
+        assertEquals(10, serverHandler.closed);
+        assertEquals(10, clientHandler.closed);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(3 + 2 * i, (int) clientHandler.closedIds.get(i));
+        }
+    }
+
+    @Test
+    public void testHandlerExceptionResetsStream() {
+        serverHandler.fail = true;
+        Http2StreamContext stream = clientCodec.newStream();
+        stream.writeHeaders(new DefaultHttp2Headers().method("GET").path("/").scheme("http"), true);
+        stream.flush();
+        exchange();
+
+        assertEquals(1, clientHandler.resets.size());
+        assertEquals(Http2Error.INTERNAL_ERROR.code(), (long) clientHandler.resets.get(0));
+        assertEquals(1, clientHandler.closed);
+        assertEquals(1, serverHandler.closed);
+        assertTrue(serverChannel.isActive());
+
+        // The connection is still usable.
+        serverHandler.fail = false;
+        serverHandler.respond = true;
+        stream = clientCodec.newStream();
+        stream.writeHeaders(new DefaultHttp2Headers().method("GET").path("/").scheme("http"), true);
+        stream.flush();
+        exchange();
+        assertEquals(2, clientHandler.closed);
+        assertEquals(1, clientHandler.resets.size());
+    }
+
+    @Test
+    public void testDeferredFlowControl() throws Exception {
+        serverHandler.consume = false;
+        Http2StreamContext stream = clientCodec.newStream();
+        stream.writeHeaders(new DefaultHttp2Headers().method("POST").path("/").scheme("http"), false);
+        stream.writeData(Unpooled.wrappedBuffer(new byte[1024]), false);
+        stream.flush();
+        exchange();
+
+        Http2StreamContext serverStream = serverHandler.streams.get(0);
+        Http2LocalFlowController flowController = serverCodec.connection().local().flowController();
+        assertEquals(1024, flowController.unconsumedBytes(serverStream.stream()));
+        serverStream.consumeBytes(1024);
+        assertEquals(0, flowController.unconsumedBytes(serverStream.stream()));
+
+        serverStream.writeReset(Http2Error.CANCEL.code());
+        serverStream.flush();
+        exchange();
+        assertEquals(Http2Error.CANCEL.code(), (long) clientHandler.resets.get(0));
+    }
+
+    @Test
+    public void testWriteDataBeforeHeadersFails() {
+        Http2StreamContext stream = clientCodec.newStream();
+        ByteBuf data = Unpooled.copiedBuffer("data", CharsetUtil.US_ASCII);
+        ChannelFuture future = stream.writeData(data, true);
+        assertTrue(future.cause() instanceof IllegalStateException);
+        assertEquals(0, data.refCnt());
+        assertFalse(stream.isWritable());
+    }
+
+    @Test
+    public void testWritesAfterStreamWasResetFail() {
+        Http2StreamContext stream = clientCodec.newStream();
+        stream.writeHeaders(new DefaultHttp2Headers().method("POST").path("/").scheme("http"), false);
+        stream.flush();
+        exchange();
+        Http2StreamContext serverStream = serverHandler.streams.get(0);
+        stream.writeReset(Http2Error.CANCEL.code());
+        stream.flush();
+        exchange();
+        assertEquals(1, serverHandler.closed);
+
+        // The next stream must not be affected by writes to the closed one.
+        Http2StreamContext nextStream = clientCodec.newStream();
+        nextStream.writeHeaders(new DefaultHttp2Headers().method("POST").path("/next").scheme("http"), false);
+        nextStream.flush();
+        exchange();
+        assertEquals(2, serverHandler.streams.size());
+
+        ChannelFuture future = serverStream.writeHeaders(new DefaultHttp2Headers().status("200"), false);
+        assertStreamClosed(future, 3);
+        ByteBuf data = Unpooled.copiedBuffer("data", CharsetUtil.US_ASCII);
+        assertStreamClosed(serverStream.writeData(data, true), 3);
+        assertEquals(0, data.refCnt());
+        assertStreamClosed(serverStream.writeReset(Http2Error.CANCEL.code()), 3);
+        serverStream.flush();
+        exchange();
+
+        assertTrue(clientHandler.headers.isEmpty());
+        assertEquals(1, serverCodec.connection().numActiveStreams());
+        assertEquals(5, nextStream.id());
+    }
+
+    private static void assertStreamClosed(ChannelFuture future, int streamId) {
+        assertTrue(future.cause() instanceof Http2Exception.StreamException);
+        assertEquals(Http2Error.STREAM_CLOSED, ((Http2Exception) future.cause()).error());
+        assertEquals(streamId, ((Http2Exception.StreamException) future.cause()).streamId());
+    }
+
+    private void exchange() {
+        boolean transferred;
+        do {
+            transferred = transfer(clientChannel, serverChannel) | transfer(serverChannel, clientChannel);
+        } while (transferred);
+    }
+
+    private static boolean transfer(EmbeddedChannel from, EmbeddedChannel to) {
+        boolean transferred = false;
+        for (;;) {
+            ByteBuf buf = from.readOutbound();
+            if (buf == null) {
+                return transferred;
+            }
+            transferred = true;
+            to.writeInbound(buf);
+        }
+    }
+
+    private static final class RecordingStreamHandler implements Http2StreamHandler {
+        final List<Http2Headers> headers = new ArrayList<Http2Headers>();
+        final List<Http2StreamContext> streams = new ArrayList<Http2StreamContext>();
+        final List<Long> resets = new ArrayList<Long>();
+        final List<Integer> closedIds = new ArrayList<Integer>();
+        final List<Object> closedAttachments = new ArrayList<Object>();
+        final StringBuilder data = new StringBuilder();
+        boolean respond;
+        boolean fail;
+        boolean consume = true;
+        int closed;
+
+        @Override
+        public void onHeadersRead(Http2StreamContext stream, Http2Headers headers, boolean endOfStream) {
+            if (fail) {
+                throw new IllegalStateException("expected");
+            }
+            this.headers.add(headers);
+            streams.add(stream);
+            if (endOfStream) {
+                respond(stream);
+            }
+        }
+
+        @Override
+        public int onDataRead(Http2StreamContext stream, ByteBuf data, int padding, boolean endOfStream) {
+            this.data.append(data.toString(CharsetUtil.US_ASCII));
+            if (endOfStream) {
+                respond(stream);
+            }
+            return consume ? data.readableBytes() + padding : 0;
+        }
+
+        private void respond(Http2StreamContext stream) {
+            if (!respond) {
+                return;
+            }
+            String content = data.toString();
+            stream.writeHeaders(new DefaultHttp2Headers().status("200"), content.isEmpty());
+            if (!content.isEmpty()) {
+                stream.writeData(Unpooled.copiedBuffer(content, CharsetUtil.US_ASCII), true);
+            }
+        }
+
+        @Override
+        public void onStreamReset(Http2StreamContext stream, long errorCode) {
+            resets.add(errorCode);
+        }
+
+        @Override
+        public void onWritabilityChanged(Http2StreamContext stream) {
+        }
+
+        @Override
+        public void onStreamClosed(Http2StreamContext stream) {
+            closed++;
+            closedIds.add(stream.id());
+            closedAttachments.add(stream.attachment());
+        }
+    }
+}
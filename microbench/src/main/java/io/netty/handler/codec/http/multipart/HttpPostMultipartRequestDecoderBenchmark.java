@@ -112,6 +112,59 @@ public class HttpPostMultipartRequestDecoderBenchmark
         return time;
     }
 
+    public double testHighNumberChunksStream(boolean big, boolean noDisk) {
+        String BOUNDARY = "01f136d9282f";
+        int size = 8 * 1024;
+        int chunkNumber = 64;
+        StringBuilder stringBuilder = new StringBuilder(size);
+        stringBuilder.setLength(size);
+        String data = stringBuilder.toString();
+
+        byte[] bodyStartBytes = ("--" + BOUNDARY + "\n" +
+                                 "Content-Disposition: form-data; name=\"msg_id\"\n\n15200\n--" +
+                                 BOUNDARY +
+                                 "\nContent-Disposition: form-data; name=\"msg1\"; filename=\"file1.txt\"\n\n" +
+                                 data).getBytes(CharsetUtil.UTF_8);
+        byte[] bodyPartBigBytes = data.getBytes(CharsetUtil.UTF_8);
+        byte[] intermediaryBytes = ("\n--" + BOUNDARY +
+                                    "\nContent-Disposition: form-data; name=\"msg2\"; filename=\"file2.txt\"\n\n" +
+                                    data).getBytes(CharsetUtil.UTF_8);
+        byte[] finalBigBytes = ("\n" + "--" + BOUNDARY + "--\n").getBytes(CharsetUtil.UTF_8);
+        ByteBuf firstBuf = Unpooled.wrappedBuffer(bodyStartBytes);
+        ByteBuf finalBuf = Unpooled.wrappedBuffer(finalBigBytes);
+        ByteBuf nextBuf;
+        if (big) {
+            nextBuf = Unpooled.wrappedBuffer(bodyPartBigBytes);
+        } else {
+            nextBuf = Unpooled.wrappedBuffer(intermediaryBytes);
+        }
+        DefaultHttpRequest req =
+                new DefaultHttpRequest(HttpVersion.HTTP_1_0, HttpMethod.POST, "/up");
+        req.headers().add(HttpHeaderNames.CONTENT_TYPE,
+                          "multipart/form-data; boundary=" + BOUNDARY);
+
+        long start = System.nanoTime();
+
+        DefaultHttpDataFactory defaultHttpDataFactory =
+                new DefaultHttpDataFactory(noDisk? 1024 * 1024 : 16 * 1024);
+        HttpPostMultipartStreamDecoder.HttpDataSink sink =
+                new HttpPostMultipartStreamDecoder.HttpDataSink(defaultHttpDataFactory, req);
+        HttpPostMultipartStreamDecoder decoder = new HttpPostMultipartStreamDecoder(req, sink);
+        decoder.offer(new DefaultHttpContent(firstBuf));
+        for (int i = 1; i < chunkNumber; i++) {
+            decoder.offer(new DefaultHttpContent(nextBuf));
+        }
+        decoder.offer(new DefaultLastHttpContent(finalBuf));
+        firstBuf.release();
+        nextBuf.release();
+        finalBuf.release();
+        long stop = System.nanoTime();
+        double time = (stop - start) / 1000000.0;
+        decoder.destroy();
+        sink.destroy();
+        return time;
+    }
+
     @Benchmark
     public double multipartRequestDecoderHighDisabledLevel() {
         final Level level = ResourceLeakDetector.getLevel();
@@ -200,4 +253,48 @@ public class HttpPostMultipartRequestDecoderBenchmark
         }
     }
 
+    @Benchmark
+    public double multipartStreamDecoderHighDisabledLevel() {
+        final Level level = ResourceLeakDetector.getLevel();
+        try {
+            ResourceLeakDetector.setLevel(Level.DISABLED);
+            return testHighNumberChunksStream(false, true);
+        } finally {
+            ResourceLeakDetector.setLevel(level);
+        }
+    }
+
+    @Benchmark
+    public double multipartStreamDecoderBigDisabledLevel() {
+        final Level level = ResourceLeakDetector.getLevel();
+        try {
+            ResourceLeakDetector.setLevel(Level.DISABLED);
+            return testHighNumberChunksStream(true, true);
+        } finally {
+            ResourceLeakDetector.setLevel(level);
+        }
+    }
+
+    @Benchmark
+    public double multipartStreamDecoderBigDiskDisabledLevel() {
+        final Level level = ResourceLeakDetector.getLevel();
+        try {
+            ResourceLeakDetector.setLevel(Level.DISABLED);
+            return testHighNumberChunksStream(true, false);
+        } finally {
+            ResourceLeakDetector.setLevel(level);
+        }
+    }
+
+    @Benchmark
+    public double multipartRequestDecoderBigDiskDisabledLevel() {
+        final Level level = ResourceLeakDetector.getLevel();
+        try {
+            ResourceLeakDetector.setLevel(Level.DISABLED);
+            return testHighNumberChunks(true, false);
+        } finally {
+            ResourceLeakDetector.setLevel(level);
+        }
+    }
+
 }
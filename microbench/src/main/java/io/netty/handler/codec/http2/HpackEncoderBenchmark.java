@@ -33,6 +33,7 @@ package io.netty.handler.codec.http2;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.AsciiString;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Fork;
@@ -74,8 +75,11 @@ public class HpackEncoderBenchmark extends AbstractMicrobenchmark {
     public boolean limitToAscii;
 
     private Http2Headers http2Headers;
+    private Http2Headers readOnlyHttp2Headers;
     private ByteBuf output;
     private Http2HeadersEncoder.SensitivityDetector sensitivityDetector;
+    private DefaultHttp2HeadersEncoder headersEncoder;
+    private DefaultHttp2HeadersEncoder cachingHeadersEncoder;
 
     @Setup(Level.Trial)
     public void setup() {
@@ -93,6 +97,17 @@ public class HpackEncoderBenchmark extends AbstractMicrobenchmark {
         }
         output = size.newOutBuffer();
         sensitivityDetector = sensitive ? Http2HeadersEncoder.ALWAYS_SENSITIVE : Http2HeadersEncoder.NEVER_SENSITIVE;
+
+        AsciiString[] nameValuePairs = new AsciiString[http2Headers.size() * 2];
+        int i = 0;
+        for (Map.Entry<CharSequence, CharSequence> entry : http2Headers) {
+            nameValuePairs[i++] = AsciiString.of(entry.getKey());
+            nameValuePairs[i++] = AsciiString.of(entry.getValue());
+        }
+        readOnlyHttp2Headers = ReadOnlyHttp2Headers.trailers(false, nameValuePairs);
+        headersEncoder = new DefaultHttp2HeadersEncoder(sensitivityDetector, HpackUtilBenchmark.newTestEncoder());
+        cachingHeadersEncoder = new DefaultHttp2HeadersEncoder(sensitivityDetector,
+                HpackUtilBenchmark.newTestEncoder(), 1);
     }
 
     @TearDown(Level.Trial)
@@ -108,4 +123,20 @@ public class HpackEncoderBenchmark extends AbstractMicrobenchmark {
         hpackEncoder.encodeHeaders(3 /*randomly chosen*/, output, http2Headers, sensitivityDetector);
         bh.consume(output);
     }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public void encodeRepeated(Blackhole bh) throws Exception {
+        output.clear();
+        headersEncoder.encodeHeaders(3 /*randomly chosen*/, readOnlyHttp2Headers, output);
+        bh.consume(output);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public void encodeRepeatedCached(Blackhole bh) throws Exception {
+        output.clear();
+        cachingHeadersEncoder.encodeHeaders(3 /*randomly chosen*/, readOnlyHttp2Headers, output);
+        bh.consume(output);
+    }
 }
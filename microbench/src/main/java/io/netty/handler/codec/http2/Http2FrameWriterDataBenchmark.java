@@ -19,9 +19,11 @@ import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.buffer.Unpooled;
 import io.netty.buffer.UnpooledByteBufAllocator;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.microbench.channel.EmbeddedChannelWriteReleaseHandlerContext;
 import io.netty.microbench.util.AbstractMicrobenchmark;
 import org.openjdk.jmh.annotations.Benchmark;
@@ -71,11 +73,17 @@ public class Http2FrameWriterDataBenchmark extends AbstractMicrobenchmark {
     private ChannelHandlerContext ctx;
     private Http2DataWriter writer;
     private Http2DataWriter oldWriter;
+    private Http2FrameWriter frameWriter;
+    private EmbeddedChannel channel;
+    private EmbeddedChannel coalescingChannel;
 
     @Setup(Level.Trial)
     public void setup() {
         writer = new DefaultHttp2FrameWriter();
         oldWriter = new OldDefaultHttp2FrameWriter();
+        frameWriter = new DefaultHttp2FrameWriter();
+        channel = newChannel(null);
+        coalescingChannel = newChannel(new Http2FrameCoalescingHandler());
         payload = pooled ? PooledByteBufAllocator.DEFAULT.buffer(payloadSize) : Unpooled.buffer(payloadSize);
         payload.writeZero(payloadSize);
         ctx = new EmbeddedChannelWriteReleaseHandlerContext(
@@ -96,6 +104,22 @@ public class Http2FrameWriterDataBenchmark extends AbstractMicrobenchmark {
         if (ctx != null) {
             ctx.close();
         }
+        if (channel != null) {
+            channel.finishAndReleaseAll();
+        }
+        if (coalescingChannel != null) {
+            coalescingChannel.finishAndReleaseAll();
+        }
+    }
+
+    private EmbeddedChannel newChannel(ChannelHandler coalescingHandler) {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        channel.config().setAllocator(pooled ? PooledByteBufAllocator.DEFAULT : UnpooledByteBufAllocator.DEFAULT);
+        if (coalescingHandler != null) {
+            channel.pipeline().addLast(coalescingHandler);
+        }
+        channel.pipeline().addLast(new ChannelInboundHandlerAdapter());
+        return channel;
     }
 
     @Benchmark
@@ -112,6 +136,28 @@ public class Http2FrameWriterDataBenchmark extends AbstractMicrobenchmark {
         ctx.flush();
     }
 
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public void newWriterWithControlFrames() {
+        writeWithControlFrames(channel);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public void coalescingWriterWithControlFrames() {
+        writeWithControlFrames(coalescingChannel);
+    }
+
+    private void writeWithControlFrames(EmbeddedChannel channel) {
+        ChannelHandlerContext ctx = channel.pipeline().lastContext();
+        frameWriter.writeWindowUpdate(ctx, 0, 1024, ctx.voidPromise());
+        frameWriter.writeWindowUpdate(ctx, 3, 1024, ctx.voidPromise());
+        frameWriter.writeRstStream(ctx, 5, Http2Error.CANCEL.code(), ctx.voidPromise());
+        frameWriter.writeData(ctx, 3, payload.retain(), padding, true, ctx.voidPromise());
+        ctx.flush();
+        channel.releaseOutbound();
+    }
+
     private static final class OldDefaultHttp2FrameWriter implements Http2DataWriter {
         private static final ByteBuf ZERO_BUFFER =
                 unreleasableBuffer(directBuffer(MAX_UNSIGNED_BYTE).writeZero(MAX_UNSIGNED_BYTE)).asReadOnly();
@@ -17,6 +17,7 @@ package io.netty.microbench.http;
 
 import io.netty.buffer.Unpooled;
 import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.HttpObjectDecoder;
 import io.netty.handler.codec.http.HttpRequestDecoder;
 import io.netty.microbench.util.AbstractMicrobenchmark;
 import io.netty.util.CharsetUtil;
@@ -29,6 +30,9 @@ import org.openjdk.jmh.annotations.Warmup;
 
 /**
  * This benchmark is based on HttpRequestDecoderTest class.
+ * <p>
+ * Run with {@code -prof gc} to see the allocation per request ({@code gc.alloc.rate.norm}) of the different
+ * header decoding modes.
  */
 @State(Scope.Benchmark)
 @Warmup(iterations = 10)
@@ -41,6 +45,9 @@ public class HttpRequestDecoderBenchmark extends AbstractMicrobenchmark {
     @Param({ "2", "4", "8", "16", "32" })
     public int step;
 
+    @Param({ "false", "true" })
+    public boolean asciiStringHeaders;
+
     private static byte[] createContent(String... lineDelimiters) {
         String lineDelimiter;
         String lineDelimiter2;
@@ -83,11 +90,27 @@ public class HttpRequestDecoderBenchmark extends AbstractMicrobenchmark {
 
     @Benchmark
     public void testDecodeWholeRequestInMultipleStepsMixedDelimiters() {
-        testDecodeWholeRequestInMultipleSteps(CONTENT_MIXED_DELIMITERS, step);
+        testDecodeWholeRequestInMultipleSteps(newDecoder(), CONTENT_MIXED_DELIMITERS, step);
+    }
+
+    @Benchmark
+    public void testDecodeWholeRequestAtOnceMixedDelimiters() {
+        final EmbeddedChannel channel = new EmbeddedChannel(newDecoder());
+        channel.writeInbound(Unpooled.wrappedBuffer(CONTENT_MIXED_DELIMITERS).asReadOnly());
+        channel.finishAndReleaseAll();
+    }
+
+    private HttpRequestDecoder newDecoder() {
+        return new HttpRequestDecoder(HttpObjectDecoder.DEFAULT_MAX_INITIAL_LINE_LENGTH,
+                HttpObjectDecoder.DEFAULT_MAX_HEADER_SIZE, HttpObjectDecoder.DEFAULT_MAX_CHUNK_SIZE,
+                HttpObjectDecoder.DEFAULT_VALIDATE_HEADERS, HttpObjectDecoder.DEFAULT_INITIAL_BUFFER_SIZE,
+                HttpObjectDecoder.DEFAULT_ALLOW_DUPLICATE_CONTENT_LENGTHS,
+                HttpObjectDecoder.DEFAULT_ALLOW_PARTIAL_CHUNKS, asciiStringHeaders);
     }
 
-    private static void testDecodeWholeRequestInMultipleSteps(byte[] content, int fragmentSize) {
-        final EmbeddedChannel channel = new EmbeddedChannel(new HttpRequestDecoder());
+    private static void testDecodeWholeRequestInMultipleSteps(HttpRequestDecoder decoder, byte[] content,
+                                                              int fragmentSize) {
+        final EmbeddedChannel channel = new EmbeddedChannel(decoder);
 
         final int headerLength = content.length - CONTENT_LENGTH;
 
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.DateFormatter;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpResponseEncoder;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpResponseTemplate;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.microbench.channel.EmbeddedChannelWriteReleaseHandlerContext;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+
+/**
+ * Compares encoding responses which share the same status line and headers with and without a
+ * {@link HttpResponseTemplate}, and formatting the {@code Date} header per response with the cached one of
+ * {@link HttpResponseEncoder#HttpResponseEncoder(boolean)}.
+ */
+@State(Scope.Thread)
+@Fork(2)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class HttpResponseEncoderBenchmark extends AbstractMicrobenchmark {
+    private HttpResponseEncoder encoder;
+    private HttpResponseEncoder dateEncoder;
+    private HttpResponseTemplate template;
+    private ByteBuf content;
+    private ChannelHandlerContext context;
+    private ChannelHandlerContext dateContext;
+
+    @Param({ "true", "false" })
+    public boolean pooledAllocator;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        byte[] bytes = new byte[256];
+        content = Unpooled.unreleasableBuffer(Unpooled.wrappedBuffer(bytes).asReadOnly());
+
+        HttpHeaders headers = new DefaultHttpHeaders(false);
+        headers.set(HttpHeaderNames.SERVER, "netty");
+        headers.set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON);
+        headers.set(HttpHeaderNames.CACHE_CONTROL, HttpHeaderValues.NO_CACHE);
+        template = new HttpResponseTemplate(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, headers);
+
+        encoder = new HttpResponseEncoder();
+        dateEncoder = new HttpResponseEncoder(true);
+        context = newContext(encoder);
+        dateContext = newContext(dateEncoder);
+    }
+
+    private ChannelHandlerContext newContext(HttpResponseEncoder encoder) {
+        return new EmbeddedChannelWriteReleaseHandlerContext(pooledAllocator ? PooledByteBufAllocator.DEFAULT :
+                UnpooledByteBufAllocator.DEFAULT, encoder) {
+            @Override
+            protected void handleException(Throwable t) {
+                handleUnexpectedException(t);
+            }
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        content = null;
+    }
+
+    @Benchmark
+    public void headersPerResponse() throws Exception {
+        FullHttpResponse response = new DefaultFullHttpResponse(
+                HttpVersion.HTTP_1_1, HttpResponseStatus.OK, content.duplicate(), false);
+        HttpHeaders headers = response.headers();
+        headers.set(HttpHeaderNames.SERVER, "netty");
+        headers.set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON);
+        headers.set(HttpHeaderNames.CACHE_CONTROL, HttpHeaderValues.NO_CACHE);
+        headers.set(HttpHeaderNames.DATE, DateFormatter.format(new Date()));
+        headers.setInt(HttpHeaderNames.CONTENT_LENGTH, content.readableBytes());
+        encoder.write(context, response, context.voidPromise());
+    }
+
+    @Benchmark
+    public void templateAndDateFormattedPerResponse() throws Exception {
+        FullHttpResponse response = template.newFullResponse(content.duplicate());
+        response.headers().set(HttpHeaderNames.DATE, DateFormatter.format(new Date()));
+        response.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, content.readableBytes());
+        encoder.write(context, response, context.voidPromise());
+    }
+
+    @Benchmark
+    public void templateAndCachedDate() throws Exception {
+        FullHttpResponse response = template.newFullResponse(content.duplicate());
+        response.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, content.readableBytes());
+        dateEncoder.write(dateContext, response, dateContext.voidPromise());
+    }
+}
@@ -16,6 +16,7 @@ package io.netty.microbench.http2;
 
 import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http2.DeficitRoundRobinStreamByteDistributor;
 import io.netty.handler.codec.http2.DefaultHttp2Connection;
 import io.netty.handler.codec.http2.DefaultHttp2RemoteFlowController;
 import io.netty.handler.codec.http2.Http2Connection;
@@ -42,15 +43,17 @@ import org.openjdk.jmh.annotations.TearDown;
 import org.openjdk.jmh.annotations.Threads;
 
 /**
- * Benchmark to compare stream byte distribution algorithms when priorities are identical for
- * all streams.
+ * Benchmark to compare the stream byte distribution algorithms ({@link WeightedFairQueueByteDistributor},
+ * {@link UniformStreamByteDistributor} and {@link DeficitRoundRobinStreamByteDistributor}) when priorities are
+ * identical for all streams.
  */
 @Threads(1)
 @State(Scope.Benchmark)
 public class NoPriorityByteDistributionBenchmark extends AbstractMicrobenchmark {
     public enum Algorithm {
         WFQ,
-        UNIFORM
+        UNIFORM,
+        DRR
     }
 
     @Param({ "100", "10000" })
@@ -128,6 +131,9 @@ public class NoPriorityByteDistributionBenchmark extends AbstractMicrobenchmark
             case UNIFORM:
                 distributor = new UniformStreamByteDistributor(connection);
                 break;
+            case DRR:
+                distributor = new DeficitRoundRobinStreamByteDistributor(connection);
+                break;
         }
         controller = new DefaultHttp2RemoteFlowController(connection, new ByteCounter(distributor));
         connection.remote().flowController(controller);
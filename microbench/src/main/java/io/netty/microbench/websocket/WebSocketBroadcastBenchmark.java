@@ -0,0 +1,128 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.websocket;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.websocketx.PreEncodedWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocket08FrameEncoder;
+import io.netty.microbench.channel.EmbeddedChannelWriteReleaseHandlerContext;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.CharsetUtil;
+import io.netty.util.internal.ThreadLocalRandom;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+
+/**
+ * Compares writing the same message to many subscribers by encoding it for every one of them, with encoding it once
+ * as a {@link PreEncodedWebSocketFrame}.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 2)
+@Threads(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class WebSocketBroadcastBenchmark extends AbstractMicrobenchmark {
+
+    private WebSocket08FrameEncoder websocketEncoder;
+
+    private ChannelHandlerContext context;
+
+    private ByteBufAllocator allocator;
+
+    private TextWebSocketFrame webSocketFrame;
+
+    @Param({ "32", "1000", "16384" })
+    public int contentLength;
+
+    @Param({ "100", "10000" })
+    public int subscribers;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        StringBuilder text = new StringBuilder(contentLength);
+        for (int i = 0; i < contentLength; i++) {
+            text.append((char) ('a' + ThreadLocalRandom.current().nextInt(26)));
+        }
+        allocator = PooledByteBufAllocator.DEFAULT;
+        ByteBuf content = allocator.buffer(contentLength);
+        content.writeCharSequence(text, CharsetUtil.US_ASCII);
+        webSocketFrame = new TextWebSocketFrame(content);
+        websocketEncoder = new WebSocket08FrameEncoder(false);
+        context = new EmbeddedChannelWriteReleaseHandlerContext(allocator, websocketEncoder) {
+            @Override
+            protected void handleException(Throwable t) {
+                handleUnexpectedException(t);
+            }
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        webSocketFrame.release();
+        webSocketFrame = null;
+    }
+
+    @Benchmark
+    public void encodePerSubscriber() throws Exception {
+        for (int i = 0; i < subscribers; i++) {
+            websocketEncoder.write(context, webSocketFrame.retainedDuplicate(), context.voidPromise());
+        }
+    }
+
+    @Benchmark
+    public void encodeOnce() throws Exception {
+        PreEncodedWebSocketFrame preEncoded = PreEncodedWebSocketFrame.encode(allocator, webSocketFrame);
+        try {
+            for (int i = 0; i < subscribers; i++) {
+                websocketEncoder.write(context, preEncoded.retainedDuplicate(), context.voidPromise());
+            }
+        } finally {
+            preEncoded.release();
+        }
+    }
+
+    @Benchmark
+    public void encodeAndCompressOnce() throws Exception {
+        PreEncodedWebSocketFrame preEncoded = PreEncodedWebSocketFrame.encode(allocator, webSocketFrame, 6, 15);
+        try {
+            for (int i = 0; i < subscribers; i++) {
+                websocketEncoder.write(context, preEncoded.retainedCompressedFrame(), context.voidPromise());
+            }
+        } finally {
+            preEncoded.release();
+        }
+    }
+
+    @Override
+    protected ChainedOptionsBuilder newOptionsBuilder() throws Exception {
+        return super.newOptionsBuilder().addProfiler(GCProfiler.class);
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.websocket;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.Utf8FrameValidator;
+import io.netty.microbench.channel.EmbeddedChannelHandlerContext;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.CharsetUtil;
+import io.netty.util.internal.ThreadLocalRandom;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the UTF-8 validation of text frames, and of {@link ByteBufUtil#isText(ByteBuf, java.nio.charset.Charset)}
+ * which shares the ASCII fast path with it.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 2)
+@Threads(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class WebSocketUtf8ValidationBenchmark extends AbstractMicrobenchmark {
+
+    public enum TextType {
+        ASCII("abcdefghijklmnopqrstuvwxyz0123456789 "),
+        // Mostly ASCII with some accented characters, like most european languages.
+        LATIN("abcdefghijklmnopqrstuvwxyz \u00e9\u00e8\u00fc\u00df"),
+        CJK("\u4f60\u597d\u4e16\u754c\u3053\u3093\u306b\u3061\u306f\ud55c\uad6d\uc5b4");
+
+        private final String alphabet;
+
+        TextType(String alphabet) {
+            this.alphabet = alphabet;
+        }
+    }
+
+    @Param({ "32", "1000", "16384" })
+    public int contentLength;
+
+    @Param
+    public TextType textType;
+
+    @Param({ "true", "false" })
+    public boolean direct;
+
+    private Utf8FrameValidator validator;
+
+    private ChannelHandlerContext context;
+
+    private TextWebSocketFrame frame;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        StringBuilder text = new StringBuilder(contentLength);
+        String alphabet = textType.alphabet;
+        for (int i = 0; i < contentLength; i++) {
+            text.append(alphabet.charAt(ThreadLocalRandom.current().nextInt(alphabet.length())));
+        }
+        byte[] bytes = text.toString().getBytes(CharsetUtil.UTF_8);
+        ByteBufAllocator allocator = PooledByteBufAllocator.DEFAULT;
+        ByteBuf content = direct ? allocator.directBuffer(bytes.length) : allocator.heapBuffer(bytes.length);
+        frame = new TextWebSocketFrame(content.writeBytes(bytes));
+
+        validator = new Utf8FrameValidator();
+        context = new EmbeddedChannelHandlerContext(allocator, validator, new EmbeddedChannel()) {
+            @Override
+            protected void handleException(Throwable t) {
+                handleUnexpectedException(t);
+            }
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        frame.release();
+        frame = null;
+    }
+
+    @Benchmark
+    public void validateFrame() throws Exception {
+        validator.channelRead(context, frame.retainedDuplicate());
+    }
+
+    @Benchmark
+    public boolean isText() {
+        return ByteBufUtil.isText(frame.content(), CharsetUtil.UTF_8);
+    }
+}
@@ -795,6 +795,7 @@ public abstract class AbstractEpollStreamChannel extends AbstractEpollChannel im
                         }
                         break;
                     }
+                    byteBuf = allocHandle.detach(allocator, byteBuf);
                     allocHandle.incMessagesRead(1);
                     readPending = false;
                     pipeline.fireChannelRead(byteBuf);
@@ -18,11 +18,12 @@ package io.netty.channel.epoll;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.RecvByteBufAllocator.DelegatingHandle;
+import io.netty.channel.RecvByteBufAllocator.DetachingHandle;
 import io.netty.channel.RecvByteBufAllocator.ExtendedHandle;
 import io.netty.channel.unix.PreferredDirectByteBufAllocator;
 import io.netty.util.UncheckedBooleanSupplier;
 
-class EpollRecvByteAllocatorHandle extends DelegatingHandle implements ExtendedHandle {
+class EpollRecvByteAllocatorHandle extends DelegatingHandle implements DetachingHandle {
     private final PreferredDirectByteBufAllocator preferredDirectByteBufAllocator =
             new PreferredDirectByteBufAllocator();
     private final UncheckedBooleanSupplier defaultMaybeMoreDataSupplier = new UncheckedBooleanSupplier() {
@@ -75,6 +76,12 @@ class EpollRecvByteAllocatorHandle extends DelegatingHandle implements ExtendedH
         return delegate().allocate(preferredDirectByteBufAllocator);
     }
 
+    @Override
+    public final ByteBuf detach(ByteBufAllocator alloc, ByteBuf buffer) {
+        return delegate() instanceof DetachingHandle ?
+                ((DetachingHandle) delegate()).detach(alloc, buffer) : buffer;
+    }
+
     @Override
     public final boolean continueReading(UncheckedBooleanSupplier maybeMoreDataSupplier) {
         return ((ExtendedHandle) delegate()).continueReading(maybeMoreDataSupplier);
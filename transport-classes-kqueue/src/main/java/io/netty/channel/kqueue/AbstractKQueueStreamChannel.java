@@ -539,6 +539,7 @@ public abstract class AbstractKQueueStreamChannel extends AbstractKQueueChannel
                         }
                         break;
                     }
+                    byteBuf = allocHandle.detach(allocator, byteBuf);
                     allocHandle.incMessagesRead(1);
                     readPending = false;
                     pipeline.fireChannelRead(byteBuf);
@@ -19,6 +19,7 @@ import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.ChannelConfig;
 import io.netty.channel.RecvByteBufAllocator.DelegatingHandle;
+import io.netty.channel.RecvByteBufAllocator.DetachingHandle;
 import io.netty.channel.RecvByteBufAllocator.ExtendedHandle;
 import io.netty.channel.unix.PreferredDirectByteBufAllocator;
 import io.netty.util.UncheckedBooleanSupplier;
@@ -26,7 +27,7 @@ import io.netty.util.UncheckedBooleanSupplier;
 import static java.lang.Math.max;
 import static java.lang.Math.min;
 
-final class KQueueRecvByteAllocatorHandle extends DelegatingHandle implements ExtendedHandle {
+final class KQueueRecvByteAllocatorHandle extends DelegatingHandle implements DetachingHandle {
     private final PreferredDirectByteBufAllocator preferredDirectByteBufAllocator =
             new PreferredDirectByteBufAllocator();
 
@@ -69,6 +70,12 @@ final class KQueueRecvByteAllocatorHandle extends DelegatingHandle implements Ex
         delegate().lastBytesRead(bytes);
     }
 
+    @Override
+    public ByteBuf detach(ByteBufAllocator alloc, ByteBuf buffer) {
+        return delegate() instanceof DetachingHandle ?
+                ((DetachingHandle) delegate()).detach(alloc, buffer) : buffer;
+    }
+
     @Override
     public boolean continueReading(UncheckedBooleanSupplier maybeMoreDataSupplier) {
         return ((ExtendedHandle) delegate()).continueReading(maybeMoreDataSupplier);
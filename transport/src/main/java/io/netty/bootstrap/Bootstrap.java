@@ -55,6 +55,7 @@ public class Bootstrap extends AbstractBootstrap<Bootstrap, Channel> {
     private volatile AddressResolverGroup<SocketAddress> resolver =
             (AddressResolverGroup<SocketAddress>) DEFAULT_RESOLVER;
     private volatile SocketAddress remoteAddress;
+    private volatile HappyEyeballs happyEyeballs;
 
     public Bootstrap() { }
 
@@ -62,6 +63,7 @@ public class Bootstrap extends AbstractBootstrap<Bootstrap, Channel> {
         super(bootstrap);
         resolver = bootstrap.resolver;
         remoteAddress = bootstrap.remoteAddress;
+        happyEyeballs = bootstrap.happyEyeballs;
     }
 
     /**
@@ -78,6 +80,23 @@ public class Bootstrap extends AbstractBootstrap<Bootstrap, Channel> {
         return this;
     }
 
+    /**
+     * Sets the {@link HappyEyeballs} configuration which enables racing connection attempts to all addresses the
+     * remote address resolves to, as described in <a href="https://www.rfc-editor.org/rfc/rfc8305">RFC 8305</a>.
+     * A new {@link Channel} is created for each attempt and all but the first successful one are closed again. The
+     * {@link ChannelFuture#channel()} of the {@link ChannelFuture} returned by {@code connect(...)} returns the
+     * {@link Channel} that won once the future was completed successfully.
+     * <p>
+     * This only applies to remote addresses which are not resolved yet.
+     *
+     * @param happyEyeballs the {@link HappyEyeballs} configuration or {@code null} to only connect to the first
+     *                      resolved address, which is the default.
+     */
+    public Bootstrap happyEyeballs(HappyEyeballs happyEyeballs) {
+        this.happyEyeballs = happyEyeballs;
+        return this;
+    }
+
     /**
      * The {@link SocketAddress} to connect to once the {@link #connect()} method
      * is called.
@@ -154,15 +173,22 @@ public class Bootstrap extends AbstractBootstrap<Bootstrap, Channel> {
     private ChannelFuture doResolveAndConnect(final SocketAddress remoteAddress, final SocketAddress localAddress) {
         final ChannelFuture regFuture = initAndRegister();
         final Channel channel = regFuture.channel();
+        final HappyEyeballs happyEyeballs = this.happyEyeballs;
 
         if (regFuture.isDone()) {
             if (!regFuture.isSuccess()) {
                 return regFuture;
             }
-            return doResolveAndConnect0(channel, remoteAddress, localAddress, channel.newPromise());
+            if (happyEyeballs == null) {
+                return doResolveAndConnect0(channel, remoteAddress, localAddress, channel.newPromise());
+            }
+            PendingRegistrationPromise promise = new HappyEyeballsConnector.ConnectPromise(channel);
+            promise.registered();
+            return doResolveAndConnect0(channel, remoteAddress, localAddress, promise);
         } else {
             // Registration future is almost always fulfilled already, but just in case it's not.
-            final PendingRegistrationPromise promise = new PendingRegistrationPromise(channel);
+            final PendingRegistrationPromise promise = happyEyeballs == null ?
+                    new PendingRegistrationPromise(channel) : new HappyEyeballsConnector.ConnectPromise(channel);
             regFuture.addListener(new ChannelFutureListener() {
                 @Override
                 public void operationComplete(ChannelFuture future) throws Exception {
@@ -203,6 +229,13 @@ public class Bootstrap extends AbstractBootstrap<Bootstrap, Channel> {
                 return promise;
             }
 
+            HappyEyeballs happyEyeballs = this.happyEyeballs;
+            if (happyEyeballs != null && promise instanceof HappyEyeballsConnector.ConnectPromise) {
+                new HappyEyeballsConnector(this, happyEyeballs, (HappyEyeballsConnector.ConnectPromise) promise,
+                        localAddress).resolveAndConnect(resolver, remoteAddress);
+                return promise;
+            }
+
             final Future<SocketAddress> resolveFuture = resolver.resolve(remoteAddress);
 
             if (resolveFuture.isDone()) {
@@ -303,4 +336,8 @@ public class Bootstrap extends AbstractBootstrap<Bootstrap, Channel> {
     final AddressResolverGroup<?> resolver() {
         return resolver;
     }
+
+    final HappyEyeballs happyEyeballs() {
+        return happyEyeballs;
+    }
 }
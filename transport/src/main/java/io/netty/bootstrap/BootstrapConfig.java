@@ -43,6 +43,13 @@ public final class BootstrapConfig extends AbstractBootstrapConfig<Bootstrap, Ch
         return bootstrap.resolver();
     }
 
+    /**
+     * Returns the configured {@link HappyEyeballs} or {@code null} if non is configured.
+     */
+    public HappyEyeballs happyEyeballs() {
+        return bootstrap.happyEyeballs();
+    }
+
     @Override
     public String toString() {
         StringBuilder buf = new StringBuilder(super.toString());
@@ -53,6 +60,11 @@ public final class BootstrapConfig extends AbstractBootstrapConfig<Bootstrap, Ch
             buf.append(", remoteAddress: ")
                     .append(remoteAddress);
         }
+        HappyEyeballs happyEyeballs = happyEyeballs();
+        if (happyEyeballs != null) {
+            buf.append(", happyEyeballs: ")
+                    .append(happyEyeballs);
+        }
         return buf.append(')').toString();
     }
 }
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.bootstrap;
+
+import io.netty.util.internal.LongCounter;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.StringUtil;
+
+import java.net.Inet6Address;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
+
+/**
+ * Configuration and metrics for racing connection attempts to all resolved addresses of a remote peer as described
+ * in <a href="https://www.rfc-editor.org/rfc/rfc8305">RFC 8305 (Happy Eyeballs Version 2)</a>.
+ * <p>
+ * If set via {@link Bootstrap#happyEyeballs(HappyEyeballs)}, the {@link Bootstrap} resolves all addresses of the
+ * remote peer, sorts them so that the address families alternate and starts a new connection attempt every
+ * {@linkplain #connectionAttemptDelayMillis() connection attempt delay} or as soon as the previous attempt failed.
+ * The first successful connection wins and all other attempts are cancelled.
+ * <p>
+ * The same instance can be shared by multiple {@link Bootstrap}s, in which case the metrics are aggregated.
+ */
+public final class HappyEyeballs {
+
+    /**
+     * The connection attempt delay recommended by RFC 8305.
+     */
+    public static final long DEFAULT_CONNECTION_ATTEMPT_DELAY_MILLIS = 250;
+
+    private final long connectionAttemptDelayMillis;
+    private final LongCounter attempts = PlatformDependent.newLongCounter();
+    private final LongCounter ipv4Wins = PlatformDependent.newLongCounter();
+    private final LongCounter ipv6Wins = PlatformDependent.newLongCounter();
+    private final LongCounter failures = PlatformDependent.newLongCounter();
+
+    /**
+     * Creates a new instance which uses {@link #DEFAULT_CONNECTION_ATTEMPT_DELAY_MILLIS}.
+     */
+    public HappyEyeballs() {
+        this(DEFAULT_CONNECTION_ATTEMPT_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param connectionAttemptDelay the time to wait for a connection attempt to complete before the next attempt
+     *                               is started.
+     * @param unit the {@link TimeUnit} of {@code connectionAttemptDelay}.
+     */
+    public HappyEyeballs(long connectionAttemptDelay, TimeUnit unit) {
+        checkPositiveOrZero(connectionAttemptDelay, "connectionAttemptDelay");
+        connectionAttemptDelayMillis = checkNotNull(unit, "unit").toMillis(connectionAttemptDelay);
+    }
+
+    /**
+     * Returns the time in milliseconds to wait for a connection attempt to complete before the next attempt is
+     * started.
+     */
+    public long connectionAttemptDelayMillis() {
+        return connectionAttemptDelayMillis;
+    }
+
+    /**
+     * Returns the number of connection attempts that were started.
+     */
+    public long attempts() {
+        return attempts.value();
+    }
+
+    /**
+     * Returns the number of connections that were established to an IPv4 address.
+     */
+    public long ipv4Wins() {
+        return ipv4Wins.value();
+    }
+
+    /**
+     * Returns the number of connections that were established to an IPv6 address.
+     */
+    public long ipv6Wins() {
+        return ipv6Wins.value();
+    }
+
+    /**
+     * Returns the number of connects that failed because all attempts failed.
+     */
+    public long failures() {
+        return failures.value();
+    }
+
+    void recordAttempt() {
+        attempts.increment();
+    }
+
+    void recordWin(SocketAddress remoteAddress) {
+        if (remoteAddress instanceof InetSocketAddress) {
+            if (((InetSocketAddress) remoteAddress).getAddress() instanceof Inet6Address) {
+                ipv6Wins.increment();
+            } else {
+                ipv4Wins.increment();
+            }
+        }
+    }
+
+    void recordFailure() {
+        failures.increment();
+    }
+
+    @Override
+    public String toString() {
+        return StringUtil.simpleClassName(this) +
+                "(connectionAttemptDelayMillis: " + connectionAttemptDelayMillis +
+                ", attempts: " + attempts() +
+                ", ipv4Wins: " + ipv4Wins() +
+                ", ipv6Wins: " + ipv6Wins() +
+                ", failures: " + failures() + ')';
+    }
+}
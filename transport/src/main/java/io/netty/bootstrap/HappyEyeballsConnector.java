@@ -0,0 +1,297 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.bootstrap;
+
+import io.netty.bootstrap.AbstractBootstrap.PendingRegistrationPromise;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.resolver.AddressResolver;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+import io.netty.util.internal.ThrowableUtil;
+
+import java.net.Inet6Address;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Races connection attempts to all resolved addresses of a remote peer as described in
+ * <a href="https://www.rfc-editor.org/rfc/rfc8305">RFC 8305</a>.
+ */
+final class HappyEyeballsConnector {
+
+    private final Bootstrap bootstrap;
+    private final HappyEyeballs happyEyeballs;
+    private final ConnectPromise promise;
+    private final SocketAddress localAddress;
+    private final List<Channel> attempts = new ArrayList<Channel>();
+    private final Runnable nextAttemptTask = new Runnable() {
+        @Override
+        public void run() {
+            startNextAttempt();
+        }
+    };
+
+    private List<SocketAddress> remoteAddresses;
+    private int nextAddressIndex;
+    private int pendingAttempts;
+    private Throwable cause;
+    private Future<?> nextAttemptFuture;
+    private Channel winner;
+
+    HappyEyeballsConnector(Bootstrap bootstrap, HappyEyeballs happyEyeballs, ConnectPromise promise,
+                           SocketAddress localAddress) {
+        this.bootstrap = bootstrap;
+        this.happyEyeballs = happyEyeballs;
+        this.promise = promise;
+        this.localAddress = localAddress;
+    }
+
+    void resolveAndConnect(AddressResolver<SocketAddress> resolver, final SocketAddress remoteAddress) {
+        final Channel channel = promise.channel();
+        promise.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                if (!future.isSuccess()) {
+                    // Also covers cancellation by the user.
+                    closeAttempts();
+                }
+            }
+        });
+
+        Future<List<SocketAddress>> resolveFuture = resolver.resolveAll(remoteAddress);
+        resolveFuture.addListener(new FutureListener<List<SocketAddress>>() {
+            @Override
+            public void operationComplete(Future<List<SocketAddress>> future) {
+                if (future.cause() != null) {
+                    channel.close();
+                    promise.tryFailure(future.cause());
+                } else if (future.getNow().isEmpty()) {
+                    channel.close();
+                    promise.tryFailure(new UnknownHostException("No address resolved for " + remoteAddress));
+                } else {
+                    connect(future.getNow());
+                }
+            }
+        });
+    }
+
+    private void connect(List<SocketAddress> resolvedAddresses) {
+        synchronized (this) {
+            remoteAddresses = sortAddresses(resolvedAddresses);
+        }
+        startNextAttempt();
+    }
+
+    /**
+     * Sorts the addresses so that the address families alternate, starting with the family of the first address.
+     * See <a href="https://www.rfc-editor.org/rfc/rfc8305#section-4">RFC 8305, section 4</a>.
+     */
+    static List<SocketAddress> sortAddresses(List<SocketAddress> addresses) {
+        if (addresses.size() <= 1) {
+            return addresses;
+        }
+        boolean preferIpv6 = isIpv6(addresses.get(0));
+        List<SocketAddress> preferred = new ArrayList<SocketAddress>(addresses.size());
+        List<SocketAddress> other = new ArrayList<SocketAddress>(addresses.size());
+        for (SocketAddress address : addresses) {
+            if (isIpv6(address) == preferIpv6) {
+                preferred.add(address);
+            } else {
+                other.add(address);
+            }
+        }
+        List<SocketAddress> sorted = new ArrayList<SocketAddress>(addresses.size());
+        for (int i = 0; i < preferred.size() || i < other.size(); i++) {
+            if (i < preferred.size()) {
+                sorted.add(preferred.get(i));
+            }
+            if (i < other.size()) {
+                sorted.add(other.get(i));
+            }
+        }
+        return sorted;
+    }
+
+    private static boolean isIpv6(SocketAddress address) {
+        return address instanceof InetSocketAddress &&
+                ((InetSocketAddress) address).getAddress() instanceof Inet6Address;
+    }
+
+    private void startNextAttempt() {
+        final Channel channel;
+        final SocketAddress remoteAddress;
+        synchronized (this) {
+            if (isDone() || nextAddressIndex >= remoteAddresses.size()) {
+                return;
+            }
+            cancelNextAttempt();
+            remoteAddress = remoteAddresses.get(nextAddressIndex);
+            if (nextAddressIndex++ == 0) {
+                // The first attempt uses the Channel that was already registered by the Bootstrap.
+                channel = promise.channel();
+            } else {
+                ChannelFuture regFuture = bootstrap.initAndRegister();
+                channel = regFuture.channel();
+                if (regFuture.cause() != null) {
+                    // Treat it as a failed attempt and directly try the next address.
+                    cause = regFuture.cause();
+                    if (nextAddressIndex < remoteAddresses.size()) {
+                        promise.channel().eventLoop().execute(nextAttemptTask);
+                    } else if (pendingAttempts == 0) {
+                        failConnect();
+                    }
+                    return;
+                }
+            }
+            attempts.add(channel);
+            pendingAttempts++;
+            happyEyeballs.recordAttempt();
+            if (nextAddressIndex < remoteAddresses.size()) {
+                nextAttemptFuture = promise.channel().eventLoop().schedule(
+                        nextAttemptTask, happyEyeballs.connectionAttemptDelayMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+
+        channel.eventLoop().execute(new Runnable() {
+            @Override
+            public void run() {
+                ChannelFuture connectFuture = localAddress == null ?
+                        channel.connect(remoteAddress) : channel.connect(remoteAddress, localAddress);
+                connectFuture.addListener(new ChannelFutureListener() {
+                    @Override
+                    public void operationComplete(ChannelFuture future) {
+                        attemptComplete(future, remoteAddress);
+                    }
+                });
+            }
+        });
+    }
+
+    private void attemptComplete(ChannelFuture future, SocketAddress remoteAddress) {
+        Channel channel = future.channel();
+        boolean won = false;
+        boolean startNext = false;
+        boolean failed = false;
+        synchronized (this) {
+            pendingAttempts--;
+            if (future.isSuccess()) {
+                if (!isDone()) {
+                    // Pick the winner and close all other attempts while holding the lock, so that attempts which
+                    // succeed at the same time on other event loops can not both consider themselves the winner.
+                    won = true;
+                    winner = channel;
+                    promise.winner(channel);
+                    cancelNextAttempt();
+                    for (Channel attempt : attempts) {
+                        if (attempt != channel) {
+                            attempt.close();
+                        }
+                    }
+                }
+            } else {
+                if (cause == null) {
+                    cause = future.cause();
+                } else {
+                    ThrowableUtil.addSuppressed(cause, future.cause());
+                }
+                if (!isDone()) {
+                    if (nextAddressIndex < remoteAddresses.size()) {
+                        startNext = true;
+                    } else if (pendingAttempts == 0) {
+                        failed = true;
+                    }
+                }
+            }
+        }
+
+        if (won) {
+            happyEyeballs.recordWin(remoteAddress);
+            promise.trySuccess();
+        } else {
+            // Either the attempt failed or it lost the race.
+            channel.close();
+            if (startNext) {
+                startNextAttempt();
+            } else if (failed) {
+                failConnect();
+            }
+        }
+    }
+
+    /**
+     * Returns {@code true} if a winner was picked or the promise was completed otherwise. Must be called while
+     * holding the lock.
+     */
+    private boolean isDone() {
+        return winner != null || promise.isDone();
+    }
+
+    private void cancelNextAttempt() {
+        if (nextAttemptFuture != null) {
+            nextAttemptFuture.cancel(false);
+            nextAttemptFuture = null;
+        }
+    }
+
+    private void failConnect() {
+        Throwable cause;
+        synchronized (this) {
+            cause = this.cause;
+        }
+        happyEyeballs.recordFailure();
+        promise.tryFailure(cause);
+    }
+
+    private void closeAttempts() {
+        List<Channel> channels;
+        synchronized (this) {
+            channels = new ArrayList<Channel>(attempts);
+            cancelNextAttempt();
+        }
+        for (Channel channel : channels) {
+            channel.close();
+        }
+    }
+
+    /**
+     * The {@link io.netty.channel.ChannelPromise} that is returned by {@link Bootstrap#connect()}. Its
+     * {@link #channel()} is the {@link Channel} that won the race once the promise was completed successfully.
+     */
+    static final class ConnectPromise extends PendingRegistrationPromise {
+
+        private volatile Channel winner;
+
+        ConnectPromise(Channel channel) {
+            super(channel);
+        }
+
+        void winner(Channel winner) {
+            this.winner = winner;
+        }
+
+        @Override
+        public Channel channel() {
+            Channel winner = this.winner;
+            return winner != null ? winner : super.channel();
+        }
+    }
+}
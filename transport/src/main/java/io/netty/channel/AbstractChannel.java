@@ -879,6 +879,17 @@ public abstract class AbstractChannel extends DefaultAttributeMap implements Cha
                 return;
             }
 
+            WriteBufferBudget budget = outboundBuffer.budget();
+            if (budget != null && !budget.tryAdmit(size)) {
+                try {
+                    ReferenceCountUtil.release(msg);
+                } finally {
+                    safeSetFailure(promise, new ChannelException(
+                            "write of " + size + " bytes rejected as it would exceed " + budget));
+                }
+                return;
+            }
+
             outboundBuffer.addMessage(msg, size, promise);
         }
 
@@ -101,6 +101,9 @@ abstract class AbstractChannelHandlerContext implements ChannelHandlerContext, R
 
     private volatile int handlerState = INIT;
 
+    // Only non-null if -Dio.netty.pipeline.instrumentation=true is used.
+    private final HandlerInvocationRecorder recorder;
+
     AbstractChannelHandlerContext(DefaultChannelPipeline pipeline, EventExecutor executor,
                                   String name, Class<? extends ChannelHandler> handlerClass) {
         this.name = ObjectUtil.checkNotNull(name, "name");
@@ -109,6 +112,7 @@ abstract class AbstractChannelHandlerContext implements ChannelHandlerContext, R
         this.executionMask = mask(handlerClass);
         // Its ordered if its driven by the EventLoop or the given Executor is an instanceof OrderedEventExecutor.
         ordered = executor == null || executor instanceof OrderedEventExecutor;
+        recorder = HandlerInvocationRecorder.ENABLED ? new HandlerInvocationRecorder() : null;
     }
 
     @Override
@@ -430,6 +434,12 @@ abstract class AbstractChannelHandlerContext implements ChannelHandlerContext, R
 
     private void invokeChannelRead(Object msg) {
         if (invokeHandler()) {
+            long parentNestedNanos = 0;
+            long startNanos = 0;
+            if (HandlerInvocationRecorder.ENABLED) {
+                parentNestedNanos = HandlerInvocationRecorder.enter();
+                startNanos = System.nanoTime();
+            }
             try {
                 // DON'T CHANGE
                 // Duplex handlers implements both out/in interfaces causing a scalability issue
@@ -445,6 +455,10 @@ abstract class AbstractChannelHandlerContext implements ChannelHandlerContext, R
                 }
             } catch (Throwable t) {
                 invokeExceptionCaught(t);
+            } finally {
+                if (HandlerInvocationRecorder.ENABLED) {
+                    recorder.exit(HandlerInvocationRecorder.READ, startNanos, System.nanoTime(), parentNestedNanos);
+                }
             }
         } else {
             fireChannelRead(msg);
@@ -867,6 +881,12 @@ abstract class AbstractChannelHandlerContext implements ChannelHandlerContext, R
     }
 
     private void invokeWrite0(Object msg, ChannelPromise promise) {
+        long parentNestedNanos = 0;
+        long startNanos = 0;
+        if (HandlerInvocationRecorder.ENABLED) {
+            parentNestedNanos = HandlerInvocationRecorder.enter();
+            startNanos = System.nanoTime();
+        }
         try {
             // DON'T CHANGE
             // Duplex handlers implements both out/in interfaces causing a scalability issue
@@ -882,6 +902,10 @@ abstract class AbstractChannelHandlerContext implements ChannelHandlerContext, R
             }
         } catch (Throwable t) {
             notifyOutboundHandlerException(t, promise);
+        } finally {
+            if (HandlerInvocationRecorder.ENABLED) {
+                recorder.exit(HandlerInvocationRecorder.WRITE, startNanos, System.nanoTime(), parentNestedNanos);
+            }
         }
     }
 
@@ -911,6 +935,12 @@ abstract class AbstractChannelHandlerContext implements ChannelHandlerContext, R
     }
 
     private void invokeFlush0() {
+        long parentNestedNanos = 0;
+        long startNanos = 0;
+        if (HandlerInvocationRecorder.ENABLED) {
+            parentNestedNanos = HandlerInvocationRecorder.enter();
+            startNanos = System.nanoTime();
+        }
         try {
             // DON'T CHANGE
             // Duplex handlers implements both out/in interfaces causing a scalability issue
@@ -926,6 +956,10 @@ abstract class AbstractChannelHandlerContext implements ChannelHandlerContext, R
             }
         } catch (Throwable t) {
             invokeExceptionCaught(t);
+        } finally {
+            if (HandlerInvocationRecorder.ENABLED) {
+                recorder.exit(HandlerInvocationRecorder.FLUSH, startNanos, System.nanoTime(), parentNestedNanos);
+            }
         }
     }
 
@@ -1177,6 +1211,13 @@ abstract class AbstractChannelHandlerContext implements ChannelHandlerContext, R
         }
     }
 
+    /**
+     * Returns the {@link HandlerInvocationStats} of this context or {@code null} if the instrumentation is disabled.
+     */
+    final HandlerInvocationStats invocationStats() {
+        return recorder == null ? null : recorder.snapshot(name);
+    }
+
     @Override
     public String toHintString() {
         return '\'' + name + "' will handle the message from this point.";
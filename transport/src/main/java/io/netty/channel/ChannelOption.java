@@ -101,6 +101,10 @@ public class ChannelOption<T> extends AbstractConstant<ChannelOption<T>> {
     public static final ChannelOption<Integer> WRITE_BUFFER_LOW_WATER_MARK = valueOf("WRITE_BUFFER_LOW_WATER_MARK");
     public static final ChannelOption<WriteBufferWaterMark> WRITE_BUFFER_WATER_MARK =
             valueOf("WRITE_BUFFER_WATER_MARK");
+    /**
+     * The {@link WriteBufferBudget} which is shared by all {@link Channel}s that use the same instance.
+     */
+    public static final ChannelOption<WriteBufferBudget> WRITE_BUFFER_BUDGET = valueOf("WRITE_BUFFER_BUDGET");
 
     public static final ChannelOption<Boolean> ALLOW_HALF_CLOSURE = valueOf("ALLOW_HALF_CLOSURE");
     public static final ChannelOption<Boolean> AUTO_READ = valueOf("AUTO_READ");
@@ -173,7 +173,11 @@ public final class ChannelOutboundBuffer {
         }
 
         long newWriteBufferSize = TOTAL_PENDING_SIZE_UPDATER.addAndGet(this, size);
-        if (newWriteBufferSize > channel.config().getWriteBufferHighWaterMark()) {
+        WriteBufferBudget budget = budget();
+        if (budget != null && budget.increment(this, size, newWriteBufferSize)) {
+            setUnwritable(invokeLater);
+            budget.addUnwritable(this);
+        } else if (newWriteBufferSize > channel.config().getWriteBufferHighWaterMark()) {
             setUnwritable(invokeLater);
         }
     }
@@ -192,11 +196,44 @@ public final class ChannelOutboundBuffer {
         }
 
         long newWriteBufferSize = TOTAL_PENDING_SIZE_UPDATER.addAndGet(this, -size);
+        WriteBufferBudget budget = budget();
+        if (budget != null) {
+            budget.decrement(this, size, newWriteBufferSize);
+        }
         if (notifyWritability && newWriteBufferSize < channel.config().getWriteBufferLowWaterMark()) {
-            setWritable(invokeLater);
+            if (budget == null || !budget.isExceeded()) {
+                setWritable(invokeLater);
+            } else if ((unwritable & 1) != 0) {
+                // The budget holds back the transition to writable, even if this buffer was made unwritable by its
+                // own high water mark. Register it so it is notified once the budget recovered.
+                budget.addUnwritable(this);
+            }
         }
     }
 
+    /**
+     * Called by the {@link WriteBufferBudget} once it is not exceeded anymore after this buffer was made unwritable
+     * because of it.
+     */
+    void budgetRecovered() {
+        if (totalPendingSize < channel.config().getWriteBufferLowWaterMark()) {
+            setWritable(true);
+        }
+    }
+
+    /**
+     * Returns the {@link WriteBufferBudget} which is shared with other {@link Channel}s or {@code null} if none is
+     * used.
+     */
+    WriteBufferBudget budget() {
+        ChannelConfig config = channel.config();
+        return config instanceof DefaultChannelConfig ? ((DefaultChannelConfig) config).getWriteBufferBudget() : null;
+    }
+
+    Channel channel() {
+        return channel;
+    }
+
     private static long total(Object msg) {
         if (msg instanceof ByteBuf) {
             return ((ByteBuf) msg).readableBytes();
@@ -664,6 +701,12 @@ public final class ChannelOutboundBuffer {
         } finally {
             inFail = false;
         }
+        if (!channel.isOpen()) {
+            WriteBufferBudget budget = budget();
+            if (budget != null) {
+                budget.remove(this);
+            }
+        }
     }
 
     void close(final Throwable cause, final boolean allowChannelOpen) {
@@ -693,7 +736,11 @@ public final class ChannelOutboundBuffer {
             while (e != null) {
                 // Just decrease; do not trigger any events via decrementPendingOutboundBytes()
                 int size = e.pendingSize;
-                TOTAL_PENDING_SIZE_UPDATER.addAndGet(this, -size);
+                long newWriteBufferSize = TOTAL_PENDING_SIZE_UPDATER.addAndGet(this, -size);
+                WriteBufferBudget budget = budget();
+                if (budget != null) {
+                    budget.decrement(this, size, newWriteBufferSize);
+                }
 
                 if (!e.cancelled) {
                     ReferenceCountUtil.safeRelease(e.msg);
@@ -704,6 +751,10 @@ public final class ChannelOutboundBuffer {
         } finally {
             inFail = false;
         }
+        WriteBufferBudget budget = budget();
+        if (budget != null) {
+            budget.remove(this);
+        }
         clearNioBuffers();
     }
 
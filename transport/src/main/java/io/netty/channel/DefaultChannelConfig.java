@@ -33,6 +33,7 @@ import static io.netty.channel.ChannelOption.MAX_MESSAGES_PER_WRITE;
 import static io.netty.channel.ChannelOption.MESSAGE_SIZE_ESTIMATOR;
 import static io.netty.channel.ChannelOption.RCVBUF_ALLOCATOR;
 import static io.netty.channel.ChannelOption.SINGLE_EVENTEXECUTOR_PER_GROUP;
+import static io.netty.channel.ChannelOption.WRITE_BUFFER_BUDGET;
 import static io.netty.channel.ChannelOption.WRITE_BUFFER_HIGH_WATER_MARK;
 import static io.netty.channel.ChannelOption.WRITE_BUFFER_LOW_WATER_MARK;
 import static io.netty.channel.ChannelOption.WRITE_BUFFER_WATER_MARK;
@@ -69,6 +70,7 @@ public class DefaultChannelConfig implements ChannelConfig {
     private volatile int autoRead = 1;
     private volatile boolean autoClose = true;
     private volatile WriteBufferWaterMark writeBufferWaterMark = WriteBufferWaterMark.DEFAULT;
+    private volatile WriteBufferBudget writeBufferBudget;
     private volatile boolean pinEventExecutor = true;
 
     public DefaultChannelConfig(Channel channel) {
@@ -152,6 +154,9 @@ public class DefaultChannelConfig implements ChannelConfig {
         if (option == WRITE_BUFFER_WATER_MARK) {
             return (T) getWriteBufferWaterMark();
         }
+        if (option == WRITE_BUFFER_BUDGET) {
+            return (T) getWriteBufferBudget();
+        }
         if (option == MESSAGE_SIZE_ESTIMATOR) {
             return (T) getMessageSizeEstimator();
         }
@@ -189,6 +194,8 @@ public class DefaultChannelConfig implements ChannelConfig {
             setWriteBufferLowWaterMark((Integer) value);
         } else if (option == WRITE_BUFFER_WATER_MARK) {
             setWriteBufferWaterMark((WriteBufferWaterMark) value);
+        } else if (option == WRITE_BUFFER_BUDGET) {
+            setWriteBufferBudget((WriteBufferBudget) value);
         } else if (option == MESSAGE_SIZE_ESTIMATOR) {
             setMessageSizeEstimator((MessageSizeEstimator) value);
         } else if (option == SINGLE_EVENTEXECUTOR_PER_GROUP) {
@@ -419,6 +426,26 @@ public class DefaultChannelConfig implements ChannelConfig {
         return writeBufferWaterMark;
     }
 
+    /**
+     * Returns the {@link WriteBufferBudget} which is shared with other {@link Channel}s or {@code null} if none is
+     * used.
+     */
+    public WriteBufferBudget getWriteBufferBudget() {
+        return writeBufferBudget;
+    }
+
+    /**
+     * Sets the {@link WriteBufferBudget} which is shared with other {@link Channel}s. This must be done before the
+     * {@link Channel} is registered.
+     */
+    public ChannelConfig setWriteBufferBudget(WriteBufferBudget writeBufferBudget) {
+        if (channel.isRegistered()) {
+            throw new IllegalStateException("WriteBufferBudget must be set before the channel is registered");
+        }
+        this.writeBufferBudget = writeBufferBudget;
+        return this;
+    }
+
     @Override
     public MessageSizeEstimator getMessageSizeEstimator() {
         return msgSizeEstimator;
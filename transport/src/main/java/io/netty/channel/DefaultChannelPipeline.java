@@ -29,6 +29,7 @@ import io.netty.util.internal.logging.InternalLoggerFactory;
 
 import java.net.SocketAddress;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -761,6 +762,25 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         }
     }
 
+    /**
+     * Returns a snapshot of the {@link HandlerInvocationStats} of all handlers in this pipeline, including the head
+     * and the tail, in the same order as {@link #names()}. The returned {@link List} is empty if
+     * {@link HandlerInvocationStats#isEnabled()} returns {@code false}.
+     */
+    @UnstableApi
+    public final List<HandlerInvocationStats> handlerInvocationStats() {
+        if (!HandlerInvocationRecorder.ENABLED) {
+            return Collections.emptyList();
+        }
+        List<HandlerInvocationStats> list = new ArrayList<HandlerInvocationStats>();
+        AbstractChannelHandlerContext ctx = head;
+        while (ctx != null) {
+            list.add(ctx.invocationStats());
+            ctx = ctx.next;
+        }
+        return list;
+    }
+
     @Override
     public final Map<String, ChannelHandler> toMap() {
         Map<String, ChannelHandler> map = new LinkedHashMap<String, ChannelHandler>();
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.internal.SystemPropertyUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+/**
+ * Records the invocations of a single {@link AbstractChannelHandlerContext} if
+ * {@code -Dio.netty.pipeline.instrumentation=true} is used.
+ * <p>
+ * The inclusive time of an invocation is the time spent in the handler method, including the time spent in all
+ * handlers that were invoked synchronously from within it (for example via
+ * {@link ChannelHandlerContext#fireChannelRead(Object)}). The exclusive time excludes the latter.
+ */
+final class HandlerInvocationRecorder {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(HandlerInvocationRecorder.class);
+
+    static final boolean ENABLED = SystemPropertyUtil.getBoolean("io.netty.pipeline.instrumentation", false);
+
+    static final int READ = 0;
+    static final int WRITE = 3;
+    static final int FLUSH = 6;
+
+    // Holds the inclusive nanos of all invocations that were nested in the current invocation of this thread.
+    private static final FastThreadLocal<long[]> NESTED_NANOS = new FastThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+
+    static {
+        logger.debug("-Dio.netty.pipeline.instrumentation: {}", ENABLED);
+    }
+
+    // count, inclusive nanos and exclusive nanos for each of READ, WRITE and FLUSH.
+    // Only written by the executor of the context, so snapshots taken by other threads are best effort.
+    private final long[] values = new long[9];
+
+    /**
+     * Must be called before the handler is invoked.
+     *
+     * @return the value which must be passed to {@link #exit(int, long, long, long)}.
+     */
+    static long enter() {
+        long[] nested = NESTED_NANOS.get();
+        long parentNestedNanos = nested[0];
+        nested[0] = 0;
+        return parentNestedNanos;
+    }
+
+    /**
+     * Must be called once the handler returned.
+     */
+    void exit(int operation, long startNanos, long endNanos, long parentNestedNanos) {
+        long elapsed = endNanos - startNanos;
+        long[] nested = NESTED_NANOS.get();
+        long[] values = this.values;
+        values[operation]++;
+        values[operation + 1] += elapsed;
+        values[operation + 2] += elapsed - nested[0];
+        nested[0] = parentNestedNanos + elapsed;
+    }
+
+    HandlerInvocationStats snapshot(String name) {
+        return new HandlerInvocationStats(name, values.clone());
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.internal.StringUtil;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static io.netty.channel.HandlerInvocationRecorder.FLUSH;
+import static io.netty.channel.HandlerInvocationRecorder.READ;
+import static io.netty.channel.HandlerInvocationRecorder.WRITE;
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+
+/**
+ * A snapshot of the number of invocations of and the time spent in
+ * {@link ChannelInboundHandler#channelRead(ChannelHandlerContext, Object)},
+ * {@link ChannelOutboundHandler#write(ChannelHandlerContext, Object, ChannelPromise)} and
+ * {@link ChannelOutboundHandler#flush(ChannelHandlerContext)} of a handler.
+ * <p>
+ * The invocations are only recorded if {@code -Dio.netty.pipeline.instrumentation=true} is used, otherwise the
+ * instrumentation is not compiled in at all. The inclusive time of an invocation contains the time spent in all
+ * handlers that were invoked synchronously from within the handler, while the exclusive time only contains the time
+ * spent in the handler itself.
+ *
+ * @see DefaultChannelPipeline#handlerInvocationStats()
+ */
+@UnstableApi
+public final class HandlerInvocationStats {
+
+    private final String name;
+    private final long[] values;
+
+    HandlerInvocationStats(String name, long[] values) {
+        this.name = name;
+        this.values = values;
+    }
+
+    /**
+     * Returns {@code true} if the invocations of handlers are recorded.
+     */
+    public static boolean isEnabled() {
+        return HandlerInvocationRecorder.ENABLED;
+    }
+
+    /**
+     * Sums up the {@link HandlerInvocationStats} of all handlers with the same name in the {@link ChannelPipeline}s
+     * of the given {@link Channel}s, for example all {@link Channel}s of a
+     * {@link io.netty.channel.group.ChannelGroup}. {@link Channel}s which do not use a
+     * {@link DefaultChannelPipeline} are ignored.
+     *
+     * @return the aggregated {@link HandlerInvocationStats} keyed by handler name.
+     */
+    public static Map<String, HandlerInvocationStats> aggregateByName(Iterable<? extends Channel> channels) {
+        checkNotNull(channels, "channels");
+        Map<String, HandlerInvocationStats> aggregated = new LinkedHashMap<String, HandlerInvocationStats>();
+        for (Channel channel : channels) {
+            ChannelPipeline pipeline = channel.pipeline();
+            if (!(pipeline instanceof DefaultChannelPipeline)) {
+                continue;
+            }
+            for (HandlerInvocationStats stats : ((DefaultChannelPipeline) pipeline).handlerInvocationStats()) {
+                HandlerInvocationStats existing = aggregated.get(stats.name);
+                aggregated.put(stats.name, existing == null ? stats : existing.add(stats));
+            }
+        }
+        return aggregated;
+    }
+
+    private HandlerInvocationStats add(HandlerInvocationStats stats) {
+        long[] sum = values.clone();
+        for (int i = 0; i < sum.length; i++) {
+            sum[i] += stats.values[i];
+        }
+        return new HandlerInvocationStats(name, sum);
+    }
+
+    /**
+     * Returns the name of the handler.
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Returns the number of {@code channelRead(...)} invocations.
+     */
+    public long readCount() {
+        return values[READ];
+    }
+
+    /**
+     * Returns the nanoseconds spent in {@code channelRead(...)}, including the handlers invoked from within it.
+     */
+    public long readNanos() {
+        return values[READ + 1];
+    }
+
+    /**
+     * Returns the nanoseconds spent in {@code channelRead(...)}, excluding the handlers invoked from within it.
+     */
+    public long readExclusiveNanos() {
+        return values[READ + 2];
+    }
+
+    /**
+     * Returns the number of {@code write(...)} invocations.
+     */
+    public long writeCount() {
+        return values[WRITE];
+    }
+
+    /**
+     * Returns the nanoseconds spent in {@code write(...)}, including the handlers invoked from within it.
+     */
+    public long writeNanos() {
+        return values[WRITE + 1];
+    }
+
+    /**
+     * Returns the nanoseconds spent in {@code write(...)}, excluding the handlers invoked from within it.
+     */
+    public long writeExclusiveNanos() {
+        return values[WRITE + 2];
+    }
+
+    /**
+     * Returns the number of {@code flush(...)} invocations.
+     */
+    public long flushCount() {
+        return values[FLUSH];
+    }
+
+    /**
+     * Returns the nanoseconds spent in {@code flush(...)}, including the handlers invoked from within it.
+     */
+    public long flushNanos() {
+        return values[FLUSH + 1];
+    }
+
+    /**
+     * Returns the nanoseconds spent in {@code flush(...)}, excluding the handlers invoked from within it.
+     */
+    public long flushExclusiveNanos() {
+        return values[FLUSH + 2];
+    }
+
+    @Override
+    public String toString() {
+        return StringUtil.simpleClassName(this) +
+                "(name: " + name +
+                ", readCount: " + readCount() +
+                ", readNanos: " + readNanos() +
+                ", readExclusiveNanos: " + readExclusiveNanos() +
+                ", writeCount: " + writeCount() +
+                ", writeNanos: " + writeNanos() +
+                ", writeExclusiveNanos: " + writeExclusiveNanos() +
+                ", flushCount: " + flushCount() +
+                ", flushNanos: " + flushNanos() +
+                ", flushExclusiveNanos: " + flushExclusiveNanos() + ')';
+    }
+}
@@ -117,6 +117,24 @@ public interface RecvByteBufAllocator {
         boolean continueReading(UncheckedBooleanSupplier maybeMoreDataSupplier);
     }
 
+    /**
+     * A {@link Handle} whose {@link #allocate(ByteBufAllocator)} may return a buffer that is shared by all
+     * {@link Channel}s served by the same thread. Transports must call {@link #detach(ByteBufAllocator, ByteBuf)}
+     * once a read into such a buffer was successful and before the buffer is passed to the {@link ChannelPipeline}.
+     */
+    @UnstableApi
+    interface DetachingHandle extends ExtendedHandle {
+        /**
+         * Returns a {@link ByteBuf} which contains the readable bytes of the given buffer and which is safe to be
+         * passed through the {@link ChannelPipeline}. This may be the given buffer itself. The ownership of the given
+         * buffer is transferred to this method.
+         *
+         * @param alloc the {@link ByteBufAllocator} of the {@link Channel}.
+         * @param buffer the buffer that was returned by {@link #allocate(ByteBufAllocator)} and filled by the read.
+         */
+        ByteBuf detach(ByteBufAllocator alloc, ByteBuf buffer);
+    }
+
     /**
      * A {@link Handle} which delegates all call to some other {@link Handle}.
      */
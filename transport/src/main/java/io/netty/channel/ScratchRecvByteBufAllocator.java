@@ -0,0 +1,134 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.internal.UnstableApi;
+
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+
+/**
+ * The {@link RecvByteBufAllocator} that reads into a single scratch buffer which is shared by all {@link Channel}s
+ * served by the same {@link EventLoop} and only passes a buffer that is sized to the bytes actually received through
+ * the {@link ChannelPipeline}.
+ * <p>
+ * This is useful when a lot of mostly idle connections are served, as the memory that is retained by a
+ * {@link Channel} scales with the bytes it received and not with the size of the buffer that was guessed for a read.
+ * If a read fills more than half of the scratch buffer the buffer itself is passed through the
+ * {@link ChannelPipeline} without copying and a new scratch buffer is allocated for the next read.
+ * <p>
+ * The transport must support {@link RecvByteBufAllocator.DetachingHandle}, which is the case for the NIO, Epoll and
+ * KQueue stream transports.
+ */
+@UnstableApi
+public class ScratchRecvByteBufAllocator extends DefaultMaxMessagesRecvByteBufAllocator {
+
+    static final int DEFAULT_SCRATCH_CAPACITY = 65536;
+
+    private static final FastThreadLocal<ByteBuf> SCRATCH = new FastThreadLocal<ByteBuf>() {
+        @Override
+        protected void onRemoval(ByteBuf scratch) {
+            if (scratch != null) {
+                scratch.release();
+            }
+        }
+    };
+
+    private final int scratchCapacity;
+
+    private final class HandleImpl extends MaxMessageHandle implements DetachingHandle {
+
+        @Override
+        public ByteBuf allocate(ByteBufAllocator alloc) {
+            ByteBuf scratch = SCRATCH.get();
+            if (scratch == null || scratch.refCnt() != 1 || scratch.capacity() != scratchCapacity) {
+                // The previous scratch buffer is still referenced from somewhere else, which may happen if a
+                // transport does not detach the buffer. Never reuse it in this case.
+                if (scratch != null) {
+                    scratch.release();
+                }
+                // We always use a direct buffer as some transports can only read into those.
+                scratch = alloc.directBuffer(scratchCapacity, scratchCapacity);
+                SCRATCH.set(scratch);
+            }
+            return scratch.clear().retain();
+        }
+
+        @Override
+        public ByteBuf detach(ByteBufAllocator alloc, ByteBuf buffer) {
+            if (buffer != SCRATCH.get()) {
+                return buffer;
+            }
+            int readable = buffer.readableBytes();
+            if (readable > scratchCapacity >>> 1) {
+                // Most of the scratch buffer is used so just hand it out and allocate a new one on the next read.
+                SCRATCH.set(null);
+                buffer.release();
+                return buffer;
+            }
+            ByteBuf copy = alloc.ioBuffer(readable);
+            try {
+                copy.writeBytes(buffer, buffer.readerIndex(), readable);
+            } finally {
+                buffer.release();
+            }
+            return copy;
+        }
+
+        @Override
+        public int guess() {
+            return scratchCapacity;
+        }
+    }
+
+    /**
+     * Creates a new instance which uses a scratch buffer of {@code 65536} bytes.
+     */
+    public ScratchRecvByteBufAllocator() {
+        this(DEFAULT_SCRATCH_CAPACITY);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param scratchCapacity the capacity of the scratch buffer which is shared by all {@link Channel}s of an
+     *                        {@link EventLoop}. This is the maximum number of bytes that are read at once.
+     */
+    public ScratchRecvByteBufAllocator(int scratchCapacity) {
+        this.scratchCapacity = checkPositive(scratchCapacity, "scratchCapacity");
+    }
+
+    /**
+     * Returns the capacity of the scratch buffer.
+     */
+    public int scratchCapacity() {
+        return scratchCapacity;
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public Handle newHandle() {
+        return new HandleImpl();
+    }
+
+    @Override
+    public ScratchRecvByteBufAllocator respectMaybeMoreData(boolean respectMaybeMoreData) {
+        super.respectMaybeMoreData(respectMaybeMoreData);
+        return this;
+    }
+}
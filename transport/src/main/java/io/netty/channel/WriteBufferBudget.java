@@ -0,0 +1,281 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.StringUtil;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
+
+/**
+ * A budget for the bytes that are pending in the {@link ChannelOutboundBuffer}s of all {@link Channel}s that share
+ * the same instance, for example all {@link Channel}s of an {@link EventLoopGroup} or of the whole process.
+ * <p>
+ * While {@link WriteBufferWaterMark} only limits the bytes that are pending for a single {@link Channel}, this class
+ * limits the bytes that are pending over all {@link Channel}s:
+ * <ul>
+ *     <li>If the number of bytes pending over all {@link Channel}s exceeds the {@linkplain #high() high water mark},
+ *     every {@link Channel} which adds more bytes to its {@link ChannelOutboundBuffer} will become
+ *     {@linkplain Channel#isWritable() unwritable}. Those {@link Channel}s become writable again once the number of
+ *     pending bytes dropped below the {@linkplain #low() low water mark} and the number of bytes pending for the
+ *     {@link Channel} itself is below its {@link WriteBufferWaterMark#low()}.</li>
+ *     <li>If writing a message would exceed the {@linkplain #maxPendingBytes() maximum number of pending bytes}, the
+ *     write is rejected by failing its {@link ChannelPromise} with a {@link ChannelException}.</li>
+ * </ul>
+ * A budget is set via {@link ChannelOption#WRITE_BUFFER_BUDGET} and must be set before the {@link Channel} is
+ * registered.
+ */
+public final class WriteBufferBudget {
+
+    private static final AtomicLongFieldUpdater<WriteBufferBudget> PENDING_BYTES_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(WriteBufferBudget.class, "pendingBytes");
+    private static final AtomicLongFieldUpdater<WriteBufferBudget> REJECTED_WRITES_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(WriteBufferBudget.class, "rejectedWrites");
+    private static final AtomicIntegerFieldUpdater<WriteBufferBudget> EXCEEDED_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(WriteBufferBudget.class, "exceeded");
+
+    private static final Comparator<Map.Entry<Channel, Long>> PENDING_BYTES_COMPARATOR =
+            new Comparator<Map.Entry<Channel, Long>>() {
+                @Override
+                public int compare(Map.Entry<Channel, Long> o1, Map.Entry<Channel, Long> o2) {
+                    return o2.getValue().compareTo(o1.getValue());
+                }
+            };
+
+    private final long low;
+    private final long high;
+    private final long maxPendingBytes;
+
+    // All buffers which currently have pending bytes.
+    private final Set<ChannelOutboundBuffer> pendingBuffers =
+            Collections.newSetFromMap(PlatformDependent.<ChannelOutboundBuffer, Boolean>newConcurrentHashMap());
+    // All buffers which are kept unwritable because the budget is exceeded.
+    private final Set<ChannelOutboundBuffer> unwritableBuffers =
+            Collections.newSetFromMap(PlatformDependent.<ChannelOutboundBuffer, Boolean>newConcurrentHashMap());
+
+    @SuppressWarnings("unused")
+    private volatile long pendingBytes;
+    @SuppressWarnings("unused")
+    private volatile long rejectedWrites;
+    @SuppressWarnings("unused")
+    private volatile int exceeded;
+
+    /**
+     * Create a new instance which never rejects writes.
+     *
+     * @param low low water mark for the bytes pending over all {@link Channel}s.
+     * @param high high water mark for the bytes pending over all {@link Channel}s.
+     */
+    public WriteBufferBudget(long low, long high) {
+        this(low, high, Long.MAX_VALUE);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param low low water mark for the bytes pending over all {@link Channel}s.
+     * @param high high water mark for the bytes pending over all {@link Channel}s.
+     * @param maxPendingBytes the maximum number of bytes pending over all {@link Channel}s. Writes which would
+     *                        exceed this number are rejected.
+     */
+    public WriteBufferBudget(long low, long high, long maxPendingBytes) {
+        checkPositiveOrZero(low, "low");
+        checkPositive(high, "high");
+        if (high < low) {
+            throw new IllegalArgumentException(
+                    "high: " + high + " (expected: greater than or equal to low: " + low + ')');
+        }
+        if (maxPendingBytes < high) {
+            throw new IllegalArgumentException(
+                    "maxPendingBytes: " + maxPendingBytes + " (expected: greater than or equal to high: " + high + ')');
+        }
+        this.low = low;
+        this.high = high;
+        this.maxPendingBytes = maxPendingBytes;
+    }
+
+    /**
+     * Returns the low water mark for the bytes pending over all {@link Channel}s.
+     */
+    public long low() {
+        return low;
+    }
+
+    /**
+     * Returns the high water mark for the bytes pending over all {@link Channel}s.
+     */
+    public long high() {
+        return high;
+    }
+
+    /**
+     * Returns the maximum number of bytes pending over all {@link Channel}s.
+     */
+    public long maxPendingBytes() {
+        return maxPendingBytes;
+    }
+
+    /**
+     * Returns the number of bytes which are currently pending over all {@link Channel}s.
+     */
+    public long pendingBytes() {
+        return pendingBytes;
+    }
+
+    /**
+     * Returns the number of {@link Channel}s which currently have pending bytes.
+     */
+    public int pendingChannels() {
+        return pendingBuffers.size();
+    }
+
+    /**
+     * Returns the number of writes that were rejected because they would have exceeded
+     * {@link #maxPendingBytes()}.
+     */
+    public long rejectedWrites() {
+        return rejectedWrites;
+    }
+
+    /**
+     * Returns {@code true} if the {@linkplain #high() high water mark} was exceeded and the pending bytes did not drop
+     * below the {@linkplain #low() low water mark} yet.
+     */
+    public boolean isExceeded() {
+        return exceeded != 0;
+    }
+
+    /**
+     * Returns up to {@code maxChannels} {@link Channel}s which hold the most pending bytes, ordered by the number of
+     * pending bytes in descending order.
+     */
+    public Map<Channel, Long> topPendingChannels(int maxChannels) {
+        checkPositive(maxChannels, "maxChannels");
+        List<Map.Entry<Channel, Long>> entries = new ArrayList<Map.Entry<Channel, Long>>(pendingBuffers.size());
+        for (ChannelOutboundBuffer buffer : pendingBuffers) {
+            long bytes = buffer.totalPendingWriteBytes();
+            if (bytes > 0) {
+                entries.add(new AbstractMap.SimpleImmutableEntry<Channel, Long>(buffer.channel(), bytes));
+            }
+        }
+        Collections.sort(entries, PENDING_BYTES_COMPARATOR);
+        int size = Math.min(maxChannels, entries.size());
+        Map<Channel, Long> top = new LinkedHashMap<Channel, Long>(size);
+        for (int i = 0; i < size; i++) {
+            Map.Entry<Channel, Long> entry = entries.get(i);
+            top.put(entry.getKey(), entry.getValue());
+        }
+        return top;
+    }
+
+    /**
+     * Returns {@code true} if {@code size} more bytes can be added without exceeding {@link #maxPendingBytes()}.
+     */
+    boolean tryAdmit(long size) {
+        if (maxPendingBytes - size >= pendingBytes) {
+            return true;
+        }
+        REJECTED_WRITES_UPDATER.incrementAndGet(this);
+        return false;
+    }
+
+    /**
+     * Called when the pending bytes of the given buffer were incremented.
+     *
+     * @return {@code true} if the budget is exceeded.
+     */
+    boolean increment(ChannelOutboundBuffer buffer, long size, long bufferPendingBytes) {
+        long newPendingBytes = PENDING_BYTES_UPDATER.addAndGet(this, size);
+        if (bufferPendingBytes == size) {
+            pendingBuffers.add(buffer);
+        }
+        if (newPendingBytes > high) {
+            exceeded = 1;
+            return true;
+        }
+        return isExceeded();
+    }
+
+    /**
+     * Called when the pending bytes of the given buffer were decremented.
+     */
+    void decrement(ChannelOutboundBuffer buffer, long size, long bufferPendingBytes) {
+        long newPendingBytes = PENDING_BYTES_UPDATER.addAndGet(this, -size);
+        if (bufferPendingBytes == 0) {
+            pendingBuffers.remove(buffer);
+        }
+        if (newPendingBytes < low && EXCEEDED_UPDATER.compareAndSet(this, 1, 0)) {
+            notifyUnwritableBuffers();
+        }
+    }
+
+    /**
+     * Called when the given buffer was made or kept unwritable because the budget was exceeded.
+     */
+    void addUnwritable(ChannelOutboundBuffer buffer) {
+        unwritableBuffers.add(buffer);
+        // The budget may have recovered while we added the buffer, so check again to not miss the notification.
+        if (!isExceeded()) {
+            notifyUnwritableBuffers();
+        }
+    }
+
+    /**
+     * Called when the {@link Channel} of the given buffer was closed.
+     */
+    void remove(ChannelOutboundBuffer buffer) {
+        unwritableBuffers.remove(buffer);
+        pendingBuffers.remove(buffer);
+    }
+
+    private void notifyUnwritableBuffers() {
+        Iterator<ChannelOutboundBuffer> buffers = unwritableBuffers.iterator();
+        while (buffers.hasNext()) {
+            ChannelOutboundBuffer buffer = buffers.next();
+            buffers.remove();
+            buffer.budgetRecovered();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder(96)
+            .append(StringUtil.simpleClassName(this))
+            .append("(low: ")
+            .append(low)
+            .append(", high: ")
+            .append(high)
+            .append(", maxPendingBytes: ")
+            .append(maxPendingBytes)
+            .append(", pendingBytes: ")
+            .append(pendingBytes)
+            .append(')')
+            .toString();
+    }
+}
@@ -21,19 +21,28 @@ import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelId;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoop;
 import io.netty.channel.ServerChannel;
 import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.DefaultPromise;
 import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
 import io.netty.util.internal.ObjectUtil;
 import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.StringUtil;
 
+import java.nio.channels.ClosedChannelException;
 import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -412,6 +421,144 @@ public class DefaultChannelGroup extends AbstractSet<Channel> implements Channel
         return future;
     }
 
+    /**
+     * Writes and flushes the given message to all {@link Channel}s in this group. See
+     * {@link #broadcast(Object, ChannelMatcher, boolean)}.
+     */
+    public Future<Void> broadcast(Object message) {
+        return broadcast(message, ChannelMatchers.all(), true);
+    }
+
+    /**
+     * Writes the given message to all {@link Channel}s in this group that are matched by the given
+     * {@link ChannelMatcher}. Unlike {@link #write(Object, ChannelMatcher, boolean)} this submits only one task per
+     * {@link EventLoop} which then writes the message to all its {@link Channel}s. The message is retained only once
+     * per {@link EventLoop} and every {@link Channel} is written to with its {@link Channel#voidPromise()}, so no
+     * per {@link Channel} future is created.
+     * <p>
+     * The returned {@link Future} is completed once the message was passed to all {@link Channel}s. It is failed
+     * with a {@link ChannelGroupException} that contains all {@link Channel}s that were not active or whose write
+     * failed right away. Failures that happen after the message was passed to a {@link Channel} are propagated
+     * through its {@link ChannelPipeline} as for any other write using {@link Channel#voidPromise()}.
+     * <p>
+     * If the message is a {@link ByteBuf} or {@link ByteBufHolder}, each {@link Channel} writes a
+     * {@linkplain ByteBuf#duplicate() duplicate} that shares the reference count of the message.
+     *
+     * @param message the message to write
+     * @param matcher the matcher for the {@link Channel}s to write to
+     * @param flush {@code true} if each {@link Channel} should be flushed after the message was written
+     */
+    public Future<Void> broadcast(final Object message, ChannelMatcher matcher, final boolean flush) {
+        ObjectUtil.checkNotNull(message, "message");
+        ObjectUtil.checkNotNull(matcher, "matcher");
+
+        Map<EventLoop, List<Channel>> channelsByEventLoop = new IdentityHashMap<EventLoop, List<Channel>>();
+        for (Channel c: nonServerChannels.values()) {
+            if (matcher.matches(c)) {
+                List<Channel> channels = channelsByEventLoop.get(c.eventLoop());
+                if (channels == null) {
+                    channels = new ArrayList<Channel>();
+                    channelsByEventLoop.put(c.eventLoop(), channels);
+                }
+                channels.add(c);
+            }
+        }
+
+        final BroadcastPromise promise = new BroadcastPromise(executor, channelsByEventLoop.size());
+        for (Map.Entry<EventLoop, List<Channel>> entry: channelsByEventLoop.entrySet()) {
+            final List<Channel> channels = entry.getValue();
+            // Every EventLoop holds exactly one reference which is transferred to its Channels.
+            ReferenceCountUtil.retain(message);
+            try {
+                entry.getKey().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        broadcast0(message, channels, flush, promise);
+                    }
+                });
+            } catch (Throwable cause) {
+                ReferenceCountUtil.release(message);
+                for (Channel c: channels) {
+                    promise.addFailure(c, cause);
+                }
+                promise.eventLoopDone();
+            }
+        }
+        ReferenceCountUtil.release(message);
+        return promise;
+    }
+
+    private static void broadcast0(Object message, List<Channel> channels, boolean flush, BroadcastPromise promise) {
+        List<Channel> activeChannels = new ArrayList<Channel>(channels.size());
+        for (Channel c: channels) {
+            if (c.isActive()) {
+                activeChannels.add(c);
+            } else {
+                promise.addFailure(c, new ClosedChannelException());
+            }
+        }
+        int size = activeChannels.size();
+        if (size == 0) {
+            ReferenceCountUtil.release(message);
+        } else if (size > 1) {
+            // We already own one reference, so retain for all other Channels with a single operation.
+            ReferenceCountUtil.retain(message, size - 1);
+        }
+        for (int i = 0; i < size; i++) {
+            Channel c = activeChannels.get(i);
+            try {
+                Object msg = duplicate(message);
+                if (flush) {
+                    c.writeAndFlush(msg, c.voidPromise());
+                } else {
+                    c.write(msg, c.voidPromise());
+                }
+            } catch (Throwable cause) {
+                promise.addFailure(c, cause);
+            }
+        }
+        promise.eventLoopDone();
+    }
+
+    // Create a duplicate which shares the reference count with the given message but has independent indexes.
+    private static Object duplicate(Object message) {
+        if (message instanceof ByteBuf) {
+            return ((ByteBuf) message).duplicate();
+        } else if (message instanceof ByteBufHolder) {
+            return ((ByteBufHolder) message).duplicate();
+        } else {
+            return message;
+        }
+    }
+
+    private static final class BroadcastPromise extends DefaultPromise<Void> {
+        private final Queue<Map.Entry<Channel, Throwable>> failures =
+                new ConcurrentLinkedQueue<Map.Entry<Channel, Throwable>>();
+        private final AtomicInteger pendingEventLoops;
+
+        BroadcastPromise(EventExecutor executor, int eventLoops) {
+            super(executor);
+            pendingEventLoops = new AtomicInteger(eventLoops);
+            if (eventLoops == 0) {
+                setSuccess(null);
+            }
+        }
+
+        void addFailure(Channel channel, Throwable cause) {
+            failures.add(new DefaultChannelGroupFuture.DefaultEntry<Channel, Throwable>(channel, cause));
+        }
+
+        void eventLoopDone() {
+            if (pendingEventLoops.decrementAndGet() == 0) {
+                if (failures.isEmpty()) {
+                    trySuccess(null);
+                } else {
+                    tryFailure(new ChannelGroupException(new ArrayList<Map.Entry<Channel, Throwable>>(failures)));
+                }
+            }
+        }
+    }
+
     @Override
     public ChannelGroupFuture newCloseFuture() {
         return newCloseFuture(ChannelMatchers.all());
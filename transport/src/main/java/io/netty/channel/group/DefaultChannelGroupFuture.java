@@ -232,7 +232,7 @@ final class DefaultChannelGroupFuture extends DefaultPromise<Void> implements Ch
         }
     }
 
-    private static final class DefaultEntry<K, V> implements Map.Entry<K, V> {
+    static final class DefaultEntry<K, V> implements Map.Entry<K, V> {
         private final K key;
         private final V value;
 
@@ -141,6 +141,9 @@ public abstract class AbstractNioByteChannel extends AbstractNioChannel {
             final ChannelPipeline pipeline = pipeline();
             final ByteBufAllocator allocator = config.getAllocator();
             final RecvByteBufAllocator.Handle allocHandle = recvBufAllocHandle();
+            final RecvByteBufAllocator.DetachingHandle detachingHandle =
+                    allocHandle instanceof RecvByteBufAllocator.DetachingHandle ?
+                            (RecvByteBufAllocator.DetachingHandle) allocHandle : null;
             allocHandle.reset(config);
 
             ByteBuf byteBuf = null;
@@ -161,6 +164,9 @@ public abstract class AbstractNioByteChannel extends AbstractNioChannel {
                         break;
                     }
 
+                    if (detachingHandle != null) {
+                        byteBuf = detachingHandle.detach(allocator, byteBuf);
+                    }
                     allocHandle.incMessagesRead(1);
                     readPending = false;
                     pipeline.fireChannelRead(byteBuf);
@@ -52,6 +52,7 @@ import java.net.SocketAddress;
 import java.net.SocketException;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -340,6 +341,114 @@ public class BootstrapTest {
         assertThat(connectFuture.channel().isOpen(), is(false));
     }
 
+    @Test
+    public void testHappyEyeballsConnectsToNextAddress() throws Exception {
+        final ServerBootstrap bootstrapB = new ServerBootstrap();
+        bootstrapB.group(groupB);
+        bootstrapB.channel(LocalServerChannel.class);
+        bootstrapB.childHandler(dummyHandler);
+        SocketAddress localAddress = bootstrapB.bind(LocalAddress.ANY).sync().channel().localAddress();
+
+        HappyEyeballs happyEyeballs = new HappyEyeballs(10, TimeUnit.SECONDS);
+        final Bootstrap bootstrapA = new Bootstrap();
+        bootstrapA.group(groupA);
+        bootstrapA.channel(LocalChannel.class);
+        bootstrapA.resolver(new MultiAddressResolverGroup(
+                new LocalAddress(UUID.randomUUID().toString()), localAddress));
+        bootstrapA.handler(dummyHandler);
+        bootstrapA.happyEyeballs(happyEyeballs);
+
+        // The first address is not bound so the next address must be tried without waiting for the delay.
+        ChannelFuture connectFuture = bootstrapA.connect(new LocalAddress("unresolved"));
+        assertThat(connectFuture.await(5000), is(true));
+        assertThat(connectFuture.cause(), nullValue());
+        assertEquals(localAddress, connectFuture.channel().remoteAddress());
+        assertEquals(2, happyEyeballs.attempts());
+        assertEquals(0, happyEyeballs.failures());
+        connectFuture.channel().close().sync();
+    }
+
+    @Test
+    public void testHappyEyeballsAllAttemptsFailed() throws Exception {
+        HappyEyeballs happyEyeballs = new HappyEyeballs(0, TimeUnit.MILLISECONDS);
+        final Bootstrap bootstrapA = new Bootstrap();
+        bootstrapA.group(groupA);
+        bootstrapA.channel(LocalChannel.class);
+        bootstrapA.resolver(new MultiAddressResolverGroup(
+                new LocalAddress(UUID.randomUUID().toString()), new LocalAddress(UUID.randomUUID().toString())));
+        bootstrapA.handler(dummyHandler);
+        bootstrapA.happyEyeballs(happyEyeballs);
+
+        ChannelFuture connectFuture = bootstrapA.connect(new LocalAddress("unresolved"));
+        assertThat(connectFuture.await(5000), is(true));
+        assertThat(connectFuture.cause(), instanceOf(ConnectException.class));
+        assertThat(connectFuture.channel().isOpen(), is(false));
+        assertEquals(2, happyEyeballs.attempts());
+        assertEquals(1, happyEyeballs.failures());
+    }
+
+    @Test
+    public void testHappyEyeballsConcurrentSuccesses() throws Exception {
+        final ServerBootstrap bootstrapB = new ServerBootstrap();
+        bootstrapB.group(groupB);
+        bootstrapB.channel(LocalServerChannel.class);
+        bootstrapB.childHandler(dummyHandler);
+        SocketAddress localAddress = bootstrapB.bind(LocalAddress.ANY).sync().channel().localAddress();
+
+        EventLoopGroup group = new DefaultEventLoopGroup(4);
+        try {
+            for (int i = 0; i < 20; i++) {
+                final BlockingQueue<Channel> channels = new LinkedBlockingQueue<Channel>();
+                HappyEyeballs happyEyeballs = new HappyEyeballs(0, TimeUnit.MILLISECONDS);
+                final Bootstrap bootstrapA = new Bootstrap();
+                bootstrapA.group(group);
+                bootstrapA.channel(LocalChannel.class);
+                bootstrapA.resolver(new MultiAddressResolverGroup(
+                        localAddress, localAddress, localAddress, localAddress));
+                bootstrapA.handler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        channels.add(ch);
+                    }
+                });
+                bootstrapA.happyEyeballs(happyEyeballs);
+
+                // All attempts are started right away on different event loops and are likely to succeed together.
+                ChannelFuture connectFuture = bootstrapA.connect(new LocalAddress("unresolved"));
+                assertThat(connectFuture.await(5000), is(true));
+                assertThat(connectFuture.cause(), nullValue());
+                Channel winner = connectFuture.channel();
+                assertTrue(winner.isActive());
+                assertEquals(0, happyEyeballs.failures());
+
+                for (Channel channel : channels) {
+                    if (channel != winner) {
+                        assertTrue(channel.closeFuture().await(5000));
+                    }
+                }
+                assertTrue(winner.isOpen());
+                winner.close().sync();
+            }
+        } finally {
+            group.shutdownGracefully(0, 5, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+    }
+
+    @Test
+    public void testHappyEyeballsEmptyResolution() throws Exception {
+        final Bootstrap bootstrapA = new Bootstrap();
+        bootstrapA.group(groupA);
+        bootstrapA.channel(LocalChannel.class);
+        bootstrapA.resolver(new MultiAddressResolverGroup());
+        bootstrapA.handler(dummyHandler);
+        bootstrapA.happyEyeballs(new HappyEyeballs(0, TimeUnit.MILLISECONDS));
+
+        ChannelFuture connectFuture = bootstrapA.connect(new LocalAddress("unresolved"));
+        assertThat(connectFuture.await(5000), is(true));
+        assertThat(connectFuture.cause(), instanceOf(UnknownHostException.class));
+        assertThat(connectFuture.channel().isOpen(), is(false));
+    }
+
     @Test
     public void testGetResolverFailed() throws Exception {
         class TestException extends RuntimeException { }
@@ -537,4 +646,34 @@ public class BootstrapTest {
             };
         }
     }
+
+    private static final class MultiAddressResolverGroup extends AddressResolverGroup<SocketAddress> {
+
+        private final List<SocketAddress> addresses;
+
+        MultiAddressResolverGroup(SocketAddress... addresses) {
+            this.addresses = Arrays.asList(addresses);
+        }
+
+        @Override
+        protected AddressResolver<SocketAddress> newResolver(EventExecutor executor) throws Exception {
+            return new AbstractAddressResolver<SocketAddress>(executor) {
+
+                @Override
+                protected boolean doIsResolved(SocketAddress address) {
+                    return false;
+                }
+
+                @Override
+                protected void doResolve(SocketAddress unresolvedAddress, Promise<SocketAddress> promise) {
+                    promise.setSuccess(addresses.get(0));
+                }
+
+                @Override
+                protected void doResolveAll(SocketAddress unresolvedAddress, Promise<List<SocketAddress>> promise) {
+                    promise.setSuccess(addresses);
+                }
+            };
+        }
+    }
 }
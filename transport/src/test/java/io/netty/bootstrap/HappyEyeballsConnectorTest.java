@@ -0,0 +1,57 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.bootstrap;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class HappyEyeballsConnectorTest {
+
+    @Test
+    public void testSortAddressesInterleavesFamilies() throws Exception {
+        SocketAddress v6a = address("2001:db8::1");
+        SocketAddress v6b = address("2001:db8::2");
+        SocketAddress v6c = address("2001:db8::3");
+        SocketAddress v4a = address("192.0.2.1");
+        SocketAddress v4b = address("192.0.2.2");
+
+        List<SocketAddress> sorted = HappyEyeballsConnector.sortAddresses(Arrays.asList(v6a, v6b, v6c, v4a, v4b));
+        assertEquals(Arrays.asList(v6a, v4a, v6b, v4b, v6c), sorted);
+
+        sorted = HappyEyeballsConnector.sortAddresses(Arrays.asList(v4a, v4b, v6a));
+        assertEquals(Arrays.asList(v4a, v6a, v4b), sorted);
+    }
+
+    @Test
+    public void testSortAddressesSingleFamily() throws Exception {
+        SocketAddress v4a = address("192.0.2.1");
+        SocketAddress v4b = address("192.0.2.2");
+
+        List<SocketAddress> sorted = HappyEyeballsConnector.sortAddresses(Arrays.asList(v4a, v4b));
+        assertEquals(Arrays.asList(v4a, v4b), sorted);
+    }
+
+    private static SocketAddress address(String ip) throws Exception {
+        return new InetSocketAddress(InetAddress.getByName(ip), 80);
+    }
+}
@@ -392,6 +392,124 @@ public class ChannelOutboundBufferTest {
         safeClose(ch);
     }
 
+    @Test
+    public void testWriteBufferBudget() throws Exception {
+        final StringBuilder buf = new StringBuilder();
+        WriteBufferBudget budget = new WriteBufferBudget(
+                128 + ChannelOutboundBuffer.CHANNEL_OUTBOUND_BUFFER_ENTRY_OVERHEAD,
+                256 + 2 * ChannelOutboundBuffer.CHANNEL_OUTBOUND_BUFFER_ENTRY_OVERHEAD);
+        EmbeddedChannel ch1 = new EmbeddedChannel(false, false);
+        ch1.config().setOption(ChannelOption.WRITE_BUFFER_BUDGET, budget);
+        ch1.register();
+        EmbeddedChannel ch2 = new EmbeddedChannel(false, false, new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+                buf.append(ctx.channel().isWritable());
+                buf.append(' ');
+            }
+        });
+        ch2.config().setOption(ChannelOption.WRITE_BUFFER_BUDGET, budget);
+        ch2.register();
+
+        ch1.write(buffer().writeZero(200));
+        assertThat(budget.pendingBytes(), is(200L + ChannelOutboundBuffer.CHANNEL_OUTBOUND_BUFFER_ENTRY_OVERHEAD));
+        assertThat(budget.isExceeded(), is(false));
+
+        // Ensure exceeding the budget makes the channel unwritable even if its own high watermark is not exceeded.
+        ch2.write(buffer().writeZero(100));
+        ch2.runPendingTasks();
+        assertThat(budget.isExceeded(), is(true));
+        assertThat(ch2.isWritable(), is(false));
+        assertThat(buf.toString(), is("false "));
+        assertThat(budget.pendingChannels(), is(2));
+        assertThat(budget.topPendingChannels(1).keySet().iterator().next(), is((Channel) ch1));
+
+        // Ensure going down to the low watermark of the budget makes channel writable again.
+        ch1.unsafe().outboundBuffer().addFlush();
+        assertThat(ch1.unsafe().outboundBuffer().remove(), is(true));
+        ch2.runPendingTasks();
+        assertThat(budget.isExceeded(), is(false));
+        assertThat(ch2.isWritable(), is(true));
+        assertThat(buf.toString(), is("false true "));
+        assertThat(budget.pendingChannels(), is(1));
+
+        safeClose(ch1);
+        safeClose(ch2);
+        assertThat(budget.pendingBytes(), is(0L));
+        assertThat(budget.pendingChannels(), is(0));
+    }
+
+    @Test
+    public void testWriteBufferBudgetHoldsBackChannelUnwritableByItsOwnWaterMark() throws Exception {
+        final StringBuilder buf = new StringBuilder();
+        WriteBufferBudget budget = new WriteBufferBudget(
+                128 + ChannelOutboundBuffer.CHANNEL_OUTBOUND_BUFFER_ENTRY_OVERHEAD,
+                256 + 2 * ChannelOutboundBuffer.CHANNEL_OUTBOUND_BUFFER_ENTRY_OVERHEAD);
+        EmbeddedChannel ch1 = new EmbeddedChannel(false, false);
+        ch1.config().setOption(ChannelOption.WRITE_BUFFER_BUDGET, budget);
+        ch1.register();
+        EmbeddedChannel ch2 = new EmbeddedChannel(false, false, new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+                buf.append(ctx.channel().isWritable());
+                buf.append(' ');
+            }
+        });
+        ch2.config().setOption(ChannelOption.WRITE_BUFFER_BUDGET, budget);
+        ch2.config().setWriteBufferWaterMark(new WriteBufferWaterMark(32, 64));
+        ch2.register();
+
+        // Ensure the channel becomes unwritable because of its own high watermark.
+        ch2.write(buffer().writeZero(100));
+        ch2.runPendingTasks();
+        assertThat(budget.isExceeded(), is(false));
+        assertThat(ch2.isWritable(), is(false));
+        assertThat(buf.toString(), is("false "));
+
+        ch1.write(buffer().writeZero(200));
+        assertThat(budget.isExceeded(), is(true));
+
+        // Ensure draining below its own low watermark does not make the channel writable while the budget is
+        // exceeded.
+        ch2.unsafe().outboundBuffer().addFlush();
+        assertThat(ch2.unsafe().outboundBuffer().remove(), is(true));
+        ch2.runPendingTasks();
+        assertThat(ch2.isWritable(), is(false));
+        assertThat(buf.toString(), is("false "));
+
+        // Ensure the channel becomes writable once the budget recovered.
+        ch1.unsafe().outboundBuffer().addFlush();
+        assertThat(ch1.unsafe().outboundBuffer().remove(), is(true));
+        ch2.runPendingTasks();
+        assertThat(budget.isExceeded(), is(false));
+        assertThat(ch2.isWritable(), is(true));
+        assertThat(buf.toString(), is("false true "));
+
+        safeClose(ch1);
+        safeClose(ch2);
+        assertThat(budget.pendingBytes(), is(0L));
+    }
+
+    @Test
+    public void testWriteBufferBudgetRejectsWrites() throws Exception {
+        WriteBufferBudget budget = new WriteBufferBudget(
+                0, 1, 128 + ChannelOutboundBuffer.CHANNEL_OUTBOUND_BUFFER_ENTRY_OVERHEAD);
+        EmbeddedChannel ch = new EmbeddedChannel(false, false);
+        ch.config().setOption(ChannelOption.WRITE_BUFFER_BUDGET, budget);
+        ch.register();
+
+        ChannelFuture future = ch.write(buffer().writeZero(128));
+        assertThat(future.isDone(), is(false));
+
+        ByteBuf buffer = buffer().writeZero(1);
+        future = ch.write(buffer);
+        assertThat(future.cause(), instanceOf(ChannelException.class));
+        assertEquals(0, buffer.refCnt());
+        assertThat(budget.rejectedWrites(), is(1L));
+
+        safeClose(ch);
+    }
+
     @Test
     @Timeout(value = 5000, unit = TimeUnit.MILLISECONDS)
     public void testWriteTaskRejected() throws Exception {
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+public class HandlerInvocationRecorderTest {
+
+    @Test
+    public void testExclusiveTimeExcludesNestedInvocations() {
+        HandlerInvocationRecorder outer = new HandlerInvocationRecorder();
+        HandlerInvocationRecorder inner = new HandlerInvocationRecorder();
+
+        long outerParent = HandlerInvocationRecorder.enter();
+        long innerParent = HandlerInvocationRecorder.enter();
+        inner.exit(HandlerInvocationRecorder.READ, 10, 40, innerParent);
+        innerParent = HandlerInvocationRecorder.enter();
+        inner.exit(HandlerInvocationRecorder.WRITE, 50, 60, innerParent);
+        outer.exit(HandlerInvocationRecorder.READ, 0, 100, outerParent);
+
+        HandlerInvocationStats innerStats = inner.snapshot("inner");
+        assertEquals("inner", innerStats.name());
+        assertEquals(1, innerStats.readCount());
+        assertEquals(30, innerStats.readNanos());
+        assertEquals(30, innerStats.readExclusiveNanos());
+        assertEquals(1, innerStats.writeCount());
+        assertEquals(10, innerStats.writeNanos());
+        assertEquals(10, innerStats.writeExclusiveNanos());
+        assertEquals(0, innerStats.flushCount());
+
+        HandlerInvocationStats outerStats = outer.snapshot("outer");
+        assertEquals(1, outerStats.readCount());
+        assertEquals(100, outerStats.readNanos());
+        assertEquals(60, outerStats.readExclusiveNanos());
+        assertEquals(0, outerStats.writeCount());
+    }
+
+    @Test
+    public void testSnapshotIsNotUpdated() {
+        HandlerInvocationRecorder recorder = new HandlerInvocationRecorder();
+        recorder.exit(HandlerInvocationRecorder.FLUSH, 0, 5, HandlerInvocationRecorder.enter());
+        HandlerInvocationStats stats = recorder.snapshot("handler");
+        recorder.exit(HandlerInvocationRecorder.FLUSH, 0, 5, HandlerInvocationRecorder.enter());
+
+        assertEquals(1, stats.flushCount());
+        assertEquals(5, stats.flushNanos());
+        assertEquals(2, recorder.snapshot("handler").flushCount());
+    }
+
+    @Test
+    public void testNoStatsIfDisabled() {
+        assumeFalse(HandlerInvocationStats.isEnabled());
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+        assertTrue(((DefaultChannelPipeline) channel.pipeline()).handlerInvocationStats().isEmpty());
+        assertTrue(HandlerInvocationStats.aggregateByName(Collections.singleton(channel)).isEmpty());
+        channel.finishAndReleaseAll();
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Tests the stats recorded by a {@link DefaultChannelPipeline} with {@code -Dio.netty.pipeline.instrumentation=true},
+ * which the build sets for this test only.
+ */
+public class HandlerInvocationStatsTest {
+
+    private static final long BUSY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @BeforeEach
+    public void setUp() {
+        assumeTrue(HandlerInvocationStats.isEnabled());
+    }
+
+    @Test
+    public void testReadAndWriteAreRecorded() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        channel.pipeline().addLast("outer", new BusyHandler());
+        channel.pipeline().addLast("inner", new BusyHandler());
+
+        assertTrue(channel.writeInbound("read"));
+        assertTrue(channel.writeOutbound("write"));
+        assertEquals("read", channel.readInbound());
+        assertEquals("write", channel.readOutbound());
+
+        HandlerInvocationStats outer = stats(channel, "outer");
+        HandlerInvocationStats inner = stats(channel, "inner");
+        assertEquals(1, outer.readCount());
+        assertEquals(1, inner.readCount());
+        assertEquals(1, outer.writeCount());
+        assertEquals(1, inner.writeCount());
+        // Methods which are not overridden are skipped and so not recorded.
+        assertEquals(0, outer.flushCount());
+
+        assertTrue(inner.readNanos() >= BUSY_NANOS);
+        assertTrue(inner.readExclusiveNanos() >= BUSY_NANOS);
+        // The outer handler passes the message on to the inner one, whose time is excluded.
+        assertTrue(outer.readNanos() >= 2 * BUSY_NANOS);
+        assertTrue(outer.readExclusiveNanos() >= BUSY_NANOS);
+        assertTrue(outer.readExclusiveNanos() <= outer.readNanos() - inner.readNanos());
+        // Outbound, the inner handler is invoked first and passes the message on to the outer one.
+        assertTrue(inner.writeNanos() >= 2 * BUSY_NANOS);
+        assertTrue(inner.writeExclusiveNanos() <= inner.writeNanos() - outer.writeNanos());
+        assertTrue(outer.writeExclusiveNanos() >= BUSY_NANOS);
+
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testAggregateByName() {
+        EmbeddedChannel first = new EmbeddedChannel();
+        first.pipeline().addLast("handler", new BusyHandler());
+        EmbeddedChannel second = new EmbeddedChannel();
+        second.pipeline().addLast("handler", new BusyHandler());
+        first.writeInbound("1");
+        second.writeInbound("2");
+        second.writeInbound("3");
+
+        Map<String, HandlerInvocationStats> aggregated =
+                HandlerInvocationStats.aggregateByName(Arrays.asList(first, second));
+        assertEquals(3, aggregated.get("handler").readCount());
+        assertTrue(aggregated.get("handler").readNanos() >= 3 * BUSY_NANOS);
+        first.finishAndReleaseAll();
+        second.finishAndReleaseAll();
+    }
+
+    private static HandlerInvocationStats stats(EmbeddedChannel channel, String name) {
+        for (HandlerInvocationStats stats : ((DefaultChannelPipeline) channel.pipeline()).handlerInvocationStats()) {
+            if (name.equals(stats.name())) {
+                return stats;
+            }
+        }
+        throw new AssertionError("no stats for " + name);
+    }
+
+    private static final class BusyHandler extends ChannelDuplexHandler {
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            busy();
+            ctx.fireChannelRead(msg);
+        }
+
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+            busy();
+            ctx.write(msg, promise);
+        }
+
+        private static void busy() {
+            // Spin rather than sleep, so the measured time is at least BUSY_NANOS.
+            long start = System.nanoTime();
+            while (System.nanoTime() - start < BUSY_NANOS) {
+                Thread.yield();
+            }
+        }
+    }
+}
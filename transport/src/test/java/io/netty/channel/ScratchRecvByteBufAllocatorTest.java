@@ -0,0 +1,96 @@
+/*
+ * Copyright 2022 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ScratchRecvByteBufAllocatorTest {
+    private final ByteBufAllocator alloc = UnpooledByteBufAllocator.DEFAULT;
+    private RecvByteBufAllocator.DetachingHandle handle;
+
+    @BeforeEach
+    public void setup() {
+        ChannelConfig config = mock(ChannelConfig.class);
+        when(config.isAutoRead()).thenReturn(true);
+        handle = (RecvByteBufAllocator.DetachingHandle) new ScratchRecvByteBufAllocator(1024).newHandle();
+        handle.reset(config);
+    }
+
+    @Test
+    public void testDetachCopiesSmallReads() {
+        ByteBuf scratch = handle.allocate(alloc);
+        assertEquals(1024, handle.guess());
+        assertEquals(1024, scratch.writableBytes());
+        scratch.writeLong(42);
+
+        ByteBuf detached = handle.detach(alloc, scratch);
+        assertNotSame(scratch, detached);
+        assertEquals(8, detached.capacity());
+        assertEquals(42, detached.readLong());
+        // The scratch buffer is only referenced by the allocator now.
+        assertEquals(1, scratch.refCnt());
+
+        // The next read must reuse the same scratch buffer.
+        ByteBuf next = handle.allocate(alloc);
+        assertSame(scratch, next);
+        assertEquals(0, next.readableBytes());
+        next.release();
+        detached.release();
+    }
+
+    @Test
+    public void testDetachHandsOutScratchForLargeReads() {
+        ByteBuf scratch = handle.allocate(alloc);
+        scratch.writeZero(1000);
+
+        ByteBuf detached = handle.detach(alloc, scratch);
+        assertSame(scratch, detached);
+        assertEquals(1, detached.refCnt());
+
+        ByteBuf next = handle.allocate(alloc);
+        assertNotSame(scratch, next);
+        next.release();
+        detached.release();
+    }
+
+    @Test
+    public void testScratchNotReusedWhileStillReferenced() {
+        ByteBuf scratch = handle.allocate(alloc);
+        // Simulate a transport which does not detach the buffer.
+        ByteBuf next = handle.allocate(alloc);
+        assertNotSame(scratch, next);
+        assertEquals(1, scratch.refCnt());
+        scratch.release();
+        next.release();
+    }
+
+    @Test
+    public void testDetachIgnoresForeignBuffers() {
+        ByteBuf buffer = alloc.buffer(16).writeByte(1);
+        assertSame(buffer, handle.detach(alloc, buffer));
+        buffer.release();
+    }
+}
@@ -16,15 +16,29 @@
 package io.netty.channel.group;
 
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.DefaultChannelId;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.CharsetUtil;
+import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.concurrent.ImmediateEventExecutor;
 import org.junit.jupiter.api.Test;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 public class DefaultChannelGroupTest {
 
     // Test for #1183
@@ -57,4 +71,53 @@ public class DefaultChannelGroupTest {
         bossGroup.terminationFuture().sync();
         workerGroup.terminationFuture().sync();
     }
+
+    @Test
+    public void testBroadcast() throws Exception {
+        DefaultChannelGroup group = new DefaultChannelGroup(ImmediateEventExecutor.INSTANCE);
+        EmbeddedChannel ch1 = new EmbeddedChannel(DefaultChannelId.newInstance());
+        EmbeddedChannel ch2 = new EmbeddedChannel(DefaultChannelId.newInstance());
+        EmbeddedChannel closed = new EmbeddedChannel(DefaultChannelId.newInstance());
+        group.add(ch1);
+        group.add(ch2);
+        group.add(closed);
+
+        ByteBuf message = Unpooled.copiedBuffer("test", CharsetUtil.US_ASCII);
+        Future<Void> future = group.broadcast(message);
+        assertFalse(future.isDone());
+        // The message is retained once by every EventLoop that has not run its task yet.
+        assertEquals(3, message.refCnt());
+
+        // Close the channel before its pending task was run.
+        closed.unsafe().close(closed.voidPromise());
+        closed.runPendingTasks();
+        assertEquals(2, message.refCnt());
+        ch1.runPendingTasks();
+        ch2.runPendingTasks();
+        assertTrue(future.isDone());
+        assertThat(future.cause(), instanceOf(ChannelGroupException.class));
+        ChannelGroupException cause = (ChannelGroupException) future.cause();
+        assertSame(closed, cause.iterator().next().getKey());
+
+        ByteBuf written1 = ch1.readOutbound();
+        ByteBuf written2 = ch2.readOutbound();
+        assertEquals(message, written1);
+        assertEquals(message, written2);
+        assertEquals(2, message.refCnt());
+        written1.release();
+        written2.release();
+        assertEquals(0, message.refCnt());
+
+        assertFalse(ch1.finish());
+        assertFalse(ch2.finish());
+    }
+
+    @Test
+    public void testBroadcastEmptyGroup() {
+        DefaultChannelGroup group = new DefaultChannelGroup(ImmediateEventExecutor.INSTANCE);
+        ByteBuf message = Unpooled.buffer().writeZero(1);
+        Future<Void> future = group.broadcast(message);
+        assertTrue(future.isSuccess());
+        assertEquals(0, message.refCnt());
+    }
 }